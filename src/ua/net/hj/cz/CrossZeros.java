@@ -1,7 +1,10 @@
 package ua.net.hj.cz;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Scanner;
 import ua.net.hj.cz.game.Game;
+import ua.net.hj.cz.game.GameLogWriter;
 
 /**
  * Главный запускаемый класс программы.
@@ -57,10 +60,24 @@ public class CrossZeros {
 	
 	/**
 	 * Точка входа в программу.
+	 * Параметры: [файл_журнала] - если задан, то сыгранные игры дописываются в журнал (см. GameLogWriter).
 	 * @param args - Параметры командной строки.
 	 */
 	public static void main(String[] args) {
 		Game game = new Game();
+		GameLogWriter gameLog = null;
+		if (args.length > 0)
+		{
+			try
+			{
+				gameLog = GameLogWriter.append(Paths.get(args[0]));
+				game.setGameLog(gameLog);
+			}
+			catch (IOException | IllegalArgumentException e)
+			{
+				System.out.println("Журнал игр не будет вестись по причине: " + e.getLocalizedMessage());
+			}
+		}
 		mainLoop:
 		while (true) // Пока пользователь в меню не выберет выход из игры.
 		{
@@ -99,6 +116,17 @@ public class CrossZeros {
 		System.out.println();
 		System.out.println("Всего доброго.");
 		game.close();
+		if (gameLog != null)
+		{
+			try
+			{
+				gameLog.close();
+			}
+			catch (IOException e)
+			{
+				System.out.println("Не удалось закрыть журнал игр: " + e.getLocalizedMessage());
+			}
+		}
 		SCANNER.close();
 	}
 	
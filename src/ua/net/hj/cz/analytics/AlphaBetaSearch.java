@@ -0,0 +1,871 @@
+package ua.net.hj.cz.analytics;
+
+import ua.net.hj.cz.core.ZobristKeys;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.BoardSymmetry;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает поиск хода перебором дерева игры (negamax с альфа-бета отсечениями).
+ * Анализирующий игрок играет против "команды" всех остальных игроков:
+ * значение позиции всегда считается с точки зрения команды ходящего игрока
+ * и меняет знак только тогда, когда ход переходит к другой команде.
+ * Для двух игроков это обычный negamax.
+ * В игре трех и более игроков вместо такой "параноидальной" модели можно выбрать стратегию max-n (см. Strategy):
+ * узел дерева оценивается вектором долей всех игроков (доли неотрицательны и в сумме дают MAX_N_SUM),
+ * и каждый игрок выбирает ход, максимизирующий свою долю. Поскольку сумма долей постоянна,
+ * перебор ходов игрока прекращается, как только его доля не оставляет предыдущему игроку шанса
+ * улучшить уже найденный им результат (мелкие отсечения max-n).
+ * Ходы в каждом узле выбираются только среди клеточек рядом с фигурами (см. CandidateMoves),
+ * упорядочиваются по статическому весу доски (см. BoardEvaluator),
+ * и рассматриваются только самые перспективные из них.
+ * Веса доски для всех игроков поддерживаются инкрементально (см. IncrementalEvaluator),
+ * поэтому каждый пробный ход стоит пересчета только четырех проходящих через клеточку линий.
+ * Если задана таблица транспозиций, то результаты поиска по позициям кэшируются в ней,
+ * а сохраненный лучший ход позиции перебирается первым.
+ * Ключом таблицы служит хэш канонического вида позиции (см. BoardSymmetry), поэтому симметричные позиции
+ * разделяют одну запись, а ход записи хранится в системе координат канонического варианта.
+ * Поиск углубляется итеративно (1, 2, ... полуходов до заданной глубины), и лучший ход каждой итерации
+ * перебирается первым на следующей. Если время на ход истекло, то возвращается лучший ход последней завершенной итерации.
+ * Часы проверяются не в каждом узле, а через каждые CLOCK_CHECK_INTERVAL пробных ходов,
+ * поэтому превышение крайнего срока ограничено временем этих пробных ходов.
+ * @author Hobbit Jedi
+ */
+public class AlphaBetaSearch {
+	public static final int DEFAULT_DEPTH = 3;            // Глубина поиска по умолчанию (в полуходах).
+	public static final int DEFAULT_BRANCHING = 12;       // Количество рассматриваемых в узле ходов по умолчанию.
+	public static final long DEFAULT_MOVE_TIME = 5000L;   // Ограничение времени на ход по умолчанию (мс).
+	private static final double WIN = Double.POSITIVE_INFINITY; // Значение выигранной позиции.
+	private static final int CLOCK_CHECK_INTERVAL = 128;  // Количество пробных ходов между проверками часов.
+	private static final double MAX_N_SUM = 1d;           // Сумма долей всех игроков в оценке max-n.
+	private static final long MAX_N_KEY = 0x4D61784E4B657921L; // Добавка к ключу таблицы транспозиций для узлов max-n.
+
+	/**
+	 * Описывает стратегии поиска в игре трех и более игроков.
+	 */
+	public enum Strategy
+	{
+		PARANOID("Параноидальная"), // Все соперники играют как одна команда против анализирующего игрока.
+		MAX_N   ("Max-n")           // Каждый игрок максимизирует свою долю в векторе оценок.
+		;
+
+		private final String mName; // Представление значения при выводе на экран.
+
+		private Strategy(String aName)
+		{
+			mName = aName;
+		}
+
+		@Override
+		public String toString()
+		{
+			return mName;
+		}
+	}
+
+	private Rules mRules;                    // Правила, по которым ведется игра.
+	private IncrementalEvaluator[] mEvaluators; // Оценщики статического веса доски для каждого игрока.
+	private int mDepth;                      // Глубина поиска (в полуходах).
+	private int mBranching;                  // Количество рассматриваемых в узле ходов.
+	private long mMoveTimeLimit;             // Ограничение времени на ход (мс). 0 - неограничено.
+	private long mDeadline;                  // Момент времени (System.nanoTime()), когда поиск нужно прекратить.
+	private boolean mIsTimeOut;              // Признак того, что время на поиск истекло.
+	private int mClockCountdown;             // Количество пробных ходов до следующей проверки часов.
+	private int mCompletedDepth;             // Глубина последней полностью завершенной итерации последнего поиска.
+	private long mNodesCount;                // Количество рассмотренных в последнем поиске узлов.
+	private int mAnalyticID;                 // Идентификатор игрока, для которого ищется ход.
+	private int[] mPlayersSequence;          // Порядок хода игроков.
+	private CandidateMoves mCandidates;      // Генератор ходов-кандидатов.
+	private int[][] mCandidatesBuffers;      // Буферы кандидатов для каждого уровня дерева.
+	private int[][] mMoves;                  // Буферы ходов для каждого уровня дерева.
+	private double[][] mMovesWeights;        // Буферы весов ходов для каждого уровня дерева.
+	private TranspositionTable mTable;       // Таблица транспозиций. null - не используется.
+	private BoardSymmetry mSymmetry;         // Симметрии доски для ключей таблицы транспозиций. null - еще не создавались.
+	private Strategy mStrategy;              // Стратегия поиска в игре трех и более игроков.
+	private double[][] mScores;              // Векторы оценок max-n для каждого уровня дерева: [уровень][индекс игрока].
+
+	/**
+	 * Создать поиск с параметрами по умолчанию.
+	 * @param aRules - Правила, по которым ведется игра.
+	 */
+	public AlphaBetaSearch(Rules aRules)
+	{
+		mRules = aRules;
+		mDepth = DEFAULT_DEPTH;
+		mBranching = DEFAULT_BRANCHING;
+		mMoveTimeLimit = DEFAULT_MOVE_TIME;
+		mCandidates = new CandidateMoves(CandidateMoves.DEFAULT_DISTANCE);
+		mCandidatesBuffers = new int[0][];
+		mMoves = new int[0][];
+		mMovesWeights = new double[0][];
+		mTable = null;
+		mSymmetry = null;
+		mStrategy = Strategy.PARANOID;
+		mScores = new double[0][];
+		mEvaluators = new IncrementalEvaluator[0];
+	}
+	
+	/**
+	 * Установить правила, по которым ведется игра (например, перед новой игрой).
+	 * Буферы поиска сохраняются; оценщики и симметрии пересоздаются при следующем поиске, только если им не подходят правила или доска.
+	 * @param aRules - Правила, по которым ведется игра.
+	 */
+	public void setRules(Rules aRules)
+	{
+		mRules = aRules;
+	}
+
+	/**
+	 * Установить таблицу транспозиций.
+	 * Таблица может использоваться на протяжении всей игры, сохраняя результаты между ходами.
+	 * @param aTable - Таблица транспозиций. null - не использовать таблицу.
+	 */
+	public void setTranspositionTable(TranspositionTable aTable)
+	{
+		mTable = aTable;
+	}
+
+	/**
+	 * Установить стратегию поиска в игре трех и более игроков.
+	 * В игре двух игроков поиск всегда ведется как negamax.
+	 * @param aStrategy - Стратегия поиска.
+	 */
+	public void setStrategy(Strategy aStrategy)
+	{
+		mStrategy = aStrategy;
+	}
+
+	/**
+	 * Получить стратегию поиска в игре трех и более игроков.
+	 * @return - Стратегия поиска.
+	 */
+	public Strategy getStrategy()
+	{
+		return mStrategy;
+	}
+
+	/**
+	 * Установить глубину поиска.
+	 * @param aDepth - Глубина поиска в полуходах (не меньше 1).
+	 */
+	public void setDepth(int aDepth)
+	{
+		if (aDepth < 1)
+		{
+			throw new IllegalArgumentException("Глубина поиска должна быть положительной: " + aDepth);
+		}
+		mDepth = aDepth;
+	}
+
+	/**
+	 * Получить глубину поиска.
+	 * @return - Глубина поиска в полуходах.
+	 */
+	public int getDepth()
+	{
+		return mDepth;
+	}
+
+	/**
+	 * Установить количество рассматриваемых в каждом узле ходов.
+	 * @param aBranching - Количество лучших по статическому весу ходов, которые перебираются в узле (не меньше 1).
+	 */
+	public void setBranching(int aBranching)
+	{
+		if (aBranching < 1)
+		{
+			throw new IllegalArgumentException("Количество рассматриваемых ходов должно быть положительным: " + aBranching);
+		}
+		mBranching = aBranching;
+	}
+
+	/**
+	 * Установить расстояние от фигур, в пределах которого рассматриваются ходы.
+	 * @param aDistance - Расстояние (не меньше 1).
+	 */
+	public void setCandidatesDistance(int aDistance)
+	{
+		mCandidates = new CandidateMoves(aDistance);
+	}
+
+	/**
+	 * Установить ограничение времени на ход.
+	 * @param aMoveTimeLimit - Ограничение времени на ход в миллисекундах. 0 - неограничено.
+	 */
+	public void setMoveTimeLimit(long aMoveTimeLimit)
+	{
+		mMoveTimeLimit = Math.max(aMoveTimeLimit, 0L);
+	}
+
+	/**
+	 * Получить количество узлов, рассмотренных в последнем поиске.
+	 * @return - Количество узлов.
+	 */
+	public long getNodesCount()
+	{
+		return mNodesCount;
+	}
+
+	/**
+	 * Получить глубину последней полностью завершенной итерации последнего поиска.
+	 * @return - Глубина в полуходах. 0, если не завершилась ни одна итерация.
+	 */
+	public int getCompletedDepth()
+	{
+		return mCompletedDepth;
+	}
+
+	/**
+	 * Найти лучший ход для игрока за время, установленное методом setMoveTimeLimit().
+	 * Доска используется для перебора "на месте" и по окончании поиска возвращается в исходное состояние.
+	 * @param aBoard - Доска с текущей позицией.
+	 * @param aActivePlayersSequence - Порядок, в котором ходят активные игроки.
+	 * @param aPlayerID - Идентификатор игрока, для которого ищется ход. Он ходит первым.
+	 * @return - Индекс клеточки лучшего хода.
+	 *           -1, если ходить некуда.
+	 */
+	public int searchBestMove(Board aBoard, int[] aActivePlayersSequence, int aPlayerID)
+	{
+		long deadline = (mMoveTimeLimit > 0) ? System.nanoTime() + mMoveTimeLimit * 1000000L : Long.MAX_VALUE;
+		return searchBestMove(aBoard, aActivePlayersSequence, aPlayerID, deadline);
+	}
+
+	/**
+	 * Найти лучший ход для игрока к заданному сроку.
+	 * Доска используется для перебора "на месте" и по окончании поиска возвращается в исходное состояние.
+	 * @param aBoard - Доска с текущей позицией.
+	 * @param aActivePlayersSequence - Порядок, в котором ходят активные игроки.
+	 * @param aPlayerID - Идентификатор игрока, для которого ищется ход. Он ходит первым.
+	 * @param aDeadline - Крайний срок поиска (по System.nanoTime()). Long.MAX_VALUE - неограничено.
+	 * @return - Индекс клеточки лучшего хода.
+	 *           -1, если ходить некуда.
+	 */
+	public int searchBestMove(Board aBoard, int[] aActivePlayersSequence, int aPlayerID, long aDeadline)
+	{
+		mAnalyticID = aPlayerID;
+		mPlayersSequence = aActivePlayersSequence;
+		mNodesCount = 0;
+		mIsTimeOut = false;
+		mClockCountdown = CLOCK_CHECK_INTERVAL;
+		mCompletedDepth = 0;
+		mDeadline = aDeadline;
+		prepareEvaluators(aActivePlayersSequence);
+		for (IncrementalEvaluator evaluator: mEvaluators)
+		{
+			evaluator.attach(aBoard);
+		}
+		mCandidates.attach(aBoard);
+		prepareBuffers(mCandidates.getMaxCount(mDepth), aActivePlayersSequence.length);
+		if (mTable != null)
+		{
+			if (mSymmetry == null || !mSymmetry.isSuitable(aBoard))
+			{
+				mSymmetry = new BoardSymmetry(aBoard.getXSize(), aBoard.getYSize());
+			}
+			mSymmetry.attach(aBoard);
+		}
+		try
+		{
+			return searchRoot(aBoard, aPlayerID);
+		}
+		finally
+		{
+			if (mSymmetry != null)
+			{
+				mSymmetry.detach();
+			}
+			mCandidates.detach();
+			for (IncrementalEvaluator evaluator: mEvaluators)
+			{
+				evaluator.detach();
+			}
+		}
+	}
+
+	/**
+	 * Перебрать ходы в корне дерева с итеративным углублением.
+	 * @param aBoard - Доска с текущей позицией (оценщики уже подключены к ней).
+	 * @param aPlayerID - Идентификатор игрока, для которого ищется ход.
+	 * @return - Индекс клеточки лучшего хода.
+	 *           -1, если ходить некуда.
+	 */
+	private int searchRoot(Board aBoard, int aPlayerID)
+	{
+		int moverIndex = 0;
+		for (int i = 0; i < mPlayersSequence.length; i++)
+		{
+			if (mPlayersSequence[i] == aPlayerID)
+			{
+				moverIndex = i;
+				break;
+			}
+		}
+
+		int result = -1;
+		int[] moves = mMoves[0];
+		int movesCount = generateMoves(aBoard, 0, moverIndex, probeMove(aBoard, aPlayerID));
+		if (movesCount < 0)
+		{
+			result = -movesCount - 1; // Немедленный выигрыш.
+		}
+		else if (movesCount == 0 && aBoard.getEmptyCellsCount() > 0)
+		{
+			result = aBoard.getEmptyCell(0); // Время истекло раньше, чем был отобран хоть один ход.
+		}
+		else if (movesCount > 0)
+		{
+			result = moves[0];
+			int nextIndex = (moverIndex + 1) % mPlayersSequence.length;
+			boolean isTeamChanged = isRootTeam(aPlayerID) != isRootTeam(mPlayersSequence[nextIndex]);
+			boolean isMaxN = isMaxN();
+			double winScore = isMaxN ? MAX_N_SUM : WIN;
+			for (int depth = 1; depth <= mDepth && !mIsTimeOut; depth++)
+			{
+				// Лучший ход предыдущей итерации перебирается первым.
+				int position = 0;
+				while (moves[position] != result)
+				{
+					position++;
+				}
+				for (; position > 0; position--)
+				{
+					moves[position] = moves[position - 1];
+				}
+				moves[0] = result;
+
+				double alpha = Double.NEGATIVE_INFINITY;
+				int iterationResult = result;
+				for (int i = 0; i < movesCount; i++)
+				{
+					int cell = moves[i];
+					aBoard.makeMove(cell, aPlayerID);
+					double score;
+					if (isMaxN)
+					{
+						maxN(aBoard, depth - 1, 1, MAX_N_SUM - alpha, nextIndex);
+						score = mScores[1][moverIndex];
+					}
+					else
+					{
+						score = negamax(aBoard, depth - 1, 1, isTeamChanged ? -WIN : alpha, isTeamChanged ? -alpha : WIN, nextIndex);
+						if (isTeamChanged)
+						{
+							score = -score;
+						}
+					}
+					aBoard.unmakeMove();
+					if (mIsTimeOut)
+					{
+						break;
+					}
+					if (score > alpha)
+					{
+						alpha = score;
+						iterationResult = cell;
+					}
+				}
+				if (!mIsTimeOut)
+				{
+					result = iterationResult;
+					mCompletedDepth = depth;
+					if (alpha == winScore || alpha == -winScore)
+					{
+						break; // Исход игры определен, углубляться дальше бессмысленно.
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Рекурсивный перебор (negamax с альфа-бета отсечениями).
+	 * @param aBoard - Доска с текущей позицией.
+	 * @param aDepth - Оставшаяся глубина перебора.
+	 * @param aPly - Номер уровня дерева (для выбора буферов ходов).
+	 * @param aAlpha - Нижняя граница окна.
+	 * @param aBeta - Верхняя граница окна.
+	 * @param aMoverIndex - Индекс ходящего игрока в порядке хода.
+	 * @return - Оценка позиции с точки зрения команды ходящего игрока.
+	 */
+	private double negamax(Board aBoard, int aDepth, int aPly, double aAlpha, double aBeta, int aMoverIndex)
+	{
+		mNodesCount++;
+		if (isTimeOut(1))
+		{
+			return 0d;
+		}
+		int moverID = mPlayersSequence[aMoverIndex];
+		double alpha = aAlpha;
+		double beta = aBeta;
+		long key = 0L;
+		int symmetry = 0;
+		int tableMove = -1;
+		if (mTable != null)
+		{
+			symmetry = mSymmetry.getCanonicalSymmetry();
+			key = mSymmetry.getHash(symmetry) ^ ZobristKeys.getTurnKey(moverID);
+			int slot = mTable.probe(key);
+			if (slot >= 0)
+			{
+				tableMove = mTable.getMove(slot);
+				if (tableMove >= 0)
+				{
+					tableMove = mSymmetry.fromVariant(tableMove, symmetry);
+				}
+				if (mTable.getDepth(slot) >= aDepth)
+				{
+					double score = mTable.getScore(slot);
+					switch (mTable.getBound(slot))
+					{
+						case TranspositionTable.BOUND_EXACT:
+							return score;
+						case TranspositionTable.BOUND_LOWER:
+							alpha = Math.max(alpha, score);
+							break;
+						case TranspositionTable.BOUND_UPPER:
+							beta = Math.min(beta, score);
+							break;
+					}
+					if (alpha >= beta)
+					{
+						return score;
+					}
+				}
+			}
+		}
+		if (aDepth <= 0)
+		{
+			double result = evaluate(aBoard, moverID);
+			if (mTable != null)
+			{
+				mTable.store(key, 0, TranspositionTable.BOUND_EXACT, result, -1);
+			}
+			return result;
+		}
+		int[] moves = mMoves[aPly];
+		int movesCount = generateMoves(aBoard, aPly, aMoverIndex, tableMove);
+		if (mIsTimeOut)
+		{
+			return 0d;
+		}
+		if (movesCount <= 0)
+		{
+			// Немедленный выигрыш, либо ничья, если ходить некуда.
+			double result = (movesCount < 0) ? WIN : 0d;
+			if (mTable != null)
+			{
+				mTable.store(key, TranspositionTable.MAX_DEPTH, TranspositionTable.BOUND_EXACT, result, (movesCount < 0) ? mSymmetry.toVariant(-movesCount - 1, symmetry) : -1);
+			}
+			return result;
+		}
+		double result = Double.NEGATIVE_INFINITY;
+		int bestMove = -1;
+		double originalAlpha = alpha;
+		int nextIndex = (aMoverIndex + 1) % mPlayersSequence.length;
+		boolean isTeamChanged = isRootTeam(moverID) != isRootTeam(mPlayersSequence[nextIndex]);
+		for (int i = 0; i < movesCount; i++)
+		{
+			int cell = moves[i];
+			aBoard.makeMove(cell, moverID);
+			double score = isTeamChanged
+					? -negamax(aBoard, aDepth - 1, aPly + 1, -beta, -alpha, nextIndex)
+					: negamax(aBoard, aDepth - 1, aPly + 1, alpha, beta, nextIndex);
+			aBoard.unmakeMove();
+			if (mIsTimeOut)
+			{
+				return 0d;
+			}
+			if (score > result)
+			{
+				result = score;
+				bestMove = cell;
+				if (score > alpha)
+				{
+					alpha = score;
+					if (alpha >= beta)
+					{
+						break;
+					}
+				}
+			}
+		}
+		if (mTable != null)
+		{
+			int bound = (result <= originalAlpha) ? TranspositionTable.BOUND_UPPER
+					: (result >= beta) ? TranspositionTable.BOUND_LOWER
+					: TranspositionTable.BOUND_EXACT;
+			mTable.store(key, aDepth, bound, result, (bestMove >= 0) ? mSymmetry.toVariant(bestMove, symmetry) : -1);
+		}
+		return result;
+	}
+
+	/**
+	 * Рекурсивный перебор max-n с мелкими отсечениями.
+	 * Вектор оценок узла записывается в mScores[aPly]: доли игроков в порядке хода, в сумме MAX_N_SUM.
+	 * Таблица транспозиций используется только для порядка ходов: векторы оценок в ней не хранятся.
+	 * @param aBoard - Доска с текущей позицией.
+	 * @param aDepth - Оставшаяся глубина перебора.
+	 * @param aPly - Номер уровня дерева (для выбора буферов ходов и вектора оценок).
+	 * @param aBound - Доля ходящего игрока, достигнув которой, он лишает предыдущего игрока возможности улучшить результат.
+	 *                 Перебор узла прекращается, как только доля ходящего игрока ее достигает.
+	 * @param aMoverIndex - Индекс ходящего игрока в порядке хода.
+	 */
+	private void maxN(Board aBoard, int aDepth, int aPly, double aBound, int aMoverIndex)
+	{
+		mNodesCount++;
+		if (isTimeOut(1))
+		{
+			return;
+		}
+		int moverID = mPlayersSequence[aMoverIndex];
+		double[] scores = mScores[aPly];
+		long key = 0L;
+		int symmetry = 0;
+		int tableMove = -1;
+		if (mTable != null)
+		{
+			symmetry = mSymmetry.getCanonicalSymmetry();
+			key = mSymmetry.getHash(symmetry) ^ ZobristKeys.getTurnKey(moverID) ^ MAX_N_KEY;
+			int slot = mTable.probe(key);
+			if (slot >= 0 && mTable.getMove(slot) >= 0)
+			{
+				tableMove = mSymmetry.fromVariant(mTable.getMove(slot), symmetry);
+			}
+		}
+		if (aDepth <= 0)
+		{
+			evaluateShares(scores);
+			return;
+		}
+		int[] moves = mMoves[aPly];
+		int movesCount = generateMoves(aBoard, aPly, aMoverIndex, tableMove);
+		if (mIsTimeOut)
+		{
+			return;
+		}
+		if (movesCount <= 0)
+		{
+			// Немедленный выигрыш забирает все доли, а если ходить некуда - ничья делит их поровну.
+			for (int i = 0; i < scores.length; i++)
+			{
+				scores[i] = (movesCount < 0) ? ((i == aMoverIndex) ? MAX_N_SUM : 0d) : MAX_N_SUM / scores.length;
+			}
+			if (mTable != null && movesCount < 0)
+			{
+				mTable.store(key, TranspositionTable.MAX_DEPTH, TranspositionTable.BOUND_EXACT, MAX_N_SUM, mSymmetry.toVariant(-movesCount - 1, symmetry));
+			}
+			return;
+		}
+		double best = Double.NEGATIVE_INFINITY;
+		int bestMove = -1;
+		int nextIndex = (aMoverIndex + 1) % mPlayersSequence.length;
+		double[] childScores = mScores[aPly + 1];
+		for (int i = 0; i < movesCount; i++)
+		{
+			int cell = moves[i];
+			aBoard.makeMove(cell, moverID);
+			maxN(aBoard, aDepth - 1, aPly + 1, (best == Double.NEGATIVE_INFINITY) ? Double.POSITIVE_INFINITY : MAX_N_SUM - best, nextIndex);
+			aBoard.unmakeMove();
+			if (mIsTimeOut)
+			{
+				return;
+			}
+			if (childScores[aMoverIndex] > best)
+			{
+				best = childScores[aMoverIndex];
+				bestMove = cell;
+				System.arraycopy(childScores, 0, scores, 0, scores.length);
+				if (best >= aBound)
+				{
+					break; // Предыдущий игрок получит здесь не больше, чем уже нашел в другом ходе.
+				}
+			}
+		}
+		if (mTable != null)
+		{
+			mTable.store(key, aDepth, TranspositionTable.BOUND_EXACT, best, (bestMove >= 0) ? mSymmetry.toVariant(bestMove, symmetry) : -1);
+		}
+	}
+
+	/**
+	 * Учесть выполненную работу и, если пора, проверить часы.
+	 * @param aWork - Количество выполненных пробных ходов.
+	 * @return - Признак того, что время на поиск истекло.
+	 */
+	private boolean isTimeOut(int aWork)
+	{
+		mClockCountdown -= aWork;
+		if (mClockCountdown <= 0)
+		{
+			mClockCountdown = CLOCK_CHECK_INTERVAL;
+			if (System.nanoTime() > mDeadline)
+			{
+				mIsTimeOut = true;
+			}
+		}
+		return mIsTimeOut;
+	}
+
+	/**
+	 * Получить из таблицы транспозиций лучший ход для позиции.
+	 * @param aBoard - Доска с позицией.
+	 * @param aMoverID - Идентификатор игрока, который должен ходить.
+	 * @return - Индекс клеточки лучшего хода. -1, если ход не известен.
+	 */
+	private int probeMove(Board aBoard, int aMoverID)
+	{
+		int result = -1;
+		if (mTable != null)
+		{
+			int symmetry = mSymmetry.getCanonicalSymmetry();
+			int slot = mTable.probe(mSymmetry.getHash(symmetry) ^ ZobristKeys.getTurnKey(aMoverID) ^ (isMaxN() ? MAX_N_KEY : 0L));
+			if (slot >= 0 && mTable.getMove(slot) >= 0)
+			{
+				result = mSymmetry.fromVariant(mTable.getMove(slot), symmetry);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Сформировать упорядоченный список ходов для узла.
+	 * Рассматриваются только кандидаты (в порядке убывания локальной угрозы).
+	 * Вес хода - сумма статического веса доски ходящего игрока после его хода
+	 * и статического веса доски следующего игрока, если бы в эту клеточку пошел он.
+	 * В список попадают только mBranching ходов с наибольшим весом.
+	 * Ход из таблицы транспозиций (если он есть) ставится первым.
+	 * @param aBoard - Доска с текущей позицией.
+	 * @param aPly - Номер уровня дерева (определяет буфер, в который складываются ходы).
+	 * @param aMoverIndex - Индекс ходящего игрока в порядке хода.
+	 * @param aFirstMove - Индекс клеточки хода, который нужно перебрать первым. -1, если такого нет.
+	 * @return - Количество ходов в буфере.
+	 *           Если найден немедленно выигрывающий ход, то (-индекс_клеточки - 1).
+	 *           Если время на поиск истекло, то выставляется признак mIsTimeOut и возвращается 0
+	 *           (в корне - количество ходов, отобранных до этого момента).
+	 */
+	private int generateMoves(Board aBoard, int aPly, int aMoverIndex, int aFirstMove)
+	{
+		int[] moves = mMoves[aPly];
+		double[] weights = mMovesWeights[aPly];
+		int moverID = mPlayersSequence[aMoverIndex];
+		int nextID = mPlayersSequence[(aMoverIndex + 1) % mPlayersSequence.length];
+		int count = 0;
+		int cellsCount = aBoard.getCellsCount();
+		int[] candidates = mCandidatesBuffers[aPly];
+		int candidatesCount = mCandidates.collectOrdered(candidates); // Пробные ходы меняют набор кандидатов, поэтому перебираем копию.
+		for (int i = 0; i < candidatesCount; i++)
+		{
+			int cell = candidates[i];
+			if (isTimeOut(1))
+			{
+				if (aPly > 0)
+				{
+					return 0;
+				}
+				break; // В корне остаются уже отобранные ходы, чтобы было из чего выбрать.
+			}
+			aBoard.makeMove(cell, moverID);
+			double weight = getBoardWeight(aBoard, moverID);
+			aBoard.unmakeMove();
+			if (weight == WIN)
+			{
+				return -cell - 1;
+			}
+			if (nextID != moverID)
+			{
+				aBoard.makeMove(cell, nextID);
+				weight += getBoardWeight(aBoard, nextID);
+				aBoard.unmakeMove();
+			}
+			// Вставка в упорядоченный по убыванию веса список ограниченной длины.
+			int position = Math.min(count, mBranching - 1);
+			if (count < mBranching || weight > weights[position])
+			{
+				while (position > 0 && weights[position - 1] < weight)
+				{
+					moves[position] = moves[position - 1];
+					weights[position] = weights[position - 1];
+					position--;
+				}
+				moves[position] = cell;
+				weights[position] = weight;
+				if (count < mBranching)
+				{
+					count++;
+				}
+			}
+		}
+		if (aFirstMove >= 0 && aFirstMove < cellsCount && aBoard.lookAtCell(aFirstMove) == 0 && count > 0)
+		{
+			int position = 0;
+			while (position < count && moves[position] != aFirstMove)
+			{
+				position++;
+			}
+			if (position == count)
+			{
+				// Хода не было в списке: он добавляется, пока список не достиг ширины перебора, а затем вытесняет последний.
+				if (count < Math.min(mBranching, moves.length))
+				{
+					count++;
+				}
+				else
+				{
+					position = count - 1;
+				}
+			}
+			// Сдвигаем остальные ходы.
+			for (; position > 0; position--)
+			{
+				moves[position] = moves[position - 1];
+				weights[position] = weights[position - 1];
+			}
+			moves[0] = aFirstMove;
+			weights[0] = WIN;
+		}
+		return count;
+	}
+
+	/**
+	 * Оценить позицию в листе дерева.
+	 * @param aBoard - Доска с оцениваемой позицией.
+	 * @param aMoverID - Идентификатор игрока, который должен ходить.
+	 * @return - Оценка позиции с точки зрения команды ходящего игрока.
+	 */
+	private double evaluate(Board aBoard, int aMoverID)
+	{
+		double rootWeight = getBoardWeight(aBoard, mAnalyticID);
+		double othersWeight = 0d;
+		for (int playerID: mPlayersSequence)
+		{
+			if (playerID != mAnalyticID)
+			{
+				othersWeight = Math.max(othersWeight, getBoardWeight(aBoard, playerID));
+			}
+		}
+		double result = rootWeight - othersWeight;
+		return isRootTeam(aMoverID) ? result : -result;
+	}
+
+	/**
+	 * Оценить позицию в листе дерева max-n: разделить MAX_N_SUM между игроками.
+	 * Веса доски игроков сдвигаются так, чтобы наименьший из них стал равен 1,
+	 * и доля каждого игрока пропорциональна его сдвинутому весу.
+	 * Игрок с победной цепочкой получает все доли.
+	 * @param aScores - Вектор, в который записываются доли игроков в порядке хода.
+	 */
+	private void evaluateShares(double[] aScores)
+	{
+		double minWeight = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < aScores.length; i++)
+		{
+			double weight = mEvaluators[i].getBoardWeight();
+			if (weight == WIN)
+			{
+				for (int j = 0; j < aScores.length; j++)
+				{
+					aScores[j] = (j == i) ? MAX_N_SUM : 0d;
+				}
+				return;
+			}
+			aScores[i] = weight;
+			minWeight = Math.min(minWeight, weight);
+		}
+		double sum = 0d;
+		for (int i = 0; i < aScores.length; i++)
+		{
+			aScores[i] += 1d - minWeight;
+			sum += aScores[i];
+		}
+		for (int i = 0; i < aScores.length; i++)
+		{
+			aScores[i] = aScores[i] * MAX_N_SUM / sum;
+		}
+	}
+
+	/**
+	 * Получить статический вес доски с точки зрения игрока.
+	 * @param aBoard - Доска.
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @return - Вес доски.
+	 */
+	private double getBoardWeight(Board aBoard, int aPlayerID)
+	{
+		for (IncrementalEvaluator evaluator: mEvaluators)
+		{
+			if (evaluator.getAnalyticID() == aPlayerID)
+			{
+				return evaluator.getBoardWeight();
+			}
+		}
+		throw new IllegalArgumentException("Игрок не участвует в поиске: " + aPlayerID);
+	}
+
+	/**
+	 * Определить ведется ли поиск по стратегии max-n.
+	 * @return - true - выбрана стратегия max-n и в игре больше двух игроков.
+	 */
+	private boolean isMaxN()
+	{
+		return mStrategy == Strategy.MAX_N && mPlayersSequence.length > 2;
+	}
+
+	/**
+	 * Определить принадлежит ли игрок команде анализирующего игрока.
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @return - Признак того, что это анализирующий игрок.
+	 */
+	private boolean isRootTeam(int aPlayerID)
+	{
+		return aPlayerID == mAnalyticID;
+	}
+
+	/**
+	 * Подготовить оценщики доски для игроков (оценщики прошлого поиска переиспользуются, если игроки те же).
+	 * @param aActivePlayersSequence - Порядок, в котором ходят активные игроки.
+	 */
+	private void prepareEvaluators(int[] aActivePlayersSequence)
+	{
+		boolean isSame = (mEvaluators.length == aActivePlayersSequence.length);
+		for (int i = 0; isSame && i < mEvaluators.length; i++)
+		{
+			isSame = (mEvaluators[i].getAnalyticID() == aActivePlayersSequence[i]
+					&& mEvaluators[i].getWinLineLength() == mRules.getWinLineLength());
+		}
+		if (!isSame)
+		{
+			mEvaluators = new IncrementalEvaluator[aActivePlayersSequence.length];
+			for (int i = 0; i < mEvaluators.length; i++)
+			{
+				mEvaluators[i] = new IncrementalEvaluator(aActivePlayersSequence[i], mRules.getWinLineLength());
+			}
+		}
+	}
+
+	/**
+	 * Подготовить буферы ходов под количество кандидатов и глубину поиска.
+	 * Буферы кандидатов размечаются по оценке CandidateMoves.getMaxCount(), а не по размеру доски,
+	 * и только увеличиваются, поэтому на больших досках память поиска пропорциональна количеству фигур.
+	 * @param aCandidatesCount - Наибольшее количество кандидатов в узлах дерева.
+	 * @param aPlayersCount - Количество игроков.
+	 */
+	private void prepareBuffers(int aCandidatesCount, int aPlayersCount)
+	{
+		int width = Math.min(mBranching, aCandidatesCount);
+		if (mMoves.length < mDepth + 1 || mMoves[0].length < width)
+		{
+			mMoves = new int[mDepth + 1][width];
+			mMovesWeights = new double[mDepth + 1][width];
+		}
+		if (mCandidatesBuffers.length < mDepth + 1 || mCandidatesBuffers[0].length < aCandidatesCount)
+		{
+			mCandidatesBuffers = new int[mDepth + 1][aCandidatesCount];
+		}
+		if (mScores.length < mDepth + 1 || mScores[0].length != aPlayersCount)
+		{
+			mScores = new double[mDepth + 1][aPlayersCount];
+		}
+	}
+
+}
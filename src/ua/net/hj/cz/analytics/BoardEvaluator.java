@@ -0,0 +1,238 @@
+package ua.net.hj.cz.analytics;
+
+import ua.net.hj.cz.roles.Board;
+
+/**
+ * Описывает оценщик статического веса доски с точки зрения игрока.
+ * Вес доски - это сумма весов всех строк, колонок и диагоналей (в которых помещается победная линия).
+ * Вес линии складывается из весов ее отрезков, не занятых фигурами соперников:
+ * каждая цепочка из n фигур игрока дает 10^n, а свободное место отрезка - количество
+ * дополнительно помещающихся в нем победных линий.
+ * Если у игрока уже есть победная линия, то вес доски равен +бесконечности.
+ * Оценщик не создает объектов при расчете: все рабочие буферы и таблица степеней создаются заранее,
+ * поэтому один экземпляр стоит переиспользовать для всех расчетов одного потока.
+ * @author Hobbit Jedi
+ */
+public class BoardEvaluator {
+	private static final int MAX_POWER = 308;    // Наибольшая степень 10, представимая в double (более длинные цепочки весят столько же).
+	private static final double[] POWERS_OF_TEN; // Таблица степеней 10 для длин цепочек.
+	static
+	{
+		POWERS_OF_TEN = new double[MAX_POWER + 1];
+		for (int i = 0; i < POWERS_OF_TEN.length; i++)
+		{
+			POWERS_OF_TEN[i] = Math.pow(10, i);
+		}
+	}
+
+	private int[] mChains; // Буфер длин закрытых цепочек текущего отрезка линии.
+
+	/**
+	 * Создать оценщик.
+	 */
+	public BoardEvaluator()
+	{
+		mChains = new int[16];
+	}
+
+	/**
+	 * Рассчитать вес доски с точки зрения игрока.
+	 * @param aBoard - Оцениваемая доска.
+	 * @param aAnalyticID - Идентификатор игрока, с точки зрения которого оценивается доска.
+	 * @param aWinLineLength - Длина победной линии.
+	 * @return - Весовой коэффициент состояния доски (чем выше - тем лучше, для анализирующего игру игрока).
+	 *           +бесконечность, если у игрока есть победная линия.
+	 */
+	public double calculateBoardWeight(Board aBoard, int aAnalyticID, int aWinLineLength)
+	{
+		int xSize = aBoard.getXSize();
+		int ySize = aBoard.getYSize();
+		double result = 0d;
+		exit:
+		{
+			// Строки.
+			for (int y = 0; y < ySize; y++)
+			{
+				result += calculateLineWeight(aBoard, y * xSize, 1, xSize, aAnalyticID, aWinLineLength);
+				if (result == Double.POSITIVE_INFINITY) break exit;
+			}
+			// Колонки.
+			for (int x = 0; x < xSize; x++)
+			{
+				result += calculateLineWeight(aBoard, x, xSize, ySize, aAnalyticID, aWinLineLength);
+				if (result == Double.POSITIVE_INFINITY) break exit;
+			}
+			// Прямые диагонали (x - y = const), в которых помещается победная линия.
+			for (int d = aWinLineLength - ySize; d <= xSize - aWinLineLength; d++)
+			{
+				int x0 = Math.max(d, 0);
+				int y0 = x0 - d;
+				result += calculateLineWeight(aBoard, y0 * xSize + x0, xSize + 1, Math.min(xSize - x0, ySize - y0), aAnalyticID, aWinLineLength);
+				if (result == Double.POSITIVE_INFINITY) break exit;
+			}
+			// Обратные диагонали (x + y = const), в которых помещается победная линия.
+			for (int s = aWinLineLength - 1; s <= xSize + ySize - aWinLineLength - 1; s++)
+			{
+				int y0 = Math.max(s - xSize + 1, 0);
+				int x0 = s - y0;
+				result += calculateLineWeight(aBoard, y0 * xSize + x0, xSize - 1, Math.min(x0 + 1, ySize - y0), aAnalyticID, aWinLineLength);
+				if (result == Double.POSITIVE_INFINITY) break exit;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Рассчитать вес одной линии доски.
+	 * @param aBoard - Оцениваемая доска.
+	 * @param aStartCell - Индекс первой клеточки линии.
+	 * @param aStep - Шаг индекса между соседними клеточками линии.
+	 * @param aLength - Количество клеточек в линии.
+	 * @param aAnalyticID - Идентификатор игрока, с точки зрения которого оценивается линия.
+	 * @param aWinLineLength - Длина победной линии.
+	 * @return - Вес линии.
+	 *           +бесконечность, если в линии есть победная цепочка игрока.
+	 */
+	public double calculateLineWeight(Board aBoard, int aStartCell, int aStep, int aLength, int aAnalyticID, int aWinLineLength)
+	{
+		if (mChains.length < aLength)
+		{
+			mChains = new int[aLength]; // Буфер растет только при переходе на доску большего размера.
+		}
+		double result = 0d;
+		int segmentLength = 0;  // Потенциальная длина линии в текущем отрезке.
+		int figureCount = 0;    // Количество фигур игрока в текущем отрезке.
+		int chainsCount = 0;    // Количество закрытых цепочек в текущем отрезке.
+		int chainLength = 0;    // Длина текущей цепочки.
+		boolean isEmptyRun = false; // Признак того, что предыдущая клеточка свободна.
+		int cell = aStartCell;
+		for (int i = 0; i < aLength; i++, cell += aStep)
+		{
+			int cellValue = aBoard.lookAtCell(cell);
+			if (cellValue == 0)
+			{
+				segmentLength++;
+				if (isEmptyRun)
+				{
+					// Со второй свободной клеточки подряд пропускаем всю серию сразу.
+					int emptyCount = aBoard.countEmptyInLine(cell + aStep, aStep, aLength - i - 1);
+					i += emptyCount;
+					cell += emptyCount * aStep;
+					segmentLength += emptyCount;
+				}
+				isEmptyRun = true;
+				if (chainLength > 0)
+				{
+					mChains[chainsCount++] = chainLength;
+					chainLength = 0;
+				}
+			}
+			else if (cellValue == aAnalyticID)
+			{
+				isEmptyRun = false;
+				if (++chainLength < aWinLineLength)
+				{
+					segmentLength++;
+					figureCount++;
+				}
+				else
+				{
+					return Double.POSITIVE_INFINITY;
+				}
+			}
+			else
+			{
+				isEmptyRun = false;
+				result = closeSegment(result, segmentLength, figureCount, chainsCount, chainLength, aWinLineLength);
+				segmentLength = 0;
+				figureCount = 0;
+				chainsCount = 0;
+				chainLength = 0;
+			}
+		}
+		return closeSegment(result, segmentLength, figureCount, chainsCount, chainLength, aWinLineLength);
+	}
+
+	/**
+	 * Рассчитать вес отрезка линии, ограниченного фигурами соперников (или краями линии), по положениям фигур игрока в нем.
+	 * Совпадает с вкладом такого отрезка в результат calculateLineWeight(), но клеточки отрезка не просматривает.
+	 * @param aLength - Количество клеточек в отрезке.
+	 * @param aFigures - Положения фигур игрока (номера клеточек от начала отрезка по возрастанию).
+	 * @param aFiguresCount - Количество фигур игрока в отрезке.
+	 * @param aWinLineLength - Длина победной линии.
+	 * @return - Вес отрезка.
+	 *           +бесконечность, если в отрезке есть победная цепочка игрока.
+	 */
+	public double calculateSegmentWeight(int aLength, int[] aFigures, int aFiguresCount, int aWinLineLength)
+	{
+		if (mChains.length < aFiguresCount)
+		{
+			mChains = new int[aFiguresCount];
+		}
+		int chainsCount = 0;
+		int chainLength = 0;
+		for (int i = 0; i < aFiguresCount; i++)
+		{
+			if (chainLength > 0 && aFigures[i] != aFigures[i - 1] + 1)
+			{
+				mChains[chainsCount++] = chainLength;
+				chainLength = 0;
+			}
+			if (++chainLength >= aWinLineLength)
+			{
+				return Double.POSITIVE_INFINITY;
+			}
+		}
+		if (chainLength > 0 && aFigures[aFiguresCount - 1] != aLength - 1)
+		{
+			// Последняя цепочка закрыта свободной клеточкой (не доходит до конца отрезка).
+			mChains[chainsCount++] = chainLength;
+			chainLength = 0;
+		}
+		return closeSegment(0d, aLength, aFiguresCount, chainsCount, chainLength, aWinLineLength);
+	}
+
+	/**
+	 * Рассчитать вес линии доски, в которой нет фигур.
+	 * Совпадает с результатом calculateLineWeight() для такой линии, но клеточки линии не просматривает.
+	 * @param aLength - Количество клеточек в линии.
+	 * @param aWinLineLength - Длина победной линии.
+	 * @return - Вес линии.
+	 */
+	public double calculateEmptyLineWeight(int aLength, int aWinLineLength)
+	{
+		return closeSegment(0d, aLength, 0, 0, 0, aWinLineLength);
+	}
+
+	/**
+	 * Закрыть отрезок линии (добавить его вес к накопленному весу линии).
+	 * @param aWeight - Накопленный вес линии.
+	 * @param aSegmentLength - Потенциальная длина линии в отрезке.
+	 * @param aFigureCount - Количество фигур игрока в отрезке.
+	 * @param aChainsCount - Количество закрытых цепочек в буфере.
+	 * @param aChainLength - Длина последней не закрытой цепочки.
+	 * @param aWinLineLength - Длина победной линии.
+	 * @return - Вес линии с учетом отрезка.
+	 */
+	private double closeSegment(double aWeight, int aSegmentLength, int aFigureCount, int aChainsCount, int aChainLength, int aWinLineLength)
+	{
+		double result = aWeight;
+		if (aSegmentLength >= aWinLineLength)
+		{
+			// Учитываем последнюю не закрытую цепочку.
+			if (aChainLength > 0)
+			{
+				result += POWERS_OF_TEN[Math.min(aChainLength, MAX_POWER)];
+			}
+			// Учитываем уже закрытые цепочки.
+			for (int i = 0; i < aChainsCount; i++)
+			{
+				result += POWERS_OF_TEN[Math.min(mChains[i], MAX_POWER)];
+			}
+			// Учитываем количество неучтеных победных линий, которые могут поместиться в потенциальной линии.
+			result += (aSegmentLength - aFigureCount - (aFigureCount == 0 ? 0 : 1)) / aWinLineLength;
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,462 @@
+package ua.net.hj.cz.analytics;
+
+import java.util.Arrays;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.BoardObserver;
+
+/**
+ * Описывает генератор ходов-кандидатов: свободных клеточек, находящихся не дальше заданного расстояния от какой-либо фигуры.
+ * Остальные клеточки на больших досках почти никогда не влияют на исход игры, а их перебор составляет основную часть работы поиска.
+ * Для каждой клеточки рядом с фигурами хранится количество фигур в квадрате вокруг нее,
+ * поэтому установка или снятие фигуры обновляет набор кандидатов за (2 * расстояние + 1)^2 операций.
+ * Счетчики и позиции клеточек в массиве кандидатов хранятся в хэш-таблице с открытой адресацией по индексу клеточки,
+ * поэтому память и подключение к доске пропорциональны количеству фигур, а не размеру доски
+ * (клеточки, у которых счетчик обнулился, остаются в таблице до следующего подключения).
+ * На пустой доске единственным кандидатом считается центр доски.
+ * @author Hobbit Jedi
+ */
+public class CandidateMoves implements BoardObserver {
+	public static final int DEFAULT_DISTANCE = 2;          // Расстояние от фигур, в пределах которого клеточки считаются кандидатами, по умолчанию.
+	private static final int[] DIRECTIONS_DX = {1, 0, 1, 1};  // Смещения по X для направлений линий.
+	private static final int[] DIRECTIONS_DY = {0, 1, 1, -1}; // Смещения по Y для направлений линий.
+	private static final int MAX_THREAT_RUN = 9;           // Длина цепочки, дальше которой угроза не растет.
+	private static final int MIN_TABLE_CAPACITY = 256;     // Начальная емкость хэш-таблицы клеточек.
+
+	private final int mDistance;       // Расстояние от фигур, в пределах которого клеточки считаются кандидатами.
+	private Board mBoard;              // Доска, за которой следит генератор. null - генератор не подключен.
+	private int mXSize;                // Ширина доски.
+	private int mYSize;                // Высота доски.
+	private int[] mTableCells;         // Хэш-таблица клеточек: индекс клеточки + 1 (0 - ячейка таблицы свободна).
+	private int[] mNeighboursCounts;   // Хэш-таблица клеточек: количество фигур в квадрате вокруг клеточки (включая саму клеточку).
+	private int[] mPositions;          // Хэш-таблица клеточек: позиция клеточки в массиве кандидатов. -1 - клеточка не кандидат.
+	private int mTableSize;            // Количество клеточек в хэш-таблице.
+	private int[] mCandidates;         // Кандидаты (первые mCandidatesCount элементов).
+	private int mCandidatesCount;      // Количество кандидатов.
+	private long[] mSortBuffer;        // Буфер упорядочивания кандидатов по угрозе.
+
+	/**
+	 * Создать генератор.
+	 * @param aDistance - Расстояние от фигур (по любой из осей), в пределах которого клеточки считаются кандидатами (не меньше 1).
+	 */
+	public CandidateMoves(int aDistance)
+	{
+		if (aDistance < 1)
+		{
+			throw new IllegalArgumentException("Расстояние до кандидатов должно быть положительным: " + aDistance);
+		}
+		mDistance = aDistance;
+		mBoard = null;
+		mTableCells = new int[MIN_TABLE_CAPACITY];
+		mNeighboursCounts = new int[MIN_TABLE_CAPACITY];
+		mPositions = new int[MIN_TABLE_CAPACITY];
+		mTableSize = 0;
+		mCandidates = new int[MIN_TABLE_CAPACITY];
+		mSortBuffer = new long[0];
+	}
+
+	/**
+	 * Подключиться к доске: найти всех кандидатов и начать следить за изменениями доски.
+	 * Просматриваются только квадраты вокруг фигур, а кандидаты складываются в порядке возрастания индекса клеточки.
+	 * Если генератор был подключен к другой доске, то он от нее отключается.
+	 * @param aBoard - Доска, за которой нужно следить.
+	 */
+	public void attach(Board aBoard)
+	{
+		detach();
+		mXSize = aBoard.getXSize();
+		mYSize = aBoard.getYSize();
+		Arrays.fill(mTableCells, 0);
+		mTableSize = 0;
+		mCandidatesCount = 0;
+		for (int i = 0; i < aBoard.getOccupiedCellsCount(); i++)
+		{
+			addNeighbour(aBoard.getOccupiedCell(i), 1);
+		}
+		for (int entry = 0; entry < mTableCells.length; entry++)
+		{
+			int cell = mTableCells[entry] - 1;
+			if (cell >= 0 && mNeighboursCounts[entry] > 0 && aBoard.lookAtCell(cell) == 0)
+			{
+				ensureCandidatesCapacity(mCandidatesCount + 1);
+				mCandidates[mCandidatesCount++] = cell;
+			}
+		}
+		// Порядок кандидатов не должен зависеть от расположения клеточек в хэш-таблице.
+		Arrays.sort(mCandidates, 0, mCandidatesCount);
+		for (int i = 0; i < mCandidatesCount; i++)
+		{
+			mPositions[findEntry(mCandidates[i], false)] = i;
+		}
+		mBoard = aBoard;
+		aBoard.addObserver(this);
+	}
+
+	/**
+	 * Отключиться от доски.
+	 */
+	public void detach()
+	{
+		if (mBoard != null)
+		{
+			mBoard.removeObserver(this);
+			mBoard = null;
+		}
+	}
+
+	/**
+	 * Получить расстояние от фигур, в пределах которого клеточки считаются кандидатами.
+	 * @return - Расстояние.
+	 */
+	public int getDistance()
+	{
+		return mDistance;
+	}
+
+	/**
+	 * Получить количество кандидатов.
+	 * @return - Количество кандидатов (без учета центра пустой доски).
+	 */
+	public int getCount()
+	{
+		return mCandidatesCount;
+	}
+
+	/**
+	 * Получить наибольшее количество кандидатов, которое может получиться после нескольких ходов.
+	 * Каждая новая фигура добавляет не больше (2 * расстояние + 1)^2 - 1 кандидатов,
+	 * поэтому буферы для collect() можно размечать по этой оценке, а не по размеру доски.
+	 * Генератор должен быть подключен к доске.
+	 * @param aMovesAhead - Количество ходов, которые могут быть сделаны на доске до вызова collect().
+	 * @return - Наибольшее количество кандидатов (не меньше 1 и не больше количества свободных клеточек доски).
+	 */
+	public int getMaxCount(int aMovesAhead)
+	{
+		long side = 2L * mDistance + 1;
+		long result = mCandidatesCount + aMovesAhead * (side * side - 1);
+		return (int)Math.max(Math.min(result, mBoard.getEmptyCellsCount()), 1);
+	}
+
+	/**
+	 * Проверить является ли клеточка кандидатом.
+	 * @param aCellIndex - Индекс клеточки.
+	 * @return - Признак того, что клеточка свободна и рядом с ней есть фигуры.
+	 */
+	public boolean isCandidate(int aCellIndex)
+	{
+		int entry = findEntry(aCellIndex, false);
+		return entry >= 0 && mPositions[entry] >= 0;
+	}
+
+	/**
+	 * Скопировать кандидатов в буфер.
+	 * Порядок кандидатов зависит от истории изменений доски.
+	 * Набор кандидатов меняется при каждом изменении доски, поэтому перебирать пробные ходы нужно по копии.
+	 * @param aBuffer - Буфер (не меньше getCount() и не меньше одного элемента, см. getMaxCount()).
+	 * @return - Количество кандидатов в буфере.
+	 *           Если фигур на доске нет, то единственный кандидат - центр доски.
+	 *           0, если доска заполнена.
+	 */
+	public int collect(int[] aBuffer)
+	{
+		int result = mCandidatesCount;
+		if (result > 0)
+		{
+			System.arraycopy(mCandidates, 0, aBuffer, 0, result);
+		}
+		else if (mBoard.getEmptyCellsCount() == mBoard.getCellsCount())
+		{
+			aBuffer[0] = (mYSize / 2) * mXSize + mXSize / 2;
+			result = 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Скопировать кандидатов в буфер в порядке убывания локальной угрозы (см. getThreat()).
+	 * Кандидаты с одинаковой угрозой упорядочиваются по индексу клеточки,
+	 * поэтому порядок зависит только от позиции, а не от истории ее получения.
+	 * @param aBuffer - Буфер (не меньше getCount() и не меньше одного элемента, см. getMaxCount()).
+	 * @return - Количество кандидатов в буфере (см. collect()).
+	 */
+	public int collectOrdered(int[] aBuffer)
+	{
+		int result = collect(aBuffer);
+		if (result > 1)
+		{
+			if (mSortBuffer.length < result)
+			{
+				mSortBuffer = new long[Math.max(result, 2 * mSortBuffer.length)];
+			}
+			for (int i = 0; i < result; i++)
+			{
+				int cell = aBuffer[i];
+				mSortBuffer[i] = ((long)(Integer.MAX_VALUE - getThreat(cell)) << 32) | cell;
+			}
+			Arrays.sort(mSortBuffer, 0, result);
+			for (int i = 0; i < result; i++)
+			{
+				aBuffer[i] = (int)mSortBuffer[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Оценить локальную угрозу хода в клеточку.
+	 * В каждом из четырех направлений учитываются цепочки фигур, примыкающие к клеточке с обеих сторон
+	 * (цепочки одного игрока по разные стороны клеточки объединяются).
+	 * Цепочка длины n дает 8^n, поэтому длинные цепочки (свои - для атаки, чужие - для защиты) важнее любого количества коротких.
+	 * @param aCellIndex - Индекс клеточки.
+	 * @return - Угроза (чем больше, тем важнее ход).
+	 */
+	public int getThreat(int aCellIndex)
+	{
+		int x = aCellIndex % mXSize;
+		int y = aCellIndex / mXSize;
+		int result = 0;
+		for (int direction = 0; direction < DIRECTIONS_DX.length; direction++)
+		{
+			int dx = DIRECTIONS_DX[direction];
+			int dy = DIRECTIONS_DY[direction];
+			int forwardID = lookAt(x + dx, y + dy);
+			int forwardRun = (forwardID != 0) ? countRun(x + dx, y + dy, dx, dy, forwardID) : 0;
+			int backwardID = lookAt(x - dx, y - dy);
+			int backwardRun = (backwardID != 0) ? countRun(x - dx, y - dy, -dx, -dy, backwardID) : 0;
+			if (forwardID != 0 && forwardID == backwardID)
+			{
+				result += threatOf(forwardRun + backwardRun);
+			}
+			else
+			{
+				result += threatOf(forwardRun) + threatOf(backwardRun);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Обработать сообщение об изменении клеточки поля: обновить кандидатов вокруг нее.
+	 * @param aBoard - Игровое поле, на котором произошло изменение.
+	 * @param aCellIndex - Индекс изменившейся клеточки.
+	 * @param aOldPlayerID - Идентификатор игрока, фигура которого стояла в клеточке.
+	 * @param aNewPlayerID - Идентификатор игрока, фигура которого теперь стоит в клеточке.
+	 */
+	@Override
+	public void cellChangedNotificationHandler(Board aBoard, int aCellIndex, int aOldPlayerID, int aNewPlayerID)
+	{
+		if (aOldPlayerID == 0 && aNewPlayerID != 0)
+		{
+			if (isCandidate(aCellIndex))
+			{
+				removeCandidate(aCellIndex);
+			}
+			addNeighbour(aCellIndex, 1);
+		}
+		else if (aOldPlayerID != 0 && aNewPlayerID == 0)
+		{
+			addNeighbour(aCellIndex, -1);
+			if (mNeighboursCounts[findEntry(aCellIndex, false)] > 0)
+			{
+				addCandidate(aCellIndex);
+			}
+		}
+	}
+
+	/**
+	 * Учесть появление или исчезновение фигуры во всех клеточках квадрата вокруг нее
+	 * и обновить набор кандидатов (сама клеточка фигуры здесь не добавляется и не удаляется).
+	 * @param aCellIndex - Индекс клеточки фигуры.
+	 * @param aDelta - 1, если фигура появилась; -1, если исчезла.
+	 */
+	private void addNeighbour(int aCellIndex, int aDelta)
+	{
+		int x = aCellIndex % mXSize;
+		int y = aCellIndex / mXSize;
+		int xFrom = Math.max(x - mDistance, 0);
+		int xTo = Math.min(x + mDistance, mXSize - 1);
+		int yFrom = Math.max(y - mDistance, 0);
+		int yTo = Math.min(y + mDistance, mYSize - 1);
+		for (int ny = yFrom; ny <= yTo; ny++)
+		{
+			for (int cell = ny * mXSize + xFrom, last = ny * mXSize + xTo; cell <= last; cell++)
+			{
+				int entry = findEntry(cell, true);
+				int count = mNeighboursCounts[entry] + aDelta;
+				mNeighboursCounts[entry] = count;
+				if (mBoard != null && cell != aCellIndex && mBoard.lookAtCell(cell) == 0)
+				{
+					if (count == 1 && aDelta > 0)
+					{
+						addCandidate(cell);
+					}
+					else if (count == 0)
+					{
+						removeCandidate(cell);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Добавить клеточку в набор кандидатов.
+	 * @param aCellIndex - Индекс клеточки.
+	 */
+	private void addCandidate(int aCellIndex)
+	{
+		ensureCandidatesCapacity(mCandidatesCount + 1);
+		mCandidates[mCandidatesCount] = aCellIndex;
+		mPositions[findEntry(aCellIndex, false)] = mCandidatesCount++;
+	}
+
+	/**
+	 * Удалить клеточку из набора кандидатов (на ее место переносится последний кандидат).
+	 * @param aCellIndex - Индекс клеточки.
+	 */
+	private void removeCandidate(int aCellIndex)
+	{
+		int entry = findEntry(aCellIndex, false);
+		int position = mPositions[entry];
+		int lastCell = mCandidates[--mCandidatesCount];
+		mCandidates[position] = lastCell;
+		mPositions[findEntry(lastCell, false)] = position;
+		mPositions[entry] = -1;
+	}
+
+	/**
+	 * Увеличить массив кандидатов, если в нем не хватает места.
+	 * @param aCapacity - Требуемая емкость.
+	 */
+	private void ensureCandidatesCapacity(int aCapacity)
+	{
+		if (mCandidates.length < aCapacity)
+		{
+			mCandidates = Arrays.copyOf(mCandidates, Math.max(aCapacity, 2 * mCandidates.length));
+		}
+	}
+
+	/**
+	 * Найти клеточку в хэш-таблице.
+	 * Новая клеточка добавляется с нулевым счетчиком и без позиции среди кандидатов.
+	 * @param aCellIndex - Индекс клеточки.
+	 * @param aIsCreate - true - добавить клеточку, если ее нет в таблице.
+	 * @return - Номер ячейки таблицы. -1, если клеточки нет, и ее не требовалось добавлять.
+	 */
+	private int findEntry(int aCellIndex, boolean aIsCreate)
+	{
+		int mask = mTableCells.length - 1;
+		int key = aCellIndex + 1;
+		int result = hashCell(aCellIndex) & mask;
+		while (mTableCells[result] != key)
+		{
+			if (mTableCells[result] == 0)
+			{
+				if (!aIsCreate)
+				{
+					return -1;
+				}
+				if (2 * (mTableSize + 1) > mTableCells.length)
+				{
+					growTable();
+					return findEntry(aCellIndex, true);
+				}
+				mTableCells[result] = key;
+				mNeighboursCounts[result] = 0;
+				mPositions[result] = -1;
+				mTableSize++;
+				break;
+			}
+			result = (result + 1) & mask;
+		}
+		return result;
+	}
+
+	/**
+	 * Увеличить хэш-таблицу клеточек вдвое.
+	 */
+	private void growTable()
+	{
+		int[] cells = mTableCells;
+		int[] counts = mNeighboursCounts;
+		int[] positions = mPositions;
+		mTableCells = new int[cells.length << 1];
+		mNeighboursCounts = new int[cells.length << 1];
+		mPositions = new int[cells.length << 1];
+		int mask = mTableCells.length - 1;
+		for (int i = 0; i < cells.length; i++)
+		{
+			if (cells[i] != 0)
+			{
+				int entry = hashCell(cells[i] - 1) & mask;
+				while (mTableCells[entry] != 0)
+				{
+					entry = (entry + 1) & mask;
+				}
+				mTableCells[entry] = cells[i];
+				mNeighboursCounts[entry] = counts[i];
+				mPositions[entry] = positions[i];
+			}
+		}
+	}
+
+	/**
+	 * Перемешать индекс клеточки для хэш-таблицы (соседние клеточки попадают в далекие ячейки таблицы).
+	 * @param aCellIndex - Индекс клеточки.
+	 * @return - Хэш индекса клеточки.
+	 */
+	private static int hashCell(int aCellIndex)
+	{
+		int result = aCellIndex * 0x9E3779B9;
+		return result ^ (result >>> 16);
+	}
+
+	/**
+	 * Посмотреть на клеточку доски с проверкой границ.
+	 * @param aX - Координата X.
+	 * @param aY - Координата Y.
+	 * @return - Идентификатор игрока в клеточке. 0, если клеточка свободна или за пределами доски.
+	 */
+	private int lookAt(int aX, int aY)
+	{
+		int result = 0;
+		if (aX >= 0 && aX < mXSize && aY >= 0 && aY < mYSize)
+		{
+			result = mBoard.lookAtCell(aY * mXSize + aX);
+		}
+		return result;
+	}
+
+	/**
+	 * Посчитать длину цепочки фигур игрока, начинающейся с клеточки.
+	 * @param aX - Координата X первой клеточки цепочки.
+	 * @param aY - Координата Y первой клеточки цепочки.
+	 * @param aDX - Шаг по X.
+	 * @param aDY - Шаг по Y.
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @return - Длина цепочки (не больше MAX_THREAT_RUN).
+	 */
+	private int countRun(int aX, int aY, int aDX, int aDY, int aPlayerID)
+	{
+		int result = 0;
+		int x = aX;
+		int y = aY;
+		while (result < MAX_THREAT_RUN && lookAt(x, y) == aPlayerID)
+		{
+			result++;
+			x += aDX;
+			y += aDY;
+		}
+		return result;
+	}
+
+	/**
+	 * Получить угрозу цепочки.
+	 * @param aRun - Длина цепочки.
+	 * @return - Угроза цепочки (8^длина, 0 для пустой цепочки).
+	 */
+	private static int threatOf(int aRun)
+	{
+		return (aRun > 0) ? 1 << (3 * Math.min(aRun, MAX_THREAT_RUN)) : 0;
+	}
+
+}
@@ -0,0 +1,451 @@
+package ua.net.hj.cz.analytics;
+
+import java.util.Arrays;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.BoardObserver;
+
+/**
+ * Описывает оценщик веса доски, который пересчитывает вес по мере изменения доски.
+ * Хранит веса всех линий доски (строк, колонок и обеих групп диагоналей) и их сумму.
+ * При установке или снятии фигуры в каждой из четырех проходящих через клеточку длинных линий пересчитывается
+ * только отрезок между ближайшими к клеточке фигурами соперников: его прежний вес заменяется новым и в весе линии, и в сумме
+ * (короткие линии дешевле пересчитать целиком).
+ * Фигуры отрезка находятся просмотром его клеточек или, если фигур на доске меньше, чем клеточек в линии,
+ * перебором фигур доски, поэтому на большой (например, разреженной) доске с немногими фигурами
+ * изменение клеточки стоит O(количества фигур), а не O(длины линии).
+ * При подключении к доске просматриваются только линии, проходящие через фигуры:
+ * вес пустой линии зависит только от ее длины, поэтому подключение тоже не просматривает всю доску.
+ * Вес доски совпадает с результатом BoardEvaluator.calculateBoardWeight(), пока веса линий - целые числа меньше 2^53
+ * (цепочки короче 16 фигур); при более длинных цепочках суммы могут отличаться в последних разрядах.
+ * @author Hobbit Jedi
+ */
+public class IncrementalEvaluator implements BoardObserver {
+	private static final int FULL_UPDATE_LENGTH = 32; // Линии не длиннее этой пересчитываются целиком: это не дороже поиска отрезка.
+	private final BoardEvaluator mEvaluator; // Оценщик отдельных линий.
+	private final int mAnalyticID;           // Идентификатор игрока, с точки зрения которого оценивается доска.
+	private final int mWinLineLength;        // Длина победной линии.
+	private Board mBoard;                    // Доска, за которой следит оценщик. null - оценщик не подключен.
+	private int mXSize;                      // Ширина доски.
+	private int mYSize;                      // Высота доски.
+	private int mForwardBase;                // Номер первой прямой диагонали среди линий.
+	private int mBackwardBase;               // Номер первой обратной диагонали среди линий.
+	private int mLinesCount;                 // Количество линий доски.
+	private int[] mLineStarts;               // Индексы первых клеточек линий.
+	private int[] mLineSteps;                // Шаги индекса вдоль линий.
+	private int[] mLineLengths;              // Длины линий.
+	private double[] mLineWeights;           // Веса линий.
+	private boolean[] mIsLineEvaluated;      // Признаки того, что линия уже оценена при подключении к доске.
+	private final int[] mCellLines;          // Буфер номеров линий, проходящих через клеточку.
+	private int mWinLinesCount;              // Количество линий, в которых у игрока есть победная цепочка.
+	private double mWeight;                  // Сумма весов линий без победных цепочек.
+	private int mSegmentFirst;               // Номер (в линии) первой клеточки пересчитываемого отрезка.
+	private int mSegmentLast;                // Номер (в линии) последней клеточки пересчитываемого отрезка.
+	private int[] mFigures;                  // Номера (в линии) фигур игрока в пересчитываемом отрезке, кроме изменившейся клеточки.
+	private int mFiguresCount;               // Количество фигур игрока в пересчитываемом отрезке.
+	private int mFiguresBefore;              // Количество фигур игрока в отрезке перед изменившейся клеточкой.
+	private int[] mSegmentFigures;           // Буфер номеров фигур игрока от начала отрезка для BoardEvaluator.
+
+	/**
+	 * Создать оценщик.
+	 * @param aAnalyticID - Идентификатор игрока, с точки зрения которого оценивается доска.
+	 * @param aWinLineLength - Длина победной линии.
+	 */
+	public IncrementalEvaluator(int aAnalyticID, int aWinLineLength)
+	{
+		mEvaluator = new BoardEvaluator();
+		mAnalyticID = aAnalyticID;
+		mWinLineLength = aWinLineLength;
+		mBoard = null;
+		mLineStarts = new int[0];
+		mLineSteps = new int[0];
+		mLineLengths = new int[0];
+		mLineWeights = new double[0];
+		mIsLineEvaluated = new boolean[0];
+		mCellLines = new int[4];
+		mFigures = new int[0];
+		mSegmentFigures = new int[0];
+	}
+
+	/**
+	 * Получить идентификатор игрока, с точки зрения которого оценивается доска.
+	 * @return - Идентификатор игрока.
+	 */
+	public int getAnalyticID()
+	{
+		return mAnalyticID;
+	}
+
+	/**
+	 * Получить длину победной линии, для которой оценивается доска.
+	 * @return - Длина победной линии.
+	 */
+	public int getWinLineLength()
+	{
+		return mWinLineLength;
+	}
+
+	/**
+	 * Подключиться к доске: оценить все ее линии и начать следить за ее изменениями.
+	 * Пустым линиям сразу присваивается вес пустой линии, а линии, проходящие через фигуры, оцениваются по клеточкам.
+	 * Если оценщик был подключен к другой доске, то он от нее отключается.
+	 * @param aBoard - Доска, за которой нужно следить.
+	 */
+	public void attach(Board aBoard)
+	{
+		detach();
+		int xSize = aBoard.getXSize();
+		int ySize = aBoard.getYSize();
+		if (xSize != mXSize || ySize != mYSize || mLinesCount == 0)
+		{
+			prepareLines(xSize, ySize);
+		}
+		for (int line = 0; line < mLinesCount; line++)
+		{
+			mLineWeights[line] = mEvaluator.calculateEmptyLineWeight(mLineLengths[line], mWinLineLength);
+			mIsLineEvaluated[line] = false;
+		}
+		mBoard = aBoard;
+		for (int i = 0; i < aBoard.getOccupiedCellsCount(); i++)
+		{
+			int linesCount = getCellLines(aBoard.getOccupiedCell(i));
+			for (int j = 0; j < linesCount; j++)
+			{
+				int line = mCellLines[j];
+				if (!mIsLineEvaluated[line])
+				{
+					mLineWeights[line] = calculateLineWeight(line);
+					mIsLineEvaluated[line] = true;
+				}
+			}
+		}
+		mWinLinesCount = 0;
+		mWeight = 0d;
+		for (int line = 0; line < mLinesCount; line++)
+		{
+			if (mLineWeights[line] == Double.POSITIVE_INFINITY)
+			{
+				mWinLinesCount++;
+			}
+			else
+			{
+				mWeight += mLineWeights[line];
+			}
+		}
+		aBoard.addObserver(this);
+	}
+
+	/**
+	 * Отключиться от доски.
+	 */
+	public void detach()
+	{
+		if (mBoard != null)
+		{
+			mBoard.removeObserver(this);
+			mBoard = null;
+		}
+	}
+
+	/**
+	 * Получить вес доски с точки зрения игрока.
+	 * @return - Весовой коэффициент состояния доски (чем выше - тем лучше, для анализирующего игру игрока).
+	 *           +бесконечность, если у игрока есть победная линия.
+	 */
+	public double getBoardWeight()
+	{
+		return (mWinLinesCount > 0) ? Double.POSITIVE_INFINITY : mWeight;
+	}
+
+	/**
+	 * Обработать сообщение об изменении клеточки поля: пересчитать отрезки проходящих через нее линий.
+	 * @param aBoard - Игровое поле, на котором произошло изменение.
+	 * @param aCellIndex - Индекс изменившейся клеточки.
+	 * @param aOldPlayerID - Идентификатор игрока, фигура которого стояла в клеточке.
+	 * @param aNewPlayerID - Идентификатор игрока, фигура которого теперь стоит в клеточке.
+	 */
+	@Override
+	public void cellChangedNotificationHandler(Board aBoard, int aCellIndex, int aOldPlayerID, int aNewPlayerID)
+	{
+		int linesCount = getCellLines(aCellIndex);
+		for (int i = 0; i < linesCount; i++)
+		{
+			updateLine(mCellLines[i], aCellIndex, aOldPlayerID, aNewPlayerID);
+		}
+	}
+
+	/**
+	 * Найти линии, проходящие через клеточку (строку, колонку и диагонали, достаточно длинные для победы).
+	 * @param aCellIndex - Индекс клеточки.
+	 * @return - Количество линий. Номера линий записываются в начало mCellLines.
+	 */
+	private int getCellLines(int aCellIndex)
+	{
+		int x = aCellIndex % mXSize;
+		int y = aCellIndex / mXSize;
+		int result = 0;
+		mCellLines[result++] = y;
+		mCellLines[result++] = mYSize + x;
+		int forward = x - y - (mWinLineLength - mYSize);
+		if (forward >= 0 && mForwardBase + forward < mBackwardBase)
+		{
+			mCellLines[result++] = mForwardBase + forward;
+		}
+		int backward = x + y - (mWinLineLength - 1);
+		if (backward >= 0 && mBackwardBase + backward < mLinesCount)
+		{
+			mCellLines[result++] = mBackwardBase + backward;
+		}
+		return result;
+	}
+
+	/**
+	 * Пересчитать вес линии после изменения клеточки.
+	 * Короткая линия или линия, в которой была победная цепочка, оценивается заново целиком,
+	 * иначе в ее весе прежний вес отрезка вокруг клеточки заменяется новым.
+	 * @param aLine - Номер линии.
+	 * @param aCellIndex - Индекс изменившейся клеточки.
+	 * @param aOldPlayerID - Идентификатор игрока, фигура которого стояла в клеточке.
+	 * @param aNewPlayerID - Идентификатор игрока, фигура которого теперь стоит в клеточке.
+	 */
+	private void updateLine(int aLine, int aCellIndex, int aOldPlayerID, int aNewPlayerID)
+	{
+		double oldWeight = mLineWeights[aLine];
+		double weight;
+		if (oldWeight == Double.POSITIVE_INFINITY || mLineLengths[aLine] <= FULL_UPDATE_LENGTH)
+		{
+			weight = calculateLineWeight(aLine);
+		}
+		else
+		{
+			int position = (aCellIndex - mLineStarts[aLine]) / mLineSteps[aLine];
+			findSegment(aLine, position);
+			weight = oldWeight - calculateSegmentWeight(position, aOldPlayerID) + calculateSegmentWeight(position, aNewPlayerID);
+		}
+		if (oldWeight == Double.POSITIVE_INFINITY)
+		{
+			mWinLinesCount--;
+		}
+		else
+		{
+			mWeight -= oldWeight;
+		}
+		if (weight == Double.POSITIVE_INFINITY)
+		{
+			mWinLinesCount++;
+		}
+		else
+		{
+			mWeight += weight;
+		}
+		mLineWeights[aLine] = weight;
+	}
+
+	/**
+	 * Оценить линию целиком по ее клеточкам.
+	 * @param aLine - Номер линии.
+	 * @return - Вес линии.
+	 */
+	private double calculateLineWeight(int aLine)
+	{
+		return mEvaluator.calculateLineWeight(mBoard, mLineStarts[aLine], mLineSteps[aLine], mLineLengths[aLine], mAnalyticID, mWinLineLength);
+	}
+
+	/**
+	 * Найти отрезок линии между ближайшими к клеточке фигурами соперников (или краями линии) и фигуры игрока в нем.
+	 * Сама клеточка при этом не просматривается: ее прежнее и новое значения учитываются при расчете веса отрезка.
+	 * Результат записывается в mSegmentFirst, mSegmentLast, mFigures, mFiguresCount и mFiguresBefore.
+	 * @param aLine - Номер линии.
+	 * @param aPosition - Номер клеточки в линии.
+	 */
+	private void findSegment(int aLine, int aPosition)
+	{
+		int start = mLineStarts[aLine];
+		int step = mLineSteps[aLine];
+		int length = mLineLengths[aLine];
+		mFiguresCount = 0;
+		if (mBoard.getOccupiedCellsCount() < length)
+		{
+			// Фигур меньше, чем клеточек в линии: перебираем фигуры и отбираем лежащие на линии.
+			mSegmentFirst = 0;
+			mSegmentLast = length - 1;
+			for (int i = 0; i < mBoard.getOccupiedCellsCount(); i++)
+			{
+				int cell = mBoard.getOccupiedCell(i);
+				int offset = cell - start;
+				int position = offset / step;
+				if (offset < 0 || offset % step != 0 || position >= length || position == aPosition)
+				{
+					continue;
+				}
+				if (mBoard.lookAtCell(cell) == mAnalyticID)
+				{
+					mFigures[mFiguresCount++] = position;
+				}
+				else if (position < aPosition)
+				{
+					mSegmentFirst = Math.max(mSegmentFirst, position + 1);
+				}
+				else
+				{
+					mSegmentLast = Math.min(mSegmentLast, position - 1);
+				}
+			}
+			int figuresCount = 0;
+			for (int i = 0; i < mFiguresCount; i++)
+			{
+				if (mFigures[i] >= mSegmentFirst && mFigures[i] <= mSegmentLast)
+				{
+					mFigures[figuresCount++] = mFigures[i];
+				}
+			}
+			mFiguresCount = figuresCount;
+			Arrays.sort(mFigures, 0, mFiguresCount);
+			mFiguresBefore = 0;
+			while (mFiguresBefore < mFiguresCount && mFigures[mFiguresBefore] < aPosition)
+			{
+				mFiguresBefore++;
+			}
+		}
+		else
+		{
+			// Просматриваем клеточки от клеточки назад до фигуры соперника, затем вперед до следующей.
+			mSegmentFirst = aPosition;
+			while (mSegmentFirst > 0 && isOpenCell(mBoard.lookAtCell(start + (mSegmentFirst - 1) * step)))
+			{
+				mSegmentFirst--;
+			}
+			mSegmentLast = length - 1;
+			mFiguresBefore = 0;
+			for (int position = mSegmentFirst; position < length; position++)
+			{
+				if (position == aPosition)
+				{
+					mFiguresBefore = mFiguresCount;
+					continue;
+				}
+				int cell = start + position * step;
+				int cellValue = mBoard.lookAtCell(cell);
+				if (cellValue == 0)
+				{
+					// Свободные клеточки пропускаем сериями, но не дальше изменившейся клеточки.
+					int limit = (position < aPosition) ? aPosition - position - 1 : length - position - 1;
+					position += mBoard.countEmptyInLine(cell + step, step, limit);
+				}
+				else if (cellValue == mAnalyticID)
+				{
+					mFigures[mFiguresCount++] = position;
+				}
+				else
+				{
+					mSegmentLast = position - 1;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Рассчитать вес найденного отрезка (см. findSegment()) при заданном значении изменившейся клеточки.
+	 * Фигура соперника в клеточке делит отрезок на два.
+	 * @param aPosition - Номер изменившейся клеточки в линии.
+	 * @param aPlayerID - Идентификатор игрока, фигура которого стоит в клеточке (0 - клеточка свободна).
+	 * @return - Вес отрезка.
+	 */
+	private double calculateSegmentWeight(int aPosition, int aPlayerID)
+	{
+		if (isOpenCell(aPlayerID))
+		{
+			return calculateSegmentWeight(mSegmentFirst, mSegmentLast, 0, mFiguresCount, (aPlayerID == mAnalyticID) ? aPosition : -1);
+		}
+		return calculateSegmentWeight(mSegmentFirst, aPosition - 1, 0, mFiguresBefore, -1)
+				+ calculateSegmentWeight(aPosition + 1, mSegmentLast, mFiguresBefore, mFiguresCount, -1);
+	}
+
+	/**
+	 * Рассчитать вес части найденного отрезка.
+	 * @param aFirst - Номер (в линии) первой клеточки части.
+	 * @param aLast - Номер (в линии) последней клеточки части.
+	 * @param aFrom - Индекс первой фигуры части в mFigures.
+	 * @param aTo - Индекс за последней фигурой части в mFigures.
+	 * @param aExtraFigure - Номер (в линии) изменившейся клеточки, если в ней стоит фигура игрока. -1 - не стоит.
+	 * @return - Вес части отрезка.
+	 */
+	private double calculateSegmentWeight(int aFirst, int aLast, int aFrom, int aTo, int aExtraFigure)
+	{
+		int count = 0;
+		for (int i = aFrom; i < aTo; i++)
+		{
+			if (i == mFiguresBefore && aExtraFigure >= 0)
+			{
+				mSegmentFigures[count++] = aExtraFigure - aFirst;
+			}
+			mSegmentFigures[count++] = mFigures[i] - aFirst;
+		}
+		if (aTo == mFiguresBefore && aExtraFigure >= 0)
+		{
+			mSegmentFigures[count++] = aExtraFigure - aFirst;
+		}
+		return mEvaluator.calculateSegmentWeight(aLast - aFirst + 1, mSegmentFigures, count, mWinLineLength);
+	}
+
+	/**
+	 * Проверить, что значение клеточки не прерывает отрезок линии игрока.
+	 * @param aPlayerID - Идентификатор игрока, фигура которого стоит в клеточке (0 - клеточка свободна).
+	 * @return - true - клеточка свободна или в ней фигура игрока.
+	 */
+	private boolean isOpenCell(int aPlayerID)
+	{
+		return aPlayerID == 0 || aPlayerID == mAnalyticID;
+	}
+
+	/**
+	 * Подготовить описания линий доски указанного размера.
+	 * Линии нумеруются в порядке суммирования BoardEvaluator: строки, колонки, прямые и обратные диагонали.
+	 * @param aXSize - Ширина доски.
+	 * @param aYSize - Высота доски.
+	 */
+	private void prepareLines(int aXSize, int aYSize)
+	{
+		int diagonalsCount = Math.max(aXSize + aYSize - 2 * mWinLineLength + 1, 0);
+		mXSize = aXSize;
+		mYSize = aYSize;
+		mForwardBase = aYSize + aXSize;
+		mBackwardBase = mForwardBase + diagonalsCount;
+		mLinesCount = mBackwardBase + diagonalsCount;
+		mLineStarts = new int[mLinesCount];
+		mLineSteps = new int[mLinesCount];
+		mLineLengths = new int[mLinesCount];
+		mLineWeights = new double[mLinesCount];
+		mIsLineEvaluated = new boolean[mLinesCount];
+		mFigures = new int[Math.max(aXSize, aYSize)];
+		mSegmentFigures = new int[Math.max(aXSize, aYSize)];
+		for (int y = 0; y < aYSize; y++)
+		{
+			mLineStarts[y] = y * aXSize;
+			mLineSteps[y] = 1;
+			mLineLengths[y] = aXSize;
+		}
+		for (int x = 0; x < aXSize; x++)
+		{
+			mLineStarts[aYSize + x] = x;
+			mLineSteps[aYSize + x] = aXSize;
+			mLineLengths[aYSize + x] = aYSize;
+		}
+		for (int i = 0; i < diagonalsCount; i++)
+		{
+			int d = i + mWinLineLength - aYSize; // x - y
+			int x0 = Math.max(d, 0);
+			int y0 = x0 - d;
+			mLineStarts[mForwardBase + i] = y0 * aXSize + x0;
+			mLineSteps[mForwardBase + i] = aXSize + 1;
+			mLineLengths[mForwardBase + i] = Math.min(aXSize - x0, aYSize - y0);
+			int s = i + mWinLineLength - 1; // x + y
+			y0 = Math.max(s - aXSize + 1, 0);
+			x0 = s - y0;
+			mLineStarts[mBackwardBase + i] = y0 * aXSize + x0;
+			mLineSteps[mBackwardBase + i] = aXSize - 1;
+			mLineLengths[mBackwardBase + i] = Math.min(x0 + 1, aYSize - y0);
+		}
+	}
+
+}
@@ -0,0 +1,632 @@
+package ua.net.hj.cz.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает поиск хода методом Монте-Карло по дереву игры (MCTS с выбором узлов по формуле UCT).
+ * Каждая итерация спускается по дереву, выбирая ходы с наибольшей верхней границей доверия,
+ * раскрывает лист, доигрывает партию случайными ходами (как PlayerRandom) и учитывает исход во всех узлах пути.
+ * Значение узла считается с точки зрения игрока, сделавшего ведущий в него ход, поэтому поиск работает для любого количества игроков.
+ * Узлы хранятся в заранее выделенном пуле (массивы полей узлов), который переиспользуется от хода к ходу.
+ * При нескольких потоках используется параллелизм по корню: каждый поток строит свое дерево на своей копии доски,
+ * а по окончании поиска количества посещений ходов корня складываются.
+ * @author Hobbit Jedi
+ */
+public class MonteCarloSearch {
+	public static final long DEFAULT_ITERATIONS = 20000L;   // Количество итераций на ход по умолчанию (на каждый поток).
+	public static final long DEFAULT_MOVE_TIME = 5000L;     // Ограничение времени на ход по умолчанию (мс).
+	public static final int DEFAULT_POOL_SIZE = 1 << 18;    // Количество узлов в пуле каждого потока по умолчанию.
+	public static final double DEFAULT_EXPLORATION = 1.4;   // Коэффициент исследования в формуле UCT по умолчанию.
+	private static final int CLOCK_CHECK_MASK = 0x3F;       // Часы проверяются раз в 64 итерации.
+
+	private Rules mRules;                // Правила, по которым ведется игра.
+	private long mIterationsLimit;       // Количество итераций на ход для каждого потока. 0 - неограничено.
+	private long mMoveTimeLimit;         // Ограничение времени на ход (мс). 0 - неограничено.
+	private int mThreadsCount;           // Количество потоков.
+	private int mPoolSize;               // Количество узлов в пуле каждого потока.
+	private double mExploration;         // Коэффициент исследования в формуле UCT.
+	private long mSeed;                  // Начальное значение генераторов случайных чисел очередного поиска.
+	private Tree[] mTrees;               // Деревья потоков (переиспользуются от хода к ходу).
+	private ExecutorService mPool;       // Пул потоков для параллельного поиска. null - еще не создан.
+	private int[] mRootMoves;            // Ходы корня всех деревьев последнего поиска (по возрастанию клеточки).
+	private int[] mRootVisits;           // Суммарные количества посещений ходов корня.
+	private int mRootMovesCount;         // Количество ходов корня.
+	private long mPlayoutsCount;         // Количество доигрываний в последнем поиске (во всех потоках).
+	private long mSearchTime;            // Длительность последнего поиска (нс).
+
+	/**
+	 * Создать поиск с параметрами по умолчанию.
+	 * @param aRules - Правила, по которым ведется игра.
+	 */
+	public MonteCarloSearch(Rules aRules)
+	{
+		mRules = aRules;
+		mIterationsLimit = DEFAULT_ITERATIONS;
+		mMoveTimeLimit = DEFAULT_MOVE_TIME;
+		mThreadsCount = 1;
+		mPoolSize = DEFAULT_POOL_SIZE;
+		mExploration = DEFAULT_EXPLORATION;
+		mSeed = new Random().nextLong();
+		mTrees = new Tree[0];
+		mPool = null;
+		mRootMoves = new int[0];
+		mRootVisits = new int[0];
+		mRootMovesCount = 0;
+	}
+
+	/**
+	 * Установить правила, по которым ведется игра (например, перед новой игрой).
+	 * Деревья потоков и их пулы узлов сохраняются: размер пула от правил не зависит, а позиция задается при каждом поиске.
+	 * @param aRules - Правила, по которым ведется игра.
+	 */
+	public void setRules(Rules aRules)
+	{
+		mRules = aRules;
+		for (Tree tree: mTrees)
+		{
+			tree.mRules = aRules;
+		}
+	}
+
+	/**
+	 * Установить количество итераций на ход.
+	 * @param aIterationsLimit - Количество итераций для каждого потока. 0 - неограничено (только по времени).
+	 */
+	public void setIterationsLimit(long aIterationsLimit)
+	{
+		mIterationsLimit = Math.max(aIterationsLimit, 0L);
+	}
+
+	/**
+	 * Установить ограничение времени на ход.
+	 * @param aMoveTimeLimit - Ограничение времени на ход в миллисекундах. 0 - неограничено (только по итерациям).
+	 */
+	public void setMoveTimeLimit(long aMoveTimeLimit)
+	{
+		mMoveTimeLimit = Math.max(aMoveTimeLimit, 0L);
+	}
+
+	/**
+	 * Установить количество потоков поиска.
+	 * @param aThreadsCount - Количество потоков (не меньше 1).
+	 */
+	public void setThreadsCount(int aThreadsCount)
+	{
+		if (aThreadsCount < 1)
+		{
+			throw new IllegalArgumentException("Количество потоков должно быть положительным: " + aThreadsCount);
+		}
+		mThreadsCount = aThreadsCount;
+	}
+
+	/**
+	 * Установить размер пула узлов.
+	 * @param aPoolSize - Количество узлов в пуле каждого потока (не меньше 2).
+	 */
+	public void setPoolSize(int aPoolSize)
+	{
+		if (aPoolSize < 2)
+		{
+			throw new IllegalArgumentException("Размер пула узлов слишком мал: " + aPoolSize);
+		}
+		mPoolSize = aPoolSize;
+	}
+
+	/**
+	 * Установить коэффициент исследования в формуле UCT.
+	 * @param aExploration - Коэффициент (чем больше, тем чаще перебираются мало исследованные ходы).
+	 */
+	public void setExploration(double aExploration)
+	{
+		mExploration = aExploration;
+	}
+
+	/**
+	 * Задать начальное значение генераторов случайных чисел для следующего поиска.
+	 * @param aSeed - Начальное значение.
+	 */
+	public void setRandomSeed(long aSeed)
+	{
+		mSeed = aSeed;
+	}
+
+	/**
+	 * Получить количество доигрываний в последнем поиске (во всех потоках).
+	 * @return - Количество доигрываний.
+	 */
+	public long getPlayoutsCount()
+	{
+		return mPlayoutsCount;
+	}
+
+	/**
+	 * Получить скорость последнего поиска.
+	 * @return - Количество доигрываний в секунду (во всех потоках).
+	 */
+	public double getPlayoutsPerSecond()
+	{
+		return (mSearchTime > 0) ? mPlayoutsCount * 1e9 / mSearchTime : 0d;
+	}
+
+	/**
+	 * Найти лучший ход для игрока за время, установленное методом setMoveTimeLimit().
+	 * Переданная доска не изменяется: каждый поток работает со своей копией.
+	 * @param aBoard - Доска с текущей позицией.
+	 * @param aActivePlayersSequence - Порядок, в котором ходят активные игроки.
+	 * @param aPlayerID - Идентификатор игрока, для которого ищется ход. Он ходит первым.
+	 * @return - Индекс клеточки лучшего хода.
+	 *           -1, если ходить некуда.
+	 */
+	public int searchBestMove(Board aBoard, int[] aActivePlayersSequence, int aPlayerID)
+	{
+		long deadline = (mMoveTimeLimit > 0) ? System.nanoTime() + mMoveTimeLimit * 1000000L : Long.MAX_VALUE;
+		return searchBestMove(aBoard, aActivePlayersSequence, aPlayerID, deadline);
+	}
+
+	/**
+	 * Найти лучший ход для игрока к заданному сроку.
+	 * Переданная доска не изменяется: каждый поток работает со своей копией.
+	 * @param aBoard - Доска с текущей позицией.
+	 * @param aActivePlayersSequence - Порядок, в котором ходят активные игроки.
+	 * @param aPlayerID - Идентификатор игрока, для которого ищется ход. Он ходит первым.
+	 * @param aDeadline - Крайний срок поиска (по System.nanoTime()). Long.MAX_VALUE - неограничено.
+	 * @return - Индекс клеточки лучшего хода.
+	 *           -1, если ходить некуда.
+	 */
+	public int searchBestMove(Board aBoard, int[] aActivePlayersSequence, int aPlayerID, long aDeadline)
+	{
+		long start = System.nanoTime();
+		int moverIndex = 0;
+		for (int i = 0; i < aActivePlayersSequence.length; i++)
+		{
+			if (aActivePlayersSequence[i] == aPlayerID)
+			{
+				moverIndex = i;
+				break;
+			}
+		}
+		prepareTrees();
+		Random seeds = new Random(mSeed);
+		for (Tree tree: mTrees)
+		{
+			tree.reset(aBoard, aActivePlayersSequence, moverIndex, seeds.nextLong());
+		}
+		mSeed = seeds.nextLong();
+
+		if (mTrees.length == 1)
+		{
+			mTrees[0].search(mIterationsLimit, aDeadline);
+		}
+		else
+		{
+			ArrayList<Future<?>> futures = new ArrayList<>();
+			for (int i = 1; i < mTrees.length; i++)
+			{
+				Tree tree = mTrees[i];
+				futures.add(mPool.submit(() -> tree.search(mIterationsLimit, aDeadline)));
+			}
+			mTrees[0].search(mIterationsLimit, aDeadline);
+			try
+			{
+				for (Future<?> future: futures)
+				{
+					future.get();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				throw new IllegalStateException("Ошибка в потоке поиска.", e.getCause());
+			}
+		}
+
+		// Складываем посещения ходов корня всех деревьев (их столько же, сколько кандидатов корня, а не клеточек доски).
+		mRootMovesCount = 0;
+		mPlayoutsCount = 0;
+		for (Tree tree: mTrees)
+		{
+			int first = tree.mFirstChildren[0];
+			if (first >= 0)
+			{
+				for (int child = first; child < first + tree.mChildrenCounts[0]; child++)
+				{
+					addRootVisits(tree.mMoves[child], tree.mVisits[child]);
+				}
+			}
+			mPlayoutsCount += tree.mPlayoutsCount;
+		}
+		int result = mTrees[0].getRootWinningMove();
+		if (result < 0)
+		{
+			int bestVisits = 0;
+			for (int i = 0; i < mRootMovesCount; i++)
+			{
+				if (mRootVisits[i] > bestVisits)
+				{
+					bestVisits = mRootVisits[i];
+					result = mRootMoves[i];
+				}
+			}
+		}
+		if (result < 0 && aBoard.hasMoreSpace())
+		{
+			result = aBoard.getEmptyCell(0); // Дерево не успело раскрыться ни разу.
+		}
+		mSearchTime = System.nanoTime() - start;
+		return result;
+	}
+
+	/**
+	 * Добавить посещения хода корня к сумме по всем деревьям.
+	 * Ходы корня хранятся по возрастанию клеточки, поэтому при равенстве посещений выбирается ход с наименьшей клеточкой.
+	 * @param aCell - Клеточка хода.
+	 * @param aVisits - Количество посещений хода в дереве.
+	 */
+	private void addRootVisits(int aCell, int aVisits)
+	{
+		int index = Arrays.binarySearch(mRootMoves, 0, mRootMovesCount, aCell);
+		if (index < 0)
+		{
+			index = -index - 1;
+			if (mRootMovesCount == mRootMoves.length)
+			{
+				mRootMoves = Arrays.copyOf(mRootMoves, Math.max(2 * mRootMoves.length, 16));
+				mRootVisits = Arrays.copyOf(mRootVisits, mRootMoves.length);
+			}
+			System.arraycopy(mRootMoves, index, mRootMoves, index + 1, mRootMovesCount - index);
+			System.arraycopy(mRootVisits, index, mRootVisits, index + 1, mRootMovesCount - index);
+			mRootMoves[index] = aCell;
+			mRootVisits[index] = 0;
+			mRootMovesCount++;
+		}
+		mRootVisits[index] += aVisits;
+	}
+
+	/**
+	 * Завершить работу поиска: остановить потоки параллельного поиска.
+	 * Поиск можно продолжать использовать: пул потоков будет создан заново при следующем параллельном поиске.
+	 */
+	public void close()
+	{
+		if (mPool != null)
+		{
+			mPool.shutdown();
+			mPool = null;
+		}
+	}
+
+	/**
+	 * Подготовить деревья (и пул потоков) под текущие настройки.
+	 */
+	private void prepareTrees()
+	{
+		if (mTrees.length != mThreadsCount || mTrees[0].mMoves.length != mPoolSize)
+		{
+			mTrees = new Tree[mThreadsCount];
+			for (int i = 0; i < mTrees.length; i++)
+			{
+				mTrees[i] = new Tree(mRules, mPoolSize);
+			}
+		}
+		for (Tree tree: mTrees)
+		{
+			tree.mExploration = mExploration;
+		}
+		if (mThreadsCount > 1 && mPool == null)
+		{
+			mPool = Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "MonteCarloSearch");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Описывает дерево поиска одного потока.
+	 * Поля узлов хранятся в параллельных массивах, дочерние узлы узла занимают непрерывный отрезок пула.
+	 */
+	private static class Tree {
+		private static final byte STATE_OPEN = 0; // Исход позиции узла не известен.
+		private static final byte STATE_WIN = 1;  // Ход в узел выиграл.
+		private static final byte STATE_DRAW = 2; // После хода в узел ходить некуда (ничья).
+
+		private Rules mRules;                // Правила, по которым ведется игра.
+		private final int[] mMoves;          // Индексы клеточек ходов, ведущих в узлы.
+		private final byte[] mMovers;        // Номера (в порядке хода) игроков, сделавших ходы в узлы.
+		private final byte[] mStates;        // Известные исходы узлов.
+		private final int[] mFirstChildren;  // Номера первых дочерних узлов. -1 - узел не раскрыт.
+		private final int[] mChildrenCounts; // Количества дочерних узлов.
+		private final int[] mVisits;         // Количества посещений узлов.
+		private final double[] mRewards;     // Суммарные выигрыши узлов (с точки зрения сделавшего ход игрока).
+		private int mNodesCount;             // Количество занятых узлов пула.
+		private Board mBoard;                // Копия доски, на которой идет перебор.
+		private int[] mPlayersSequence;      // Порядок хода игроков.
+		private int mRootMoverIndex;         // Номер (в порядке хода) игрока, который ходит в корне.
+		private int[] mPath;                 // Узлы пути текущей итерации (увеличивается по глубине дерева).
+		private final CandidateMoves mCandidateMoves; // Ходы-кандидаты на доске перебора.
+		private int[] mCandidates;           // Буфер ходов при раскрытии узла (увеличивается по количеству кандидатов).
+		private double mExploration;         // Коэффициент исследования в формуле UCT.
+		private Random mRandom;              // Генератор случайных чисел.
+		private long mPlayoutsCount;         // Количество доигрываний в последнем поиске.
+
+		/**
+		 * Создать дерево.
+		 * @param aRules - Правила, по которым ведется игра.
+		 * @param aPoolSize - Количество узлов в пуле.
+		 */
+		Tree(Rules aRules, int aPoolSize)
+		{
+			mRules = aRules;
+			mMoves = new int[aPoolSize];
+			mMovers = new byte[aPoolSize];
+			mStates = new byte[aPoolSize];
+			mFirstChildren = new int[aPoolSize];
+			mChildrenCounts = new int[aPoolSize];
+			mVisits = new int[aPoolSize];
+			mRewards = new double[aPoolSize];
+			mPath = new int[64];
+			mCandidates = new int[0];
+			mCandidateMoves = new CandidateMoves(CandidateMoves.DEFAULT_DISTANCE);
+		}
+
+		/**
+		 * Начать новое дерево для позиции (пул узлов очищается).
+		 * @param aBoard - Доска с позицией.
+		 * @param aPlayersSequence - Порядок хода игроков.
+		 * @param aRootMoverIndex - Номер (в порядке хода) игрока, который ходит в корне.
+		 * @param aSeed - Начальное значение генератора случайных чисел.
+		 */
+		void reset(Board aBoard, int[] aPlayersSequence, int aRootMoverIndex, long aSeed)
+		{
+			mBoard = aBoard.copy();
+			mCandidateMoves.attach(mBoard);
+			mPlayersSequence = aPlayersSequence;
+			mRootMoverIndex = aRootMoverIndex;
+			mRandom = new Random(aSeed);
+			mNodesCount = 1;
+			mMoves[0] = -1;
+			mMovers[0] = (byte)((aRootMoverIndex + aPlayersSequence.length - 1) % aPlayersSequence.length);
+			mStates[0] = STATE_OPEN;
+			mFirstChildren[0] = -1;
+			mChildrenCounts[0] = 0;
+			mVisits[0] = 0;
+			mRewards[0] = 0d;
+			mPlayoutsCount = 0;
+		}
+
+		/**
+		 * Выполнять итерации, пока не исчерпан бюджет (первая итерация, раскрывающая корень, выполняется всегда).
+		 * @param aIterationsLimit - Количество итераций. 0 - неограничено.
+		 * @param aDeadline - Момент времени (System.nanoTime()), когда поиск нужно прекратить.
+		 */
+		void search(long aIterationsLimit, long aDeadline)
+		{
+			long iterationsLimit = (aIterationsLimit > 0) ? aIterationsLimit : Long.MAX_VALUE;
+			for (long iteration = 0; iteration < iterationsLimit; iteration++)
+			{
+				if (iteration > 0 && (iteration & CLOCK_CHECK_MASK) == 0 && System.nanoTime() > aDeadline)
+				{
+					break;
+				}
+				iterate();
+				if (iteration == 0 && getRootWinningMove() >= 0)
+				{
+					break; // Есть немедленно выигрывающий ход - искать дальше незачем.
+				}
+			}
+		}
+
+		/**
+		 * Выполнить одну итерацию: выбор, раскрытие, доигрывание и учет исхода.
+		 */
+		private void iterate()
+		{
+			int playersCount = mPlayersSequence.length;
+			int pathLength = 0;
+			int node = 0;
+			int moverIndex = mRootMoverIndex;
+			mPath[pathLength++] = node;
+			// Выбор.
+			while (mStates[node] == STATE_OPEN && mFirstChildren[node] >= 0 && mChildrenCounts[node] > 0)
+			{
+				node = selectChild(node);
+				mBoard.makeMove(mMoves[node], mPlayersSequence[moverIndex]);
+				if (pathLength + 1 == mPath.length) // Место и для узла, добавляемого раскрытием.
+				{
+					mPath = Arrays.copyOf(mPath, 2 * mPath.length);
+				}
+				mPath[pathLength++] = node;
+				moverIndex = (moverIndex + 1) % playersCount;
+			}
+			// Раскрытие.
+			if (mStates[node] == STATE_OPEN && mFirstChildren[node] < 0 && (mVisits[node] > 0 || node == 0) && expand(node, moverIndex))
+			{
+				node = selectChild(node);
+				mBoard.makeMove(mMoves[node], mPlayersSequence[moverIndex]);
+				mPath[pathLength++] = node;
+				moverIndex = (moverIndex + 1) % playersCount;
+			}
+			// Доигрывание.
+			int winnerIndex; // Номер победителя в порядке хода. -1 - ничья.
+			switch (mStates[node])
+			{
+				case STATE_WIN:
+					winnerIndex = mMovers[node];
+					break;
+				case STATE_DRAW:
+					winnerIndex = -1;
+					break;
+				default:
+					winnerIndex = -1;
+					// Ходы доигрывания откатываются сразу после него, поэтому кандидаты за ними не следят.
+					int treeMovesCount = mBoard.getMovesStackSize();
+					mBoard.removeObserver(mCandidateMoves);
+					while (mBoard.hasMoreSpace())
+					{
+						int cell = mBoard.getRandomEmptyCell(mRandom);
+						mBoard.makeMove(cell, mPlayersSequence[moverIndex]);
+						if (mRules.isWin(mBoard, cell))
+						{
+							winnerIndex = moverIndex;
+							break;
+						}
+						moverIndex = (moverIndex + 1) % playersCount;
+					}
+					while (mBoard.getMovesStackSize() > treeMovesCount)
+					{
+						mBoard.unmakeMove();
+					}
+					mBoard.addObserver(mCandidateMoves);
+					break;
+			}
+			mPlayoutsCount++;
+			// Учет исхода.
+			double drawReward = 1d / playersCount;
+			for (int i = 0; i < pathLength; i++)
+			{
+				int pathNode = mPath[i];
+				mVisits[pathNode]++;
+				if (winnerIndex < 0)
+				{
+					mRewards[pathNode] += drawReward;
+				}
+				else if (mMovers[pathNode] == winnerIndex)
+				{
+					mRewards[pathNode] += 1d;
+				}
+			}
+			// Откат доски.
+			while (mBoard.getMovesStackSize() > 0)
+			{
+				mBoard.unmakeMove();
+			}
+		}
+
+		/**
+		 * Выбрать дочерний узел по формуле UCT.
+		 * Не посещенные узлы выбираются в первую очередь (порядок дочерних узлов случаен).
+		 * @param aNode - Родительский узел.
+		 * @return - Выбранный дочерний узел.
+		 */
+		private int selectChild(int aNode)
+		{
+			int first = mFirstChildren[aNode];
+			int last = first + mChildrenCounts[aNode];
+			double logVisits = Math.log(Math.max(mVisits[aNode], 1));
+			int result = first;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (int child = first; child < last; child++)
+			{
+				int visits = mVisits[child];
+				if (visits == 0)
+				{
+					return child;
+				}
+				double value = mRewards[child] / visits + mExploration * Math.sqrt(logVisits / visits);
+				if (value > bestValue)
+				{
+					bestValue = value;
+					result = child;
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Раскрыть узел: создать дочерние узлы для ходов рядом с уже стоящими фигурами.
+		 * Выигрывающие и последние ходы сразу помечаются своим исходом.
+		 * @param aNode - Раскрываемый узел (его позиция стоит на доске).
+		 * @param aMoverIndex - Номер (в порядке хода) игрока, который ходит в узле.
+		 * @return - Признак того, что у узла появились дочерние узлы.
+		 *           false, если в пуле не хватило места или ходить некуда.
+		 */
+		private boolean expand(int aNode, int aMoverIndex)
+		{
+			int count = collectCandidates();
+			if (count == 0 || mNodesCount + count > mMoves.length)
+			{
+				return false;
+			}
+			// Перемешиваем ходы, чтобы не посещенные узлы выбирались в случайном порядке.
+			for (int i = count - 1; i > 0; i--)
+			{
+				int j = mRandom.nextInt(i + 1);
+				int swap = mCandidates[i];
+				mCandidates[i] = mCandidates[j];
+				mCandidates[j] = swap;
+			}
+			int moverID = mPlayersSequence[aMoverIndex];
+			boolean isLastMove = (mBoard.getEmptyCellsCount() == 1);
+			int first = mNodesCount;
+			for (int i = 0; i < count; i++)
+			{
+				int child = first + i;
+				int cell = mCandidates[i];
+				mBoard.makeMove(cell, moverID);
+				boolean isWin = mRules.isWin(mBoard, cell);
+				mBoard.unmakeMove();
+				mMoves[child] = cell;
+				mMovers[child] = (byte)aMoverIndex;
+				mStates[child] = isWin ? STATE_WIN : isLastMove ? STATE_DRAW : STATE_OPEN;
+				mFirstChildren[child] = -1;
+				mChildrenCounts[child] = 0;
+				mVisits[child] = 0;
+				mRewards[child] = 0d;
+			}
+			mNodesCount += count;
+			mFirstChildren[aNode] = first;
+			mChildrenCounts[aNode] = count;
+			return true;
+		}
+
+		/**
+		 * Собрать в буфер свободные клеточки, находящиеся рядом с уже стоящими фигурами (см. CandidateMoves).
+		 * На пустой доске - центральная клеточка.
+		 * @return - Количество клеточек в буфере.
+		 */
+		private int collectCandidates()
+		{
+			if (mCandidates.length < mCandidateMoves.getMaxCount(0))
+			{
+				mCandidates = new int[mCandidateMoves.getMaxCount(0)];
+			}
+			int count = mCandidateMoves.collect(mCandidates);
+			// Порядок кандидатов зависит от истории ходов, а перемешивание должно зависеть только от позиции.
+			Arrays.sort(mCandidates, 0, count);
+			return count;
+		}
+
+		/**
+		 * Получить немедленно выигрывающий ход корня, если он уже найден.
+		 * @return - Индекс клеточки хода. -1, если такой ход не найден.
+		 */
+		int getRootWinningMove()
+		{
+			int first = mFirstChildren[0];
+			if (first >= 0)
+			{
+				for (int child = first; child < first + mChildrenCounts[0]; child++)
+				{
+					if (mStates[child] == STATE_WIN)
+					{
+						return mMoves[child];
+					}
+				}
+			}
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,298 @@
+package ua.net.hj.cz.analytics;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.core.ZobristKeys;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.BoardSymmetry;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает дебютную книгу: статистику ходов первых полуходов игры, собранную по сыгранным играм (см. OpeningBookBuilder).
+ * Для каждой позиции и хода книга хранит количество игр, в которых этот ход был сделан,
+ * и набранные ходившим игроком очки (2 за выигрыш, 1 за ничью, 0 за проигрыш).
+ * Позиция задается ключом: наименьшим из хэшей симметричных вариантов доски (см. BoardSymmetry),
+ * смешанным с ключом фигуры ходящего игрока. Ход хранится в системе координат канонического варианта.
+ * Книга читается из файла, отображенного в память: заголовок и записи, отсортированные по ключу позиции и ходу.
+ * Поиск позиции - двоичный поиск по записям, поэтому книга не занимает место в куче,
+ * а чтение не изменяет ее состояние - одну книгу могут одновременно использовать все игроки всех игр.
+ * @author Hobbit Jedi
+ */
+public class OpeningBook {
+	public static final int DEFAULT_MIN_GAMES = 10;           // Минимальное количество игр хода для выбора его из книги по умолчанию.
+	static final int MAGIC = 0x4F424B32;                      // Сигнатура файла книги ("OBK2").
+	static final int HEADER_BYTES = 16;                       // Размер заголовка файла.
+	static final int MAX_HEADER_VALUE = 0xFF;                 // Наибольшие размер доски, длина линии и количество игроков в заголовке (по байту без знака).
+	static final int RECORD_BYTES = 20;                       // Размер записи: ключ позиции, ход, количество игр, очки.
+	private static final ConcurrentHashMap<String, OpeningBook> CACHE = new ConcurrentHashMap<>(); // Открытые книги по именам файлов.
+
+	/**
+	 * Способ выбора хода из книги.
+	 */
+	public enum Selection
+	{
+		BEST    ("Лучший"),    // Ход с наибольшим средним количеством очков (при равенстве - сыгранный в большем количестве игр).
+		WEIGHTED("Взвешенный") // Случайный ход с вероятностью, пропорциональной набранным им очкам.
+		;
+
+		private final String mName; // Представление значения при выводе на экран.
+
+		private Selection(String aName)
+		{
+			mName = aName;
+		}
+
+		@Override
+		public String toString()
+		{
+			return mName;
+		}
+	}
+
+	private final int mXSize;                // Ширина доски.
+	private final int mYSize;                // Высота доски.
+	private final int mWinLineLength;        // Длина линии для победы.
+	private final int mNumOfPlayers;         // Количество игроков.
+	private final int mDepth;                // Глубина книги (в полуходах).
+	private final int mRecordsCount;         // Количество записей в книге.
+	private final MappedByteBuffer mBuffer;  // Отображенный в память файл книги.
+
+	/**
+	 * Создать книгу по отображенному в память файлу.
+	 * @param aBuffer - Отображенный в память файл книги.
+	 * @throws IllegalArgumentException - Если файл не является дебютной книгой, то вызывается исключение.
+	 */
+	private OpeningBook(MappedByteBuffer aBuffer) throws IllegalArgumentException
+	{
+		if (aBuffer.capacity() < HEADER_BYTES || aBuffer.getInt(0) != MAGIC)
+		{
+			throw new IllegalArgumentException("Файл не является дебютной книгой.");
+		}
+		mBuffer = aBuffer;
+		mXSize = aBuffer.get(4) & 0xFF;
+		mYSize = aBuffer.get(5) & 0xFF;
+		mWinLineLength = aBuffer.get(6) & 0xFF;
+		mNumOfPlayers = aBuffer.get(7) & 0xFF;
+		mDepth = aBuffer.getInt(8);
+		mRecordsCount = aBuffer.getInt(12);
+		if ((long)HEADER_BYTES + (long)RECORD_BYTES * mRecordsCount != aBuffer.capacity())
+		{
+			throw new IllegalArgumentException("Размер файла книги не соответствует количеству записей: " + mRecordsCount);
+		}
+	}
+
+	/**
+	 * Открыть книгу из файла.
+	 * Открытые книги кэшируются, поэтому все игроки, открывающие один файл, используют одно его отображение в память.
+	 * Файл, замененный после открытия, будет прочитан заново только новым процессом.
+	 * @param aFile - Файл книги.
+	 * @return - Книга.
+	 * @throws IOException - Если не удалось прочитать файл, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если файл не является дебютной книгой, то вызывается исключение.
+	 */
+	public static OpeningBook open(Path aFile) throws IOException, IllegalArgumentException
+	{
+		String name = aFile.toAbsolutePath().toString();
+		OpeningBook result = CACHE.get(name);
+		if (result == null)
+		{
+			try (FileChannel channel = FileChannel.open(aFile, StandardOpenOption.READ))
+			{
+				result = new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			}
+			OpeningBook previous = CACHE.putIfAbsent(name, result);
+			if (previous != null)
+			{
+				result = previous;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Получить имя файла книги для правил.
+	 * @param aRules - Правила игры.
+	 * @return - Имя файла.
+	 */
+	public static String getFileName(Rules aRules)
+	{
+		return "book-" + aRules.getBoardXSize() + "x" + aRules.getBoardYSize() + "-" + aRules.getWinLineLength()
+				+ "-" + aRules.getNumOfPlayers() + ".obk";
+	}
+
+	/**
+	 * Проверить подходит ли книга для правил.
+	 * @param aRules - Правила игры.
+	 * @return - true - книга собрана для таких размеров доски, длины линии и количества игроков.
+	 */
+	public boolean isMatching(Rules aRules)
+	{
+		return aRules.getBoardXSize() == mXSize && aRules.getBoardYSize() == mYSize
+				&& aRules.getWinLineLength() == mWinLineLength && aRules.getNumOfPlayers() == mNumOfPlayers;
+	}
+
+	/**
+	 * Получить глубину книги.
+	 * @return - Количество первых полуходов игры, ходы которых собраны в книге.
+	 */
+	public int getDepth()
+	{
+		return mDepth;
+	}
+
+	/**
+	 * Получить количество записей в книге.
+	 * @return - Количество пар (позиция, ход).
+	 */
+	public int getRecordsCount()
+	{
+		return mRecordsCount;
+	}
+
+	/**
+	 * Выбрать ход из книги.
+	 * Рассматриваются только ходы, сыгранные не меньше чем в aMinGames играх и ведущие в свободную клеточку.
+	 * @param aBoard - Доска с позицией (на время поиска к ней подключаются симметрии, см. BoardSymmetry.attach()).
+	 * @param aFigure - Фигура ходящего игрока.
+	 * @param aSelection - Способ выбора хода.
+	 * @param aMinGames - Минимальное количество игр хода.
+	 * @param aRandom - Генератор случайных чисел для взвешенного выбора.
+	 * @return - Индекс клеточки хода.
+	 *           -1, если позиции нет в книге или ни один ее ход не подходит.
+	 */
+	public int selectMove(Board aBoard, ActionFigure aFigure, Selection aSelection, int aMinGames, Random aRandom)
+	{
+		int result = -1;
+		if (aBoard.getXSize() != mXSize || aBoard.getYSize() != mYSize || aBoard.getCellsCount() - aBoard.getEmptyCellsCount() >= mDepth)
+		{
+			return result;
+		}
+		// Симметрии подключаются к доске только на время поиска: книга не хранит состояния и общая для всех игроков.
+		BoardSymmetry symmetries = new BoardSymmetry(mXSize, mYSize);
+		symmetries.attach(aBoard);
+		int symmetry = symmetries.getCanonicalSymmetry();
+		long key = symmetries.getHash(symmetry) ^ getFigureKey(aFigure);
+		symmetries.detach();
+		int first = findFirst(key);
+		if (first >= 0)
+		{
+			int minGames = Math.max(aMinGames, 1);
+			long totalScore = 0;
+			int bestIndex = -1;
+			for (int i = first; i < mRecordsCount && getKey(i) == key; i++)
+			{
+				int games = getGames(i);
+				int score = getScore(i);
+				if (games < minGames || aBoard.lookAtCell(symmetries.fromVariant(getMove(i), symmetry)) != 0)
+				{
+					continue;
+				}
+				switch (aSelection)
+				{
+					case BEST:
+						// Сравнение средних score/games без деления: score * bestGames > bestScore * games.
+						if (bestIndex < 0 || (long)score * getGames(bestIndex) > (long)getScore(bestIndex) * games
+								|| ((long)score * getGames(bestIndex) == (long)getScore(bestIndex) * games && games > getGames(bestIndex)))
+						{
+							bestIndex = i;
+						}
+						break;
+					case WEIGHTED:
+						// Выбор пропорционально очкам за один проход (резервуарная выборка с весами).
+						totalScore += score;
+						if (score > 0 && aRandom.nextDouble() * totalScore < score)
+						{
+							bestIndex = i;
+						}
+						break;
+				}
+			}
+			if (bestIndex >= 0)
+			{
+				result = symmetries.fromVariant(getMove(bestIndex), symmetry);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Получить ключ фигуры ходящего игрока, который смешивается с хэшем позиции.
+	 * @param aFigure - Фигура ходящего игрока.
+	 * @return - 64-битный ключ.
+	 */
+	static long getFigureKey(ActionFigure aFigure)
+	{
+		return ZobristKeys.getTurnKey(aFigure);
+	}
+
+	/**
+	 * Найти двоичным поиском первую запись позиции.
+	 * @param aKey - Ключ позиции.
+	 * @return - Номер первой записи с таким ключом. -1, если позиции нет.
+	 */
+	private int findFirst(long aKey)
+	{
+		int low = 0;
+		int high = mRecordsCount;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (getKey(middle) < aKey)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return (low < mRecordsCount && getKey(low) == aKey) ? low : -1;
+	}
+
+	/**
+	 * Получить ключ позиции записи.
+	 * @param aIndex - Номер записи.
+	 * @return - Ключ позиции.
+	 */
+	long getKey(int aIndex)
+	{
+		return mBuffer.getLong(HEADER_BYTES + aIndex * RECORD_BYTES);
+	}
+
+	/**
+	 * Получить ход записи.
+	 * @param aIndex - Номер записи.
+	 * @return - Индекс клеточки хода в каноническом варианте позиции.
+	 */
+	int getMove(int aIndex)
+	{
+		return mBuffer.getInt(HEADER_BYTES + aIndex * RECORD_BYTES + 8);
+	}
+
+	/**
+	 * Получить количество игр записи.
+	 * @param aIndex - Номер записи.
+	 * @return - Количество игр, в которых ход был сделан в этой позиции.
+	 */
+	int getGames(int aIndex)
+	{
+		return mBuffer.getInt(HEADER_BYTES + aIndex * RECORD_BYTES + 12);
+	}
+
+	/**
+	 * Получить очки записи.
+	 * @param aIndex - Номер записи.
+	 * @return - Очки, набранные ходившим игроком в этих играх.
+	 */
+	int getScore(int aIndex)
+	{
+		return mBuffer.getInt(HEADER_BYTES + aIndex * RECORD_BYTES + 16);
+	}
+
+}
@@ -0,0 +1,301 @@
+package ua.net.hj.cz.analytics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.game.GameRecord;
+import ua.net.hj.cz.game.PlayerType;
+import ua.net.hj.cz.game.Simulation;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.BoardSymmetry;
+import ua.net.hj.cz.roles.Rules;
+import ua.net.hj.cz.roles.players.PlayerException;
+
+/**
+ * Описывает построитель дебютной книги (см. OpeningBook).
+ * Построитель получает записи сыгранных игр (например, от Simulation.setGameListener()),
+ * проигрывает первые полуходы каждой игры и для каждой встретившейся позиции и сделанного в ней хода
+ * накапливает количество игр и очки, набранные ходившим игроком.
+ * Позиции приводятся к каноническому виду, поэтому симметричные дебюты накапливаются в одной записи.
+ * Если позиция симметрична сама себе, то из равноценных ходов записывается ход с наименьшим индексом,
+ * чтобы статистика таких ходов не делилась между несколькими записями.
+ * Добавлять игры можно из нескольких потоков одновременно.
+ * @author Hobbit Jedi
+ */
+public class OpeningBookBuilder {
+	public static final int DEFAULT_DEPTH = 8;    // Глубина книги по умолчанию (в полуходах).
+
+	private final Rules mRules;                   // Правила игры.
+	private final int mDepth;                     // Глубина книги (в полуходах).
+	private final Board mBoard;                   // Доска для проигрывания игр.
+	private final BoardSymmetry mSymmetry;        // Симметрии доски для проигрывания игр (хэши вариантов позиции следуют за доской).
+	private final HashMap<Long, HashMap<Integer, int[]>> mStatistics; // Статистика: [ключ позиции][ход] = {игры, очки}.
+	private int mGamesCount;                      // Количество добавленных игр.
+	private int mMinGames;                        // Минимальное количество игр хода для записи его в файл.
+
+	/**
+	 * Создать построитель.
+	 * @param aRules - Правила игры.
+	 * @param aDepth - Глубина книги: количество первых полуходов игры, ходы которых собираются (не меньше 1).
+	 * @throws IllegalArgumentException - Если глубина книги не положительна
+	 *                                    или размер доски не помещается в заголовок книги, то вызывается исключение.
+	 */
+	public OpeningBookBuilder(Rules aRules, int aDepth) throws IllegalArgumentException
+	{
+		if (aDepth < 1)
+		{
+			throw new IllegalArgumentException("Глубина книги должна быть положительной: " + aDepth);
+		}
+		if (aRules.getBoardXSize() > OpeningBook.MAX_HEADER_VALUE || aRules.getBoardYSize() > OpeningBook.MAX_HEADER_VALUE
+				|| aRules.getWinLineLength() > OpeningBook.MAX_HEADER_VALUE || aRules.getNumOfPlayers() > OpeningBook.MAX_HEADER_VALUE)
+		{
+			throw new IllegalArgumentException("Книга строится для досок не больше " + OpeningBook.MAX_HEADER_VALUE + "x" + OpeningBook.MAX_HEADER_VALUE + ".");
+		}
+		mRules = aRules;
+		mDepth = aDepth;
+		mBoard = new Board(aRules.getBoardXSize(), aRules.getBoardYSize());
+		ActionFigure[] figures = ActionFigure.values();
+		for (int i = 0; i < figures.length; i++)
+		{
+			mBoard.setPlayerFigure(i + 1, figures[i]); // На доске построителя идентификатор игрока - номер фигуры + 1.
+		}
+		mSymmetry = new BoardSymmetry(aRules.getBoardXSize(), aRules.getBoardYSize());
+		mSymmetry.attach(mBoard);
+		mStatistics = new HashMap<>();
+		mGamesCount = 0;
+		mMinGames = 1;
+	}
+
+	/**
+	 * Установить минимальное количество игр хода для записи его в файл.
+	 * Редкие ходы занимают большую часть книги, а выбираются из нее только при малом OpeningBook.selectMove(aMinGames).
+	 * @param aMinGames - Минимальное количество игр (не меньше 1).
+	 */
+	public synchronized void setMinGames(int aMinGames)
+	{
+		if (aMinGames < 1)
+		{
+			throw new IllegalArgumentException("Минимальное количество игр должно быть положительным: " + aMinGames);
+		}
+		mMinGames = aMinGames;
+	}
+
+	/**
+	 * Получить количество добавленных игр.
+	 * @return - Количество игр.
+	 */
+	public synchronized int getGamesCount()
+	{
+		return mGamesCount;
+	}
+
+	/**
+	 * Добавить в статистику первые полуходы сыгранной игры.
+	 * @param aRecord - Запись игры.
+	 * @throws IllegalArgumentException - Если игра сыграна на доске другого размера, с другой длиной линии
+	 *                                    или другим количеством игроков, то вызывается исключение.
+	 */
+	public synchronized void addGame(GameRecord aRecord) throws IllegalArgumentException
+	{
+		if (aRecord.getXSize() != mRules.getBoardXSize() || aRecord.getYSize() != mRules.getBoardYSize()
+				|| aRecord.getWinLineLength() != mRules.getWinLineLength() || aRecord.getNumOfPlayers() != mRules.getNumOfPlayers())
+		{
+			throw new IllegalArgumentException("Игра сыграна не по правилам книги.");
+		}
+		int plies = Math.min(aRecord.getMovesCount(), mDepth);
+		ActionFigure winner = aRecord.getWinner();
+		for (int ply = 0; ply < plies; ply++)
+		{
+			ActionFigure figure = aRecord.getFigure(ply);
+			int cell = aRecord.getCell(ply);
+			int symmetry = mSymmetry.getCanonicalSymmetry();
+			long hash = mSymmetry.getHash(symmetry);
+			int move = mSymmetry.toVariant(cell, symmetry);
+			for (int s = symmetry + 1; s < mSymmetry.getSymmetriesCount(); s++)
+			{
+				if (mSymmetry.getHash(s) == hash)
+				{
+					move = Math.min(move, mSymmetry.toVariant(cell, s)); // Симметрия, сохраняющая позицию: ходы равноценны.
+				}
+			}
+			int[] entry = mStatistics.computeIfAbsent(hash ^ OpeningBook.getFigureKey(figure), key -> new HashMap<>())
+					.computeIfAbsent(move, key -> new int[2]);
+			entry[0]++;
+			entry[1] += (winner == figure) ? 2 : (winner == null) ? 1 : 0;
+			mBoard.setAtCell(cell, figure.ordinal() + 1);
+		}
+		for (int ply = 0; ply < plies; ply++)
+		{
+			mBoard.setAtCell(aRecord.getCell(ply), 0);
+		}
+		mGamesCount++;
+	}
+
+	/**
+	 * Добавить в статистику записи ранее построенной книги (для продолжения ее построения).
+	 * @param aBook - Книга.
+	 * @throws IllegalArgumentException - Если книга собрана по другим правилам или с другой глубиной, то вызывается исключение.
+	 */
+	public synchronized void addBook(OpeningBook aBook) throws IllegalArgumentException
+	{
+		if (!aBook.isMatching(mRules))
+		{
+			throw new IllegalArgumentException("Книга собрана по другим правилам.");
+		}
+		if (aBook.getDepth() != mDepth)
+		{
+			// Иначе глубина в заголовке записанной книги не соответствовала бы ее статистике.
+			throw new IllegalArgumentException("Книга собрана с другой глубиной: " + aBook.getDepth() + " (ожидается " + mDepth + ").");
+		}
+		for (int i = 0; i < aBook.getRecordsCount(); i++)
+		{
+			int[] entry = mStatistics.computeIfAbsent(aBook.getKey(i), key -> new HashMap<>())
+					.computeIfAbsent(aBook.getMove(i), key -> new int[2]);
+			entry[0] += aBook.getGames(i);
+			entry[1] += aBook.getScore(i);
+		}
+	}
+
+	/**
+	 * Записать книгу в файл.
+	 * Файл сначала пишется во временный и затем заменяет прежний, поэтому прерванная запись не оставляет испорченный файл.
+	 * @param aFile - Файл книги.
+	 * @return - Количество записей в книге.
+	 * @throws IOException - Если не удалось записать файл, то вызывается исключение.
+	 */
+	public synchronized int write(Path aFile) throws IOException
+	{
+		long[] keys = new long[mStatistics.size()];
+		int keysCount = 0;
+		for (Long key: mStatistics.keySet())
+		{
+			keys[keysCount++] = key;
+		}
+		Arrays.sort(keys);
+		int result = 0;
+		for (HashMap<Integer, int[]> moves: mStatistics.values())
+		{
+			for (int[] entry: moves.values())
+			{
+				if (entry[0] >= mMinGames)
+				{
+					result++;
+				}
+			}
+		}
+		Path temp = aFile.resolveSibling(aFile.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)))
+		{
+			out.writeInt(OpeningBook.MAGIC);
+			out.writeByte(mRules.getBoardXSize());
+			out.writeByte(mRules.getBoardYSize());
+			out.writeByte(mRules.getWinLineLength());
+			out.writeByte(mRules.getNumOfPlayers());
+			out.writeInt(mDepth);
+			out.writeInt(result);
+			for (long key: keys)
+			{
+				HashMap<Integer, int[]> moves = mStatistics.get(key);
+				int[] sortedMoves = new int[moves.size()];
+				int movesCount = 0;
+				for (Integer move: moves.keySet())
+				{
+					sortedMoves[movesCount++] = move;
+				}
+				Arrays.sort(sortedMoves);
+				for (int move: sortedMoves)
+				{
+					int[] entry = moves.get(move);
+					if (entry[0] >= mMinGames)
+					{
+						out.writeLong(key);
+						out.writeInt(move);
+						out.writeInt(entry[0]);
+						out.writeInt(entry[1]);
+					}
+				}
+			}
+		}
+		Files.move(temp, aFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return result;
+	}
+
+	/**
+	 * Точка входа для построения книги по играм компьютерных игроков из командной строки.
+	 * Если файл книги уже существует, то новые игры добавляются к ее статистике.
+	 * Параметры: ширина_доски высота_доски длина_линии количество_игр глубина файл_книги тип_игрока_1 тип_игрока_2 [тип_игрока_3 ...]
+	 * Например: 15 15 5 1000 8 book-15x15-5-2.obk EASY EASY
+	 * @param args - Параметры командной строки.
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length < 8)
+		{
+			printUsage();
+			return;
+		}
+		Rules rules;
+		int gamesCount;
+		OpeningBookBuilder builder;
+		PlayerType[] playerTypes = new PlayerType[args.length - 6];
+		try
+		{
+			int boardXSize = Integer.parseInt(args[0]);
+			int boardYSize = Integer.parseInt(args[1]);
+			int winLineLength = Integer.parseInt(args[2]);
+			gamesCount = Integer.parseInt(args[3]);
+			int depth = Integer.parseInt(args[4]);
+			for (int i = 0; i < playerTypes.length; i++)
+			{
+				playerTypes[i] = PlayerType.valueOf(args[6 + i].toUpperCase());
+			}
+			rules = new Rules(boardXSize, boardYSize, winLineLength, new Rules().getNumErrorsAllowed(), playerTypes.length);
+			builder = new OpeningBookBuilder(rules, depth);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println("Некорректные параметры: " + e.getLocalizedMessage());
+			printUsage();
+			return;
+		}
+		Path file = Paths.get(args[5]);
+		try
+		{
+			if (Files.isRegularFile(file))
+			{
+				builder.addBook(OpeningBook.open(file));
+			}
+			Simulation simulation = new Simulation(rules, playerTypes);
+			simulation.setGameListener(builder::addGame);
+			long start = System.currentTimeMillis();
+			System.out.print(rules);
+			System.out.println(simulation.run(gamesCount));
+			simulation.close();
+			int recordsCount = builder.write(file);
+			System.out.println("Построена книга " + file + ": записей " + recordsCount + ", время " + (System.currentTimeMillis() - start) + " мс.");
+		}
+		catch (PlayerException | IllegalArgumentException | IOException e)
+		{
+			String eMsg = e.getLocalizedMessage();
+			System.out.println("Книга не может быть построена по причине: " + (eMsg != null ? eMsg : "Неизвестно."));
+		}
+	}
+
+	/**
+	 * Вывести в консоль описание параметров командной строки.
+	 */
+	private static void printUsage()
+	{
+		System.out.println("Параметры: ширина_доски высота_доски длина_линии количество_игр глубина файл_книги тип_игрока_1 тип_игрока_2 [тип_игрока_3 ...]");
+		System.out.println("Типы игроков: RANDOM, EASY, CLEVER, MONTE_CARLO, PERFECT.");
+		System.out.println("Например: 15 15 5 1000 8 book-15x15-5-2.obk EASY EASY");
+	}
+
+}
@@ -0,0 +1,782 @@
+package ua.net.hj.cz.analytics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.core.ZobristKeys;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.BoardSymmetry;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает решатель позиций поиском по числам доказательства (df-pn, поиск в глубину по числам доказательства).
+ * Решатель доказывает теоретико-игровое значение позиции для заданного игрока: выигрыш, ничья или проигрыш.
+ * Поиск по числам доказательства отвечает только на вопрос "да/нет", поэтому значение находится в два прохода:
+ * сначала доказывается или опровергается выигрыш игрока, затем (если выигрыша нет) - то, что игрок не проигрывает.
+ * Если игроков больше двух, то игрок играет против "команды" всех остальных игроков (паранойная модель):
+ * проигрыш означает, что команда может заставить кого-то из своих построить линию раньше игрока.
+ * Числа доказательства хранятся в таблице фиксированного размера (корзины по две записи, как в TranspositionTable):
+ * первая запись корзины заменяется только результатом не меньшей трудоемкости, вторая - всегда.
+ * Вытесненные записи лишь замедляют поиск, но не искажают результат.
+ * Из ходов узла, ведущих к симметричным позициям (см. BoardSymmetry), перебирается только один.
+ * Ключом таблицы при этом остается обычный хэш позиции: общие записи для симметричных позиций из разных ветвей
+ * добавляют в дерево транспозиций, числа которых учитываются в предках повторно, и поиск на практике замедляется.
+ * Таблицу можно периодически сохранять в файл контрольной точки и загружать из него,
+ * поэтому долгое решение продолжается после перезапуска с того места, где было прервано.
+ * Перебираются все свободные клеточки, поэтому решатель предназначен для маленьких досок.
+ * @author Hobbit Jedi
+ */
+public class ProofNumberSearch {
+	/**
+	 * Описывает теоретико-игровое значение позиции.
+	 */
+	public enum Outcome
+	{
+		WIN    ("Выигрыш"),      // Игрок выигрывает при любой игре соперников.
+		DRAW   ("Ничья"),        // Игрок не проигрывает, но и выигрыш не форсирует.
+		LOSS   ("Проигрыш"),     // Соперники выигрывают при любой игре игрока.
+		UNKNOWN("Не определено") // Решение прервано до доказательства.
+		;
+
+		private final String mName; // Представление значения при выводе на экран.
+
+		private Outcome(String aName)
+		{
+			mName = aName;
+		}
+
+		@Override
+		public String toString()
+		{
+			return mName;
+		}
+	}
+
+	public static final int DEFAULT_TABLE_SIZE = 64;                 // Размер таблицы по умолчанию (МБ).
+	private static final int INFINITY = 100000000;                   // Бесконечное число доказательства.
+	private static final int ENTRY_BYTES = 20;                       // Размер одной записи в байтах.
+	private static final int GOAL_WIN = 0;                           // Цель: игрок выигрывает.
+	private static final int GOAL_NOT_LOSE = 1;                      // Цель: игрок не проигрывает.
+	private static final long[] GOAL_KEYS = {0x243F6A8885A308D3L, 0x13198A2E03707344L}; // Ключи целей для хэша позиции.
+	private static final byte STATE_OPEN = 0;                        // Позиция после хода не завершена.
+	private static final byte STATE_TRUE = 1;                        // Игра завершена, цель достигнута.
+	private static final byte STATE_FALSE = 2;                       // Игра завершена, цель не достигнута.
+	private static final int CHECKPOINT_MAGIC = 0x504E5333;          // Сигнатура файла контрольной точки ("PNS3").
+	private static final int CLOCK_CHECK_MASK = 0xFFF;               // Маска количества узлов между проверками часов.
+
+	private final Rules mRules;          // Правила, по которым ведется игра.
+	private final long[] mKeys;          // Хэши позиций.
+	private final int[] mProofs;         // Числа доказательства.
+	private final int[] mDisproofs;      // Числа опровержения.
+	private final int[] mWorks;          // Трудоемкость (количество узлов поддерева) записи. 0 - запись пуста.
+	private final int mBucketsMask;      // Маска номера корзины.
+	private Board mBoard;                // Доска, на которой выполняются пробные ходы.
+	private BoardSymmetry mSymmetry;     // Симметрии доски для отсечения симметричных ходов.
+	private int[] mPlayersSequence;      // Порядок хода игроков.
+	private int mPlayerID;               // Идентификатор игрока, для которого доказывается значение.
+	private int mGoal;                   // Текущая цель доказательства.
+	private long mGoalKey;               // Ключ текущей цели и игрока для хэша позиции.
+	private int[][] mCells;              // Буферы ходов для каждого уровня дерева.
+	private byte[][] mStates;            // Буферы состояний после ходов для каждого уровня дерева.
+	private long[][] mChildKeys;         // Буферы хэшей позиций после ходов для каждого уровня дерева.
+	private long[][] mCanonicalKeys;     // Буферы хэшей канонического вида позиций после ходов для каждого уровня дерева.
+	private long mNodesLimit;            // Ограничение количества узлов на одно решение. 0 - неограничено.
+	private long mNodesCount;            // Количество рассмотренных в последнем решении узлов.
+	private boolean mIsAborted;          // Признак того, что решение прервано.
+	private int mBestMove;               // Лучший ход последнего решения.
+	private Path mCheckpointFile;        // Файл контрольной точки. null - не используется.
+	private long mCheckpointInterval;    // Интервал сохранения контрольной точки (мс).
+	private long mNextCheckpoint;        // Момент (System.currentTimeMillis()) следующего сохранения контрольной точки.
+	private boolean mIsCheckpointLoaded; // Признак того, что контрольная точка уже загружалась.
+
+	/**
+	 * Создать решатель.
+	 * @param aRules - Правила, по которым ведется игра.
+	 * @param aTableSizeMegabytes - Максимальный объем памяти под таблицу в мегабайтах (не меньше 1).
+	 */
+	public ProofNumberSearch(Rules aRules, int aTableSizeMegabytes)
+	{
+		if (aTableSizeMegabytes < 1)
+		{
+			throw new IllegalArgumentException("Размер таблицы решателя должен быть положительным: " + aTableSizeMegabytes);
+		}
+		mRules = aRules;
+		long maxEntries = ((long)aTableSizeMegabytes << 20) / ENTRY_BYTES;
+		int buckets = Integer.highestOneBit((int)Math.min(maxEntries >>> 1, 1 << 29));
+		mBucketsMask = buckets - 1;
+		mKeys = new long[buckets << 1];
+		mProofs = new int[buckets << 1];
+		mDisproofs = new int[buckets << 1];
+		mWorks = new int[buckets << 1];
+		mCells = new int[0][];
+		mStates = new byte[0][];
+		mChildKeys = new long[0][];
+		mCanonicalKeys = new long[0][];
+		mNodesLimit = 0;
+		mCheckpointFile = null;
+		mBestMove = -1;
+	}
+
+	/**
+	 * Установить ограничение количества узлов на одно решение.
+	 * @param aNodesLimit - Максимальное количество узлов. 0 - неограничено.
+	 */
+	public void setNodesLimit(long aNodesLimit)
+	{
+		mNodesLimit = Math.max(aNodesLimit, 0L);
+	}
+
+	/**
+	 * Установить файл контрольной точки.
+	 * Если файл существует и записан для тех же правил, порядка хода и размера таблицы,
+	 * то таблица загружается из него перед первым решением.
+	 * Во время решения таблица сохраняется в файл с заданным интервалом и по завершении каждого решения.
+	 * @param aFile - Файл контрольной точки. null - не использовать контрольные точки.
+	 * @param aIntervalMillis - Интервал сохранения (мс).
+	 */
+	public void setCheckpoint(Path aFile, long aIntervalMillis)
+	{
+		if (aIntervalMillis <= 0)
+		{
+			throw new IllegalArgumentException("Интервал сохранения контрольной точки должен быть положительным: " + aIntervalMillis);
+		}
+		mCheckpointFile = aFile;
+		mCheckpointInterval = aIntervalMillis;
+		mIsCheckpointLoaded = false;
+	}
+
+	/**
+	 * Получить количество рассмотренных в последнем решении узлов.
+	 * @return - Количество узлов.
+	 */
+	public long getNodesCount()
+	{
+		return mNodesCount;
+	}
+
+	/**
+	 * Получить лучший ход последнего решения.
+	 * При выигрыше это ход, ведущий к выигрышу, при ничьей - ход, сохраняющий ничью,
+	 * при проигрыше - любой ход.
+	 * @return - Индекс клеточки хода. -1, если ходит не игрок, для которого решалась позиция, или значение не определено.
+	 */
+	public int getBestMove()
+	{
+		return mBestMove;
+	}
+
+	/**
+	 * Очистить таблицу.
+	 */
+	public void clear()
+	{
+		Arrays.fill(mWorks, 0);
+	}
+
+	/**
+	 * Доказать значение позиции для игрока.
+	 * Предполагается, что в позиции еще никто не выиграл.
+	 * @param aBoard - Доска с позицией (не изменяется).
+	 * @param aPlayersSequence - Порядок хода игроков.
+	 * @param aMoverID - Идентификатор игрока, который ходит в позиции.
+	 * @param aPlayerID - Идентификатор игрока, для которого доказывается значение.
+	 * @return - Значение позиции для игрока. UNKNOWN, если решение прервано по ограничению количества узлов.
+	 * @throws IllegalArgumentException - Если игроков нет в порядке хода, то вызывается исключение.
+	 * @throws IllegalStateException - Если не удалось прочитать или записать контрольную точку, то вызывается исключение.
+	 */
+	public Outcome solve(Board aBoard, int[] aPlayersSequence, int aMoverID, int aPlayerID) throws IllegalArgumentException, IllegalStateException
+	{
+		int moverIndex = indexOf(aPlayersSequence, aMoverID);
+		indexOf(aPlayersSequence, aPlayerID);
+		if (mPlayersSequence != null && !Arrays.equals(mPlayersSequence, aPlayersSequence))
+		{
+			clear(); // Числа доказательства другого порядка хода не годятся.
+		}
+		mPlayersSequence = aPlayersSequence.clone();
+		mPlayerID = aPlayerID;
+		mBoard = aBoard.copy();
+		if (mSymmetry == null || !mSymmetry.isSuitable(mBoard))
+		{
+			mSymmetry = new BoardSymmetry(mBoard.getXSize(), mBoard.getYSize());
+		}
+		mSymmetry.attach(mBoard);
+		mNodesCount = 0;
+		mIsAborted = false;
+		mBestMove = -1;
+		int maxDepth = mBoard.getEmptyCellsCount() + 1;
+		if (mCells.length < maxDepth)
+		{
+			mCells = new int[maxDepth][mBoard.getEmptyCellsCount()];
+			mStates = new byte[maxDepth][mBoard.getEmptyCellsCount()];
+			mChildKeys = new long[maxDepth][mBoard.getEmptyCellsCount()];
+			mCanonicalKeys = new long[maxDepth][mBoard.getEmptyCellsCount()];
+		}
+		if (mCheckpointFile != null)
+		{
+			if (!mIsCheckpointLoaded)
+			{
+				loadCheckpoint();
+				mIsCheckpointLoaded = true;
+			}
+			mNextCheckpoint = System.currentTimeMillis() + mCheckpointInterval;
+		}
+		Outcome result;
+		if (mBoard.getEmptyCellsCount() == 0)
+		{
+			result = Outcome.DRAW;
+		}
+		else
+		{
+			int win = prove(GOAL_WIN, moverIndex);
+			if (win == STATE_TRUE)
+			{
+				result = Outcome.WIN;
+			}
+			else if (win == STATE_OPEN)
+			{
+				result = Outcome.UNKNOWN;
+			}
+			else
+			{
+				int notLose = prove(GOAL_NOT_LOSE, moverIndex);
+				result = (notLose == STATE_TRUE) ? Outcome.DRAW : (notLose == STATE_FALSE) ? Outcome.LOSS : Outcome.UNKNOWN;
+			}
+			if (result == Outcome.UNKNOWN)
+			{
+				mBestMove = -1;
+			}
+		}
+		mSymmetry.detach();
+		if (mCheckpointFile != null)
+		{
+			saveCheckpoint();
+		}
+		return result;
+	}
+
+	/**
+	 * Доказать или опровергнуть цель в корне.
+	 * @param aGoal - Цель доказательства.
+	 * @param aMoverIndex - Номер ходящего игрока в порядке хода.
+	 * @return - STATE_TRUE - цель доказана, STATE_FALSE - опровергнута, STATE_OPEN - решение прервано.
+	 */
+	private int prove(int aGoal, int aMoverIndex)
+	{
+		mGoal = aGoal;
+		mGoalKey = GOAL_KEYS[aGoal] ^ Long.rotateLeft(ZobristKeys.getTurnKey(mPlayerID), 17);
+		searchNode(0, aMoverIndex, INFINITY, INFINITY);
+		int result = STATE_OPEN;
+		int slot = probe(getKey(aMoverIndex));
+		if (slot >= 0 && mProofs[slot] == 0)
+		{
+			result = STATE_TRUE;
+		}
+		else if (slot >= 0 && mDisproofs[slot] == 0)
+		{
+			result = STATE_FALSE;
+		}
+		if (mPlayersSequence[aMoverIndex] == mPlayerID)
+		{
+			mBestMove = selectRootMove(aMoverIndex);
+		}
+		return result;
+	}
+
+	/**
+	 * Развить узел дерева (MID алгоритма df-pn): искать, пока числа узла не достигнут порогов.
+	 * В узлах игрока, для которого доказывается цель, достаточно одного доказанного хода (узел "ИЛИ"),
+	 * в узлах соперников доказаны должны быть все ходы (узел "И").
+	 * @param aDepth - Уровень узла в дереве.
+	 * @param aMoverIndex - Номер ходящего игрока в порядке хода.
+	 * @param aProofThreshold - Порог числа доказательства.
+	 * @param aDisproofThreshold - Порог числа опровержения.
+	 */
+	private void searchNode(int aDepth, int aMoverIndex, int aProofThreshold, int aDisproofThreshold)
+	{
+		mNodesCount++;
+		if (mNodesLimit > 0 && mNodesCount >= mNodesLimit)
+		{
+			mIsAborted = true;
+		}
+		if (mCheckpointFile != null && (mNodesCount & CLOCK_CHECK_MASK) == 0 && System.currentTimeMillis() >= mNextCheckpoint)
+		{
+			saveCheckpoint();
+			mNextCheckpoint = System.currentTimeMillis() + mCheckpointInterval;
+		}
+		long startNodesCount = mNodesCount;
+		long key = getKey(aMoverIndex);
+		int mover = mPlayersSequence[aMoverIndex];
+		boolean isOrNode = (mover == mPlayerID);
+		int nextMoverIndex = (aMoverIndex + 1) % mPlayersSequence.length;
+		int movesCount = generateMoves(aDepth, mover, nextMoverIndex);
+		int[] cells = mCells[aDepth];
+		int proof;
+		int disproof;
+		while (true)
+		{
+			// Числа узла по числам потомков и лучший для развития потомок.
+			int sum = 0;
+			int best = -1;
+			int bestValue = INFINITY + 1;
+			int secondValue = INFINITY + 1;
+			int bestProof = 0;
+			int bestDisproof = 0;
+			for (int i = 0; i < movesCount; i++)
+			{
+				int childProof;
+				int childDisproof;
+				byte state = mStates[aDepth][i];
+				if (state == STATE_TRUE)
+				{
+					childProof = 0;
+					childDisproof = INFINITY;
+				}
+				else if (state == STATE_FALSE)
+				{
+					childProof = INFINITY;
+					childDisproof = 0;
+				}
+				else
+				{
+					int slot = probe(mChildKeys[aDepth][i]);
+					childProof = (slot >= 0) ? mProofs[slot] : 1;
+					childDisproof = (slot >= 0) ? mDisproofs[slot] : 1;
+				}
+				int value = isOrNode ? childProof : childDisproof;
+				sum = Math.min(sum + (isOrNode ? childDisproof : childProof), INFINITY);
+				if (value < bestValue)
+				{
+					secondValue = bestValue;
+					bestValue = value;
+					best = i;
+					bestProof = childProof;
+					bestDisproof = childDisproof;
+				}
+				else if (value < secondValue)
+				{
+					secondValue = value;
+				}
+			}
+			if (isOrNode)
+			{
+				proof = bestValue;
+				disproof = sum;
+			}
+			else
+			{
+				proof = sum;
+				disproof = bestValue;
+			}
+			if (proof >= aProofThreshold || disproof >= aDisproofThreshold || mIsAborted)
+			{
+				break;
+			}
+			// Пороги потомка: развивать его, пока он остается лучшим и числа узла не превысят пороги.
+			int childProofThreshold;
+			int childDisproofThreshold;
+			if (isOrNode)
+			{
+				childProofThreshold = Math.min(aProofThreshold, secondValue + 1);
+				childDisproofThreshold = (int)Math.min((long)aDisproofThreshold - disproof + bestDisproof, INFINITY);
+			}
+			else
+			{
+				childProofThreshold = (int)Math.min((long)aProofThreshold - proof + bestProof, INFINITY);
+				childDisproofThreshold = Math.min(aDisproofThreshold, secondValue + 1);
+			}
+			mBoard.makeMove(cells[best], mover);
+			searchNode(aDepth + 1, nextMoverIndex, childProofThreshold, childDisproofThreshold);
+			mBoard.unmakeMove();
+		}
+		store(key, proof, disproof, mNodesCount - startNodesCount + 1);
+	}
+
+	/**
+	 * Сформировать ходы узла: все свободные клеточки, состояние игры после каждого хода и хэши позиций после ходов.
+	 * Из ходов, приводящих к симметричным позициям, оставляется только первый:
+	 * иначе одна и та же позиция учитывалась бы в числах узла несколько раз.
+	 * @param aDepth - Уровень узла в дереве.
+	 * @param aMover - Идентификатор ходящего игрока.
+	 * @param aNextMoverIndex - Номер следующего игрока в порядке хода.
+	 * @return - Количество ходов.
+	 */
+	private int generateMoves(int aDepth, int aMover, int aNextMoverIndex)
+	{
+		int[] cells = mCells[aDepth];
+		byte[] states = mStates[aDepth];
+		long[] keys = mChildKeys[aDepth];
+		long[] canonicalKeys = mCanonicalKeys[aDepth];
+		int movesCount = mBoard.getEmptyCellsCount();
+		for (int i = 0; i < movesCount; i++)
+		{
+			cells[i] = mBoard.getEmptyCell(i);
+		}
+		Arrays.sort(cells, 0, movesCount); // Порядок ходов не зависит от истории свободных клеточек.
+		int result = 0;
+		for (int i = 0; i < movesCount; i++)
+		{
+			int cell = cells[i];
+			mBoard.makeMove(cell, aMover);
+			cells[result] = cell;
+			if (mRules.isWin(mBoard, cell))
+			{
+				states[result++] = (aMover == mPlayerID) ? STATE_TRUE : STATE_FALSE;
+			}
+			else if (mBoard.getEmptyCellsCount() == 0)
+			{
+				states[result++] = (mGoal == GOAL_NOT_LOSE) ? STATE_TRUE : STATE_FALSE;
+			}
+			else
+			{
+				long canonicalKey = mSymmetry.getCanonicalHash();
+				int duplicate = 0;
+				while (duplicate < result && (states[duplicate] != STATE_OPEN || canonicalKeys[duplicate] != canonicalKey))
+				{
+					duplicate++;
+				}
+				if (duplicate == result)
+				{
+					states[result] = STATE_OPEN;
+					canonicalKeys[result] = canonicalKey;
+					keys[result++] = getKey(aNextMoverIndex);
+				}
+			}
+			mBoard.unmakeMove();
+		}
+		return result;
+	}
+
+	/**
+	 * Выбрать ход в корне по числам потомков.
+	 * @param aMoverIndex - Номер ходящего игрока в порядке хода.
+	 * @return - Индекс клеточки хода. -1, если ходов нет.
+	 */
+	private int selectRootMove(int aMoverIndex)
+	{
+		int movesCount = generateMoves(0, mPlayersSequence[aMoverIndex], (aMoverIndex + 1) % mPlayersSequence.length);
+		int result = -1;
+		int bestProof = INFINITY + 1;
+		int bestDisproof = -1;
+		for (int i = 0; i < movesCount; i++)
+		{
+			int childProof = 1;
+			int childDisproof = 1;
+			if (mStates[0][i] == STATE_TRUE)
+			{
+				childProof = 0;
+				childDisproof = INFINITY;
+			}
+			else if (mStates[0][i] == STATE_FALSE)
+			{
+				childProof = INFINITY;
+				childDisproof = 0;
+			}
+			else
+			{
+				int slot = probe(mChildKeys[0][i]);
+				if (slot >= 0)
+				{
+					childProof = mProofs[slot];
+					childDisproof = mDisproofs[slot];
+				}
+			}
+			// Предпочитаем наименьшее число доказательства, при равенстве - наибольшее число опровержения.
+			if (childProof < bestProof || (childProof == bestProof && childDisproof > bestDisproof))
+			{
+				bestProof = childProof;
+				bestDisproof = childDisproof;
+				result = mCells[0][i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Получить хэш текущей позиции с учетом очереди хода, цели и игрока.
+	 * @param aMoverIndex - Номер ходящего игрока в порядке хода.
+	 * @return - Хэш позиции.
+	 */
+	private long getKey(int aMoverIndex)
+	{
+		return mBoard.getHash() ^ ZobristKeys.getTurnKey(mPlayersSequence[aMoverIndex]) ^ mGoalKey;
+	}
+
+	/**
+	 * Найти запись для позиции.
+	 * @param aKey - Хэш позиции.
+	 * @return - Номер записи. -1, если позиции в таблице нет.
+	 */
+	private int probe(long aKey)
+	{
+		int result = -1;
+		int slot = ((int)aKey & mBucketsMask) << 1;
+		if (mWorks[slot] != 0 && mKeys[slot] == aKey)
+		{
+			result = slot;
+		}
+		else if (mWorks[slot + 1] != 0 && mKeys[slot + 1] == aKey)
+		{
+			result = slot + 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Сохранить числа позиции.
+	 * @param aKey - Хэш позиции.
+	 * @param aProof - Число доказательства.
+	 * @param aDisproof - Число опровержения.
+	 * @param aWork - Трудоемкость (количество узлов поддерева).
+	 */
+	private void store(long aKey, int aProof, int aDisproof, long aWork)
+	{
+		int work = (int)Math.min(Math.max(aWork, 1L), Integer.MAX_VALUE);
+		int slot = ((int)aKey & mBucketsMask) << 1;
+		if (mKeys[slot + 1] == aKey && mWorks[slot + 1] != 0)
+		{
+			slot++; // Позиция уже записана во вторую запись корзины.
+		}
+		else if (mWorks[slot] != 0 && mKeys[slot] != aKey && mWorks[slot] > work)
+		{
+			slot++; // Более трудоемкий результат не затираем, пишем во вторую запись корзины.
+		}
+		mKeys[slot] = aKey;
+		mProofs[slot] = aProof;
+		mDisproofs[slot] = aDisproof;
+		mWorks[slot] = work;
+	}
+
+	/**
+	 * Найти номер игрока в порядке хода.
+	 * @param aPlayersSequence - Порядок хода игроков.
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @return - Номер игрока в порядке хода.
+	 * @throws IllegalArgumentException - Если игрока нет в порядке хода, то вызывается исключение.
+	 */
+	private static int indexOf(int[] aPlayersSequence, int aPlayerID) throws IllegalArgumentException
+	{
+		for (int i = 0; i < aPlayersSequence.length; i++)
+		{
+			if (aPlayersSequence[i] == aPlayerID)
+			{
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Игрок " + aPlayerID + " отсутствует в порядке хода.");
+	}
+
+	/**
+	 * Сохранить таблицу в файл контрольной точки.
+	 * Файл сначала пишется во временный и затем заменяет прежний, поэтому прерывание записи не портит контрольную точку.
+	 * @throws IllegalStateException - Если не удалось записать файл, то вызывается исключение.
+	 */
+	private void saveCheckpoint() throws IllegalStateException
+	{
+		Path temp = mCheckpointFile.resolveSibling(mCheckpointFile.getFileName() + ".tmp");
+		try
+		{
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)))
+			{
+				writeHeader(out);
+				for (int slot = 0; slot < mKeys.length; slot++)
+				{
+					if (mWorks[slot] != 0)
+					{
+						out.writeInt(slot);
+						out.writeLong(mKeys[slot]);
+						out.writeInt(mProofs[slot]);
+						out.writeInt(mDisproofs[slot]);
+						out.writeInt(mWorks[slot]);
+					}
+				}
+				out.writeInt(-1);
+			}
+			Files.move(temp, mCheckpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Не удалось сохранить контрольную точку " + mCheckpointFile + ".", e);
+		}
+	}
+
+	/**
+	 * Загрузить таблицу из файла контрольной точки.
+	 * Если файла нет или он записан для других правил, порядка хода или размера таблицы, то таблица не изменяется.
+	 * @throws IllegalStateException - Если не удалось прочитать файл, то вызывается исключение.
+	 */
+	private void loadCheckpoint() throws IllegalStateException
+	{
+		if (!Files.isRegularFile(mCheckpointFile))
+		{
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(mCheckpointFile), 1 << 16)))
+		{
+			if (isHeaderMatching(in))
+			{
+				clear();
+				int slot = in.readInt();
+				while (slot >= 0)
+				{
+					mKeys[slot] = in.readLong();
+					mProofs[slot] = in.readInt();
+					mDisproofs[slot] = in.readInt();
+					mWorks[slot] = in.readInt();
+					slot = in.readInt();
+				}
+			}
+		}
+		catch (IOException | IndexOutOfBoundsException e)
+		{
+			throw new IllegalStateException("Не удалось загрузить контрольную точку " + mCheckpointFile + ".", e);
+		}
+	}
+
+	/**
+	 * Записать заголовок контрольной точки: правила, порядок хода и размер таблицы.
+	 * @param aOut - Поток записи.
+	 * @throws IOException - Если не удалось записать, то вызывается исключение.
+	 */
+	private void writeHeader(DataOutputStream aOut) throws IOException
+	{
+		aOut.writeInt(CHECKPOINT_MAGIC);
+		aOut.writeInt(mRules.getBoardXSize());
+		aOut.writeInt(mRules.getBoardYSize());
+		aOut.writeInt(mRules.getWinLineLength());
+		aOut.writeInt(mPlayersSequence.length);
+		for (int playerID: mPlayersSequence)
+		{
+			aOut.writeInt(playerID);
+		}
+		aOut.writeInt(mKeys.length);
+	}
+
+	/**
+	 * Прочитать заголовок контрольной точки и сравнить его с параметрами решателя.
+	 * @param aIn - Поток чтения.
+	 * @return - true - контрольная точка подходит решателю.
+	 * @throws IOException - Если не удалось прочитать, то вызывается исключение.
+	 */
+	private boolean isHeaderMatching(DataInputStream aIn) throws IOException
+	{
+		boolean result = aIn.readInt() == CHECKPOINT_MAGIC
+				&& aIn.readInt() == mRules.getBoardXSize()
+				&& aIn.readInt() == mRules.getBoardYSize()
+				&& aIn.readInt() == mRules.getWinLineLength()
+				&& aIn.readInt() == mPlayersSequence.length;
+		if (result)
+		{
+			int[] sequence = new int[mPlayersSequence.length];
+			for (int i = 0; i < sequence.length; i++)
+			{
+				sequence[i] = aIn.readInt();
+			}
+			result = Arrays.equals(sequence, mPlayersSequence) && aIn.readInt() == mKeys.length;
+		}
+		return result;
+	}
+
+	/**
+	 * Точка входа для решения пустой доски из командной строки.
+	 * Доказывает значение начальной позиции для первого игрока, а затем - значение каждого его первого хода,
+	 * и сравнивает значения ходов с весами досок GameTreeNode: пара ходов считается инверсией,
+	 * если лучший по доказанному значению ход имеет меньший эвристический вес.
+	 * Параметры: ширина_доски высота_доски длина_линии игроков [таблица_МБ [файл_контрольной_точки]]
+	 * Например: 4 4 3 2 64 solve-4x4x3.pns
+	 * @param args - Параметры командной строки.
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length < 4)
+		{
+			printUsage();
+			return;
+		}
+		Rules rules;
+		ProofNumberSearch solver;
+		try
+		{
+			int boardXSize = Integer.parseInt(args[0]);
+			int boardYSize = Integer.parseInt(args[1]);
+			int winLineLength = Integer.parseInt(args[2]);
+			int playersCount = Integer.parseInt(args[3]);
+			int tableSize = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_TABLE_SIZE;
+			if (playersCount < 2 || playersCount > ActionFigure.values().length)
+			{
+				throw new IllegalArgumentException("Количество игроков должно быть от 2 до " + ActionFigure.values().length + ": " + playersCount);
+			}
+			rules = new Rules(boardXSize, boardYSize, winLineLength, new Rules().getNumErrorsAllowed(), playersCount);
+			solver = new ProofNumberSearch(rules, tableSize);
+			if (args.length > 5)
+			{
+				solver.setCheckpoint(Paths.get(args[5]), 60000L);
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println("Некорректные параметры: " + e.getLocalizedMessage());
+			printUsage();
+			return;
+		}
+		int[] sequence = new int[rules.getNumOfPlayers()];
+		Board board = new Board(rules.getBoardXSize(), rules.getBoardYSize());
+		for (int i = 0; i < sequence.length; i++)
+		{
+			sequence[i] = i + 1;
+			board.setPlayerFigure(sequence[i], ActionFigure.values()[i]);
+		}
+		int player = sequence[0];
+		long start = System.currentTimeMillis();
+		Outcome outcome = solver.solve(board, sequence, player, player);
+		System.out.println(rules);
+		System.out.println("Значение начальной позиции для первого игрока: " + outcome
+				+ " (узлов: " + solver.getNodesCount() + ", время: " + (System.currentTimeMillis() - start) + " мс)");
+		int cellsCount = board.getCellsCount();
+		Outcome[] outcomes = new Outcome[cellsCount];
+		double[] weights = new double[cellsCount];
+		for (int cell = 0; cell < cellsCount; cell++)
+		{
+			board.setAtCell(cell, player);
+			outcomes[cell] = rules.isWin(board, cell) ? Outcome.WIN : solver.solve(board, sequence, sequence[1 % sequence.length], player);
+			weights[cell] = new GameTreeNode(player, board, rules).getBoardWeigtht();
+			board.setAtCell(cell, 0);
+			System.out.println("Ход (" + (cell % rules.getBoardXSize()) + ", " + (cell / rules.getBoardXSize()) + "): " + outcomes[cell] + ", вес GameTreeNode: " + weights[cell]);
+		}
+		int pairs = 0;
+		int inversions = 0;
+		for (int i = 0; i < cellsCount; i++)
+		{
+			for (int j = 0; j < cellsCount; j++)
+			{
+				if (outcomes[i] != Outcome.UNKNOWN && outcomes[j] != Outcome.UNKNOWN && outcomes[i].ordinal() < outcomes[j].ordinal())
+				{
+					pairs++;
+					if (weights[i] < weights[j])
+					{
+						inversions++;
+					}
+				}
+			}
+		}
+		System.out.println("Инверсий весов GameTreeNode: " + inversions + " из " + pairs + " пар ходов с разными значениями.");
+	}
+
+	/**
+	 * Вывести в консоль описание параметров командной строки.
+	 */
+	private static void printUsage()
+	{
+		System.out.println("Параметры: ширина_доски высота_доски длина_линии игроков [таблица_МБ [файл_контрольной_точки]]");
+		System.out.println("Таблица по умолчанию: " + DEFAULT_TABLE_SIZE + " МБ. Контрольная точка сохраняется раз в минуту и по завершении.");
+		System.out.println("Например: 4 4 3 2 64 solve-4x4x3.pns");
+	}
+
+}
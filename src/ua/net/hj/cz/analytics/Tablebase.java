@@ -0,0 +1,357 @@
+package ua.net.hj.cz.analytics;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.BoardSymmetry;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает таблицу идеальной игры (эндшпильную базу) для маленьких досок и двух игроков.
+ * Таблица хранит для каждой достижимой незавершенной позиции значение для ходящего игрока
+ * (выигрыш, ничья, проигрыш), количество полуходов до конца игры при идеальной игре обеих сторон
+ * и лучший ход, поэтому ход выбирается одним поиском в таблице без перебора.
+ * Позиции записываются с точки зрения ходящего игрока (1 - его фигура, 2 - фигура соперника, 0 - пусто)
+ * в виде числа в троичной системе счисления и приводятся к каноническому виду:
+ * из всех симметричных вариантов доски (см. BoardSymmetry) берется вариант с наименьшим числом.
+ * Таблица строится генератором TablebaseGenerator и читается из файла, отображенного в память:
+ * заголовок, отсортированные ключи позиций и упакованные данные позиций.
+ * Чтение не изменяет состояние таблицы, поэтому одну таблицу могут использовать несколько потоков.
+ * @author Hobbit Jedi
+ */
+public class Tablebase {
+	public static final int MAX_CELLS = 16;                  // Максимальное количество клеточек доски, для которой строится таблица.
+	static final int MAGIC = 0x54425331;                     // Сигнатура файла таблицы ("TBS1").
+	static final int HEADER_BYTES = 12;                      // Размер заголовка файла.
+	static final int DISTANCE_SHIFT = 8;                     // Смещение бит количества полуходов до конца игры в данных позиции.
+	static final int OUTCOME_SHIFT = 16;                     // Смещение бит значения позиции в данных позиции.
+	private static final ConcurrentHashMap<String, FutureTask<Tablebase>> CACHE = new ConcurrentHashMap<>(); // Открытые (или открываемые) таблицы по именам файлов.
+
+	private final int mXSize;                // Ширина доски.
+	private final int mYSize;                // Высота доски.
+	private final int mWinLineLength;        // Длина линии для победы.
+	private final int mPositionsCount;       // Количество позиций в таблице.
+	private final MappedByteBuffer mBuffer;  // Отображенный в память файл таблицы.
+	private final int[][] mSymmetries;       // Перестановки клеточек для каждой симметрии доски.
+	private final long[] mPowers;            // Степени тройки для каждой клеточки.
+
+	/**
+	 * Создать таблицу по отображенному в память файлу.
+	 * @param aBuffer - Отображенный в память файл таблицы.
+	 * @throws IllegalArgumentException - Если файл не является таблицей, то вызывается исключение.
+	 */
+	private Tablebase(MappedByteBuffer aBuffer) throws IllegalArgumentException
+	{
+		if (aBuffer.capacity() < HEADER_BYTES || aBuffer.getInt(0) != MAGIC)
+		{
+			throw new IllegalArgumentException("Файл не является таблицей идеальной игры.");
+		}
+		mBuffer = aBuffer;
+		mXSize = aBuffer.get(4);
+		mYSize = aBuffer.get(5);
+		mWinLineLength = aBuffer.get(6);
+		mPositionsCount = aBuffer.getInt(8);
+		if ((long)HEADER_BYTES + 12L * mPositionsCount != aBuffer.capacity())
+		{
+			throw new IllegalArgumentException("Размер файла таблицы не соответствует количеству позиций: " + mPositionsCount);
+		}
+		mSymmetries = BoardSymmetry.getPermutations(mXSize, mYSize);
+		mPowers = getPowers(mXSize * mYSize);
+	}
+
+	/**
+	 * Открыть таблицу из файла.
+	 * @param aFile - Файл таблицы.
+	 * @return - Таблица.
+	 * @throws IOException - Если не удалось прочитать файл, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если файл не является таблицей, то вызывается исключение.
+	 */
+	public static Tablebase open(Path aFile) throws IOException, IllegalArgumentException
+	{
+		try (FileChannel channel = FileChannel.open(aFile, StandardOpenOption.READ))
+		{
+			return new Tablebase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Получить каталог файлов таблиц по умолчанию: каталог временных файлов (системное свойство java.io.tmpdir).
+	 * Таблица строится за секунды и будет построена заново, если файл удален.
+	 * Постоянный каталог задается игрокам через PlayersFactory.setTablebaseDirectory()
+	 * (в командной строке Simulation и Tournament - параметром -tablebases=каталог).
+	 * @return - Каталог файлов таблиц по умолчанию.
+	 */
+	public static Path getDefaultDirectory()
+	{
+		return Paths.get(System.getProperty("java.io.tmpdir"));
+	}
+
+	/**
+	 * Получить таблицу для правил: открыть ранее построенную или построить ее (при необходимости создав каталог).
+	 * Открытые таблицы кэшируются, поэтому все игроки с одинаковыми правилами используют одну таблицу.
+	 * Таблица строится вне блокировок кэша: потоки, которым нужна та же таблица, ждут окончания ее построения,
+	 * а получение таблиц для других правил не ждет. Если построить таблицу не удалось, то следующий вызов попробует снова.
+	 * @param aRules - Правила игры.
+	 * @param aDirectory - Каталог файлов таблиц.
+	 * @return - Таблица.
+	 *           null, если таблица для таких правил не строится (см. isSupported()).
+	 * @throws IllegalStateException - Если не удалось построить или прочитать файл таблицы, то вызывается исключение.
+	 */
+	public static Tablebase obtain(Rules aRules, Path aDirectory) throws IllegalStateException
+	{
+		Tablebase result = null;
+		if (isSupported(aRules))
+		{
+			Path file = aDirectory.resolve(getFileName(aRules));
+			String name = file.toAbsolutePath().toString();
+			FutureTask<Tablebase> task = CACHE.get(name);
+			if (task == null)
+			{
+				FutureTask<Tablebase> newTask = new FutureTask<>(() ->
+				{
+					if (!Files.isRegularFile(file))
+					{
+						Files.createDirectories(aDirectory);
+						new TablebaseGenerator(aRules).generate(file);
+					}
+					return open(file);
+				});
+				task = CACHE.putIfAbsent(name, newTask);
+				if (task == null)
+				{
+					task = newTask;
+					task.run(); // Таблицу строит поток, первым поместивший задачу в кэш.
+				}
+			}
+			try
+			{
+				result = task.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Прервано ожидание таблицы идеальной игры " + file + ".", e);
+			}
+			catch (ExecutionException e)
+			{
+				CACHE.remove(name, task);
+				throw new IllegalStateException("Не удалось получить таблицу идеальной игры " + file + ".", e.getCause());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Проверить строится ли таблица для правил.
+	 * @param aRules - Правила игры.
+	 * @return - true - таблица строится: играют двое на доске не больше MAX_CELLS клеточек.
+	 */
+	public static boolean isSupported(Rules aRules)
+	{
+		return aRules.getNumOfPlayers() == 2 && aRules.getBoardXSize() * aRules.getBoardYSize() <= MAX_CELLS;
+	}
+
+	/**
+	 * Получить имя файла таблицы для правил.
+	 * @param aRules - Правила игры.
+	 * @return - Имя файла.
+	 */
+	public static String getFileName(Rules aRules)
+	{
+		return "tablebase-" + aRules.getBoardXSize() + "x" + aRules.getBoardYSize() + "-" + aRules.getWinLineLength() + ".tbs";
+	}
+
+	/**
+	 * Получить количество позиций в таблице.
+	 * @return - Количество позиций.
+	 */
+	public int getPositionsCount()
+	{
+		return mPositionsCount;
+	}
+
+	/**
+	 * Проверить подходит ли таблица для правил.
+	 * @param aRules - Правила игры.
+	 * @return - true - таблица построена для таких размеров доски и длины линии и для двух игроков.
+	 */
+	public boolean isMatching(Rules aRules)
+	{
+		return aRules.getNumOfPlayers() == 2 && aRules.getBoardXSize() == mXSize && aRules.getBoardYSize() == mYSize
+				&& aRules.getWinLineLength() == mWinLineLength;
+	}
+
+	/**
+	 * Получить значение позиции для ходящего игрока.
+	 * @param aBoard - Доска с позицией.
+	 * @param aMoverID - Идентификатор ходящего игрока.
+	 * @param aOpponentID - Идентификатор соперника.
+	 * @return - Значение позиции для ходящего игрока.
+	 *           null, если позиции в таблице нет (позиция недостижима или игра в ней уже завершена).
+	 */
+	public ProofNumberSearch.Outcome getOutcome(Board aBoard, int aMoverID, int aOpponentID)
+	{
+		long found = find(aBoard, aMoverID, aOpponentID);
+		return (found < 0) ? null : ProofNumberSearch.Outcome.values()[getData(found) >>> OUTCOME_SHIFT];
+	}
+
+	/**
+	 * Получить количество полуходов до конца игры при идеальной игре обеих сторон.
+	 * @param aBoard - Доска с позицией.
+	 * @param aMoverID - Идентификатор ходящего игрока.
+	 * @param aOpponentID - Идентификатор соперника.
+	 * @return - Количество полуходов, включая ход ходящего игрока.
+	 *           -1, если позиции в таблице нет.
+	 */
+	public int getDistance(Board aBoard, int aMoverID, int aOpponentID)
+	{
+		long found = find(aBoard, aMoverID, aOpponentID);
+		return (found < 0) ? -1 : (getData(found) >>> DISTANCE_SHIFT) & 0xFF;
+	}
+
+	/**
+	 * Получить лучший ход в позиции.
+	 * При выигрыше это самый быстрый выигрыш, при проигрыше - самое долгое сопротивление.
+	 * @param aBoard - Доска с позицией.
+	 * @param aMoverID - Идентификатор ходящего игрока.
+	 * @param aOpponentID - Идентификатор соперника.
+	 * @return - Индекс клеточки хода.
+	 *           -1, если позиции в таблице нет.
+	 */
+	public int getBestMove(Board aBoard, int aMoverID, int aOpponentID)
+	{
+		int result = -1;
+		long found = find(aBoard, aMoverID, aOpponentID);
+		if (found >= 0)
+		{
+			int canonicalMove = getData(found) & 0xFF;
+			int[] symmetry = mSymmetries[(int)(found & 0x7)];
+			for (int cell = 0; cell < symmetry.length; cell++)
+			{
+				if (symmetry[cell] == canonicalMove)
+				{
+					result = cell;
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Найти позицию в таблице.
+	 * @param aBoard - Доска с позицией.
+	 * @param aMoverID - Идентификатор ходящего игрока.
+	 * @param aOpponentID - Идентификатор соперника.
+	 * @return - Номер позиции в таблице, сдвинутый на 3 бита, и номер симметрии, приводящей доску к каноническому виду, в младших битах.
+	 *           -1, если позиции в таблице нет.
+	 */
+	private long find(Board aBoard, int aMoverID, int aOpponentID)
+	{
+		long result = -1;
+		if (aBoard.getXSize() == mXSize && aBoard.getYSize() == mYSize)
+		{
+			int cellsCount = aBoard.getCellsCount();
+			long bestKey = Long.MAX_VALUE;
+			int bestSymmetry = 0;
+			for (int s = 0; s < mSymmetries.length; s++)
+			{
+				int[] symmetry = mSymmetries[s];
+				long key = 0;
+				for (int cell = 0; cell < cellsCount; cell++)
+				{
+					int playerID = aBoard.lookAtCell(cell);
+					if (playerID == aMoverID)
+					{
+						key += mPowers[symmetry[cell]];
+					}
+					else if (playerID == aOpponentID)
+					{
+						key += 2 * mPowers[symmetry[cell]];
+					}
+					else if (playerID != 0)
+					{
+						return -1; // На доске фигуры посторонних игроков.
+					}
+				}
+				if (key < bestKey)
+				{
+					bestKey = key;
+					bestSymmetry = s;
+				}
+			}
+			int index = search(bestKey);
+			if (index >= 0)
+			{
+				result = ((long)index << 3) | bestSymmetry;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Найти ключ позиции двоичным поиском среди отсортированных ключей.
+	 * @param aKey - Ключ позиции.
+	 * @return - Номер позиции. -1, если позиции нет.
+	 */
+	private int search(long aKey)
+	{
+		int low = 0;
+		int high = mPositionsCount - 1;
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			long key = mBuffer.getLong(HEADER_BYTES + (middle << 3));
+			if (key < aKey)
+			{
+				low = middle + 1;
+			}
+			else if (key > aKey)
+			{
+				high = middle - 1;
+			}
+			else
+			{
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Получить упакованные данные найденной позиции.
+	 * @param aFound - Результат find().
+	 * @return - Значение (ordinal() ProofNumberSearch.Outcome), количество полуходов до конца игры и канонический лучший ход.
+	 */
+	private int getData(long aFound)
+	{
+		int index = (int)(aFound >>> 3);
+		return mBuffer.getInt(HEADER_BYTES + mPositionsCount * 8 + index * 4);
+	}
+
+	/**
+	 * Получить степени тройки для клеточек доски.
+	 * @param aCellsCount - Количество клеточек.
+	 * @return - Массив степеней: [клеточка] = 3^клеточка.
+	 */
+	static long[] getPowers(int aCellsCount)
+	{
+		long[] result = new long[aCellsCount];
+		long power = 1;
+		for (int cell = 0; cell < aCellsCount; cell++)
+		{
+			result[cell] = power;
+			power *= 3;
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,324 @@
+package ua.net.hj.cz.analytics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.BoardSymmetry;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает генератор таблицы идеальной игры (см. Tablebase).
+ * Позиции перебираются слоями по количеству фигур на доске:
+ * сначала от пустой доски вперед строятся все достижимые незавершенные позиции (с точностью до симметрии),
+ * затем значения вычисляются ретроградно - от последнего слоя к первому,
+ * так что к моменту вычисления позиции значения всех позиций после ее ходов уже известны.
+ * Позиция, в которой ход приносит победу или заполняет доску, завершается этим ходом и в таблицу не попадает.
+ * @author Hobbit Jedi
+ */
+public class TablebaseGenerator {
+	private static final byte MOVER = 1;       // Значение клеточки с фигурой ходящего игрока.
+	private static final byte OPPONENT = 2;    // Значение клеточки с фигурой соперника.
+
+	private final Rules mRules;                // Правила игры.
+	private final int mCellsCount;             // Количество клеточек доски.
+	private final int[][] mSymmetries;         // Перестановки клеточек для каждой симметрии доски.
+	private final long[] mPowers;              // Степени тройки для каждой клеточки.
+	private final Board mBoard;                // Доска для проверки победы.
+	private final byte[] mValues;              // Значения клеточек текущей позиции.
+	private long[][] mLayers;                  // Отсортированные ключи позиций по слоям (количеству фигур).
+	private int[][] mData;                     // Упакованные данные позиций по слоям.
+
+	/**
+	 * Создать генератор.
+	 * @param aRules - Правила игры.
+	 * @throws IllegalArgumentException - Если для таких правил таблица не строится, то вызывается исключение.
+	 */
+	public TablebaseGenerator(Rules aRules) throws IllegalArgumentException
+	{
+		if (!Tablebase.isSupported(aRules))
+		{
+			throw new IllegalArgumentException("Таблица идеальной игры строится только для двух игроков и досок не больше "
+					+ Tablebase.MAX_CELLS + " клеточек.");
+		}
+		mRules = aRules;
+		mCellsCount = aRules.getBoardXSize() * aRules.getBoardYSize();
+		mSymmetries = BoardSymmetry.getPermutations(aRules.getBoardXSize(), aRules.getBoardYSize());
+		mPowers = Tablebase.getPowers(mCellsCount);
+		mBoard = new Board(aRules.getBoardXSize(), aRules.getBoardYSize());
+		mBoard.setPlayerFigure(MOVER, ActionFigure.CROSS);
+		mBoard.setPlayerFigure(OPPONENT, ActionFigure.NOUGHT);
+		mValues = new byte[mCellsCount];
+	}
+
+	/**
+	 * Построить таблицу и записать ее в файл.
+	 * Файл сначала пишется во временный и затем заменяет прежний, поэтому прерванная генерация не оставляет испорченный файл.
+	 * @param aFile - Файл таблицы.
+	 * @return - Количество позиций в таблице.
+	 * @throws IOException - Если не удалось записать файл, то вызывается исключение.
+	 */
+	public int generate(Path aFile) throws IOException
+	{
+		enumeratePositions();
+		solvePositions();
+		int result = 0;
+		for (long[] layer: mLayers)
+		{
+			result += layer.length;
+		}
+		// Слияние отсортированных слоев в общий порядок ключей.
+		long[] keys = new long[result];
+		int[] data = new int[result];
+		int[] heads = new int[mLayers.length];
+		for (int i = 0; i < result; i++)
+		{
+			int layer = -1;
+			for (int k = 0; k < mLayers.length; k++)
+			{
+				if (heads[k] < mLayers[k].length && (layer < 0 || mLayers[k][heads[k]] < mLayers[layer][heads[layer]]))
+				{
+					layer = k;
+				}
+			}
+			keys[i] = mLayers[layer][heads[layer]];
+			data[i] = mData[layer][heads[layer]];
+			heads[layer]++;
+		}
+		mLayers = null;
+		mData = null;
+		Path temp = aFile.resolveSibling(aFile.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)))
+		{
+			out.writeInt(Tablebase.MAGIC);
+			out.writeByte(mRules.getBoardXSize());
+			out.writeByte(mRules.getBoardYSize());
+			out.writeByte(mRules.getWinLineLength());
+			out.writeByte(0);
+			out.writeInt(result);
+			for (long key: keys)
+			{
+				out.writeLong(key);
+			}
+			for (int value: data)
+			{
+				out.writeInt(value);
+			}
+		}
+		Files.move(temp, aFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return result;
+	}
+
+	/**
+	 * Перебрать от пустой доски все достижимые незавершенные позиции слой за слоем.
+	 */
+	private void enumeratePositions()
+	{
+		mLayers = new long[mCellsCount][];
+		mLayers[0] = new long[] {0L};
+		for (int k = 0; k + 1 < mCellsCount; k++)
+		{
+			long[] next = new long[Math.max(mLayers[k].length, 16)];
+			int nextCount = 0;
+			for (long key: mLayers[k])
+			{
+				loadPosition(key);
+				for (int cell = 0; cell < mCellsCount; cell++)
+				{
+					if (mValues[cell] == 0)
+					{
+						setCell(cell, MOVER);
+						if (!mRules.isWin(mBoard, cell))
+						{
+							if (nextCount == next.length)
+							{
+								next = Arrays.copyOf(next, next.length << 1);
+							}
+							next[nextCount++] = getChildKey();
+						}
+						setCell(cell, (byte)0);
+					}
+				}
+			}
+			Arrays.sort(next, 0, nextCount);
+			int uniqueCount = 0;
+			for (int i = 0; i < nextCount; i++)
+			{
+				if (uniqueCount == 0 || next[i] != next[uniqueCount - 1])
+				{
+					next[uniqueCount++] = next[i];
+				}
+			}
+			mLayers[k + 1] = Arrays.copyOf(next, uniqueCount);
+		}
+	}
+
+	/**
+	 * Вычислить значения позиций от последнего слоя к первому.
+	 * Ход оценивается значением позиции после него с точки зрения соперника, взятым с обратным знаком.
+	 * Из выигрышных ходов выбирается самый быстрый, из проигрышных - самый долгий.
+	 */
+	private void solvePositions()
+	{
+		int win = ProofNumberSearch.Outcome.WIN.ordinal();
+		int draw = ProofNumberSearch.Outcome.DRAW.ordinal();
+		int loss = ProofNumberSearch.Outcome.LOSS.ordinal();
+		mData = new int[mCellsCount][];
+		for (int k = mCellsCount - 1; k >= 0; k--)
+		{
+			long[] layer = mLayers[k];
+			int[] data = new int[layer.length];
+			for (int i = 0; i < layer.length; i++)
+			{
+				loadPosition(layer[i]);
+				int bestScore = Integer.MIN_VALUE;
+				for (int cell = 0; cell < mCellsCount; cell++)
+				{
+					if (mValues[cell] == 0)
+					{
+						setCell(cell, MOVER);
+						int outcome;
+						int distance;
+						if (mRules.isWin(mBoard, cell))
+						{
+							outcome = win;
+							distance = 1;
+						}
+						else if (k + 1 == mCellsCount)
+						{
+							outcome = draw;
+							distance = 1;
+						}
+						else
+						{
+							int child = mData[k + 1][Arrays.binarySearch(mLayers[k + 1], getChildKey())];
+							int childOutcome = child >>> Tablebase.OUTCOME_SHIFT;
+							outcome = (childOutcome == win) ? loss : (childOutcome == loss) ? win : draw;
+							distance = ((child >>> Tablebase.DISTANCE_SHIFT) & 0xFF) + 1;
+						}
+						setCell(cell, (byte)0);
+						int score = (outcome == win) ? 1000 - distance : (outcome == loss) ? distance - 1000 : 0;
+						if (score > bestScore)
+						{
+							bestScore = score;
+							data[i] = (outcome << Tablebase.OUTCOME_SHIFT) | (distance << Tablebase.DISTANCE_SHIFT) | cell;
+						}
+					}
+				}
+			}
+			mData[k] = data;
+		}
+	}
+
+	/**
+	 * Расставить на доске позицию по ключу.
+	 * @param aKey - Ключ позиции (троичное число значений клеточек).
+	 */
+	private void loadPosition(long aKey)
+	{
+		long rest = aKey;
+		for (int cell = 0; cell < mCellsCount; cell++)
+		{
+			setCell(cell, (byte)(rest % 3));
+			rest /= 3;
+		}
+	}
+
+	/**
+	 * Установить значение клеточки на доске и в массиве значений.
+	 * @param aCell - Индекс клеточки.
+	 * @param aValue - Значение клеточки (0, MOVER или OPPONENT).
+	 */
+	private void setCell(int aCell, byte aValue)
+	{
+		mValues[aCell] = aValue;
+		mBoard.setAtCell(aCell, aValue);
+	}
+
+	/**
+	 * Получить канонический ключ позиции после хода: с точки зрения соперника (фигуры меняются ролями).
+	 * @return - Наименьший среди симметричных вариантов ключ.
+	 */
+	private long getChildKey()
+	{
+		long result = Long.MAX_VALUE;
+		for (int[] symmetry: mSymmetries)
+		{
+			long key = 0;
+			for (int cell = 0; cell < mCellsCount; cell++)
+			{
+				if (mValues[cell] != 0)
+				{
+					key += (mValues[cell] == MOVER ? OPPONENT : MOVER) * mPowers[symmetry[cell]];
+				}
+			}
+			result = Math.min(result, key);
+		}
+		return result;
+	}
+
+	/**
+	 * Точка входа для построения таблицы из командной строки.
+	 * Параметры: ширина_доски высота_доски длина_линии [файл_таблицы]
+	 * Например: 3 3 3 tablebase-3x3-3.tbs
+	 * @param args - Параметры командной строки.
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length < 3)
+		{
+			printUsage();
+			return;
+		}
+		Rules rules;
+		TablebaseGenerator generator;
+		try
+		{
+			int boardXSize = Integer.parseInt(args[0]);
+			int boardYSize = Integer.parseInt(args[1]);
+			int winLineLength = Integer.parseInt(args[2]);
+			rules = new Rules(boardXSize, boardYSize, winLineLength, new Rules().getNumErrorsAllowed(), 2);
+			generator = new TablebaseGenerator(rules);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println("Некорректные параметры: " + e.getLocalizedMessage());
+			printUsage();
+			return;
+		}
+		Path file = Paths.get((args.length > 3) ? args[3] : Tablebase.getFileName(rules));
+		try
+		{
+			long start = System.currentTimeMillis();
+			int positionsCount = generator.generate(file);
+			System.out.println("Построена таблица " + file + ": позиций " + positionsCount + ", время " + (System.currentTimeMillis() - start) + " мс.");
+			Tablebase tablebase = Tablebase.open(file);
+			Board board = new Board(rules.getBoardXSize(), rules.getBoardYSize());
+			board.setPlayerFigure(1, ActionFigure.CROSS);
+			board.setPlayerFigure(2, ActionFigure.NOUGHT);
+			System.out.println("Значение начальной позиции для первого игрока: " + tablebase.getOutcome(board, 1, 2)
+					+ ", полуходов до конца игры: " + tablebase.getDistance(board, 1, 2));
+		}
+		catch (IOException e)
+		{
+			System.out.println("Не удалось построить таблицу: " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Вывести в консоль описание параметров командной строки.
+	 */
+	private static void printUsage()
+	{
+		System.out.println("Параметры: ширина_доски высота_доски длина_линии [файл_таблицы]");
+		System.out.println("Таблица строится для двух игроков и досок не больше " + Tablebase.MAX_CELLS + " клеточек.");
+		System.out.println("Например: 3 3 3 tablebase-3x3-3.tbs");
+	}
+
+}
@@ -0,0 +1,642 @@
+package ua.net.hj.cz.analytics;
+
+import ua.net.hj.cz.core.ZobristKeys;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает поиск форсированного выигрыша в пространстве угроз (для игр двух игроков).
+ * Перебираются только форсирующие ходы атакующего:
+ *  - VCF (victory by continuous fours) - каждый ход создает "четверку", то есть клеточку, ход в которую немедленно выигрывает.
+ *    Ответ защитника единственный (закрыть эту клеточку), поэтому ветвится только атакующий, и поиск может быть глубоким.
+ *    Если ход создает две такие клеточки, то выигрыш достигнут.
+ *  - VCT (victory by continuous threats) - ход создает угрозу, то есть позицию, в которой у атакующего был бы VCF, если бы защитник пропустил ход.
+ *    Защитник перебирает все ходы-кандидаты, поэтому глубина VCT невелика.
+ * Поиск консервативен: если защитник, закрываясь, сам создает четверку, то линия атаки считается опровергнутой.
+ * Поэтому найденный VCF - настоящий форсированный выигрыш, а VCT - выигрыш при защите среди кандидатов (см. CandidateMoves).
+ * Поиск не создает объектов: буферы ходов по уровням и таблица неудач VCF создаются заранее.
+ * @author Hobbit Jedi
+ */
+public class ThreatSpaceSearch {
+	public static final int DEFAULT_VCF_DEPTH = 16;          // Количество ходов атакующего в VCF по умолчанию.
+	public static final int DEFAULT_VCT_DEPTH = 3;           // Количество угроз атакующего в VCT по умолчанию.
+	public static final long DEFAULT_NODES_LIMIT = 10000L;   // Количество узлов на один вызов по умолчанию.
+	private static final int[] DIRECTIONS_DX = {1, 0, 1, 1};  // Смещения по X для направлений линий.
+	private static final int[] DIRECTIONS_DY = {0, 1, 1, -1}; // Смещения по Y для направлений линий.
+	private static final int CLOCK_CHECK_MASK = 0xFF;        // Часы проверяются раз в 256 узлов.
+	private static final int FAIL_TABLE_BITS = 16;           // Логарифм размера таблицы неудач VCF.
+
+	private final int mWinLineLength;       // Длина победной линии.
+	private final CandidateMoves mCandidates; // Ходы-кандидаты.
+	private int mVcfDepth;                  // Количество ходов атакующего в VCF.
+	private int mVctDepth;                  // Количество угроз атакующего в VCT.
+	private long mNodesLimit;               // Количество узлов на один вызов. 0 - неограничено.
+	private long mNodesCount;               // Количество узлов последнего вызова.
+	private long mDeadline;                 // Момент времени (System.nanoTime()), когда поиск нужно прекратить.
+	private boolean mIsAborted;             // Признак того, что исчерпан бюджет узлов или времени.
+	private Board mBoard;                   // Доска, на которой идет поиск.
+	private int mXSize;                     // Ширина доски.
+	private int mYSize;                     // Высота доски.
+	private int mAttackerID;                // Идентификатор атакующего игрока.
+	private int mDefenderID;                // Идентификатор защищающегося игрока.
+	private int mVirtualCell;               // Клеточка, которая считается занятой mVirtualID (пробный ход без изменения доски). -1 - нет.
+	private int mVirtualID;                 // Идентификатор игрока пробного хода.
+	private final int[] mWinningCells;      // Найденные выигрывающие клеточки (не больше двух).
+	private int[][] mBuffers;               // Буферы ходов для каждого уровня поиска.
+	private int[] mBestMoves;               // Найденные ходы атакующего на каждом уровне поиска.
+	private final long[] mFailKeys;         // Хэши позиций, в которых VCF не найден.
+	private final byte[] mFailDepths;       // Глубины, на которых VCF не найден.
+
+	/**
+	 * Создать поиск.
+	 * @param aRules - Правила, по которым ведется игра.
+	 */
+	public ThreatSpaceSearch(Rules aRules)
+	{
+		mWinLineLength = aRules.getWinLineLength();
+		mCandidates = new CandidateMoves(CandidateMoves.DEFAULT_DISTANCE);
+		mVcfDepth = DEFAULT_VCF_DEPTH;
+		mVctDepth = DEFAULT_VCT_DEPTH;
+		mNodesLimit = DEFAULT_NODES_LIMIT;
+		mVirtualCell = -1;
+		mWinningCells = new int[2];
+		mBuffers = new int[0][];
+		mBestMoves = new int[0];
+		mFailKeys = new long[1 << FAIL_TABLE_BITS];
+		mFailDepths = new byte[1 << FAIL_TABLE_BITS];
+	}
+
+	/**
+	 * Установить глубину VCF.
+	 * @param aDepth - Количество ходов атакующего (не меньше 1, не больше 100).
+	 */
+	public void setVcfDepth(int aDepth)
+	{
+		if (aDepth < 1 || aDepth > 100)
+		{
+			throw new IllegalArgumentException("Некорректная глубина VCF: " + aDepth);
+		}
+		mVcfDepth = aDepth;
+	}
+
+	/**
+	 * Установить глубину VCT.
+	 * @param aDepth - Количество угроз атакующего (0 - искать только VCF).
+	 */
+	public void setVctDepth(int aDepth)
+	{
+		if (aDepth < 0 || aDepth > 100)
+		{
+			throw new IllegalArgumentException("Некорректная глубина VCT: " + aDepth);
+		}
+		mVctDepth = aDepth;
+	}
+
+	/**
+	 * Установить количество узлов на один вызов.
+	 * @param aNodesLimit - Количество узлов. 0 - неограничено (только по времени).
+	 */
+	public void setNodesLimit(long aNodesLimit)
+	{
+		mNodesLimit = Math.max(aNodesLimit, 0L);
+	}
+
+	/**
+	 * Получить количество узлов, рассмотренных последним вызовом.
+	 * @return - Количество узлов.
+	 */
+	public long getNodesCount()
+	{
+		return mNodesCount;
+	}
+
+	/**
+	 * Найти ход, ведущий к форсированному выигрышу игрока, который должен ходить.
+	 * Доска используется для перебора "на месте" и по окончании поиска возвращается в исходное состояние.
+	 * @param aBoard - Доска с текущей позицией.
+	 * @param aAttackerID - Идентификатор игрока, который должен ходить.
+	 * @param aDefenderID - Идентификатор его соперника.
+	 * @param aDeadline - Крайний срок поиска (по System.nanoTime()). Long.MAX_VALUE - неограничено.
+	 * @return - Индекс клеточки первого хода выигрыша (немедленный выигрыш, VCF или VCT).
+	 *           -1, если выигрыш не найден.
+	 */
+	public int findWinningMove(Board aBoard, int aAttackerID, int aDefenderID, long aDeadline)
+	{
+		start(aBoard, aDeadline);
+		try
+		{
+			return searchWin(aAttackerID, aDefenderID);
+		}
+		finally
+		{
+			finish();
+		}
+	}
+
+	/**
+	 * Найти ход, защищающий от форсированного выигрыша соперника.
+	 * Угрозой считается выигрыш, который соперник нашел бы, если бы игрок пропустил ход.
+	 * Защиты проверяются начиная с первого хода найденного выигрыша соперника;
+	 * выбирается первая, после которой у соперника не находится выигрыша.
+	 * Доска используется для перебора "на месте" и по окончании поиска возвращается в исходное состояние.
+	 * @param aBoard - Доска с текущей позицией.
+	 * @param aPlayerID - Идентификатор игрока, который должен ходить.
+	 * @param aOpponentID - Идентификатор его соперника.
+	 * @param aDeadline - Крайний срок поиска (по System.nanoTime()). Long.MAX_VALUE - неограничено.
+	 * @return - Индекс клеточки защищающего хода.
+	 *           Если защиты нет (или на ее поиск не хватило бюджета), то первый ход выигрыша соперника.
+	 *           -1, если угрозы нет.
+	 */
+	public int findDefence(Board aBoard, int aPlayerID, int aOpponentID, long aDeadline)
+	{
+		start(aBoard, aDeadline);
+		try
+		{
+			int threat = searchWin(aOpponentID, aPlayerID);
+			int result = threat;
+			if (threat >= 0 && !mIsAborted)
+			{
+				int[] defences = mBuffers[0]; // Вложенный поиск начинается с уровня 1 и этот буфер не меняет.
+				int defencesCount = mCandidates.collectOrdered(defences);
+				// Первым проверяется ход в клеточку, с которой начинается выигрыш соперника.
+				int position = 0;
+				while (position < defencesCount && defences[position] != threat)
+				{
+					position++;
+				}
+				if (position == defencesCount)
+				{
+					defencesCount++;
+				}
+				for (; position > 0; position--)
+				{
+					defences[position] = defences[position - 1];
+				}
+				defences[0] = threat;
+				for (int i = 0; i < defencesCount && !mIsAborted; i++)
+				{
+					int cell = defences[i];
+					if (mBoard.lookAtCell(cell) == 0)
+					{
+						mBoard.makeMove(cell, aPlayerID);
+						int opponentWin = searchWin(aOpponentID, aPlayerID);
+						mBoard.unmakeMove();
+						if (opponentWin < 0 && !mIsAborted)
+						{
+							result = cell;
+							break;
+						}
+					}
+				}
+			}
+			return result;
+		}
+		finally
+		{
+			finish();
+		}
+	}
+
+	/**
+	 * Подготовиться к поиску на доске.
+	 * @param aBoard - Доска.
+	 * @param aDeadline - Крайний срок поиска.
+	 */
+	private void start(Board aBoard, long aDeadline)
+	{
+		mBoard = aBoard;
+		mXSize = aBoard.getXSize();
+		mYSize = aBoard.getYSize();
+		mDeadline = aDeadline;
+		mNodesCount = 0;
+		mIsAborted = false;
+		int plies = 2 * mVctDepth + mVcfDepth + 4;
+		mCandidates.attach(aBoard);
+		int candidatesCount = mCandidates.getMaxCount(2 * plies); // На каждом уровне делается ход атакующего и ход защиты.
+		if (mBuffers.length < plies || mBuffers[0].length < candidatesCount)
+		{
+			mBuffers = new int[plies][candidatesCount];
+			mBestMoves = new int[plies];
+		}
+	}
+
+	/**
+	 * Завершить поиск: отключиться от доски.
+	 */
+	private void finish()
+	{
+		mCandidates.detach();
+		mBoard = null;
+	}
+
+	/**
+	 * Найти выигрыш атакующего (немедленный, VCF или VCT), начиная с уровня 1 (уровень 0 оставлен вызывающему).
+	 * @param aAttackerID - Идентификатор атакующего (он ходит).
+	 * @param aDefenderID - Идентификатор защитника.
+	 * @return - Индекс клеточки первого хода выигрыша. -1, если выигрыш не найден.
+	 */
+	private int searchWin(int aAttackerID, int aDefenderID)
+	{
+		mAttackerID = aAttackerID;
+		mDefenderID = aDefenderID;
+		int ply = 1;
+		int result = -1;
+		if (findAllWinningCells(ply, aAttackerID) > 0)
+		{
+			result = mWinningCells[0];
+		}
+		else if (findAllWinningCells(ply, aDefenderID) == 0)
+		{
+			// У защитника нет четверок - можно атаковать.
+			if (searchVcf(ply, mVcfDepth) || searchVct(ply, mVctDepth))
+			{
+				result = mBestMoves[ply];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Поиск VCF. Ходит атакующий; ни у кого нет четверок.
+	 * @param aPly - Уровень поиска (определяет буфер ходов).
+	 * @param aDepth - Оставшееся количество ходов атакующего.
+	 * @return - Признак того, что выигрыш найден (первый ход - в mBestMoves[aPly]).
+	 */
+	private boolean searchVcf(int aPly, int aDepth)
+	{
+		if (aDepth <= 0 || isAborted())
+		{
+			return false;
+		}
+		long key = mBoard.getHash() ^ ZobristKeys.getTurnKey(mAttackerID);
+		int slot = (int)(key >>> (64 - FAIL_TABLE_BITS));
+		if (mFailKeys[slot] == key && mFailDepths[slot] >= aDepth)
+		{
+			return false;
+		}
+		int[] moves = mBuffers[aPly];
+		int movesCount = mCandidates.collect(moves); // Пробные ходы меняют набор кандидатов, поэтому перебираем копию.
+		for (int i = 0; i < movesCount; i++)
+		{
+			int cell = moves[i];
+			int winsCount = findWinningCells(cell, mAttackerID, cell);
+			if (winsCount >= 2)
+			{
+				mBestMoves[aPly] = cell; // Две четверки: закрыть обе невозможно.
+				return true;
+			}
+			if (winsCount == 1)
+			{
+				int block = mWinningCells[0];
+				mBoard.makeMove(cell, mAttackerID);
+				mBoard.makeMove(block, mDefenderID);
+				boolean isWin = findWinningCells(block, mDefenderID, -1) == 0 && searchVcf(aPly + 1, aDepth - 1);
+				mBoard.unmakeMove();
+				mBoard.unmakeMove();
+				if (isWin)
+				{
+					mBestMoves[aPly] = cell;
+					return true;
+				}
+				if (mIsAborted)
+				{
+					return false;
+				}
+			}
+		}
+		mFailKeys[slot] = key;
+		mFailDepths[slot] = (byte)aDepth;
+		return false;
+	}
+
+	/**
+	 * Поиск VCT. Ходит атакующий; ни у кого нет четверок.
+	 * @param aPly - Уровень поиска (определяет буфер ходов).
+	 * @param aDepth - Оставшееся количество угроз атакующего.
+	 * @return - Признак того, что выигрыш найден (первый ход - в mBestMoves[aPly]).
+	 */
+	private boolean searchVct(int aPly, int aDepth)
+	{
+		if (aDepth <= 0 || isAborted())
+		{
+			return false;
+		}
+		int[] moves = mBuffers[aPly];
+		int movesCount = mCandidates.collectOrdered(moves);
+		for (int i = 0; i < movesCount; i++)
+		{
+			int cell = moves[i];
+			int winsCount = findWinningCells(cell, mAttackerID, cell);
+			boolean isWin = false;
+			if (winsCount >= 2)
+			{
+				isWin = true;
+			}
+			else if (winsCount == 1)
+			{
+				// Четверка, после которой атака продолжается угрозами.
+				int block = mWinningCells[0];
+				mBoard.makeMove(cell, mAttackerID);
+				mBoard.makeMove(block, mDefenderID);
+				isWin = findWinningCells(block, mDefenderID, -1) == 0
+						&& (searchVcf(aPly + 1, mVcfDepth) || searchVct(aPly + 1, aDepth - 1));
+				mBoard.unmakeMove();
+				mBoard.unmakeMove();
+			}
+			else if (getMaxWindowCount(cell, mAttackerID) >= mWinLineLength - 2)
+			{
+				mBoard.makeMove(cell, mAttackerID);
+				// Угроза - это ход, после которого у атакующего был бы VCF, если бы защитник пропустил ход.
+				if (searchVcf(aPly + 1, mVcfDepth))
+				{
+					isWin = isEveryDefenceRefuted(aPly + 1, aDepth);
+				}
+				mBoard.unmakeMove();
+			}
+			if (isWin)
+			{
+				mBestMoves[aPly] = cell;
+				return true;
+			}
+			if (mIsAborted)
+			{
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Проверить, что после угрозы атакующего каждая защита проигрывает.
+	 * Ходит защитник; у атакующего есть угроза, четверок нет.
+	 * @param aPly - Уровень поиска (определяет буфер ходов).
+	 * @param aDepth - Оставшееся количество угроз атакующего (включая сделанную).
+	 * @return - Признак того, что защиты нет.
+	 */
+	private boolean isEveryDefenceRefuted(int aPly, int aDepth)
+	{
+		int[] defences = mBuffers[aPly];
+		int defencesCount = mCandidates.collectOrdered(defences);
+		for (int i = 0; i < defencesCount; i++)
+		{
+			int cell = defences[i];
+			mBoard.makeMove(cell, mDefenderID);
+			// Ответная четверка защитника считается опровержением (поиск консервативен).
+			boolean isRefuted = findWinningCells(cell, mDefenderID, -1) == 0
+					&& (searchVcf(aPly + 1, mVcfDepth) || searchVct(aPly + 1, aDepth - 1));
+			mBoard.unmakeMove();
+			if (!isRefuted)
+			{
+				return false;
+			}
+		}
+		return defencesCount > 0;
+	}
+
+	/**
+	 * Учесть узел и проверить бюджет поиска.
+	 * @return - Признак того, что бюджет исчерпан.
+	 */
+	private boolean isAborted()
+	{
+		mNodesCount++;
+		if ((mNodesLimit > 0 && mNodesCount > mNodesLimit)
+				|| ((mNodesCount & CLOCK_CHECK_MASK) == 0 && System.nanoTime() > mDeadline))
+		{
+			mIsAborted = true;
+		}
+		return mIsAborted;
+	}
+
+	/**
+	 * Найти все выигрывающие клеточки игрока (ход в которые немедленно выигрывает).
+	 * @param aPly - Уровень поиска (его буфер используется для кандидатов).
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @return - Количество выигрывающих клеточек (не больше двух), сами клеточки - в mWinningCells.
+	 */
+	private int findAllWinningCells(int aPly, int aPlayerID)
+	{
+		int[] cells = mBuffers[aPly];
+		int cellsCount = mCandidates.collect(cells);
+		int result = 0;
+		for (int i = 0; i < cellsCount && result < mWinningCells.length; i++)
+		{
+			int cell = cells[i];
+			int x = cell % mXSize;
+			int y = cell / mXSize;
+			for (int direction = 0; direction < DIRECTIONS_DX.length; direction++)
+			{
+				if (getLineLength(x, y, DIRECTIONS_DX[direction], DIRECTIONS_DY[direction], aPlayerID) >= mWinLineLength)
+				{
+					mWinningCells[result++] = cell;
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Найти выигрывающие клеточки игрока, победные линии через которые проходят через заданную клеточку.
+	 * Если предыдущий ход игрока сделан в эту клеточку, то других новых выигрывающих клеточек у него не появилось.
+	 * В каждом направлении просматривается отрезок длиной до 2 * (длина_линии - 1) + 1 с центром в клеточке
+	 * (до первой фигуры соперника или края доски), и в нем ищутся окна длины победной линии,
+	 * в которых свободна ровно одна клеточка, а остальные заняты игроком.
+	 * @param aCellIndex - Индекс клеточки.
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @param aVirtualCell - Клеточка, которая считается занятой игроком (пробный ход без изменения доски). -1 - нет.
+	 * @return - Количество выигрывающих клеточек (не больше двух), сами клеточки - в mWinningCells.
+	 */
+	private int findWinningCells(int aCellIndex, int aPlayerID, int aVirtualCell)
+	{
+		mVirtualCell = aVirtualCell;
+		mVirtualID = aPlayerID;
+		int x = aCellIndex % mXSize;
+		int y = aCellIndex / mXSize;
+		int reach = mWinLineLength - 1;
+		int result = 0;
+		for (int direction = 0; direction < DIRECTIONS_DX.length && result < mWinningCells.length; direction++)
+		{
+			int dx = DIRECTIONS_DX[direction];
+			int dy = DIRECTIONS_DY[direction];
+			// Границы отрезка: до фигуры соперника или края доски.
+			int low = 0;
+			while (low > -reach && isOwnOrEmpty(x + (low - 1) * dx, y + (low - 1) * dy, aPlayerID))
+			{
+				low--;
+			}
+			int high = 0;
+			while (high < reach && isOwnOrEmpty(x + (high + 1) * dx, y + (high + 1) * dy, aPlayerID))
+			{
+				high++;
+			}
+			if (high - low < reach)
+			{
+				continue; // Победная линия в этом направлении не помещается.
+			}
+			// Скользящее окно: количество фигур игрока и последняя свободная клеточка в нем.
+			int ownCount = 0;
+			for (int step = low; step < low + reach; step++)
+			{
+				if (lookAt(x + step * dx, y + step * dy) == aPlayerID)
+				{
+					ownCount++;
+				}
+			}
+			for (int first = low; first + reach <= high && result < mWinningCells.length; first++)
+			{
+				int last = first + reach;
+				if (lookAt(x + last * dx, y + last * dy) == aPlayerID)
+				{
+					ownCount++;
+				}
+				if (ownCount == reach)
+				{
+					for (int step = first; step <= last; step++)
+					{
+						int ex = x + step * dx;
+						int ey = y + step * dy;
+						if (lookAt(ex, ey) == 0)
+						{
+							int cell = ey * mXSize + ex;
+							if (result == 0 || mWinningCells[0] != cell)
+							{
+								mWinningCells[result++] = cell;
+							}
+							break;
+						}
+					}
+				}
+				if (lookAt(x + first * dx, y + first * dy) == aPlayerID)
+				{
+					ownCount--;
+				}
+			}
+		}
+		mVirtualCell = -1;
+		return result;
+	}
+
+	/**
+	 * Получить наибольшее количество фигур игрока в окнах длины победной линии, проходящих через клеточку
+	 * (с учетом хода игрока в эту клеточку; окна с фигурами соперника не учитываются).
+	 * Угрозу могут создать только ходы, после которых в каком-то окне не хватает двух фигур до победной линии,
+	 * поэтому остальные ходы VCT не проверяет.
+	 * @param aCellIndex - Индекс свободной клеточки.
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @return - Количество фигур в лучшем окне. 0, если победная линия через клеточку не помещается.
+	 */
+	private int getMaxWindowCount(int aCellIndex, int aPlayerID)
+	{
+		mVirtualCell = aCellIndex;
+		mVirtualID = aPlayerID;
+		int x = aCellIndex % mXSize;
+		int y = aCellIndex / mXSize;
+		int reach = mWinLineLength - 1;
+		int result = 0;
+		for (int direction = 0; direction < DIRECTIONS_DX.length; direction++)
+		{
+			int dx = DIRECTIONS_DX[direction];
+			int dy = DIRECTIONS_DY[direction];
+			int low = 0;
+			while (low > -reach && isOwnOrEmpty(x + (low - 1) * dx, y + (low - 1) * dy, aPlayerID))
+			{
+				low--;
+			}
+			int high = 0;
+			while (high < reach && isOwnOrEmpty(x + (high + 1) * dx, y + (high + 1) * dy, aPlayerID))
+			{
+				high++;
+			}
+			if (high - low < reach)
+			{
+				continue;
+			}
+			int ownCount = 0;
+			for (int step = low; step < low + reach; step++)
+			{
+				if (lookAt(x + step * dx, y + step * dy) == aPlayerID)
+				{
+					ownCount++;
+				}
+			}
+			for (int first = low; first + reach <= high; first++)
+			{
+				int last = first + reach;
+				if (lookAt(x + last * dx, y + last * dy) == aPlayerID)
+				{
+					ownCount++;
+				}
+				result = Math.max(result, ownCount);
+				if (lookAt(x + first * dx, y + first * dy) == aPlayerID)
+				{
+					ownCount--;
+				}
+			}
+		}
+		mVirtualCell = -1;
+		return result;
+	}
+
+	/**
+	 * Проверить, что клеточка находится на доске и не занята соперником игрока.
+	 * @param aX - Координата X.
+	 * @param aY - Координата Y.
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @return - Признак того, что клеточка свободна или занята игроком.
+	 */
+	private boolean isOwnOrEmpty(int aX, int aY, int aPlayerID)
+	{
+		boolean result = false;
+		if (aX >= 0 && aX < mXSize && aY >= 0 && aY < mYSize)
+		{
+			int playerID = lookAt(aX, aY);
+			result = (playerID == 0 || playerID == aPlayerID);
+		}
+		return result;
+	}
+
+	/**
+	 * Получить длину линии игрока, которая получится при ходе в клеточку.
+	 * @param aX - Координата X клеточки.
+	 * @param aY - Координата Y клеточки.
+	 * @param aDX - Шаг линии по X.
+	 * @param aDY - Шаг линии по Y.
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @return - Длина линии (с учетом самой клеточки).
+	 */
+	private int getLineLength(int aX, int aY, int aDX, int aDY, int aPlayerID)
+	{
+		int result = 1;
+		int x = aX + aDX;
+		int y = aY + aDY;
+		while (x >= 0 && x < mXSize && y >= 0 && y < mYSize && lookAt(x, y) == aPlayerID)
+		{
+			result++;
+			x += aDX;
+			y += aDY;
+		}
+		x = aX - aDX;
+		y = aY - aDY;
+		while (x >= 0 && x < mXSize && y >= 0 && y < mYSize && lookAt(x, y) == aPlayerID)
+		{
+			result++;
+			x -= aDX;
+			y -= aDY;
+		}
+		return result;
+	}
+
+	/**
+	 * Посмотреть на клеточку доски с учетом пробного хода.
+	 * @param aX - Координата X.
+	 * @param aY - Координата Y.
+	 * @return - Идентификатор игрока в клеточке. 0, если клеточка свободна.
+	 */
+	private int lookAt(int aX, int aY)
+	{
+		int cell = aY * mXSize + aX;
+		return (cell == mVirtualCell) ? mVirtualID : mBoard.lookAtCell(cell);
+	}
+
+}
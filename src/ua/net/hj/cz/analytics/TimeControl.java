@@ -0,0 +1,105 @@
+package ua.net.hj.cz.analytics;
+
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает контроль времени компьютерного игрока.
+ * Ограничения берутся из правил игры и из настроек игрока (действует более жесткое из них).
+ * Если ограничено время на всю игру, то остаток времени делится поровну на ожидаемое количество оставшихся ходов игрока.
+ * Результат - момент времени (по System.nanoTime()), к которому поиск хода должен быть завершен.
+ * @author Hobbit Jedi
+ */
+public class TimeControl {
+	private static final int MAX_MOVES_TO_GO = 20;       // Горизонт планирования: на сколько ходов вперед делится остаток времени игры.
+	private static final long SAFETY_MARGIN = 2000000L;  // Запас времени на ход (нс) на выход из поиска и формирование хода.
+
+	private final long mMoveTimeLimit;   // Ограничение времени на ход (мс). 0 - неограничено.
+	private final long mGameTimeLimit;   // Ограничение времени на игру (мс). 0 - неограничено.
+	private long mGameTimeUsed;          // Время, потраченное в текущей игре (нс).
+	private long mMoveStart;             // Момент начала текущего хода (нс).
+
+	/**
+	 * Создать контроль времени.
+	 * @param aRules - Правила игры.
+	 * @param aMoveTimeLimit - Ограничение времени на ход из настроек игрока (мс). 0 - неограничено.
+	 * @param aGameTimeLimit - Ограничение времени на игру из настроек игрока (мс). 0 - неограничено.
+	 */
+	public TimeControl(Rules aRules, long aMoveTimeLimit, long aGameTimeLimit)
+	{
+		mMoveTimeLimit = getTighterLimit(aRules.getMoveTimeLimit(), aMoveTimeLimit);
+		mGameTimeLimit = getTighterLimit(aRules.getGameTimeLimit(), aGameTimeLimit);
+		mGameTimeUsed = 0L;
+	}
+
+	/**
+	 * Начать ход: вычислить момент времени, к которому ход должен быть найден.
+	 * @param aBoard - Доска с текущей позицией (для оценки количества оставшихся ходов).
+	 * @param aPlayersCount - Количество активных игроков.
+	 * @return - Крайний срок поиска (по System.nanoTime()).
+	 *           Long.MAX_VALUE, если время не ограничено.
+	 */
+	public long startMove(Board aBoard, int aPlayersCount)
+	{
+		mMoveStart = System.nanoTime();
+		long budget = Long.MAX_VALUE;
+		if (mMoveTimeLimit > 0)
+		{
+			budget = mMoveTimeLimit * 1000000L;
+		}
+		if (mGameTimeLimit > 0)
+		{
+			long remaining = Math.max(mGameTimeLimit * 1000000L - mGameTimeUsed, 0L);
+			int movesToGo = (aBoard.getEmptyCellsCount() + aPlayersCount - 1) / Math.max(aPlayersCount, 1);
+			budget = Math.min(budget, remaining / Math.max(Math.min(movesToGo, MAX_MOVES_TO_GO), 1));
+		}
+		long result = Long.MAX_VALUE;
+		if (budget != Long.MAX_VALUE)
+		{
+			result = mMoveStart + Math.max(budget - SAFETY_MARGIN, 0L);
+		}
+		return result;
+	}
+
+	/**
+	 * Завершить ход: учесть потраченное на него время.
+	 */
+	public void finishMove()
+	{
+		mGameTimeUsed += System.nanoTime() - mMoveStart;
+	}
+
+	/**
+	 * Получить время, потраченное в текущей игре.
+	 * @return - Время в миллисекундах.
+	 */
+	public long getGameTimeUsed()
+	{
+		return mGameTimeUsed / 1000000L;
+	}
+
+	/**
+	 * Выбрать более жесткое из двух ограничений времени.
+	 * @param aFirst - Первое ограничение (мс). 0 - неограничено.
+	 * @param aSecond - Второе ограничение (мс). 0 - неограничено.
+	 * @return - Более жесткое ограничение (мс). 0 - неограничено.
+	 */
+	private static long getTighterLimit(long aFirst, long aSecond)
+	{
+		long result;
+		if (aFirst <= 0)
+		{
+			result = Math.max(aSecond, 0L);
+		}
+		else if (aSecond <= 0)
+		{
+			result = aFirst;
+		}
+		else
+		{
+			result = Math.min(aFirst, aSecond);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,172 @@
+package ua.net.hj.cz.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Описывает таблицу транспозиций - кэш результатов поиска по позициям.
+ * Таблица имеет фиксированный размер, задаваемый в мегабайтах, и хранится в примитивных массивах,
+ * поэтому не растет со временем и не создает объектов при работе.
+ * Записи сгруппированы в корзины по две:
+ * первая запись корзины заменяется только результатом не меньшей глубины (depth-preferred),
+ * вторая - заменяется всегда (always-replace).
+ * @author Hobbit Jedi
+ */
+public class TranspositionTable {
+	public static final int BOUND_EXACT = 1;                   // Оценка точная.
+	public static final int BOUND_LOWER = 2;                   // Оценка - нижняя граница (было отсечение по beta).
+	public static final int BOUND_UPPER = 3;                   // Оценка - верхняя граница (ни один ход не улучшил alpha).
+	public static final int MAX_DEPTH = 0xFF;                  // Максимальная сохраняемая глубина.
+	public static final int MAX_CELL_INDEX = 0x3FFFFE;         // Максимальный сохраняемый индекс клеточки хода.
+	private static final int ENTRY_BYTES = 20;                 // Размер одной записи в байтах (ключ + оценка + упакованные данные).
+	private static final int MOVE_BITS = 22;                   // Количество бит под (индекс клеточки хода + 1).
+	private static final int MOVE_MASK = (1 << MOVE_BITS) - 1; // Маска бит хода.
+	private static final int DEPTH_SHIFT = MOVE_BITS;          // Смещение бит глубины.
+	private static final int BOUND_SHIFT = DEPTH_SHIFT + 8;    // Смещение бит типа оценки.
+
+	private final long[] mKeys;      // Хэши позиций.
+	private final long[] mScores;    // Оценки позиций (биты double).
+	private final int[] mData;       // Упакованные ход, глубина и тип оценки. 0 - запись пуста.
+	private final int mBucketsMask;  // Маска номера корзины.
+	private long mProbesCount;       // Количество обращений к таблице.
+	private long mHitsCount;         // Количество успешных обращений к таблице.
+
+	/**
+	 * Создать таблицу транспозиций.
+	 * @param aSizeMegabytes - Максимальный объем памяти под таблицу в мегабайтах (не меньше 1).
+	 *                         Количество записей округляется вниз до степени двойки.
+	 */
+	public TranspositionTable(int aSizeMegabytes)
+	{
+		if (aSizeMegabytes < 1)
+		{
+			throw new IllegalArgumentException("Размер таблицы транспозиций должен быть положительным: " + aSizeMegabytes);
+		}
+		long maxEntries = ((long)aSizeMegabytes << 20) / ENTRY_BYTES;
+		int buckets = Integer.highestOneBit((int)Math.min(maxEntries >>> 1, 1 << 29));
+		mBucketsMask = buckets - 1;
+		mKeys = new long[buckets << 1];
+		mScores = new long[buckets << 1];
+		mData = new int[buckets << 1];
+	}
+
+	/**
+	 * Получить количество записей в таблице.
+	 * @return - Количество записей.
+	 */
+	public int getCapacity()
+	{
+		return mKeys.length;
+	}
+
+	/**
+	 * Очистить таблицу.
+	 */
+	public void clear()
+	{
+		Arrays.fill(mData, 0);
+		mProbesCount = 0;
+		mHitsCount = 0;
+	}
+
+	/**
+	 * Найти запись для позиции.
+	 * @param aKey - Хэш позиции.
+	 * @return - Номер записи (для методов getXXX()).
+	 *           -1, если позиции в таблице нет.
+	 */
+	public int probe(long aKey)
+	{
+		mProbesCount++;
+		int result = -1;
+		int slot = ((int)aKey & mBucketsMask) << 1;
+		if (mData[slot] != 0 && mKeys[slot] == aKey)
+		{
+			result = slot;
+		}
+		else if (mData[slot + 1] != 0 && mKeys[slot + 1] == aKey)
+		{
+			result = slot + 1;
+		}
+		if (result >= 0)
+		{
+			mHitsCount++;
+		}
+		return result;
+	}
+
+	/**
+	 * Сохранить результат поиска для позиции.
+	 * @param aKey - Хэш позиции.
+	 * @param aDepth - Глубина, на которую выполнен поиск.
+	 * @param aBound - Тип оценки (BOUND_EXACT, BOUND_LOWER, BOUND_UPPER).
+	 * @param aScore - Оценка позиции.
+	 * @param aMove - Индекс клеточки лучшего хода. -1, если ход не известен.
+	 */
+	public void store(long aKey, int aDepth, int aBound, double aScore, int aMove)
+	{
+		int depth = Math.min(Math.max(aDepth, 0), MAX_DEPTH);
+		int slot = ((int)aKey & mBucketsMask) << 1;
+		if (mData[slot] != 0 && mKeys[slot] != aKey && getDepth(slot) > depth)
+		{
+			slot++; // Более глубокий результат не затираем, пишем во вторую запись корзины.
+		}
+		int move = (aMove >= 0 && aMove <= MAX_CELL_INDEX) ? aMove + 1 : 0;
+		if (move == 0 && mData[slot] != 0 && mKeys[slot] == aKey)
+		{
+			move = mData[slot] & MOVE_MASK; // Сохраняем ранее найденный лучший ход позиции.
+		}
+		mKeys[slot] = aKey;
+		mScores[slot] = Double.doubleToRawLongBits(aScore);
+		mData[slot] = (aBound << BOUND_SHIFT) | (depth << DEPTH_SHIFT) | move;
+	}
+
+	/**
+	 * Получить глубину поиска из записи.
+	 * @param aSlot - Номер записи.
+	 * @return - Глубина поиска.
+	 */
+	public int getDepth(int aSlot)
+	{
+		return (mData[aSlot] >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	/**
+	 * Получить тип оценки из записи.
+	 * @param aSlot - Номер записи.
+	 * @return - Тип оценки (BOUND_EXACT, BOUND_LOWER, BOUND_UPPER).
+	 */
+	public int getBound(int aSlot)
+	{
+		return mData[aSlot] >>> BOUND_SHIFT;
+	}
+
+	/**
+	 * Получить оценку позиции из записи.
+	 * @param aSlot - Номер записи.
+	 * @return - Оценка позиции.
+	 */
+	public double getScore(int aSlot)
+	{
+		return Double.longBitsToDouble(mScores[aSlot]);
+	}
+
+	/**
+	 * Получить лучший ход из записи.
+	 * @param aSlot - Номер записи.
+	 * @return - Индекс клеточки лучшего хода. -1, если ход не известен.
+	 */
+	public int getMove(int aSlot)
+	{
+		return (mData[aSlot] & MOVE_MASK) - 1;
+	}
+
+	/**
+	 * Получить долю успешных обращений к таблице.
+	 * @return - Доля успешных обращений (0..1).
+	 */
+	public double getHitRate()
+	{
+		return (mProbesCount > 0) ? (double)mHitsCount / mProbesCount : 0d;
+	}
+
+}
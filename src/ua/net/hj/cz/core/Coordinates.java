@@ -5,15 +5,15 @@ package ua.net.hj.cz.core;
  * @author Hobbit Jedi
  */
 public class Coordinates {
-	private final byte mX; // x-координата.
-	private final byte mY; // y-координата.
+	private final int mX; // x-координата.
+	private final int mY; // y-координата.
 	
 	/**
 	 * Создать координаты.
 	 * @param aX - x-коодината (числовая).
 	 * @param aY - y-координата (числовая).
 	 */
-	public Coordinates(byte aX, byte aY)
+	public Coordinates(int aX, int aY)
 	{
 		mX = aX;
 		mY = aY;
@@ -23,7 +23,7 @@ public class Coordinates {
 	 * Получить x-координату в числовом виде.
 	 * @return - X-координата в числовом виде.
 	 */
-	public byte getX()
+	public int getX()
 	{
 		return mX;
 	}
@@ -32,7 +32,7 @@ public class Coordinates {
 	 * Получить y-координату в числовом виде.
 	 * @return - Y-координата в числовом виде.
 	 */
-	public byte getY()
+	public int getY()
 	{
 		return mY;
 	}
@@ -94,7 +94,7 @@ public class Coordinates {
 	@Override
 	public int hashCode()
 	{
-		int hash = (mY<<8) + mX;
+		int hash = 31 * mY + mX;
 		return hash;
 	}
 	
@@ -112,16 +112,16 @@ public class Coordinates {
 	 * @return - Соответствующая переданному значению строковая координата.
 	 *           Пустая строка, если передано отрицательное значение.
 	 */
-	public static String indexToCoordinate(byte aX)
+	public static String indexToCoordinate(int aX)
 	{
 		StringBuilder result = new StringBuilder();
 		if (aX >= 0)
 		{
 			int rest = aX;
-			byte current;
+			int current;
 			char coordinatePart;
 			do {				
-				current = (byte) (rest % 26);
+				current = rest % 26;
 				rest /= 26;
 				coordinatePart = (char)('a' + current);
 				result.insert(0, coordinatePart);
@@ -137,9 +137,9 @@ public class Coordinates {
 	 * @return - Числовая координата-индекс, соответствующая переданному значению.
 	 *           -1, если переданное значение не является строковым представлением координаты.
 	 */
-	public static byte coordinateToIndex(String aCoordinate)
+	public static int coordinateToIndex(String aCoordinate)
 	{
-		byte result = (byte)-1;
+		int result = -1;
 		String clearCoordinate = aCoordinate.trim().toLowerCase();
 		int length = clearCoordinate.length();
 		if (length > 0)
@@ -154,7 +154,8 @@ public class Coordinates {
 				}
 				else
 				{
-					result = (byte)-1;
+					result = -1;
+					break;
 				}
 			}
 		}
@@ -168,11 +169,11 @@ public class Coordinates {
 	public static void test_indexToCoordinateAndReverse(boolean aShowErrorsOnly)
 	{
 		System.out.println("--> Start of Testing of indexToXCoordinate()");
-		for (int i = -5; i <= Byte.MAX_VALUE; i++)
+		for (int i = -5; i <= 1000; i++)
 		{
-			String xCoordinate = indexToCoordinate((byte)i);
-			byte reverse = coordinateToIndex(xCoordinate);
-			boolean isError = ((byte)i < 0 && reverse != -1) || ((byte)i >= 0 && (byte)i != reverse);
+			String xCoordinate = indexToCoordinate(i);
+			int reverse = coordinateToIndex(xCoordinate);
+			boolean isError = (i < 0 && reverse != -1) || (i >= 0 && i != reverse);
 			if (isError || !aShowErrorsOnly)
 			{
 				System.out.println((isError ? "!!! ОШИБКА !!! " : "") + i + " => " + xCoordinate + " => " + reverse);
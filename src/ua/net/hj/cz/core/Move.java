@@ -18,7 +18,7 @@ public class Move {
 	 * @param aPlayer - Игрок, который делает ход.
 	 * @param aFigure - Фигура, которой игрок делает ход.
 	 */
-	public Move(byte aX, byte aY, PlayerReadOnly aPlayer, ActionFigure aFigure)
+	public Move(int aX, int aY, PlayerReadOnly aPlayer, ActionFigure aFigure)
 	{
 		mCoordinates = new Coordinates(aX, aY);
 		mPlayer = aPlayer;
@@ -51,7 +51,7 @@ public class Move {
 	 * Получить числовую x-координату хода.
 	 * @return - Числовая x-координата хода.
 	 */
-	public byte getX()
+	public int getX()
 	{
 		return mCoordinates.getX();
 	}
@@ -60,7 +60,7 @@ public class Move {
 	 * Получить числовую y-координату хода.
 	 * @return - Числовая y-координата хода.
 	 */
-	public byte getY()
+	public int getY()
 	{
 		return mCoordinates.getY();
 	}
@@ -132,7 +132,7 @@ public class Move {
 	@Override
 	public int hashCode()
 	{
-		int hash = (mCoordinates.hashCode()<<16) + (mPlayer.hashCode()<<8 & 0xFFFF) + (mFigure.hashCode() & 0xFF);
+		int hash = 31 * (31 * mCoordinates.hashCode() + mPlayer.hashCode()) + mFigure.hashCode();
 		return hash;
 	}
 	
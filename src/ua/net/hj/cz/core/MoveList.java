@@ -0,0 +1,140 @@
+package ua.net.hj.cz.core;
+
+import java.util.Arrays;
+
+/**
+ * Описывает список ходов на массиве int (индексов клеточек или упакованных ходов, см. PackedMove).
+ * Список используется и как стек: добавление и снятие ходов с конца не создают объектов,
+ * а массив увеличивается только тогда, когда в нем не хватает места, поэтому один список
+ * переиспользуется на протяжении всей игры.
+ * @author Hobbit Jedi
+ */
+public class MoveList {
+	private int[] mMoves;   // Ходы.
+	private int mSize;      // Количество ходов в списке.
+
+	/**
+	 * Создать пустой список.
+	 * @param aCapacity - Начальная емкость списка.
+	 */
+	public MoveList(int aCapacity)
+	{
+		mMoves = new int[Math.max(aCapacity, 1)];
+		mSize = 0;
+	}
+
+	/**
+	 * Получить количество ходов в списке.
+	 * @return - Количество ходов.
+	 */
+	public int size()
+	{
+		return mSize;
+	}
+
+	/**
+	 * Проверить пуст ли список.
+	 * @return - true - в списке нет ходов.
+	 */
+	public boolean isEmpty()
+	{
+		return mSize == 0;
+	}
+
+	/**
+	 * Очистить список.
+	 */
+	public void clear()
+	{
+		mSize = 0;
+	}
+
+	/**
+	 * Добавить ход в конец списка (положить на вершину стека).
+	 * @param aMove - Ход.
+	 */
+	public void push(int aMove)
+	{
+		if (mSize == mMoves.length)
+		{
+			mMoves = Arrays.copyOf(mMoves, mSize << 1);
+		}
+		mMoves[mSize++] = aMove;
+	}
+
+	/**
+	 * Снять ход с конца списка (с вершины стека).
+	 * @return - Снятый ход.
+	 * @throws IllegalStateException - Если список пуст, то вызывается исключение.
+	 */
+	public int pop() throws IllegalStateException
+	{
+		if (mSize == 0)
+		{
+			throw new IllegalStateException("Список ходов пуст.");
+		}
+		return mMoves[--mSize];
+	}
+
+	/**
+	 * Получить ход с конца списка (с вершины стека), не снимая его.
+	 * @return - Последний ход.
+	 * @throws IllegalStateException - Если список пуст, то вызывается исключение.
+	 */
+	public int peek() throws IllegalStateException
+	{
+		if (mSize == 0)
+		{
+			throw new IllegalStateException("Список ходов пуст.");
+		}
+		return mMoves[mSize - 1];
+	}
+
+	/**
+	 * Получить ход по номеру.
+	 * @param aIndex - Номер хода в списке (с нуля).
+	 * @return - Ход.
+	 * @throws IndexOutOfBoundsException - Если номер за пределами списка, то вызывается исключение.
+	 */
+	public int get(int aIndex) throws IndexOutOfBoundsException
+	{
+		if (aIndex < 0 || aIndex >= mSize)
+		{
+			throw new IndexOutOfBoundsException("Номер хода " + aIndex + " за пределами списка из " + mSize + " ходов.");
+		}
+		return mMoves[aIndex];
+	}
+
+	/**
+	 * Заменить ход по номеру.
+	 * @param aIndex - Номер хода в списке (с нуля).
+	 * @param aMove - Новый ход.
+	 * @throws IndexOutOfBoundsException - Если номер за пределами списка, то вызывается исключение.
+	 */
+	public void set(int aIndex, int aMove) throws IndexOutOfBoundsException
+	{
+		if (aIndex < 0 || aIndex >= mSize)
+		{
+			throw new IndexOutOfBoundsException("Номер хода " + aIndex + " за пределами списка из " + mSize + " ходов.");
+		}
+		mMoves[aIndex] = aMove;
+	}
+
+	/**
+	 * Проверить есть ли ход в списке.
+	 * @param aMove - Ход.
+	 * @return - true - ход есть в списке.
+	 */
+	public boolean contains(int aMove)
+	{
+		for (int i = 0; i < mSize; i++)
+		{
+			if (mMoves[i] == aMove)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
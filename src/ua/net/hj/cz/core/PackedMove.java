@@ -0,0 +1,91 @@
+package ua.net.hj.cz.core;
+
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.players.PlayerReadOnly;
+
+/**
+ * Описывает упаковку хода в одно число int: индекс клеточки (y * ширина_поля + x) в старших битах
+ * и номер игрока на поле (см. Board.getPlayerSlot()) в младших 8 битах.
+ * Идентификаторы игроков не ограничены байтом, а игроков на одном поле не больше Board.MAX_PLAYERS,
+ * поэтому в ход упаковывается номер игрока на поле, а не его идентификатор.
+ * Упакованные ходы хранятся в массивах и списках MoveList, поэтому перебор ходов не создает объектов.
+ * Объекты Move и Coordinates создаются только на границе с судьей и игровым циклом (см. toMove()).
+ * @author Hobbit Jedi
+ */
+public class PackedMove {
+	public static final int NONE = -1;                    // Отсутствующий ход.
+	public static final int MAX_CELL_INDEX = 0x7FFFFF;    // Максимальный упаковываемый индекс клеточки.
+	private static final int PLAYER_BITS = 8;             // Количество бит номера игрока на поле.
+	private static final int PLAYER_MASK = 0xFF;          // Маска номера игрока на поле.
+
+	private PackedMove()
+	{
+	}
+
+	/**
+	 * Упаковать ход.
+	 * @param aCellIndex - Индекс клеточки хода (от 0 до MAX_CELL_INDEX).
+	 * @param aPlayerSlot - Номер на поле игрока, который делает ход (от 0 до 255).
+	 * @return - Упакованный ход.
+	 * @throws IllegalArgumentException - Если индекс клеточки или номер игрока не помещаются в упакованный ход, то вызывается исключение.
+	 */
+	public static int pack(int aCellIndex, int aPlayerSlot) throws IllegalArgumentException
+	{
+		if (aCellIndex < 0 || aCellIndex > MAX_CELL_INDEX || aPlayerSlot < 0 || aPlayerSlot > PLAYER_MASK)
+		{
+			throw new IllegalArgumentException("Некорректно переданы индекс клеточки (" + aCellIndex + ") или номер игрока (" + aPlayerSlot + ") в метод PackedMove.pack()");
+		}
+		return (aCellIndex << PLAYER_BITS) | aPlayerSlot;
+	}
+
+	/**
+	 * Упаковать ход, заданный объектом.
+	 * @param aMove - Ход.
+	 * @param aBoard - Поле, на котором делается ход (задает ширину поля и номер игрока на поле).
+	 * @return - Упакованный ход.
+	 * @throws IllegalArgumentException - Если ход вне поля или игроку на поле не установлена фигура, то вызывается исключение.
+	 */
+	public static int pack(Move aMove, Board aBoard) throws IllegalArgumentException
+	{
+		if (aMove.getX() < 0 || aMove.getX() >= aBoard.getXSize() || aMove.getY() < 0 || aMove.getY() >= aBoard.getYSize())
+		{
+			throw new IllegalArgumentException("Ход " + aMove + " вне поля передан в метод PackedMove.pack()");
+		}
+		return pack(aMove.getY() * aBoard.getXSize() + aMove.getX(), aBoard.getPlayerSlot(aMove.getPlayer().getID()));
+	}
+
+	/**
+	 * Получить индекс клеточки хода.
+	 * @param aMove - Упакованный ход.
+	 * @return - Индекс клеточки.
+	 */
+	public static int getCell(int aMove)
+	{
+		return aMove >>> PLAYER_BITS;
+	}
+
+	/**
+	 * Получить номер на поле игрока, который делает ход.
+	 * Идентификатор игрока по номеру возвращает Board.getSlotPlayerID().
+	 * @param aMove - Упакованный ход.
+	 * @return - Номер игрока на поле.
+	 */
+	public static int getPlayerSlot(int aMove)
+	{
+		return aMove & PLAYER_MASK;
+	}
+
+	/**
+	 * Создать объект хода в клеточку.
+	 * @param aCellIndex - Индекс клеточки хода.
+	 * @param aXSize - Ширина поля.
+	 * @param aPlayer - Игрок, который делает ход.
+	 * @param aFigure - Фигура, которой игрок делает ход.
+	 * @return - Ход.
+	 */
+	public static Move toMove(int aCellIndex, int aXSize, PlayerReadOnly aPlayer, ActionFigure aFigure)
+	{
+		return new Move(aCellIndex % aXSize, aCellIndex / aXSize, aPlayer, aFigure);
+	}
+
+}
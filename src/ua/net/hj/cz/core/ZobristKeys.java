@@ -0,0 +1,81 @@
+package ua.net.hj.cz.core;
+
+/**
+ * Описывает набор ключей Зобриста для хэширования позиций на игровом поле.
+ * Хэш позиции - это XOR ключей всех занятых клеточек,
+ * поэтому при установке или снятии фигуры его можно пересчитать одной операцией XOR.
+ * Ключ зависит от индекса клеточки и от фигуры (а не от идентификатора игрока),
+ * поэтому одинаковые позиции получают одинаковый хэш в разных играх и в разных запусках программы.
+ * @author Hobbit Jedi
+ */
+public class ZobristKeys {
+	private static final long SEED = 0x43726F73735A6572L;                  // Начальное значение генератора ключей фигур.
+	private static final long TURN_SEED = 0x5475726E4B657973L;             // Начальное значение генератора ключей очереди хода.
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;          // Шаг генератора SplitMix64.
+	private static final int FIGURES_COUNT = ActionFigure.values().length; // Количество различных фигур.
+
+	private ZobristKeys()
+	{
+	}
+
+	/**
+	 * Получить ключ для фигуры, стоящей в клеточке.
+	 * Ключи вычисляются генератором SplitMix64, поэтому таблица ключей в памяти не хранится.
+	 * @param aCellIndex - Индекс клеточки на игровом поле.
+	 * @param aFigure - Фигура, стоящая в клеточке.
+	 * @return - 64-битный ключ.
+	 */
+	public static long getKey(int aCellIndex, ActionFigure aFigure)
+	{
+		return getKey(aCellIndex, aFigure.ordinal());
+	}
+
+	/**
+	 * Получить ключ для фигуры, стоящей в клеточке.
+	 * @param aCellIndex - Индекс клеточки на игровом поле.
+	 * @param aFigureIndex - Порядковый номер фигуры (ActionFigure.ordinal()).
+	 * @return - 64-битный ключ.
+	 */
+	public static long getKey(int aCellIndex, int aFigureIndex)
+	{
+		return mix(SEED + ((long)aCellIndex * FIGURES_COUNT + aFigureIndex + 1) * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Получить ключ очереди хода.
+	 * Добавляется к хэшу позиции, когда важно, какой игрок должен ходить.
+	 * Ключи очереди хода берутся из отдельной последовательности генератора,
+	 * поэтому не совпадают с ключами фигур ни при каком идентификаторе игрока.
+	 * @param aPlayerID - Идентификатор игрока, который должен ходить.
+	 * @return - 64-битный ключ.
+	 */
+	public static long getTurnKey(int aPlayerID)
+	{
+		return mix(TURN_SEED + ((long)aPlayerID + 1) * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Получить ключ фигуры ходящего игрока.
+	 * Добавляется к хэшу позиции, когда важно, какой фигурой ходят (а не какой игрок).
+	 * @param aFigure - Фигура ходящего игрока.
+	 * @return - 64-битный ключ.
+	 */
+	public static long getTurnKey(ActionFigure aFigure)
+	{
+		return mix(TURN_SEED - ((long)aFigure.ordinal() + 1) * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Перемешать значение (завершающий шаг генератора SplitMix64).
+	 * @param aValue - Значение.
+	 * @return - 64-битный ключ.
+	 */
+	private static long mix(long aValue)
+	{
+		long z = aValue;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}
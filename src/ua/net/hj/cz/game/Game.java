@@ -1,5 +1,6 @@
 package ua.net.hj.cz.game;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.InputMismatchException;
@@ -20,39 +21,19 @@ import ua.net.hj.cz.roles.players.PlayersFactory;
  * @author Hobbit Jedi
  */
 public class Game {
-	enum PlayerType
-	{
-		HUMAN ("Человек"),
-		RANDOM("Компьютер: Случайный стрелок"),
-		EASY  ("Компьютер: Легкий"),
-		CLEVER("Компьютер: Умный")
-		;
-		
-		private final String mName; // Представление значения при выводе на экран.
-
-		private PlayerType(String aName)
-		{
-			mName = aName;
-		}
-		
-		@Override
-		public String toString()
-		{
-			return mName;
-		}
-	}
-	
 	private final Scanner SCANNER;                            // Поток ввода данных от пользователя.
 	private final PlayersFactory mPlayersFactory;             // Фабрика для создания игроков.
 	private Rules mRules;                                     // Правила игры.
 	private Player[] mInitialPlayersSequence;                 // Порядок хода игроков в начале игры.
-	private HashMap<Byte, ActionFigure> mPlayerIDsFiguresMap; // Соответствие идентификаторов игроков и фигур, которыми они играют.
+	private HashMap<Integer, ActionFigure> mPlayerIDsFiguresMap; // Соответствие идентификаторов игроков и фигур, которыми они играют.
+	private GameLogWriter mGameLog;                           // Журнал сыгранных игр. null - игры не записываются.
 	
 	public Game()
 	{
 		mRules = null;
 		mInitialPlayersSequence = null;
 		mPlayerIDsFiguresMap = null;
+		mGameLog = null;
 		SCANNER = new Scanner(System.in);
 		SCANNER.useDelimiter("(\\n+\\r*)|(\\r+\\n*)");
 		mPlayersFactory = new PlayersFactory();
@@ -79,6 +60,17 @@ public class Game {
 		}
 	}
 	
+	/**
+	 * Установить журнал, в который записываются сыгранные игры.
+	 * Местами игроков в журнале считаются их номера в начальном порядке хода.
+	 * Журнал не закрывается при завершении игры.
+	 * @param aGameLog - Журнал. null - игры не записываются (по умолчанию).
+	 */
+	public void setGameLog(GameLogWriter aGameLog)
+	{
+		mGameLog = aGameLog;
+	}
+	
 	/**
 	 * Проверить готова ли игра к запуску?
 	 * Проверяет наличие у игры правил и игроков.
@@ -162,8 +154,8 @@ public class Game {
 		try
 		{
 			// Создаем доску для игры и настроим ее.
-			Board board = new Board(mRules.getBoardXSize(), mRules.getBoardYSize());
-			for (Map.Entry<Byte, ActionFigure> entry: mPlayerIDsFiguresMap.entrySet())
+			Board board = Board.create(mRules.getBoardXSize(), mRules.getBoardYSize());
+			for (Map.Entry<Integer, ActionFigure> entry: mPlayerIDsFiguresMap.entrySet())
 			{
 				board.setPlayerFigure(entry.getKey(), entry.getValue());
 			}
@@ -174,7 +166,7 @@ public class Game {
 			
 			// Создадим вспомогательные списки активных игроков и их идентификаторов.
 			ArrayList<Player> players = new ArrayList<>();
-			byte[] playersIDs = new byte[mRules.getNumOfPlayers()];
+			int[] playersIDs = new int[mRules.getNumOfPlayers()];
 			for (int i = 0; i < mInitialPlayersSequence.length; i++)
 			{
 				Player player = mInitialPlayersSequence[i];
@@ -190,6 +182,17 @@ public class Game {
 				player.checkOutRules(mRules, playersIDs);
 				System.out.println(" - Готово!");
 			}
+			if (mGameLog != null)
+			{
+				String[] names = new String[mInitialPlayersSequence.length];
+				ActionFigure[] figures = new ActionFigure[mInitialPlayersSequence.length];
+				for (int seat = 0; seat < mInitialPlayersSequence.length; seat++)
+				{
+					names[seat] = mInitialPlayersSequence[seat].getName();
+					figures[seat] = mPlayerIDsFiguresMap.get(mInitialPlayersSequence[seat].getID());
+				}
+				mGameLog.beginGame(mRules, names, figures, 0);
+			}
 			
 			System.out.println();
 			System.out.println("-----------------------------------------");
@@ -197,12 +200,13 @@ public class Game {
 			board.print();
 			
 			boolean gameOver = (players.size() < 2); // Если в игре меньше двух игроков, то играть смысла нет.
+			int winnerID = -1;                       // Идентификатор победителя. -1 - победителя нет.
 			while (!gameOver)
 			{
 				for (int i = 0; i < players.size(); i++)
 				{
 					Player player = players.get(i);
-					byte playerID = player.getID();
+					int playerID = player.getID();
 					ActionFigure playerFigure = mPlayerIDsFiguresMap.get(player.getID());
 					if (playerFigure == null)
 					{
@@ -213,11 +217,22 @@ public class Game {
 						return false;
 					}
 					do {			
-						move = player.makeMove(new Board(board), playersIDs, mRules, playerFigure);
+						move = player.makeMove(board.copy(), playersIDs, mRules, playerFigure);
 						System.out.println();
 						System.out.println("Игрок " + move);
 						moveResult = referee.commitMove(player, move, board, mRules, players);
 					} while (moveResult == null); // Пока Игроку есть куда ходить, но он делает некорректные хода.
+					if (mGameLog != null)
+					{
+						if (moveResult != MoveResult.DISQUALIFICATION)
+						{
+							mGameLog.addMove(move.getY() * mRules.getBoardXSize() + move.getX());
+						}
+						else
+						{
+							mGameLog.addDisqualification();
+						}
+					}
 					// Разошлем игрокам оповещения о ходе.
 					for (Player playerToNotify: mInitialPlayersSequence)
 					{
@@ -227,6 +242,7 @@ public class Game {
 					{
 						case WIN:
 							gameOver = true;
+							winnerID = playerID;
 							System.out.println();
 							System.out.println("ВЫИГРАЛ Игрок " + player + "!!!");
 							// Оповестим всех игроков о победе игрока.
@@ -251,7 +267,7 @@ public class Game {
 							System.out.println();
 							System.out.println("ДИСКВАЛИФИЦИРОВАН Игрок " + player + "!!!");
 							// Переформируем массив идентификаторов оставшихся игроков.
-							playersIDs = new byte[players.size()];
+							playersIDs = new int[players.size()];
 							for (int j = 0; j < players.size(); j++)
 							{
 								playersIDs[j] = players.get(j).getID();
@@ -264,7 +280,7 @@ public class Game {
 							if (players.size() == 1)
 							{
 								Player winner = players.get(0);
-								byte winnerID = winner.getID();
+								winnerID = winner.getID();
 								gameOver = true;
 								System.out.println();
 								System.out.println("ВЫИГРАЛ Игрок " + winner + "!!!");
@@ -280,11 +296,40 @@ public class Game {
 					if (gameOver) break;
 				}
 			}
+			if (mGameLog != null)
+			{
+				int winnerSeat = -1;
+				for (int seat = 0; seat < mInitialPlayersSequence.length; seat++)
+				{
+					if (mInitialPlayersSequence[seat].getID() == winnerID)
+					{
+						winnerSeat = seat;
+					}
+				}
+				try
+				{
+					mGameLog.endGame(winnerSeat);
+					mGameLog.flush();
+				}
+				catch (IOException e)
+				{
+					System.out.println();
+					System.out.println("Не удалось записать игру в журнал: " + e.getLocalizedMessage());
+				}
+			}
 		}
 		catch (ScanExitException e)
 		{
 			result = false;
 		}
+		finally
+		{
+			// Игра, не дошедшая до endGame() (выход, ошибка, исключение игрока), не должна попасть в журнал.
+			if (mGameLog != null)
+			{
+				mGameLog.abortGame();
+			}
+		}
 		return result;
 	}
 	
@@ -382,23 +427,7 @@ public class Game {
 		
 		///////////////////////////////////
 		// Создание и возврат соответствующего объекта.
-		switch (playerType)
-		{
-			case HUMAN:
-				result = mPlayersFactory.createHumanPlayer(name);
-				break;
-			case RANDOM:
-				result = mPlayersFactory.createRandomPlayer(name);
-				break;
-			case EASY:
-				result = mPlayersFactory.createEasyPlayer(name);
-				break;
-			case CLEVER:
-				result = mPlayersFactory.createCleverPlayer(name);
-				break;
-			default:
-				throw new UnknownError("Неизвестный выбранный тип игрока.");
-		}
+		result = playerType.createPlayer(mPlayersFactory, name);
 		System.out.println();
 		System.out.println("Создан игрок " + result + " [" + playerType + "].");
 		return result;
@@ -0,0 +1,637 @@
+package ua.net.hj.cz.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает архив игр для чтения: журнал игр и указатель его игр (см. GameArchiveWriter), отображенные в память.
+ * Указатель позволяет перейти к игре по номеру и отбирать игры по итогу и длине, не читая журнал,
+ * а ходы читаются курсором (см. Cursor) прямо из отображения журнала, без копирования и без создания объектов
+ * (объекты правил и имен создаются по одному на каждый заголовок журнала).
+ * Отображения не изменяются при чтении, поэтому один архив могут одновременно читать несколько потоков,
+ * каждый своим курсором, а scan() распределяет игры архива по потокам частями.
+ * Архив видит игры, записанные до его открытия; дописанные позже игры видны только вновь открытому архиву.
+ * @author Hobbit Jedi
+ */
+public class GameArchive {
+	static final int INDEX_SEGMENT_RECORDS = 1 << 24;           // Количество записей указателя в одном отображении.
+	static final long DATA_SEGMENT_STEP = 1L << 30;             // Шаг начал отображений журнала.
+	static final int DATA_SEGMENT_BYTES = Integer.MAX_VALUE;    // Наибольший размер отображения журнала (отображения перекрываются, чтобы игра целиком лежала в отображении, где она начинается).
+	static final int SCAN_GAMES_PER_TASK = 1 << 16;             // Количество игр в части архива, просматриваемой одним потоком за раз.
+
+	private final int mGamesCount;                               // Количество игр в архиве.
+	private final MappedByteBuffer[] mIndexSegments;             // Отображения указателя.
+	private final MappedByteBuffer[] mDataSegments;              // Отображения журнала.
+	private final ConcurrentHashMap<Long, GameLogDecoder.Header> mHeaders; // Разобранные заголовки журнала по позициям.
+
+	/**
+	 * Описывает курсор архива: игру, на которую он установлен, и чтение ее ходов.
+	 * Курсор не создает объектов при переходе к игре и чтении ходов.
+	 * Курсор не предназначен для одновременного использования из нескольких потоков (но у каждого потока может быть свой).
+	 */
+	public class Cursor
+	{
+		private int mGame;                  // Номер текущей игры. -1 - курсор не установлен.
+		private long mHeaderOffset;         // Позиция в журнале заголовка текущей игры.
+		private GameLogDecoder.Header mHeader; // Заголовок текущей игры.
+		private final ByteBuffer[] mDataViews;  // Собственные (с отдельной позицией) копии отображений журнала. null - еще не нужна.
+		private ByteBuffer mData;              // Копия отображения журнала, в которой лежит текущая игра (позиция - следующий код хода).
+		private final GameLogDecoder mDecoder;  // Очередность хода текущей игры.
+		private boolean mIsInGame;              // Признак того, что ходы текущей игры еще не дочитаны.
+		private int mMovesCount;                // Количество ходов текущей игры.
+		private int mWinnerSeat;                // Место победителя. -1 - ничья.
+
+		private Cursor()
+		{
+			mGame = -1;
+			mHeaderOffset = -1;
+			mHeader = null;
+			mDataViews = new ByteBuffer[mDataSegments.length];
+			mData = null;
+			mDecoder = new GameLogDecoder();
+		}
+
+		/**
+		 * Установить курсор на игру.
+		 * @param aGame - Номер игры (от 0 до getGamesCount() - 1).
+		 * @throws IllegalArgumentException - Если игры с таким номером нет или журнал поврежден, то вызывается исключение.
+		 */
+		public void seek(int aGame) throws IllegalArgumentException
+		{
+			checkGame(aGame);
+			ByteBuffer index = mIndexSegments[aGame / INDEX_SEGMENT_RECORDS];
+			int record = (aGame % INDEX_SEGMENT_RECORDS) * GameArchiveWriter.INDEX_RECORD_BYTES;
+			long gameOffset = index.getLong(record);
+			long headerOffset = index.getLong(record + 8);
+			mMovesCount = index.getInt(record + 16);
+			mWinnerSeat = index.get(record + 21) - 1;
+			if (headerOffset != mHeaderOffset)
+			{
+				mHeader = getHeader(headerOffset);
+				mHeaderOffset = headerOffset;
+			}
+			int segment = (int)(gameOffset / DATA_SEGMENT_STEP);
+			if (mDataViews[segment] == null)
+			{
+				mDataViews[segment] = mDataSegments[segment].duplicate();
+			}
+			mData = mDataViews[segment];
+			mData.position((int)(gameOffset % DATA_SEGMENT_STEP));
+			if (mData.get() != GameLogWriter.TAG_GAME)
+			{
+				throw new IllegalArgumentException("Указатель архива не соответствует журналу в игре " + aGame + ".");
+			}
+			mDecoder.startGame(mHeader.mNames.length, GameLogDecoder.readVarint(mData));
+			mIsInGame = true;
+			mGame = aGame;
+		}
+
+		/**
+		 * Прочитать следующий ход текущей игры.
+		 * Дисквалификации учитываются в очередности хода и наружу не выдаются.
+		 * @return - Индекс клеточки хода (y * ширина_поля + x). -1 - ходы игры закончились.
+		 */
+		public int nextMove()
+		{
+			if (!mIsInGame)
+			{
+				return -1;
+			}
+			int cell;
+			do
+			{
+				cell = mDecoder.decodeMove(GameLogDecoder.readVarint(mData));
+			}
+			while (cell == GameLogDecoder.DISQUALIFICATION);
+			mIsInGame = (cell >= 0);
+			return cell;
+		}
+
+		/**
+		 * Получить номер текущей игры.
+		 * @return - Номер игры. -1 - курсор не установлен.
+		 */
+		public int getGame()
+		{
+			return mGame;
+		}
+
+		/**
+		 * Получить правила текущей игры.
+		 * @return - Правила (один объект для всех игр с одним заголовком).
+		 */
+		public Rules getRules()
+		{
+			return mHeader.mRules;
+		}
+
+		/**
+		 * Получить количество мест игроков текущей игры.
+		 * @return - Количество мест.
+		 */
+		public int getPlayersCount()
+		{
+			return mHeader.mNames.length;
+		}
+
+		/**
+		 * Получить имя игрока, занимающего место в текущей игре.
+		 * @param aSeat - Место игрока.
+		 * @return - Имя игрока.
+		 */
+		public String getPlayerName(int aSeat)
+		{
+			return mHeader.mNames[aSeat];
+		}
+
+		/**
+		 * Получить фигуру игрока, занимающего место в текущей игре.
+		 * @param aSeat - Место игрока.
+		 * @return - Фигура игрока.
+		 */
+		public ActionFigure getPlayerFigure(int aSeat)
+		{
+			return mHeader.mFigures[aSeat];
+		}
+
+		/**
+		 * Получить место игрока, который ходит первым в текущей игре.
+		 * @return - Место игрока.
+		 */
+		public int getFirstSeat()
+		{
+			return mDecoder.getFirstSeat();
+		}
+
+		/**
+		 * Получить место игрока, сделавшего последний прочитанный ход.
+		 * @return - Место игрока. -1 - ходов еще не было.
+		 */
+		public int getMoverSeat()
+		{
+			return mDecoder.getMoverSeat();
+		}
+
+		/**
+		 * Проверить был ли игрок дисквалифицирован в уже прочитанной части текущей игры.
+		 * @param aSeat - Место игрока.
+		 * @return - Признак дисквалификации.
+		 */
+		public boolean isDisqualified(int aSeat)
+		{
+			return mDecoder.isDisqualified(aSeat);
+		}
+
+		/**
+		 * Получить количество ходов текущей игры.
+		 * @return - Количество ходов.
+		 */
+		public int getMovesCount()
+		{
+			return mMovesCount;
+		}
+
+		/**
+		 * Получить место победителя текущей игры.
+		 * @return - Место победителя. -1 - ничья.
+		 */
+		public int getWinnerSeat()
+		{
+			return mWinnerSeat;
+		}
+	}
+
+	/**
+	 * Создать архив по отображенным в память файлам.
+	 * @param aGamesCount - Количество игр.
+	 * @param aIndexSegments - Отображения указателя.
+	 * @param aDataSegments - Отображения журнала.
+	 */
+	private GameArchive(int aGamesCount, MappedByteBuffer[] aIndexSegments, MappedByteBuffer[] aDataSegments)
+	{
+		mGamesCount = aGamesCount;
+		mIndexSegments = aIndexSegments;
+		mDataSegments = aDataSegments;
+		mHeaders = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Открыть архив для чтения.
+	 * Архив, открытый GameArchiveWriter, можно читать одновременно с записью в него.
+	 * @param aDataFile - Файл журнала архива (указатель - в файле getIndexFile()).
+	 * @return - Архив.
+	 * @throws IOException - Если не удалось прочитать файлы, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если файлы не являются журналом и указателем, то вызывается исключение.
+	 */
+	public static GameArchive open(Path aDataFile) throws IOException, IllegalArgumentException
+	{
+		long dataEnd;
+		long recordsCount;
+		MappedByteBuffer[] indexSegments;
+		try (FileChannel index = FileChannel.open(getIndexFile(aDataFile), StandardOpenOption.READ))
+		{
+			ByteBuffer header = ByteBuffer.allocate(GameArchiveWriter.INDEX_HEADER_BYTES);
+			if (index.read(header, 0) != GameArchiveWriter.INDEX_HEADER_BYTES || header.getInt(0) != GameArchiveWriter.INDEX_MAGIC
+					|| header.getInt(4) != GameArchiveWriter.INDEX_RECORD_BYTES)
+			{
+				throw new IllegalArgumentException("Файл указателя архива поврежден или имеет другой формат.");
+			}
+			dataEnd = header.getLong(GameArchiveWriter.INDEX_DATA_END_OFFSET);
+			recordsCount = (index.size() - GameArchiveWriter.INDEX_HEADER_BYTES) / GameArchiveWriter.INDEX_RECORD_BYTES;
+			if (recordsCount > Integer.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("Слишком много игр в архиве: " + recordsCount);
+			}
+			indexSegments = new MappedByteBuffer[(int)((recordsCount + INDEX_SEGMENT_RECORDS - 1) / INDEX_SEGMENT_RECORDS)];
+			for (int segment = 0; segment < indexSegments.length; segment++)
+			{
+				long first = (long)segment * INDEX_SEGMENT_RECORDS;
+				long count = Math.min(INDEX_SEGMENT_RECORDS, recordsCount - first);
+				indexSegments[segment] = index.map(FileChannel.MapMode.READ_ONLY,
+						GameArchiveWriter.INDEX_HEADER_BYTES + first * GameArchiveWriter.INDEX_RECORD_BYTES, count * GameArchiveWriter.INDEX_RECORD_BYTES);
+			}
+		}
+		// Записи указателя, не подтвержденные позицией конца журнала, еще не имеют игр в журнале.
+		while (recordsCount > 0)
+		{
+			int last = (int)(recordsCount - 1);
+			int record = (last % INDEX_SEGMENT_RECORDS) * GameArchiveWriter.INDEX_RECORD_BYTES;
+			if (indexSegments[last / INDEX_SEGMENT_RECORDS].getLong(record) < dataEnd)
+			{
+				break;
+			}
+			recordsCount--;
+		}
+		MappedByteBuffer[] dataSegments;
+		try (FileChannel data = FileChannel.open(aDataFile, StandardOpenOption.READ))
+		{
+			if (data.size() < dataEnd)
+			{
+				throw new IllegalArgumentException("Указатель архива ссылается за конец журнала (" + dataEnd + " > " + data.size() + ").");
+			}
+			dataSegments = new MappedByteBuffer[(int)((dataEnd + DATA_SEGMENT_STEP - 1) / DATA_SEGMENT_STEP)];
+			for (int segment = 0; segment < dataSegments.length; segment++)
+			{
+				long start = segment * DATA_SEGMENT_STEP;
+				dataSegments[segment] = data.map(FileChannel.MapMode.READ_ONLY, start, Math.min(DATA_SEGMENT_BYTES, dataEnd - start));
+			}
+		}
+		return new GameArchive((int)recordsCount, indexSegments, dataSegments);
+	}
+
+	/**
+	 * Получить файл указателя архива.
+	 * @param aDataFile - Файл журнала архива.
+	 * @return - Файл указателя (имя журнала с добавленным ".idx").
+	 */
+	public static Path getIndexFile(Path aDataFile)
+	{
+		return aDataFile.resolveSibling(aDataFile.getFileName() + ".idx");
+	}
+
+	/**
+	 * Получить количество игр в архиве.
+	 * @return - Количество игр.
+	 */
+	public int getGamesCount()
+	{
+		return mGamesCount;
+	}
+
+	/**
+	 * Создать курсор архива (курсор еще не установлен ни на какую игру).
+	 * @return - Курсор.
+	 */
+	public Cursor createCursor()
+	{
+		return new Cursor();
+	}
+
+	/**
+	 * Получить место победителя игры по указателю (не читая журнал).
+	 * @param aGame - Номер игры.
+	 * @return - Место победителя. -1 - ничья.
+	 * @throws IllegalArgumentException - Если игры с таким номером нет, то вызывается исключение.
+	 */
+	public int getWinnerSeat(int aGame) throws IllegalArgumentException
+	{
+		checkGame(aGame);
+		return mIndexSegments[aGame / INDEX_SEGMENT_RECORDS].get((aGame % INDEX_SEGMENT_RECORDS) * GameArchiveWriter.INDEX_RECORD_BYTES + 21) - 1;
+	}
+
+	/**
+	 * Получить количество ходов игры по указателю (не читая журнал).
+	 * @param aGame - Номер игры.
+	 * @return - Количество ходов.
+	 * @throws IllegalArgumentException - Если игры с таким номером нет, то вызывается исключение.
+	 */
+	public int getMovesCount(int aGame) throws IllegalArgumentException
+	{
+		checkGame(aGame);
+		return mIndexSegments[aGame / INDEX_SEGMENT_RECORDS].getInt((aGame % INDEX_SEGMENT_RECORDS) * GameArchiveWriter.INDEX_RECORD_BYTES + 16);
+	}
+
+	/**
+	 * Найти следующую игру с заданным итогом (просматривается только указатель).
+	 * @param aFromGame - Номер игры, с которой начинается поиск.
+	 * @param aWinnerSeat - Место победителя. -1 - ничья.
+	 * @return - Номер найденной игры. -1 - таких игр больше нет.
+	 */
+	public int findGame(int aFromGame, int aWinnerSeat)
+	{
+		byte code = (byte)(aWinnerSeat + 1);
+		for (int game = Math.max(aFromGame, 0); game < mGamesCount; game++)
+		{
+			if (mIndexSegments[game / INDEX_SEGMENT_RECORDS].get((game % INDEX_SEGMENT_RECORDS) * GameArchiveWriter.INDEX_RECORD_BYTES + 21) == code)
+			{
+				return game;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Просмотреть все игры архива в нескольких потоках.
+	 * Архив делится на части по SCAN_GAMES_PER_TASK игр. Для каждой части создается свое состояние
+	 * и свой курсор, посетитель вызывается для каждой игры части с курсором, установленным на эту игру,
+	 * а состояния частей сливаются в порядке частей.
+	 * @param <T> - Тип состояния (например, накапливаемой статистики).
+	 * @param aThreadsCount - Количество потоков (не меньше 1).
+	 * @param aStateFactory - Создатель пустого состояния.
+	 * @param aVisitor - Посетитель игры: получает состояние части и курсор.
+	 * @param aMerger - Слияние состояний: возвращает состояние, объединяющее оба.
+	 * @return - Объединенное состояние всех частей (пустое состояние, если игр нет).
+	 * @throws IllegalArgumentException - Если количество потоков не положительное, то вызывается исключение.
+	 */
+	public <T> T scan(int aThreadsCount, Supplier<T> aStateFactory, BiConsumer<T, Cursor> aVisitor, BinaryOperator<T> aMerger) throws IllegalArgumentException
+	{
+		if (aThreadsCount < 1)
+		{
+			throw new IllegalArgumentException("Количество потоков должно быть положительным: " + aThreadsCount);
+		}
+		ArrayList<Callable<T>> tasks = new ArrayList<>();
+		for (int firstGame = 0; firstGame < mGamesCount; firstGame += SCAN_GAMES_PER_TASK)
+		{
+			int taskFirstGame = firstGame;
+			int taskLastGame = (int)Math.min((long)firstGame + SCAN_GAMES_PER_TASK, mGamesCount);
+			tasks.add(() -> {
+				T state = aStateFactory.get();
+				Cursor cursor = new Cursor();
+				for (int game = taskFirstGame; game < taskLastGame; game++)
+				{
+					cursor.seek(game);
+					aVisitor.accept(state, cursor);
+				}
+				return state;
+			});
+		}
+
+		T result = aStateFactory.get();
+		ExecutorService pool = Executors.newWorkStealingPool(aThreadsCount);
+		try
+		{
+			List<Future<T>> futures = pool.invokeAll(tasks);
+			for (Future<T> future: futures)
+			{
+				result = aMerger.apply(result, future.get());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Просмотр архива прерван.", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Ошибка при просмотре архива.", e.getCause());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		return result;
+	}
+
+	/**
+	 * Проверить есть ли в архиве игра с номером.
+	 * @param aGame - Номер игры.
+	 * @throws IllegalArgumentException - Если игры с таким номером нет, то вызывается исключение.
+	 */
+	private void checkGame(int aGame) throws IllegalArgumentException
+	{
+		if (aGame < 0 || aGame >= mGamesCount)
+		{
+			throw new IllegalArgumentException("В архиве нет игры с номером " + aGame + " (всего игр " + mGamesCount + ").");
+		}
+	}
+
+	/**
+	 * Получить разобранный заголовок журнала (заголовки разбираются при первом обращении).
+	 * @param aOffset - Позиция заголовка в журнале.
+	 * @return - Заголовок.
+	 * @throws IllegalArgumentException - Если заголовок поврежден, то вызывается исключение.
+	 */
+	private GameLogDecoder.Header getHeader(long aOffset) throws IllegalArgumentException
+	{
+		GameLogDecoder.Header result = mHeaders.get(aOffset);
+		if (result == null)
+		{
+			ByteBuffer data = mDataSegments[(int)(aOffset / DATA_SEGMENT_STEP)].duplicate();
+			data.position((int)(aOffset % DATA_SEGMENT_STEP));
+			if (data.get() != GameLogWriter.TAG_HEADER)
+			{
+				throw new IllegalArgumentException("Указатель архива не соответствует журналу: нет заголовка в позиции " + aOffset + ".");
+			}
+			result = GameLogDecoder.readHeader(data);
+			GameLogDecoder.Header previous = mHeaders.putIfAbsent(aOffset, result);
+			if (previous != null)
+			{
+				result = previous;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Точка входа для работы с архивом игр из командной строки.
+	 * Команды:
+	 *  - index файл_журнала - построить (дополнить) указатель журнала, превратив его в архив;
+	 *  - game файл_журнала номер_игры - вывести игру с данным номером;
+	 *  - find файл_журнала место_победителя [количество] - вывести номера игр с данным итогом (-1 - ничьи);
+	 *  - openings файл_журнала [количество_потоков] - вывести долю побед по первому ходу игры.
+	 * @param args - Параметры командной строки.
+	 */
+	public static void main(String[] args)
+	{
+		String command = (args.length > 0) ? args[0].toLowerCase() : "";
+		if (args.length < ((command.equals("game") || command.equals("find")) ? 3 : 2))
+		{
+			printUsage();
+			return;
+		}
+		Path file = Paths.get(args[1]);
+		try
+		{
+			switch (command)
+			{
+				case "index":
+					// Указатель согласуется с журналом при открытии архива для дописывания.
+					GameArchiveWriter.open(file).close();
+					System.out.println("В архиве " + file + " игр: " + open(file).getGamesCount());
+					break;
+				case "game":
+					printGame(open(file), Integer.parseInt(args[2]));
+					break;
+				case "find":
+					GameArchive archive = open(file);
+					int winnerSeat = Integer.parseInt(args[2]);
+					int limit = (args.length > 3) ? Integer.parseInt(args[3]) : 20;
+					StringBuilder games = new StringBuilder();
+					int found = 0;
+					for (int game = archive.findGame(0, winnerSeat); game >= 0; game = archive.findGame(game + 1, winnerSeat))
+					{
+						if (found < limit)
+						{
+							games.append(' ').append(game);
+						}
+						found++;
+					}
+					System.out.println("Найдено игр: " + found + (found > 0 ? "." + games : ""));
+					break;
+				case "openings":
+					printOpenings(open(file), (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors());
+					break;
+				default:
+					printUsage();
+					break;
+			}
+		}
+		catch (IOException | IllegalArgumentException e)
+		{
+			String eMsg = e.getLocalizedMessage();
+			System.out.println("Архив не может быть прочитан по причине: " + (eMsg != null ? eMsg : "Неизвестно."));
+		}
+	}
+
+	/**
+	 * Вывести в консоль игру архива.
+	 * @param aArchive - Архив.
+	 * @param aGame - Номер игры.
+	 */
+	private static void printGame(GameArchive aArchive, int aGame)
+	{
+		Cursor cursor = aArchive.createCursor();
+		cursor.seek(aGame);
+		System.out.print(cursor.getRules());
+		for (int seat = 0; seat < cursor.getPlayersCount(); seat++)
+		{
+			System.out.println("Место " + seat + ": " + cursor.getPlayerName(seat) + " (" + cursor.getPlayerFigure(seat) + ")");
+		}
+		int xSize = cursor.getRules().getBoardXSize();
+		StringBuilder moves = new StringBuilder();
+		int cell;
+		while ((cell = cursor.nextMove()) >= 0)
+		{
+			moves.append(' ').append(cursor.getPlayerFigure(cursor.getMoverSeat()))
+					.append('(').append(cell % xSize).append(',').append(cell / xSize).append(')');
+		}
+		System.out.println("Ходы:" + moves);
+		System.out.println((cursor.getWinnerSeat() >= 0) ? "Выиграл " + cursor.getPlayerName(cursor.getWinnerSeat()) : "Ничья");
+	}
+
+	/**
+	 * Вывести в консоль долю побед ходившего первым игрока по первому ходу игры (для игр на доске первой игры архива).
+	 * @param aArchive - Архив.
+	 * @param aThreadsCount - Количество потоков.
+	 */
+	private static void printOpenings(GameArchive aArchive, int aThreadsCount)
+	{
+		if (aArchive.getGamesCount() == 0)
+		{
+			System.out.println("Архив пуст.");
+			return;
+		}
+		Cursor first = aArchive.createCursor();
+		first.seek(0);
+		int xSize = first.getRules().getBoardXSize();
+		int ySize = first.getRules().getBoardYSize();
+		int cellsCount = xSize * ySize;
+		long start = System.nanoTime();
+		// Для каждой клеточки: игры, победы ходившего первым, ничьи.
+		long[] stats = aArchive.scan(aThreadsCount, () -> new long[3 * cellsCount], (state, cursor) -> {
+			Rules rules = cursor.getRules();
+			if (rules.getBoardXSize() == xSize && rules.getBoardYSize() == ySize)
+			{
+				int cell = cursor.nextMove();
+				if (cell >= 0)
+				{
+					state[3 * cell]++;
+					if (cursor.getWinnerSeat() == cursor.getMoverSeat())
+					{
+						state[3 * cell + 1]++;
+					}
+					else if (cursor.getWinnerSeat() < 0)
+					{
+						state[3 * cell + 2]++;
+					}
+				}
+			}
+		}, (a, b) -> {
+			for (int i = 0; i < a.length; i++)
+			{
+				a[i] += b[i];
+			}
+			return a;
+		});
+		long elapsed = System.nanoTime() - start;
+		Integer[] cells = new Integer[cellsCount];
+		for (int cell = 0; cell < cellsCount; cell++)
+		{
+			cells[cell] = cell;
+		}
+		Arrays.sort(cells, (a, b) -> Long.compare(stats[3 * b], stats[3 * a]));
+		System.out.println("Первый ход (x,y): игр, побед ходившего первым, ничьих");
+		for (int i = 0; i < Math.min(20, cellsCount) && stats[3 * cells[i]] > 0; i++)
+		{
+			int cell = cells[i];
+			long games = stats[3 * cell];
+			System.out.println(String.format("(%d,%d): %d, %.1f%%, %.1f%%", cell % xSize, cell / xSize, games,
+					100.0 * stats[3 * cell + 1] / games, 100.0 * stats[3 * cell + 2] / games));
+		}
+		System.out.println(String.format("Просмотрено игр: %d за %.3f с.", aArchive.getGamesCount(), elapsed / 1e9));
+	}
+
+	/**
+	 * Вывести в консоль описание параметров командной строки.
+	 */
+	private static void printUsage()
+	{
+		System.out.println("Параметры: команда файл_журнала [параметры_команды]");
+		System.out.println("Команды:");
+		System.out.println("  index файл_журнала - построить (дополнить) указатель журнала;");
+		System.out.println("  game файл_журнала номер_игры - вывести игру;");
+		System.out.println("  find файл_журнала место_победителя [количество] - вывести номера игр с данным итогом (-1 - ничьи);");
+		System.out.println("  openings файл_журнала [количество_потоков] - вывести долю побед по первому ходу.");
+		System.out.println("Например: openings games-15x15.czl 4");
+	}
+
+}
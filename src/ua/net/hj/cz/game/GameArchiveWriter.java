@@ -0,0 +1,268 @@
+package ua.net.hj.cz.game;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Описывает запись игр в архив (см. GameArchive): журнал игр (см. GameLogWriter) и указатель его игр.
+ * Указатель - файл из заголовка и записей фиксированного размера (по одной на игру):
+ *  - заголовок (INDEX_HEADER_BYTES): сигнатура INDEX_MAGIC, размер записи, позиция конца журнала,
+ *    до которой все игры журнала внесены в указатель;
+ *  - запись (INDEX_RECORD_BYTES): позиция записи игры в журнале, позиция действующего для нее заголовка,
+ *    количество ходов, место первого игрока и (место_победителя + 1) или 0 при ничьей.
+ * Журнал и указатель только дописываются. Записи указателя копятся в буфере и попадают в файл
+ * только после того, как игры, на которые они указывают, вытолкнуты в файл журнала,
+ * а позиция конца журнала в заголовке обновляется последней, поэтому читатели архива (и сбой записи)
+ * никогда не видят указатель, ссылающийся на незаписанные игры.
+ * При открытии архива для дописывания игры журнала за позицией конца (оставшиеся после сбоя или записанные
+ * обычным GameLogWriter) вносятся в указатель, а оборванная последняя игра отрезается,
+ * поэтому открытие существующего журнала превращает его в архив.
+ * Экземпляр не предназначен для одновременного использования из нескольких потоков.
+ * @author Hobbit Jedi
+ */
+public class GameArchiveWriter extends GameLogWriter {
+	static final int INDEX_MAGIC = 0x435A4931;           // Сигнатура файла указателя ("CZI1").
+	static final int INDEX_HEADER_BYTES = 16;            // Размер заголовка указателя: сигнатура, размер записи, позиция конца журнала.
+	static final int INDEX_RECORD_BYTES = 24;            // Размер записи указателя.
+	static final int INDEX_DATA_END_OFFSET = 8;          // Позиция в заголовке указателя позиции конца журнала.
+	private static final int INDEX_BUFFER_RECORDS = 4096; // Количество записей в буфере указателя.
+
+	private final FileChannel mIndexChannel; // Файл указателя.
+	private final ByteBuffer mIndexBuffer;   // Буфер еще не записанных в файл записей указателя.
+	private final ByteBuffer mDataEnd;       // Буфер для записи позиции конца журнала в заголовок указателя.
+	private long mIndexPosition;             // Позиция в файле указателя, с которой пишется буфер.
+
+	/**
+	 * Создать архив для дописывания.
+	 * @param aOut - Поток журнала, дописывающий в конец файла.
+	 * @param aPosition - Размер файла журнала. 0 - журнал новый.
+	 * @param aIndexChannel - Файл указателя, согласованный с журналом.
+	 * @throws IOException - Если не удалось записать сигнатуру журнала, то вызывается исключение.
+	 */
+	private GameArchiveWriter(OutputStream aOut, long aPosition, FileChannel aIndexChannel) throws IOException
+	{
+		super(aOut, aPosition);
+		mIndexChannel = aIndexChannel;
+		mIndexBuffer = ByteBuffer.allocate(INDEX_BUFFER_RECORDS * INDEX_RECORD_BYTES);
+		mDataEnd = ByteBuffer.allocate(8);
+		mIndexPosition = aIndexChannel.size();
+	}
+
+	/**
+	 * Открыть архив для дописывания игр.
+	 * Если файлов нет, то создается новый архив. Если указателя нет, то он строится по журналу.
+	 * @param aDataFile - Файл журнала архива (указатель - в файле GameArchive.getIndexFile()).
+	 * @return - Архив, дописывающий игры в конец журнала.
+	 * @throws IOException - Если не удалось прочитать или записать файлы, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если файлы не являются журналом и указателем или журнал поврежден, то вызывается исключение.
+	 */
+	public static GameArchiveWriter open(Path aDataFile) throws IOException, IllegalArgumentException
+	{
+		GameLogWriter.checkLogFile(aDataFile);
+		FileChannel index = FileChannel.open(GameArchive.getIndexFile(aDataFile),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try
+		{
+			long dataSize = recover(aDataFile, index);
+			return new GameArchiveWriter(Files.newOutputStream(aDataFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND), dataSize, index);
+		}
+		catch (IOException | IllegalArgumentException e)
+		{
+			index.close();
+			throw e;
+		}
+	}
+
+	@Override
+	protected void gameWritten(long aHeaderOffset, long aGameOffset, int aFirstSeat, int aMovesCount, int aWinnerSeat) throws IOException
+	{
+		// Запись ставится в буфер до выталкивания: позиция конца журнала, записываемая flush(), уже включает эту игру.
+		putRecord(mIndexBuffer, aHeaderOffset, aGameOffset, aFirstSeat, aMovesCount, aWinnerSeat);
+		if (!mIndexBuffer.hasRemaining())
+		{
+			flush();
+		}
+	}
+
+	/**
+	 * Вытолкнуть записанные игры в файл журнала, а затем их записи - в файл указателя.
+	 * @throws IOException - Если не удалось записать, то вызывается исключение.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		super.flush();
+		mIndexBuffer.flip();
+		while (mIndexBuffer.hasRemaining())
+		{
+			mIndexPosition += mIndexChannel.write(mIndexBuffer, mIndexPosition);
+		}
+		mIndexBuffer.clear();
+		writeDataEnd(mIndexChannel, mDataEnd, getPosition());
+	}
+
+	/**
+	 * Закрыть архив (незавершенная игра отбрасывается).
+	 * @throws IOException - Если не удалось записать или закрыть файлы, то вызывается исключение.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			abortGame();
+			flush();
+			super.close();
+		}
+		finally
+		{
+			mIndexChannel.close();
+		}
+	}
+
+	/**
+	 * Согласовать указатель с журналом.
+	 * Записи указателя, не подтвержденные позицией конца журнала, отбрасываются,
+	 * полные игры журнала за позицией конца вносятся в указатель, а остаток журнала после них отрезается.
+	 * @param aDataFile - Файл журнала.
+	 * @param aIndex - Файл указателя (пустой - новый).
+	 * @return - Размер журнала после согласования. 0 - журнал пуст.
+	 * @throws IOException - Если не удалось прочитать или записать файлы, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если указатель не является указателем журнала или журнал поврежден, то вызывается исключение.
+	 */
+	private static long recover(Path aDataFile, FileChannel aIndex) throws IOException, IllegalArgumentException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(INDEX_BUFFER_RECORDS * INDEX_RECORD_BYTES);
+		long dataSize = Files.isRegularFile(aDataFile) ? Files.size(aDataFile) : 0;
+		long dataEnd = 0;
+		long headerOffset = -1;
+		long recordsCount = 0;
+		if (aIndex.size() == 0)
+		{
+			buffer.putInt(INDEX_MAGIC);
+			buffer.putInt(INDEX_RECORD_BYTES);
+			buffer.putLong(0L);
+			buffer.flip();
+			aIndex.write(buffer, 0);
+			buffer.clear();
+		}
+		else
+		{
+			buffer.limit(INDEX_HEADER_BYTES);
+			if (aIndex.size() < INDEX_HEADER_BYTES || aIndex.read(buffer, 0) != INDEX_HEADER_BYTES
+					|| buffer.getInt(0) != INDEX_MAGIC || buffer.getInt(4) != INDEX_RECORD_BYTES)
+			{
+				throw new IllegalArgumentException("Файл указателя архива поврежден или имеет другой формат.");
+			}
+			dataEnd = buffer.getLong(INDEX_DATA_END_OFFSET);
+			if (dataEnd > dataSize)
+			{
+				throw new IllegalArgumentException("Указатель архива ссылается за конец журнала (" + dataEnd + " > " + dataSize + ").");
+			}
+			// Оставляем только записи игр, лежащих до позиции конца журнала.
+			recordsCount = (aIndex.size() - INDEX_HEADER_BYTES) / INDEX_RECORD_BYTES;
+			while (recordsCount > 0)
+			{
+				buffer.clear();
+				buffer.limit(INDEX_RECORD_BYTES);
+				aIndex.read(buffer, INDEX_HEADER_BYTES + (recordsCount - 1) * INDEX_RECORD_BYTES);
+				if (buffer.getLong(0) < dataEnd)
+				{
+					headerOffset = buffer.getLong(8);
+					break;
+				}
+				recordsCount--;
+			}
+			buffer.clear();
+		}
+		long indexPosition = INDEX_HEADER_BYTES + recordsCount * INDEX_RECORD_BYTES;
+		aIndex.truncate(indexPosition);
+		if (dataSize > Math.max(dataEnd, 4))
+		{
+			// Вносим в указатель игры, записанные после позиции конца журнала.
+			try (FileChannel data = FileChannel.open(aDataFile, StandardOpenOption.READ, StandardOpenOption.WRITE))
+			{
+				GameLogReader reader = new GameLogReader(data, headerOffset, Math.max(dataEnd, 4));
+				dataEnd = reader.getPosition();
+				try
+				{
+					while (reader.nextGame())
+					{
+						while (reader.nextMove() >= 0)
+						{
+							// Ходы только пересчитываются.
+						}
+						if (!buffer.hasRemaining())
+						{
+							buffer.flip();
+							while (buffer.hasRemaining())
+							{
+								indexPosition += aIndex.write(buffer, indexPosition);
+							}
+							buffer.clear();
+						}
+						putRecord(buffer, reader.getHeaderOffset(), reader.getGameOffset(), reader.getFirstSeat(), reader.getMovesCount(), reader.getWinnerSeat());
+						dataEnd = reader.getPosition();
+					}
+				}
+				catch (EOFException e)
+				{
+					// Последняя игра оборвана - отрезаем ее.
+				}
+				buffer.flip();
+				while (buffer.hasRemaining())
+				{
+					indexPosition += aIndex.write(buffer, indexPosition);
+				}
+				data.truncate(dataEnd);
+			}
+		}
+		else if (dataSize > 0)
+		{
+			dataEnd = dataSize;
+		}
+		writeDataEnd(aIndex, ByteBuffer.allocate(8), dataEnd);
+		return dataEnd;
+	}
+
+	/**
+	 * Дописать запись указателя в буфер.
+	 * @param aBuffer - Буфер.
+	 * @param aHeaderOffset - Позиция в журнале заголовка, действующего для игры.
+	 * @param aGameOffset - Позиция в журнале записи игры.
+	 * @param aFirstSeat - Место игрока, который ходит первым.
+	 * @param aMovesCount - Количество ходов игры.
+	 * @param aWinnerSeat - Место победителя. -1 - ничья.
+	 */
+	private static void putRecord(ByteBuffer aBuffer, long aHeaderOffset, long aGameOffset, int aFirstSeat, int aMovesCount, int aWinnerSeat)
+	{
+		aBuffer.putLong(aGameOffset);
+		aBuffer.putLong(aHeaderOffset);
+		aBuffer.putInt(aMovesCount);
+		aBuffer.put((byte)aFirstSeat);
+		aBuffer.put((byte)(aWinnerSeat + 1));
+		aBuffer.putShort((short)0);
+	}
+
+	/**
+	 * Записать в заголовок указателя позицию конца журнала.
+	 * @param aIndex - Файл указателя.
+	 * @param aBuffer - Буфер на 8 байт.
+	 * @param aDataEnd - Позиция конца журнала.
+	 * @throws IOException - Если не удалось записать, то вызывается исключение.
+	 */
+	private static void writeDataEnd(FileChannel aIndex, ByteBuffer aBuffer, long aDataEnd) throws IOException
+	{
+		aBuffer.clear();
+		aBuffer.putLong(aDataEnd);
+		aBuffer.flip();
+		aIndex.write(aBuffer, INDEX_DATA_END_OFFSET);
+	}
+
+}
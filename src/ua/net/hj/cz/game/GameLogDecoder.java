@@ -0,0 +1,263 @@
+package ua.net.hj.cz.game;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает разбор формата журнала игр (см. GameLogWriter), общий для GameLogReader, GameArchive и GameArchiveWriter.
+ * Статические методы разбирают числа и заголовки из буфера, начиная с его текущей позиции
+ * (если данных в буфере не хватает, то вызывается BufferUnderflowException, и читатель потока может дочитать данные и повторить разбор).
+ * Экземпляр восстанавливает очередность хода игры по кодам ходов и дисквалификаций.
+ * @author Hobbit Jedi
+ */
+final class GameLogDecoder {
+	static final int MAX_VARINT_BYTES = 10;           // Наибольшая длина числа в формате varint.
+	static final int DISQUALIFICATION = -2;           // Результат decodeMove(): код дисквалификации (хода нет).
+	private static final ActionFigure[] FIGURES = ActionFigure.values(); // Все фигуры (по порядковым номерам).
+
+	private boolean[] mIsDisqualified;  // Признаки дисквалификации игроков по местам.
+	private int mFirstSeat;             // Место игрока, который ходит первым.
+	private int mNextSeat;              // Место игрока, чья очередь хода.
+	private int mMoverSeat;             // Место игрока, сделавшего последний ход. -1 - ходов еще не было.
+	private int mMovesCount;            // Количество разобранных ходов.
+
+	/**
+	 * Описывает разобранный заголовок журнала.
+	 */
+	static final class Header
+	{
+		final Rules mRules;            // Правила игры.
+		final String[] mNames;         // Имена игроков по местам.
+		final ActionFigure[] mFigures; // Фигуры игроков по местам.
+
+		Header(Rules aRules, String[] aNames, ActionFigure[] aFigures)
+		{
+			mRules = aRules;
+			mNames = aNames;
+			mFigures = aFigures;
+		}
+	}
+
+	GameLogDecoder()
+	{
+		mIsDisqualified = new boolean[0];
+		mFirstSeat = 0;
+		mNextSeat = 0;
+		mMoverSeat = -1;
+		mMovesCount = 0;
+	}
+
+	/**
+	 * Начать разбор ходов игры.
+	 * @param aSeatsCount - Количество мест игроков (из заголовка игры).
+	 * @param aFirstSeat - Место игрока, который ходит первым.
+	 * @throws IllegalArgumentException - Если место первого игрока некорректно, то вызывается исключение.
+	 */
+	void startGame(int aSeatsCount, long aFirstSeat) throws IllegalArgumentException
+	{
+		if (aFirstSeat < 0 || aFirstSeat >= aSeatsCount)
+		{
+			throw new IllegalArgumentException("Журнал игр поврежден: некорректное место первого игрока " + aFirstSeat + ".");
+		}
+		if (mIsDisqualified.length != aSeatsCount)
+		{
+			mIsDisqualified = new boolean[aSeatsCount];
+		}
+		else
+		{
+			Arrays.fill(mIsDisqualified, false);
+		}
+		mFirstSeat = (int)aFirstSeat;
+		mNextSeat = mFirstSeat;
+		mMoverSeat = -1;
+		mMovesCount = 0;
+	}
+
+	/**
+	 * Разобрать код хода и продвинуть очередность хода.
+	 * @param aCode - Код хода из журнала.
+	 * @return - Индекс клеточки хода; DISQUALIFICATION - игрок, чья очередь хода, дисквалифицирован; -1 - конец ходов игры.
+	 */
+	int decodeMove(long aCode)
+	{
+		int result;
+		if (aCode >= GameLogWriter.MOVE_BASE)
+		{
+			mMoverSeat = mNextSeat;
+			mNextSeat = nextActiveSeat(mNextSeat);
+			mMovesCount++;
+			result = (int)(aCode - GameLogWriter.MOVE_BASE);
+		}
+		else if (aCode == GameLogWriter.MOVE_DISQUALIFICATION)
+		{
+			mIsDisqualified[mNextSeat] = true;
+			mNextSeat = nextActiveSeat(mNextSeat);
+			result = DISQUALIFICATION;
+		}
+		else
+		{
+			result = -1;
+		}
+		return result;
+	}
+
+	/**
+	 * Разобрать итог игры.
+	 * @param aCode - Код итога из журнала.
+	 * @return - Место победителя. -1 - ничья.
+	 * @throws IllegalArgumentException - Если место победителя некорректно, то вызывается исключение.
+	 */
+	int decodeWinner(long aCode) throws IllegalArgumentException
+	{
+		if (aCode < 0 || aCode > mIsDisqualified.length)
+		{
+			throw new IllegalArgumentException("Журнал игр поврежден: некорректное место победителя " + (aCode - 1) + ".");
+		}
+		return (int)aCode - 1;
+	}
+
+	/**
+	 * Получить место игрока, который ходит первым.
+	 * @return - Место игрока.
+	 */
+	int getFirstSeat()
+	{
+		return mFirstSeat;
+	}
+
+	/**
+	 * Получить место игрока, сделавшего последний разобранный ход.
+	 * @return - Место игрока. -1 - ходов еще не было.
+	 */
+	int getMoverSeat()
+	{
+		return mMoverSeat;
+	}
+
+	/**
+	 * Получить количество разобранных ходов игры.
+	 * @return - Количество ходов.
+	 */
+	int getMovesCount()
+	{
+		return mMovesCount;
+	}
+
+	/**
+	 * Проверить был ли игрок дисквалифицирован в разобранной части игры.
+	 * @param aSeat - Место игрока.
+	 * @return - Признак дисквалификации.
+	 */
+	boolean isDisqualified(int aSeat)
+	{
+		return mIsDisqualified[aSeat];
+	}
+
+	/**
+	 * Получить следующее по кругу место не дисквалифицированного игрока.
+	 * @param aSeat - Место, от которого ведется поиск.
+	 * @return - Следующее место.
+	 */
+	private int nextActiveSeat(int aSeat)
+	{
+		int seat = aSeat;
+		for (int i = 0; i < mIsDisqualified.length; i++)
+		{
+			seat = (seat + 1 == mIsDisqualified.length) ? 0 : seat + 1;
+			if (!mIsDisqualified[seat])
+			{
+				break;
+			}
+		}
+		return seat;
+	}
+
+	/**
+	 * Прочитать неотрицательное число в формате varint.
+	 * @param aBuffer - Буфер (читается с текущей позиции).
+	 * @return - Число.
+	 * @throws IllegalArgumentException - Если число длиннее 64 бит, то вызывается исключение.
+	 */
+	static long readVarint(ByteBuffer aBuffer) throws IllegalArgumentException
+	{
+		byte b = aBuffer.get();
+		if (b >= 0) // Коды ходов на досках до 126 клеточек занимают один байт.
+		{
+			return b;
+		}
+		long result = b & 0x7F;
+		for (int shift = 7; shift < 64; shift += 7)
+		{
+			b = aBuffer.get();
+			result |= (long)(b & 0x7F) << shift;
+			if (b >= 0)
+			{
+				return result;
+			}
+		}
+		throw new IllegalArgumentException("Журнал игр поврежден: слишком длинное число.");
+	}
+
+	/**
+	 * Прочитать заголовок (вид записи уже прочитан).
+	 * @param aBuffer - Буфер (читается с текущей позиции).
+	 * @return - Заголовок.
+	 * @throws IllegalArgumentException - Если заголовок поврежден, то вызывается исключение.
+	 */
+	static Header readHeader(ByteBuffer aBuffer) throws IllegalArgumentException
+	{
+		int boardXSize = readInt(aBuffer);
+		int boardYSize = readInt(aBuffer);
+		int winLineLength = readInt(aBuffer);
+		int numErrorsAllowed = readInt(aBuffer);
+		int numOfPlayers = readInt(aBuffer);
+		long moveTimeLimit = readVarint(aBuffer);
+		long gameTimeLimit = readVarint(aBuffer);
+		Rules rules = new Rules(boardXSize, boardYSize, winLineLength, numErrorsAllowed, numOfPlayers, moveTimeLimit, gameTimeLimit);
+		int seatsCount = readInt(aBuffer);
+		if (seatsCount < 1 || seatsCount > FIGURES.length)
+		{
+			throw new IllegalArgumentException("Журнал игр поврежден: некорректное количество игроков " + seatsCount + ".");
+		}
+		String[] names = new String[seatsCount];
+		ActionFigure[] figures = new ActionFigure[seatsCount];
+		for (int seat = 0; seat < seatsCount; seat++)
+		{
+			int nameLength = readInt(aBuffer);
+			if (nameLength > GameLogWriter.MAX_NAME_BYTES)
+			{
+				throw new IllegalArgumentException("Журнал игр поврежден: слишком длинное имя игрока (" + nameLength + " байт).");
+			}
+			byte[] name = new byte[nameLength];
+			aBuffer.get(name);
+			names[seat] = new String(name, StandardCharsets.UTF_8);
+			int figure = readInt(aBuffer);
+			if (figure >= FIGURES.length)
+			{
+				throw new IllegalArgumentException("Журнал игр поврежден: некорректная фигура " + figure + ".");
+			}
+			figures[seat] = FIGURES[figure];
+		}
+		return new Header(rules, names, figures);
+	}
+
+	/**
+	 * Прочитать число в формате varint, которое должно поместиться в int.
+	 * @param aBuffer - Буфер (читается с текущей позиции).
+	 * @return - Число.
+	 * @throws IllegalArgumentException - Если число больше Integer.MAX_VALUE, то вызывается исключение.
+	 */
+	private static int readInt(ByteBuffer aBuffer) throws IllegalArgumentException
+	{
+		long result = readVarint(aBuffer);
+		if (result > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Журнал игр поврежден: слишком большое число " + result + ".");
+		}
+		return (int)result;
+	}
+
+}
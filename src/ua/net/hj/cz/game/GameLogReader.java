@@ -0,0 +1,499 @@
+package ua.net.hj.cz.game;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает потоковое чтение журнала игр, записанного GameLogWriter.
+ * Игры читаются по очереди: nextGame() переходит к следующей игре, nextMove() выдает ее ходы по одному.
+ * Чтение идет через собственный буфер, и ни переход к игре, ни чтение хода не создают объектов
+ * (объекты правил и имен создаются только при чтении заголовков), поэтому из одного файла
+ * можно воспроизвести миллионы игр без нагрузки на сборщик мусора.
+ * Очередность хода восстанавливается по записанным дисквалификациям, поэтому getMoverSeat()
+ * сообщает место игрока, сделавшего последний прочитанный ход.
+ * Экземпляр не предназначен для одновременного использования из нескольких потоков.
+ * @author Hobbit Jedi
+ */
+public class GameLogReader implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16; // Размер буфера чтения.
+
+	private final InputStream mIn;          // Поток журнала.
+	private ByteBuffer mBuffer;             // Буфер чтения (непрочитанные байты - между позицией и пределом).
+	private long mBufferOffset;             // Позиция в журнале начала буфера.
+	private final GameLogDecoder mDecoder;  // Очередность хода текущей игры.
+	private GameLogDecoder.Header mHeader;  // Действующий заголовок. null - заголовок еще не прочитан.
+	private long mHeaderOffset;             // Позиция в журнале действующего заголовка. -1 - заголовок еще не прочитан.
+	private long mGameOffset;               // Позиция в журнале записи текущей игры.
+	private long mHeadersCount;             // Количество прочитанных заголовков.
+	private long mGamesCount;               // Количество прочитанных (начатых) игр.
+	private boolean mIsInGame;              // Признак того, что ходы текущей игры еще не дочитаны.
+	private int mWinnerSeat;                // Место победителя текущей игры. -1 - ничья (или игра не дочитана).
+
+	/**
+	 * Создать читателя журнала из потока.
+	 * @param aIn - Поток журнала. Закрывается вместе с читателем.
+	 * @throws IOException - Если не удалось прочитать сигнатуру, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если поток не является журналом игр, то вызывается исключение.
+	 */
+	public GameLogReader(InputStream aIn) throws IOException, IllegalArgumentException
+	{
+		this(aIn, 0);
+		if (!fillBuffer(4) || mBuffer.getInt() != GameLogWriter.MAGIC)
+		{
+			throw new IllegalArgumentException("Поток не является журналом игр.");
+		}
+	}
+
+	/**
+	 * Создать читателя журнала с середины файла (для дописывания указателя архива).
+	 * Если задана позиция заголовка, то он читается и действует для игр, начиная с позиции чтения.
+	 * @param aData - Файл журнала. Закрывается вместе с читателем.
+	 * @param aHeaderOffset - Позиция в журнале заголовка, действующего на позиции чтения. -1 - нет.
+	 * @param aPosition - Позиция в журнале, с которой начинается чтение записей.
+	 * @throws IOException - Если не удалось прочитать файл, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если по позиции заголовка нет заголовка, то вызывается исключение.
+	 */
+	GameLogReader(FileChannel aData, long aHeaderOffset, long aPosition) throws IOException, IllegalArgumentException
+	{
+		this(Channels.newInputStream(aData.position((aHeaderOffset >= 0) ? aHeaderOffset : aPosition)), (aHeaderOffset >= 0) ? aHeaderOffset : aPosition);
+		if (aHeaderOffset >= 0)
+		{
+			if (readVarint() != GameLogWriter.TAG_HEADER)
+			{
+				throw new IllegalArgumentException("Журнал игр поврежден: нет заголовка в позиции " + aHeaderOffset + ".");
+			}
+			readHeader(aHeaderOffset);
+			aData.position(aPosition);
+			mBuffer.clear();
+			mBuffer.limit(0);
+			mBufferOffset = aPosition;
+		}
+	}
+
+	/**
+	 * Создать читателя без проверки сигнатуры.
+	 * @param aIn - Поток журнала.
+	 * @param aPosition - Позиция в журнале, с которой читает поток.
+	 */
+	private GameLogReader(InputStream aIn, long aPosition)
+	{
+		mIn = aIn;
+		mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+		mBuffer.limit(0);
+		mBufferOffset = aPosition;
+		mDecoder = new GameLogDecoder();
+		mHeader = null;
+		mHeaderOffset = -1;
+		mGameOffset = -1;
+		mHeadersCount = 0;
+		mGamesCount = 0;
+		mIsInGame = false;
+		mWinnerSeat = -1;
+	}
+
+	/**
+	 * Открыть файл журнала для чтения.
+	 * @param aFile - Файл журнала.
+	 * @return - Читатель журнала.
+	 * @throws IOException - Если не удалось открыть файл, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если файл не является журналом игр, то вызывается исключение.
+	 */
+	public static GameLogReader open(Path aFile) throws IOException, IllegalArgumentException
+	{
+		InputStream in = Files.newInputStream(aFile);
+		try
+		{
+			return new GameLogReader(in);
+		}
+		catch (IOException | IllegalArgumentException e)
+		{
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Перейти к следующей игре журнала.
+	 * Недочитанные ходы текущей игры пропускаются.
+	 * @return - true - игра прочитана; false - журнал закончился.
+	 * @throws IOException - Если не удалось прочитать поток или он оборван посреди записи, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если журнал поврежден, то вызывается исключение.
+	 */
+	public boolean nextGame() throws IOException, IllegalArgumentException
+	{
+		while (mIsInGame)
+		{
+			nextMove();
+		}
+		while (true)
+		{
+			if (!fillBuffer(1))
+			{
+				return false;
+			}
+			long offset = getPosition();
+			long tag = readVarint();
+			if (tag == GameLogWriter.TAG_GAME)
+			{
+				mGameOffset = offset;
+				break;
+			}
+			if (tag != GameLogWriter.TAG_HEADER)
+			{
+				throw new IllegalArgumentException("Журнал игр поврежден: неизвестный вид записи " + tag + ".");
+			}
+			readHeader(offset);
+		}
+		if (mHeader == null)
+		{
+			throw new IllegalArgumentException("Журнал игр поврежден: игра записана раньше заголовка.");
+		}
+		mDecoder.startGame(mHeader.mNames.length, readVarint());
+		mWinnerSeat = -1;
+		mIsInGame = true;
+		mGamesCount++;
+		return true;
+	}
+
+	/**
+	 * Прочитать следующий ход текущей игры.
+	 * Дисквалификации учитываются в очередности хода и наружу не выдаются.
+	 * @return - Индекс клеточки хода (y * ширина_поля + x). -1 - ходы игры закончились (итог доступен в getWinnerSeat()).
+	 * @throws IOException - Если не удалось прочитать поток или он оборван посреди записи, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если журнал поврежден, то вызывается исключение.
+	 */
+	public int nextMove() throws IOException, IllegalArgumentException
+	{
+		if (!mIsInGame)
+		{
+			return -1;
+		}
+		int cell;
+		do
+		{
+			cell = mDecoder.decodeMove(readVarint());
+		}
+		while (cell == GameLogDecoder.DISQUALIFICATION);
+		if (cell < 0)
+		{
+			mWinnerSeat = mDecoder.decodeWinner(readVarint());
+			mIsInGame = false;
+		}
+		return cell;
+	}
+
+	/**
+	 * Получить правила текущей игры.
+	 * Объект правил меняется только тогда, когда в журнале встречается новый заголовок.
+	 * @return - Правила. null - игры еще не читались.
+	 */
+	public Rules getRules()
+	{
+		return (mHeader != null) ? mHeader.mRules : null;
+	}
+
+	/**
+	 * Получить количество мест игроков текущей игры.
+	 * @return - Количество мест.
+	 */
+	public int getPlayersCount()
+	{
+		return (mHeader != null) ? mHeader.mNames.length : 0;
+	}
+
+	/**
+	 * Получить имя игрока, занимающего место в текущей игре.
+	 * @param aSeat - Место игрока.
+	 * @return - Имя игрока.
+	 */
+	public String getPlayerName(int aSeat)
+	{
+		return mHeader.mNames[aSeat];
+	}
+
+	/**
+	 * Получить фигуру игрока, занимающего место в текущей игре.
+	 * @param aSeat - Место игрока.
+	 * @return - Фигура игрока.
+	 */
+	public ActionFigure getPlayerFigure(int aSeat)
+	{
+		return mHeader.mFigures[aSeat];
+	}
+
+	/**
+	 * Получить количество прочитанных заголовков.
+	 * Позволяет заметить смену правил или игроков без сравнения объектов.
+	 * @return - Количество заголовков.
+	 */
+	public long getHeadersCount()
+	{
+		return mHeadersCount;
+	}
+
+	/**
+	 * Получить количество прочитанных игр (включая текущую).
+	 * @return - Количество игр.
+	 */
+	public long getGamesCount()
+	{
+		return mGamesCount;
+	}
+
+	/**
+	 * Получить место игрока, который ходит первым в текущей игре.
+	 * @return - Место игрока.
+	 */
+	public int getFirstSeat()
+	{
+		return mDecoder.getFirstSeat();
+	}
+
+	/**
+	 * Получить место игрока, сделавшего последний прочитанный ход.
+	 * @return - Место игрока. -1 - ходов еще не было.
+	 */
+	public int getMoverSeat()
+	{
+		return mDecoder.getMoverSeat();
+	}
+
+	/**
+	 * Проверить был ли игрок дисквалифицирован в уже прочитанной части текущей игры.
+	 * @param aSeat - Место игрока.
+	 * @return - Признак дисквалификации.
+	 */
+	public boolean isDisqualified(int aSeat)
+	{
+		return mDecoder.isDisqualified(aSeat);
+	}
+
+	/**
+	 * Получить количество прочитанных ходов текущей игры.
+	 * @return - Количество ходов.
+	 */
+	public int getMovesCount()
+	{
+		return mDecoder.getMovesCount();
+	}
+
+	/**
+	 * Получить место победителя текущей игры.
+	 * Имеет смысл после того, как nextMove() вернул -1.
+	 * @return - Место победителя. -1 - ничья.
+	 */
+	public int getWinnerSeat()
+	{
+		return mWinnerSeat;
+	}
+
+	/**
+	 * Получить позицию в журнале следующего непрочитанного байта.
+	 * @return - Позиция.
+	 */
+	long getPosition()
+	{
+		return mBufferOffset + mBuffer.position();
+	}
+
+	/**
+	 * Получить позицию в журнале заголовка, действующего для текущей игры.
+	 * @return - Позиция. -1 - заголовок еще не прочитан.
+	 */
+	long getHeaderOffset()
+	{
+		return mHeaderOffset;
+	}
+
+	/**
+	 * Получить позицию в журнале записи текущей игры.
+	 * @return - Позиция. -1 - игры еще не читались.
+	 */
+	long getGameOffset()
+	{
+		return mGameOffset;
+	}
+
+	/**
+	 * Закрыть журнал.
+	 * @throws IOException - Если не удалось закрыть поток, то вызывается исключение.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		mIn.close();
+	}
+
+	/**
+	 * Прочитать заголовок (вид записи уже прочитан).
+	 * Если заголовок не поместился в буфер, то буфер дочитывается (и при необходимости увеличивается), и разбор повторяется.
+	 * @param aOffset - Позиция заголовка в журнале.
+	 * @throws IOException - Если не удалось прочитать поток или он оборван посреди записи, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если заголовок поврежден, то вызывается исключение.
+	 */
+	private void readHeader(long aOffset) throws IOException, IllegalArgumentException
+	{
+		while (true)
+		{
+			int start = mBuffer.position();
+			try
+			{
+				mHeader = GameLogDecoder.readHeader(mBuffer);
+				break;
+			}
+			catch (BufferUnderflowException e)
+			{
+				mBuffer.position(start);
+				int available = mBuffer.remaining();
+				if (available == mBuffer.capacity())
+				{
+					ByteBuffer buffer = ByteBuffer.allocate(mBuffer.capacity() * 2);
+					buffer.put(mBuffer);
+					buffer.flip();
+					mBuffer = buffer;
+				}
+				if (!fillBuffer(available + 1))
+				{
+					throw new EOFException("Журнал игр оборван посреди записи.");
+				}
+			}
+		}
+		mHeaderOffset = aOffset;
+		mHeadersCount++;
+	}
+
+	/**
+	 * Прочитать неотрицательное число в формате varint.
+	 * @return - Число.
+	 * @throws IOException - Если не удалось прочитать поток или он оборван посреди записи, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если число длиннее 64 бит, то вызывается исключение.
+	 */
+	private long readVarint() throws IOException, IllegalArgumentException
+	{
+		if (mBuffer.remaining() < GameLogDecoder.MAX_VARINT_BYTES)
+		{
+			fillBuffer(GameLogDecoder.MAX_VARINT_BYTES);
+		}
+		try
+		{
+			return GameLogDecoder.readVarint(mBuffer);
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new EOFException("Журнал игр оборван посреди записи.");
+		}
+	}
+
+	/**
+	 * Дочитать из потока данные, чтобы в буфере было не меньше заданного количества непрочитанных байт.
+	 * @param aCount - Нужное количество непрочитанных байт (не больше размера буфера).
+	 * @return - false - поток закончился раньше, чем набралось нужное количество байт.
+	 * @throws IOException - Если не удалось прочитать поток, то вызывается исключение.
+	 */
+	private boolean fillBuffer(int aCount) throws IOException
+	{
+		if (mBuffer.remaining() >= aCount)
+		{
+			return true;
+		}
+		mBufferOffset += mBuffer.position();
+		mBuffer.compact();
+		while (mBuffer.position() < aCount)
+		{
+			int count = mIn.read(mBuffer.array(), mBuffer.position(), mBuffer.remaining());
+			if (count < 0)
+			{
+				break;
+			}
+			mBuffer.position(mBuffer.position() + count);
+		}
+		mBuffer.flip();
+		return mBuffer.remaining() >= aCount;
+	}
+
+	/**
+	 * Точка входа для сводки журнала игр из командной строки.
+	 * Выводит количество игр, победы и ничьи по игрокам и среднюю длину игры.
+	 * Параметры: файл_журнала
+	 * @param args - Параметры командной строки.
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length != 1)
+		{
+			System.out.println("Параметры: файл_журнала");
+			System.out.println("Например: games-15x15.czl");
+			return;
+		}
+		Path file = Paths.get(args[0]);
+		LinkedHashMap<String, long[]> players = new LinkedHashMap<>(); // Игрок (с фигурой) -> {игры, победы}.
+		long[][] seatsStats = new long[0][];
+		long draws = 0;
+		long moves = 0;
+		long headersCount = 0;
+		long start = System.nanoTime();
+		try (GameLogReader reader = open(file))
+		{
+			while (reader.nextGame())
+			{
+				if (reader.getHeadersCount() != headersCount)
+				{
+					headersCount = reader.getHeadersCount();
+					seatsStats = new long[reader.getPlayersCount()][];
+					for (int seat = 0; seat < seatsStats.length; seat++)
+					{
+						String key = reader.getPlayerName(seat) + " (" + reader.getPlayerFigure(seat) + ")";
+						seatsStats[seat] = players.computeIfAbsent(key, k -> new long[2]);
+					}
+				}
+				while (reader.nextMove() >= 0)
+				{
+					// Ходы только пересчитываются.
+				}
+				moves += reader.getMovesCount();
+				for (long[] seatStats: seatsStats)
+				{
+					seatStats[0]++;
+				}
+				if (reader.getWinnerSeat() >= 0)
+				{
+					seatsStats[reader.getWinnerSeat()][1]++;
+				}
+				else
+				{
+					draws++;
+				}
+			}
+			long elapsed = System.nanoTime() - start;
+			long games = reader.getGamesCount();
+			System.out.println("Журнал " + file + ": " + Files.size(file) + " байт, игр: " + games + ", ничьих: " + draws
+					+ ", средняя длина игры: " + String.format("%.1f", (games > 0) ? (double)moves / games : 0.0) + " ходов.");
+			for (Map.Entry<String, long[]> entry: players.entrySet())
+			{
+				long[] stats = entry.getValue();
+				System.out.println(entry.getKey() + ": игр " + stats[0] + ", побед " + stats[1]
+						+ String.format(" (%.1f%%)", 100.0 * stats[1] / stats[0]));
+			}
+			System.out.println(String.format("Прочитано за %.3f с (%.0f игр/с).", elapsed / 1e9, games / Math.max(elapsed / 1e9, 1e-9)));
+		}
+		catch (IOException | IllegalArgumentException e)
+		{
+			String eMsg = e.getLocalizedMessage();
+			System.out.println("Журнал не может быть прочитан по причине: " + (eMsg != null ? eMsg : "Неизвестно."));
+		}
+	}
+
+}
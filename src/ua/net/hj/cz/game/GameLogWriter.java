@@ -0,0 +1,435 @@
+package ua.net.hj.cz.game;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.roles.Rules;
+import ua.net.hj.cz.roles.players.PlayerException;
+
+/**
+ * Описывает потоковую запись сыгранных игр в компактный двоичный журнал.
+ * Журнал начинается сигнатурой MAGIC, за которой идут записи двух видов (первый байт - вид записи):
+ *  - TAG_HEADER - заголовок: правила игры (размеры доски, длина линии, допустимое количество ошибок,
+ *    количество игроков, ограничения времени на ход и на игру), количество мест, имя и фигура игрока каждого места.
+ *    Заголовок пишется только перед первой игрой и тогда, когда правила или игроки меняются,
+ *    и действует для всех следующих за ним игр;
+ *  - TAG_GAME - игра: место игрока, который ходит первым, ходы и итог игры.
+ *    Ход записывается числом (индекс_клеточки + 2), дисквалификация игрока, чья очередь хода, - числом 1,
+ *    конец ходов - числом 0, за которым следует (место_победителя + 1) или 0 при ничьей.
+ *    Игроки ходят по кругу по возрастанию мест начиная с первого, поэтому кто сделал ход, в записи не хранится.
+ * Все числа записываются в формате varint (по 7 бит в байте, старший бит - признак продолжения),
+ * поэтому ход на доске до 128 клеточек занимает один байт, а на доске до 16384 клеточек - два.
+ * Игра собирается в повторно используемом буфере и попадает в поток целиком в endGame(),
+ * поэтому запись хода не создает объектов, а прерванная игра (abortGame()) не портит журнал.
+ * Журнал читается классом GameLogReader, а для доступа к играм по номеру к нему строится указатель (см. GameArchiveWriter и GameArchive).
+ * Экземпляр не предназначен для одновременного использования из нескольких потоков.
+ * @author Hobbit Jedi
+ */
+public class GameLogWriter implements Closeable {
+	static final int MAGIC = 0x435A4C31;          // Сигнатура файла журнала ("CZL1").
+	static final int TAG_HEADER = 1;              // Вид записи: заголовок.
+	static final int TAG_GAME = 2;                // Вид записи: игра.
+	static final int MOVE_END = 0;                // Код конца ходов игры.
+	static final int MOVE_DISQUALIFICATION = 1;   // Код дисквалификации игрока, чья очередь хода.
+	static final int MOVE_BASE = 2;               // Смещение индекса клеточки в коде хода.
+	static final int MAX_NAME_BYTES = 1 << 16;    // Наибольшая длина имени игрока в байтах UTF-8.
+	private static final int BUFFER_SIZE = 1 << 16; // Размер буфера потока.
+
+	private final OutputStream mOut;     // Поток журнала.
+	private byte[] mGame;                // Буфер записываемой игры.
+	private int mGameSize;               // Количество байт в буфере игры.
+	private boolean mIsGameStarted;      // Признак того, что игра начата и не завершена.
+	private Rules mRules;                // Правила последнего записанного заголовка. null - заголовка еще не было.
+	private String[] mNames;             // Имена игроков последнего записанного заголовка.
+	private ActionFigure[] mFigures;     // Фигуры игроков последнего записанного заголовка.
+	private long mGamesCount;            // Количество записанных игр.
+	private long mPosition;              // Позиция конца журнала (с учетом еще не вытолкнутых в поток байт).
+	private long mHeaderOffset;          // Позиция последнего записанного заголовка.
+	private int mGameStart;              // Позиция записи игры в буфере игры (перед ней может быть заголовок).
+	private int mFirstSeat;              // Место игрока, который ходит первым в записываемой игре.
+	private int mMovesCount;             // Количество ходов записываемой игры.
+
+	/**
+	 * Создать новый журнал в потоке (в начало потока записывается сигнатура журнала).
+	 * @param aOut - Поток, в который пишется журнал. Закрывается вместе с журналом.
+	 * @throws IOException - Если не удалось записать сигнатуру, то вызывается исключение.
+	 */
+	public GameLogWriter(OutputStream aOut) throws IOException
+	{
+		this(aOut, 0);
+	}
+
+	/**
+	 * Создать журнал в потоке.
+	 * @param aOut - Поток, в который пишется журнал.
+	 * @param aPosition - Размер уже существующего журнала, к которому дописываются игры.
+	 *                    0 - журнал новый, и в начало потока записывается сигнатура.
+	 * @throws IOException - Если не удалось записать сигнатуру, то вызывается исключение.
+	 */
+	protected GameLogWriter(OutputStream aOut, long aPosition) throws IOException
+	{
+		mOut = new BufferedOutputStream(aOut, BUFFER_SIZE);
+		mGame = new byte[256];
+		mGameSize = 0;
+		mIsGameStarted = false;
+		mRules = null;
+		mNames = new String[0];
+		mFigures = new ActionFigure[0];
+		mGamesCount = 0;
+		mPosition = aPosition;
+		mHeaderOffset = -1;
+		mGameStart = 0;
+		mFirstSeat = 0;
+		mMovesCount = 0;
+		if (aPosition == 0)
+		{
+			mOut.write(MAGIC >>> 24);
+			mOut.write(MAGIC >>> 16);
+			mOut.write(MAGIC >>> 8);
+			mOut.write(MAGIC);
+			mPosition = 4;
+		}
+	}
+
+	/**
+	 * Открыть файл журнала для дописывания игр.
+	 * Если файла нет или он пуст, то создается новый журнал.
+	 * @param aFile - Файл журнала.
+	 * @return - Журнал, дописывающий игры в конец файла.
+	 * @throws IOException - Если не удалось открыть файл, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если файл не является журналом игр, то вызывается исключение.
+	 */
+	public static GameLogWriter append(Path aFile) throws IOException, IllegalArgumentException
+	{
+		long size = checkLogFile(aFile);
+		return new GameLogWriter(Files.newOutputStream(aFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND), size);
+	}
+
+	/**
+	 * Проверить, что файл является журналом игр.
+	 * @param aFile - Файл журнала.
+	 * @return - Размер файла. 0 - файла нет или он пуст.
+	 * @throws IOException - Если не удалось прочитать файл, то вызывается исключение.
+	 * @throws IllegalArgumentException - Если файл не является журналом игр, то вызывается исключение.
+	 */
+	static long checkLogFile(Path aFile) throws IOException, IllegalArgumentException
+	{
+		long size = Files.isRegularFile(aFile) ? Files.size(aFile) : 0;
+		if (size > 0)
+		{
+			try (DataInputStream in = new DataInputStream(Files.newInputStream(aFile)))
+			{
+				if (size < 4 || in.readInt() != MAGIC)
+				{
+					throw new IllegalArgumentException("Файл " + aFile + " не является журналом игр.");
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Начать запись игры.
+	 * Если правила или игроки отличаются от записанных в последнем заголовке, то перед игрой пишется новый заголовок.
+	 * Незавершенная предыдущая игра отбрасывается.
+	 * @param aRules - Правила игры.
+	 * @param aNames - Имена игроков по местам.
+	 * @param aFigures - Фигуры игроков по местам.
+	 * @param aFirstSeat - Место игрока, который ходит первым.
+	 * @throws IllegalArgumentException - Если количество имен и фигур не совпадает, место первого игрока некорректно или имя игрока длиннее MAX_NAME_BYTES байт, то вызывается исключение.
+	 */
+	public void beginGame(Rules aRules, String[] aNames, ActionFigure[] aFigures, int aFirstSeat) throws IllegalArgumentException
+	{
+		if (aNames.length != aFigures.length || aFirstSeat < 0 || aFirstSeat >= aNames.length)
+		{
+			throw new IllegalArgumentException("Некорректно переданы игроки (" + aNames.length + " имен, " + aFigures.length
+					+ " фигур, первое место " + aFirstSeat + ") в метод GameLogWriter.beginGame()");
+		}
+		for (String name : aNames)
+		{
+			if (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES)
+			{
+				throw new IllegalArgumentException("Слишком длинное имя игрока передано в метод GameLogWriter.beginGame()");
+			}
+		}
+		abortGame();
+		if (!isHeaderMatching(aRules, aNames, aFigures))
+		{
+			mRules = new Rules(aRules);
+			mNames = aNames.clone();
+			mFigures = aFigures.clone();
+			putVarint(TAG_HEADER);
+			putVarint(aRules.getBoardXSize());
+			putVarint(aRules.getBoardYSize());
+			putVarint(aRules.getWinLineLength());
+			putVarint(aRules.getNumErrorsAllowed());
+			putVarint(aRules.getNumOfPlayers());
+			putVarint(aRules.getMoveTimeLimit());
+			putVarint(aRules.getGameTimeLimit());
+			putVarint(aNames.length);
+			for (int seat = 0; seat < aNames.length; seat++)
+			{
+				byte[] name = aNames[seat].getBytes(StandardCharsets.UTF_8);
+				putVarint(name.length);
+				ensureCapacity(name.length);
+				System.arraycopy(name, 0, mGame, mGameSize, name.length);
+				mGameSize += name.length;
+				putVarint(aFigures[seat].ordinal());
+			}
+		}
+		mGameStart = mGameSize;
+		mFirstSeat = aFirstSeat;
+		mMovesCount = 0;
+		putVarint(TAG_GAME);
+		putVarint(aFirstSeat);
+		mIsGameStarted = true;
+	}
+
+	/**
+	 * Записать ход игрока, чья очередь хода.
+	 * @param aCellIndex - Индекс клеточки хода (y * ширина_поля + x).
+	 * @throws IllegalStateException - Если игра не начата, то вызывается исключение.
+	 */
+	public void addMove(int aCellIndex) throws IllegalStateException
+	{
+		checkGameStarted();
+		putVarint(aCellIndex + MOVE_BASE);
+		mMovesCount++;
+	}
+
+	/**
+	 * Записать дисквалификацию игрока, чья очередь хода.
+	 * Следующий ход делает следующий по кругу игрок.
+	 * @throws IllegalStateException - Если игра не начата, то вызывается исключение.
+	 */
+	public void addDisqualification() throws IllegalStateException
+	{
+		checkGameStarted();
+		putVarint(MOVE_DISQUALIFICATION);
+	}
+
+	/**
+	 * Завершить игру: записать итог и передать игру в поток журнала.
+	 * @param aWinnerSeat - Место победителя. -1 - ничья.
+	 * @throws IOException - Если не удалось записать игру, то вызывается исключение.
+	 * @throws IllegalStateException - Если игра не начата, то вызывается исключение.
+	 */
+	public void endGame(int aWinnerSeat) throws IOException, IllegalStateException
+	{
+		checkGameStarted();
+		putVarint(MOVE_END);
+		putVarint(aWinnerSeat + 1);
+		mOut.write(mGame, 0, mGameSize);
+		if (mGameStart > 0)
+		{
+			mHeaderOffset = mPosition;
+		}
+		long gameOffset = mPosition + mGameStart;
+		mPosition += mGameSize;
+		mGameSize = 0;
+		mIsGameStarted = false;
+		mGamesCount++;
+		gameWritten(mHeaderOffset, gameOffset, mFirstSeat, mMovesCount, aWinnerSeat);
+	}
+
+	/**
+	 * Обработчик записи игры в поток (вызывается в конце endGame()).
+	 * Позволяет наследникам, например, вести указатель игр журнала.
+	 * @param aHeaderOffset - Позиция в журнале заголовка, действующего для игры.
+	 * @param aGameOffset - Позиция в журнале записи игры.
+	 * @param aFirstSeat - Место игрока, который ходит первым.
+	 * @param aMovesCount - Количество ходов игры.
+	 * @param aWinnerSeat - Место победителя. -1 - ничья.
+	 * @throws IOException - Если обработчик не смог записать данные, то вызывается исключение.
+	 */
+	protected void gameWritten(long aHeaderOffset, long aGameOffset, int aFirstSeat, int aMovesCount, int aWinnerSeat) throws IOException
+	{
+		// По умолчанию ничего не делаем.
+	}
+
+	/**
+	 * Получить позицию конца журнала: размер журнала после выталкивания всех записанных игр в поток.
+	 * @return - Позиция конца журнала.
+	 */
+	protected long getPosition()
+	{
+		return mPosition;
+	}
+
+	/**
+	 * Отбросить начатую игру (она не попадет в журнал).
+	 * Если вместе с игрой был подготовлен заголовок, то он будет записан перед следующей игрой.
+	 */
+	public void abortGame()
+	{
+		if (mIsGameStarted && mGameStart > 0)
+		{
+			mRules = null;
+		}
+		mGameSize = 0;
+		mIsGameStarted = false;
+	}
+
+	/**
+	 * Получить количество записанных этим объектом игр.
+	 * @return - Количество игр.
+	 */
+	public long getGamesCount()
+	{
+		return mGamesCount;
+	}
+
+	/**
+	 * Вытолкнуть записанные игры из буфера в поток.
+	 * @throws IOException - Если не удалось записать, то вызывается исключение.
+	 */
+	public void flush() throws IOException
+	{
+		mOut.flush();
+	}
+
+	/**
+	 * Закрыть журнал (незавершенная игра отбрасывается).
+	 * @throws IOException - Если не удалось записать или закрыть поток, то вызывается исключение.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		abortGame();
+		mOut.close();
+	}
+
+	/**
+	 * Проверить совпадают ли правила и игроки с последним записанным заголовком.
+	 * @param aRules - Правила игры.
+	 * @param aNames - Имена игроков по местам.
+	 * @param aFigures - Фигуры игроков по местам.
+	 * @return - true - заголовок писать не нужно.
+	 */
+	private boolean isHeaderMatching(Rules aRules, String[] aNames, ActionFigure[] aFigures)
+	{
+		return mRules != null
+				&& mRules.getBoardXSize() == aRules.getBoardXSize()
+				&& mRules.getBoardYSize() == aRules.getBoardYSize()
+				&& mRules.getWinLineLength() == aRules.getWinLineLength()
+				&& mRules.getNumErrorsAllowed() == aRules.getNumErrorsAllowed()
+				&& mRules.getNumOfPlayers() == aRules.getNumOfPlayers()
+				&& mRules.getMoveTimeLimit() == aRules.getMoveTimeLimit()
+				&& mRules.getGameTimeLimit() == aRules.getGameTimeLimit()
+				&& Arrays.equals(mNames, aNames)
+				&& Arrays.equals(mFigures, aFigures);
+	}
+
+	/**
+	 * Проверить начата ли игра.
+	 * @throws IllegalStateException - Если игра не начата, то вызывается исключение.
+	 */
+	private void checkGameStarted() throws IllegalStateException
+	{
+		if (!mIsGameStarted)
+		{
+			throw new IllegalStateException("Игра не начата: нужно вызвать GameLogWriter.beginGame().");
+		}
+	}
+
+	/**
+	 * Дописать неотрицательное число в буфер игры в формате varint.
+	 * @param aValue - Число.
+	 */
+	private void putVarint(long aValue)
+	{
+		ensureCapacity(10);
+		long value = aValue;
+		while ((value & ~0x7FL) != 0)
+		{
+			mGame[mGameSize++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		mGame[mGameSize++] = (byte)value;
+	}
+
+	/**
+	 * Увеличить буфер игры, если в нем не хватает места.
+	 * @param aBytes - Количество байт, которые нужно дописать.
+	 */
+	private void ensureCapacity(int aBytes)
+	{
+		if (mGameSize + aBytes > mGame.length)
+		{
+			mGame = Arrays.copyOf(mGame, Math.max(mGameSize + aBytes, 2 * mGame.length));
+		}
+	}
+
+	/**
+	 * Точка входа для записи игр компьютерных игроков в журнал из командной строки.
+	 * Если файл журнала уже существует, то игры дописываются в его конец.
+	 * Параметры: файл_журнала ширина_доски высота_доски длина_линии количество_игр тип_игрока_1 тип_игрока_2 [тип_игрока_3 ...]
+	 * Например: games-15x15.czl 15 15 5 1000 EASY RANDOM
+	 * @param args - Параметры командной строки.
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length < 7)
+		{
+			printUsage();
+			return;
+		}
+		Rules rules;
+		int gamesCount;
+		PlayerType[] playerTypes = new PlayerType[args.length - 5];
+		try
+		{
+			int boardXSize = Integer.parseInt(args[1]);
+			int boardYSize = Integer.parseInt(args[2]);
+			int winLineLength = Integer.parseInt(args[3]);
+			gamesCount = Integer.parseInt(args[4]);
+			for (int i = 0; i < playerTypes.length; i++)
+			{
+				playerTypes[i] = PlayerType.valueOf(args[5 + i].toUpperCase());
+			}
+			rules = new Rules(boardXSize, boardYSize, winLineLength, new Rules().getNumErrorsAllowed(), playerTypes.length);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println("Некорректные параметры: " + e.getLocalizedMessage());
+			printUsage();
+			return;
+		}
+		Path file = Paths.get(args[0]);
+		try (GameLogWriter writer = append(file))
+		{
+			Simulation simulation = new Simulation(rules, playerTypes);
+			simulation.setGameLog(writer);
+			System.out.print(rules);
+			System.out.println(simulation.run(gamesCount));
+			simulation.close();
+			writer.flush();
+			System.out.println("В журнал " + file + " записано игр: " + writer.getGamesCount() + ", размер файла " + Files.size(file) + " байт.");
+		}
+		catch (PlayerException | IllegalArgumentException | IOException e)
+		{
+			String eMsg = e.getLocalizedMessage();
+			System.out.println("Игры не могут быть записаны по причине: " + (eMsg != null ? eMsg : "Неизвестно."));
+		}
+	}
+
+	/**
+	 * Вывести в консоль описание параметров командной строки.
+	 */
+	private static void printUsage()
+	{
+		System.out.println("Параметры: файл_журнала ширина_доски высота_доски длина_линии количество_игр тип_игрока_1 тип_игрока_2 [тип_игрока_3 ...]");
+		System.out.println("Типы игроков: RANDOM, EASY, CLEVER, MONTE_CARLO, PERFECT.");
+		System.out.println("Например: games-15x15.czl 15 15 5 1000 EASY RANDOM");
+	}
+
+}
@@ -0,0 +1,139 @@
+package ua.net.hj.cz.game;
+
+import java.util.Arrays;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает запись сыгранной игры: правила (размеры доски, длина линии, количество игроков), сделанные ходы (клеточка и фигура) и итог игры.
+ * В запись попадают только ходы, которые судья принял и отметил на доске.
+ * Игроки в записи различаются по фигурам, поэтому запись не зависит от идентификаторов игроков.
+ * @author Hobbit Jedi
+ */
+public class GameRecord {
+	private final int mXSize;           // Ширина доски.
+	private final int mYSize;           // Высота доски.
+	private final int mWinLineLength;   // Длина линии для победы.
+	private final int mNumOfPlayers;    // Количество игроков.
+	private int[] mCells;               // Клеточки ходов.
+	private byte[] mFigures;            // Фигуры ходов (ActionFigure.ordinal()).
+	private int mMovesCount;            // Количество ходов.
+	private ActionFigure mWinner;       // Фигура победителя. null - ничья (или игра не завершена).
+
+	/**
+	 * Создать пустую запись игры.
+	 * @param aRules - Правила игры.
+	 */
+	public GameRecord(Rules aRules)
+	{
+		mXSize = aRules.getBoardXSize();
+		mYSize = aRules.getBoardYSize();
+		mWinLineLength = aRules.getWinLineLength();
+		mNumOfPlayers = aRules.getNumOfPlayers();
+		mCells = new int[16];
+		mFigures = new byte[16];
+		mMovesCount = 0;
+		mWinner = null;
+	}
+
+	/**
+	 * Добавить ход.
+	 * @param aCellIndex - Индекс клеточки хода (y * ширина_поля + x).
+	 * @param aFigure - Фигура, которой сделан ход.
+	 */
+	public void addMove(int aCellIndex, ActionFigure aFigure)
+	{
+		if (mMovesCount == mCells.length)
+		{
+			mCells = Arrays.copyOf(mCells, mMovesCount << 1);
+			mFigures = Arrays.copyOf(mFigures, mMovesCount << 1);
+		}
+		mCells[mMovesCount] = aCellIndex;
+		mFigures[mMovesCount] = (byte)aFigure.ordinal();
+		mMovesCount++;
+	}
+
+	/**
+	 * Установить итог игры.
+	 * @param aWinner - Фигура победителя. null - ничья.
+	 */
+	public void setWinner(ActionFigure aWinner)
+	{
+		mWinner = aWinner;
+	}
+
+	/**
+	 * Получить ширину доски.
+	 * @return - Ширина доски.
+	 */
+	public int getXSize()
+	{
+		return mXSize;
+	}
+
+	/**
+	 * Получить высоту доски.
+	 * @return - Высота доски.
+	 */
+	public int getYSize()
+	{
+		return mYSize;
+	}
+
+	/**
+	 * Получить длину линии для победы.
+	 * @return - Длина линии.
+	 */
+	public int getWinLineLength()
+	{
+		return mWinLineLength;
+	}
+
+	/**
+	 * Получить количество игроков.
+	 * @return - Количество игроков.
+	 */
+	public int getNumOfPlayers()
+	{
+		return mNumOfPlayers;
+	}
+
+	/**
+	 * Получить количество ходов.
+	 * @return - Количество ходов.
+	 */
+	public int getMovesCount()
+	{
+		return mMovesCount;
+	}
+
+	/**
+	 * Получить клеточку хода.
+	 * @param aIndex - Номер хода (с нуля).
+	 * @return - Индекс клеточки хода.
+	 */
+	public int getCell(int aIndex)
+	{
+		return mCells[aIndex];
+	}
+
+	/**
+	 * Получить фигуру хода.
+	 * @param aIndex - Номер хода (с нуля).
+	 * @return - Фигура, которой сделан ход.
+	 */
+	public ActionFigure getFigure(int aIndex)
+	{
+		return ActionFigure.values()[mFigures[aIndex]];
+	}
+
+	/**
+	 * Получить фигуру победителя.
+	 * @return - Фигура победителя. null - ничья.
+	 */
+	public ActionFigure getWinner()
+	{
+		return mWinner;
+	}
+
+}
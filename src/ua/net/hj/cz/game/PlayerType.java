@@ -0,0 +1,77 @@
+package ua.net.hj.cz.game;
+
+import ua.net.hj.cz.roles.players.Player;
+import ua.net.hj.cz.roles.players.PlayerException;
+import ua.net.hj.cz.roles.players.PlayersFactory;
+
+/**
+ * Описывает типы игроков, которых можно выбрать для игры.
+ * @author Hobbit Jedi
+ */
+public enum PlayerType {
+	HUMAN ("Человек"),
+	RANDOM("Компьютер: Случайный стрелок"),
+	EASY  ("Компьютер: Легкий"),
+	CLEVER("Компьютер: Умный"),
+	MONTE_CARLO("Компьютер: Монте-Карло"),
+	PERFECT("Компьютер: Идеальный")
+	;
+	
+	private final String mName; // Представление значения при выводе на экран.
+
+	private PlayerType(String aName)
+	{
+		mName = aName;
+	}
+	
+	/**
+	 * Проверить управляется ли игрок этого типа компьютером (может ли он играть без участия человека).
+	 * @return - Признак того, что игрок управляется компьютером.
+	 */
+	public boolean isComputer()
+	{
+		return (this != HUMAN);
+	}
+	
+	/**
+	 * Создать игрока этого типа.
+	 * @param aFactory - Фабрика, которая создает игрока.
+	 * @param aName - Имя создаваемого игрока.
+	 * @return - Созданный игрок.
+	 * @throws PlayerException - Если фабрика не смогла создать игрока, то вызывает данное исключение.
+	 */
+	public Player createPlayer(PlayersFactory aFactory, String aName) throws PlayerException
+	{
+		Player result;
+		switch (this)
+		{
+			case HUMAN:
+				result = aFactory.createHumanPlayer(aName);
+				break;
+			case RANDOM:
+				result = aFactory.createRandomPlayer(aName);
+				break;
+			case EASY:
+				result = aFactory.createEasyPlayer(aName);
+				break;
+			case CLEVER:
+				result = aFactory.createCleverPlayer(aName);
+				break;
+			case MONTE_CARLO:
+				result = aFactory.createMonteCarloPlayer(aName);
+				break;
+			case PERFECT:
+				result = aFactory.createPerfectPlayer(aName);
+				break;
+			default:
+				throw new UnknownError("Неизвестный выбранный тип игрока.");
+		}
+		return result;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return mName;
+	}
+}
@@ -0,0 +1,533 @@
+package ua.net.hj.cz.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.function.Consumer;
+import ua.net.hj.cz.analytics.OpeningBook;
+import ua.net.hj.cz.analytics.OpeningBookBuilder;
+import ua.net.hj.cz.analytics.Tablebase;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.core.Move;
+import ua.net.hj.cz.core.MoveResult;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.BoardSymmetry;
+import ua.net.hj.cz.roles.Referee;
+import ua.net.hj.cz.roles.Rules;
+import ua.net.hj.cz.roles.players.Player;
+import ua.net.hj.cz.roles.players.PlayerException;
+import ua.net.hj.cz.roles.players.PlayersFactory;
+
+/**
+ * Описывает пакетное проведение игр между компьютерными игроками без ввода-вывода в консоли.
+ * Игры проводятся по тем же правилам, что и в Game.play(): судья проверяет ходы,
+ * игроки получают все оповещения, но доска не отображается, а судья не комментирует ходы.
+ * Результаты всех игр собираются в SimulationResult.
+ * Если задано начальное значение (см. setSeed()), то генераторы случайных чисел игроков
+ * перед каждой игрой настраиваются значениями, зависящими только от него, номера игры и места игрока,
+ * поэтому результат игры с данным номером не зависит от того, какие игры проводились до нее.
+ * Экземпляр симуляции не предназначен для одновременного использования из нескольких потоков.
+ * @author Hobbit Jedi
+ */
+public class Simulation {
+	static final String BOOK_OPTION = "-book=";             // Параметр командной строки с дебютной книгой игроков.
+	static final String TABLEBASES_OPTION = "-tablebases="; // Параметр командной строки с каталогом таблиц идеальной игры.
+
+	private final Rules mRules;                   // Правила игры.
+	private final PlayersFactory mPlayersFactory; // Фабрика для создания игроков.
+	private final Player[] mPlayers;              // Игроки по местам.
+	private final ActionFigure[] mFigures;        // Фигуры игроков по местам.
+	private final int[] mSeatsByIDs;              // Места игроков (индекс - идентификатор игрока).
+	private final Referee mReferee;               // Судья.
+	private boolean mIsRotatingFirstPlayer;       // Признак того, что право первого хода передается от игры к игре.
+	private boolean mIsSeeded;                    // Признак того, что игры должны быть воспроизводимыми.
+	private long mSeed;                           // Начальное значение, из которого получаются начальные значения игроков.
+	private Consumer<GameRecord> mGameListener;   // Получатель записей сыгранных игр. null - игры не записываются.
+	private GameLogWriter mGameLog;               // Журнал сыгранных игр. null - игры не записываются.
+	private final String[] mNames;                // Имена игроков по местам (для журнала).
+
+	/**
+	 * Создать симуляцию.
+	 * @param aRules - Правила игры.
+	 * @param aPlayerTypes - Типы игроков по местам (количество должно совпадать с количеством игроков в правилах).
+	 * @throws PlayerException - Если фабрика не смогла создать игрока, то вызывает данное исключение.
+	 * @throws IllegalArgumentException - Если количество игроков не соответствует правилам,
+	 *                                    или среди игроков есть управляемые человеком, то вызывает исключение.
+	 */
+	public Simulation(Rules aRules, PlayerType[] aPlayerTypes) throws PlayerException, IllegalArgumentException
+	{
+		this(aRules, aPlayerTypes, new PlayersFactory());
+	}
+
+	/**
+	 * Создать симуляцию, игроков которой создает заранее настроенная фабрика (например, с дебютной книгой).
+	 * Фабрика переходит в распоряжение симуляции: ее игроки освобождаются при завершении симуляции.
+	 * @param aRules - Правила игры.
+	 * @param aPlayerTypes - Типы игроков по местам (количество должно совпадать с количеством игроков в правилах).
+	 * @param aPlayersFactory - Фабрика для создания игроков.
+	 * @throws PlayerException - Если фабрика не смогла создать игрока, то вызывает данное исключение.
+	 * @throws IllegalArgumentException - Если количество игроков не соответствует правилам,
+	 *                                    или среди игроков есть управляемые человеком, то вызывает исключение.
+	 */
+	public Simulation(Rules aRules, PlayerType[] aPlayerTypes, PlayersFactory aPlayersFactory) throws PlayerException, IllegalArgumentException
+	{
+		ActionFigure[] figures = ActionFigure.values();
+		if (aPlayerTypes.length != aRules.getNumOfPlayers() || aPlayerTypes.length > figures.length)
+		{
+			throw new IllegalArgumentException("Количество игроков (" + aPlayerTypes.length + ") не соответствует правилам игры.");
+		}
+		for (PlayerType playerType: aPlayerTypes)
+		{
+			if (!playerType.isComputer())
+			{
+				throw new IllegalArgumentException("В симуляции могут участвовать только компьютерные игроки: " + playerType);
+			}
+		}
+		mRules = aRules;
+		mPlayersFactory = aPlayersFactory;
+		mPlayers = new Player[aPlayerTypes.length];
+		mFigures = new ActionFigure[aPlayerTypes.length];
+		mNames = new String[aPlayerTypes.length];
+		int maxPlayerID = 0;
+		for (int seat = 0; seat < mPlayers.length; seat++)
+		{
+			mPlayers[seat] = aPlayerTypes[seat].createPlayer(mPlayersFactory, aPlayerTypes[seat].name() + "-" + (seat + 1));
+			mFigures[seat] = figures[seat];
+			mNames[seat] = mPlayers[seat].getName();
+			maxPlayerID = Math.max(maxPlayerID, mPlayers[seat].getID());
+		}
+		mSeatsByIDs = new int[maxPlayerID + 1];
+		for (int seat = 0; seat < mPlayers.length; seat++)
+		{
+			mSeatsByIDs[mPlayers[seat].getID()] = seat;
+		}
+		mReferee = new Referee(false);
+		mIsRotatingFirstPlayer = true;
+		mIsSeeded = false;
+		mSeed = 0L;
+		mGameListener = null;
+		mGameLog = null;
+	}
+
+	/**
+	 * Задать начальное значение для воспроизводимого проведения игр.
+	 * @param aSeed - Начальное значение.
+	 */
+	public void setSeed(long aSeed)
+	{
+		mIsSeeded = true;
+		mSeed = aSeed;
+	}
+
+	/**
+	 * Установить порядок передачи права первого хода.
+	 * @param aIsRotatingFirstPlayer - true - в каждой следующей игре первым ходит следующий по месту игрок (по умолчанию).
+	 *                                 false - первым всегда ходит игрок первого места.
+	 */
+	public void setRotatingFirstPlayer(boolean aIsRotatingFirstPlayer)
+	{
+		mIsRotatingFirstPlayer = aIsRotatingFirstPlayer;
+	}
+
+	/**
+	 * Установить получателя записей сыгранных игр.
+	 * Получатель вызывается в потоке, проводящем игры, после завершения каждой игры.
+	 * @param aGameListener - Получатель записей. null - игры не записываются (по умолчанию).
+	 */
+	public void setGameListener(Consumer<GameRecord> aGameListener)
+	{
+		mGameListener = aGameListener;
+	}
+
+	/**
+	 * Установить журнал, в который записываются сыгранные игры.
+	 * Журнал не закрывается при завершении симуляции.
+	 * @param aGameLog - Журнал. null - игры не записываются (по умолчанию).
+	 */
+	public void setGameLog(GameLogWriter aGameLog)
+	{
+		mGameLog = aGameLog;
+	}
+
+	/**
+	 * Провести серию игр.
+	 * @param aGamesCount - Количество игр.
+	 * @return - Сводные результаты серии.
+	 */
+	public SimulationResult run(int aGamesCount)
+	{
+		SimulationResult result = createResult();
+		long start = System.nanoTime();
+		playGames(0, aGamesCount, result);
+		result.addElapsedTime(System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Создать пустые результаты для игроков этой симуляции.
+	 * @return - Пустые результаты.
+	 */
+	public SimulationResult createResult()
+	{
+		String[] names = new String[mPlayers.length];
+		for (int seat = 0; seat < mPlayers.length; seat++)
+		{
+			names[seat] = mPlayers[seat].toString();
+		}
+		return new SimulationResult(names);
+	}
+
+	/**
+	 * Провести игры с указанными номерами.
+	 * Номер игры определяет, кто ходит первым, и (если задано начальное значение) решения игроков.
+	 * @param aFirstGame - Номер первой игры.
+	 * @param aGamesCount - Количество игр.
+	 * @param aResult - Результаты, в которые добавляются итоги игр.
+	 */
+	public void playGames(int aFirstGame, int aGamesCount, SimulationResult aResult)
+	{
+		for (int game = aFirstGame; game < aFirstGame + aGamesCount; game++)
+		{
+			if (mIsSeeded)
+			{
+				for (int seat = 0; seat < mPlayers.length; seat++)
+				{
+					mPlayers[seat].setRandomSeed(mixSeed(mixSeed(mSeed, game), seat));
+				}
+			}
+			playGame(mIsRotatingFirstPlayer ? game % mPlayers.length : 0, aResult);
+		}
+	}
+
+	/**
+	 * Получить новое начальное значение из начального значения и номера (перемешивание SplitMix64).
+	 * @param aSeed - Исходное начальное значение.
+	 * @param aIndex - Номер.
+	 * @return - Новое начальное значение.
+	 */
+	static long mixSeed(long aSeed, long aIndex)
+	{
+		long z = aSeed + (aIndex + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Завершение симуляции.
+	 * Освобождает созданных для нее игроков.
+	 */
+	public void close()
+	{
+		for (Player player: mPlayers)
+		{
+			try
+			{
+				mPlayersFactory.releasePlayer(player);
+			}
+			catch (PlayerException e)
+			{
+				// Ничего не делаем, т.к. симуляция и так готовится к удалению.
+			}
+		}
+	}
+
+	/**
+	 * Провести одну игру.
+	 * @param aFirstSeat - Место игрока, который ходит первым.
+	 * @param aResult - Результаты, в которые добавляются итоги игры.
+	 */
+	private void playGame(int aFirstSeat, SimulationResult aResult)
+	{
+		Board board = Board.create(mRules.getBoardXSize(), mRules.getBoardYSize());
+		ArrayList<Player> players = new ArrayList<>();
+		int[] playersIDs = new int[mPlayers.length];
+		for (int i = 0; i < mPlayers.length; i++)
+		{
+			int seat = (aFirstSeat + i) % mPlayers.length;
+			Player player = mPlayers[seat];
+			board.setPlayerFigure(player.getID(), mFigures[seat]);
+			players.add(player);
+			playersIDs[i] = player.getID();
+		}
+		mReferee.checkOutRules(mRules);
+		for (Player player: players)
+		{
+			player.checkOutRules(mRules, playersIDs);
+		}
+
+		GameRecord record = (mGameListener != null) ? new GameRecord(mRules) : null;
+		if (mGameLog != null)
+		{
+			mGameLog.beginGame(mRules, mNames, mFigures, aFirstSeat);
+		}
+		int winnerSeat = -1;
+		int gameLength = 0;
+		boolean gameOver = (players.size() < 2);
+		while (!gameOver)
+		{
+			for (int i = 0; i < players.size(); i++)
+			{
+				Player player = players.get(i);
+				int playerID = player.getID();
+				int seat = mSeatsByIDs[playerID];
+				Move move;
+				MoveResult moveResult;
+				do {
+					long moveStart = System.nanoTime();
+					try
+					{
+						move = player.makeMove(board.copy(), playersIDs, mRules, mFigures[seat]);
+					}
+					catch (ScanExitException e)
+					{
+						throw new IllegalStateException("Компьютерный игрок " + player + " прервал игру.", e);
+					}
+					aResult.addMove(seat, System.nanoTime() - moveStart);
+					moveResult = mReferee.commitMove(player, move, board, mRules, players);
+				} while (moveResult == null);
+				if (moveResult != MoveResult.DISQUALIFICATION)
+				{
+					gameLength++;
+					if (record != null)
+					{
+						record.addMove(move.getY() * mRules.getBoardXSize() + move.getX(), mFigures[seat]);
+					}
+					if (mGameLog != null)
+					{
+						mGameLog.addMove(move.getY() * mRules.getBoardXSize() + move.getX());
+					}
+				}
+				else if (mGameLog != null)
+				{
+					mGameLog.addDisqualification();
+				}
+				for (Player playerToNotify: mPlayers)
+				{
+					playerToNotify.moveNotificationHandler(playerID, move, board);
+				}
+				switch (moveResult)
+				{
+					case WIN:
+						gameOver = true;
+						winnerSeat = seat;
+						for (Player playerToNotify: mPlayers)
+						{
+							playerToNotify.winNotificationHandler(playerID);
+						}
+						break;
+					case DEADLOCK:
+						gameOver = true;
+						for (Player playerToNotify: mPlayers)
+						{
+							playerToNotify.deadlockNotificationHandler();
+						}
+						break;
+					case DISQUALIFICATION:
+						players.remove(player);
+						i--;
+						aResult.addDisqualification(seat);
+						playersIDs = new int[players.size()];
+						for (int j = 0; j < players.size(); j++)
+						{
+							playersIDs[j] = players.get(j).getID();
+						}
+						for (Player playerToNotify: mPlayers)
+						{
+							playerToNotify.disqualificationNotificationHandler(playerID, playersIDs);
+						}
+						if (players.size() == 1)
+						{
+							int winnerID = players.get(0).getID();
+							gameOver = true;
+							winnerSeat = mSeatsByIDs[winnerID];
+							for (Player playerToNotify: mPlayers)
+							{
+								playerToNotify.winNotificationHandler(winnerID);
+							}
+						}
+						break;
+				}
+				if (gameOver) break;
+			}
+		}
+		aResult.addGame(winnerSeat, gameLength);
+		if (record != null)
+		{
+			record.setWinner((winnerSeat >= 0) ? mFigures[winnerSeat] : null);
+			mGameListener.accept(record);
+		}
+		if (mGameLog != null)
+		{
+			try
+			{
+				mGameLog.endGame(winnerSeat);
+			}
+			catch (IOException e)
+			{
+				throw new IllegalStateException("Не удалось записать игру в журнал.", e);
+			}
+		}
+	}
+
+	/**
+	 * Точка входа для пакетного проведения игр из командной строки.
+	 * Параметры: [-book=файл_книги[,способ_выбора[,мин_игр]]] [-tablebases=каталог] ширина_доски высота_доски длина_линии количество_игр тип_игрока_1 тип_игрока_2 [тип_игрока_3 ...]
+	 * Типы игроков: RANDOM, EASY, CLEVER, MONTE_CARLO, PERFECT.
+	 * Дебютной книгой пользуются игроки CLEVER и MONTE_CARLO. Способы выбора хода: BEST (по умолчанию), WEIGHTED.
+	 * Игроки PERFECT хранят таблицы идеальной игры в заданном каталоге (по умолчанию - Tablebase.getDefaultDirectory()).
+	 * Например: 15 15 5 1000 EASY RANDOM
+	 * @param args - Параметры командной строки.
+	 */
+	public static void main(String[] args)
+	{
+		int first = 0; // Первый параметр правил (перед ним - необязательные параметры игроков).
+		String[] bookOption = null;
+		String tablebaseDirectory = null;
+		for (; first < args.length && args[first].startsWith("-"); first++)
+		{
+			if (args[first].startsWith(BOOK_OPTION))
+			{
+				bookOption = args[first].substring(BOOK_OPTION.length()).split(",");
+			}
+			else if (args[first].startsWith(TABLEBASES_OPTION))
+			{
+				tablebaseDirectory = args[first].substring(TABLEBASES_OPTION.length());
+			}
+			else
+			{
+				System.out.println("Некорректные параметры: неизвестный параметр " + args[first]);
+				printUsage();
+				return;
+			}
+		}
+		if (args.length - first < 6)
+		{
+			printUsage();
+			return;
+		}
+		Rules rules;
+		int gamesCount;
+		PlayerType[] playerTypes = new PlayerType[args.length - first - 4];
+		OpeningBook.Selection bookSelection = OpeningBook.Selection.BEST;
+		int bookMinGames = OpeningBook.DEFAULT_MIN_GAMES;
+		try
+		{
+			int boardXSize = Integer.parseInt(args[first]);
+			int boardYSize = Integer.parseInt(args[first + 1]);
+			int winLineLength = Integer.parseInt(args[first + 2]);
+			gamesCount = Integer.parseInt(args[first + 3]);
+			for (int i = 0; i < playerTypes.length; i++)
+			{
+				playerTypes[i] = PlayerType.valueOf(args[first + 4 + i].toUpperCase());
+			}
+			rules = new Rules(boardXSize, boardYSize, winLineLength, new Rules().getNumErrorsAllowed(), playerTypes.length);
+			if (bookOption != null && bookOption.length > 1)
+			{
+				bookSelection = OpeningBook.Selection.valueOf(bookOption[1].toUpperCase());
+			}
+			if (bookOption != null && bookOption.length > 2)
+			{
+				bookMinGames = Integer.parseInt(bookOption[2]);
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println("Некорректные параметры: " + e.getLocalizedMessage());
+			printUsage();
+			return;
+		}
+		try
+		{
+			PlayersFactory factory = new PlayersFactory();
+			if (bookOption != null)
+			{
+				factory.setOpeningBook(OpeningBook.open(Paths.get(bookOption[0])), bookSelection, bookMinGames);
+			}
+			if (tablebaseDirectory != null)
+			{
+				factory.setTablebaseDirectory(Paths.get(tablebaseDirectory));
+			}
+			Simulation simulation = new Simulation(rules, playerTypes, factory);
+			System.out.print(rules);
+			System.out.println(simulation.run(gamesCount));
+			simulation.close();
+		}
+		catch (PlayerException | IllegalArgumentException | IOException e)
+		{
+			String eMsg = e.getLocalizedMessage();
+			System.out.println("Симуляция не может быть проведена по причине: " + (eMsg != null ? eMsg : "Неизвестно."));
+		}
+	}
+
+	/**
+	 * Вывести в консоль описание параметров командной строки.
+	 */
+	private static void printUsage()
+	{
+		System.out.println("Параметры: [-book=файл_книги[,способ_выбора[,мин_игр]]] [-tablebases=каталог] ширина_доски высота_доски длина_линии количество_игр тип_игрока_1 тип_игрока_2 [тип_игрока_3 ...]");
+		System.out.println("Типы игроков: RANDOM, EASY, CLEVER, MONTE_CARLO, PERFECT.");
+		System.out.println("Способы выбора хода из книги: BEST (по умолчанию), WEIGHTED. Минимум игр хода по умолчанию: " + OpeningBook.DEFAULT_MIN_GAMES + ".");
+		System.out.println("Каталог таблиц идеальной игры по умолчанию: " + Tablebase.getDefaultDirectory());
+		System.out.println("Например: -book=book-15x15-5-2.obk,WEIGHTED,20 15 15 5 1000 CLEVER EASY");
+	}
+
+	/**
+	 * Метод для тестирования использования дебютной книги игроками симуляции.
+	 * Строит книгу из одной игры, первый ход которой не совпадает с выбором игрока без книги,
+	 * и проверяет, что игрок с книгой делает этот ход (с точностью до симметрии доски), а игрок без книги - нет.
+	 * @throws IOException - Если не удалось записать или прочитать файл книги, то вызывается исключение.
+	 * @throws PlayerException - Если не удалось создать игроков, то вызывает данное исключение.
+	 */
+	public static void test_openingBook() throws IOException, PlayerException
+	{
+		System.out.println("--> Start of Testing of opening book in Simulation");
+		Rules rules = new Rules(7, 7, 4, new Rules().getNumErrorsAllowed(), 2);
+		PlayerType[] playerTypes = {PlayerType.CLEVER, PlayerType.MONTE_CARLO};
+		int bookCell = 1; // Клеточка (1, 0): у края доски, куда ни один игрок без книги первым ходом не ходит.
+		OpeningBookBuilder builder = new OpeningBookBuilder(rules, 1);
+		for (int seat = 0; seat < playerTypes.length; seat++)
+		{
+			// Ключ позиции книги учитывает фигуру ходящего, поэтому игра записывается для фигуры каждого места.
+			GameRecord bookGame = new GameRecord(rules);
+			bookGame.addMove(bookCell, ActionFigure.values()[seat]);
+			bookGame.setWinner(ActionFigure.values()[seat]);
+			builder.addGame(bookGame);
+		}
+		Path file = Files.createTempFile("book-", ".obk");
+		file.toFile().deleteOnExit();
+		builder.write(file);
+		HashSet<Integer> bookCells = new HashSet<>(); // Ход книги во всех симметричных вариантах доски.
+		BoardSymmetry symmetry = new BoardSymmetry(rules.getBoardXSize(), rules.getBoardYSize());
+		for (int s = 0; s < symmetry.getSymmetriesCount(); s++)
+		{
+			bookCells.add(symmetry.toVariant(bookCell, s));
+		}
+		for (boolean isBookUsed: new boolean[] {false, true})
+		{
+			PlayersFactory factory = new PlayersFactory();
+			if (isBookUsed)
+			{
+				factory.setOpeningBook(OpeningBook.open(file), OpeningBook.Selection.BEST, 1);
+			}
+			Simulation simulation = new Simulation(rules, playerTypes, factory);
+			ArrayList<GameRecord> records = new ArrayList<>();
+			simulation.setGameListener(records::add);
+			simulation.setSeed(20161018L);
+			simulation.run(playerTypes.length); // Каждый игрок один раз ходит первым.
+			simulation.close();
+			for (GameRecord record: records)
+			{
+				boolean isBookMove = bookCells.contains(record.getCell(0));
+				System.out.println((isBookMove != isBookUsed ? "!!! ОШИБКА !!! " : "")
+						+ (isBookUsed ? "С книгой" : "Без книги") + ": первый ход " + record.getFigure(0)
+						+ " в клеточку " + record.getCell(0) + (isBookMove ? " (ход книги)" : ""));
+			}
+		}
+		System.out.println("<-- End of Testing of opening book in Simulation");
+	}
+
+}
@@ -0,0 +1,272 @@
+package ua.net.hj.cz.game;
+
+/**
+ * Описывает сводные результаты серии игр, проведенных без участия человека.
+ * Игроки нумеруются по местам (в порядке, в котором они были переданы симуляции),
+ * независимо от того, кто из них начинал конкретную игру.
+ * @author Hobbit Jedi
+ */
+public class SimulationResult {
+	private final String[] mPlayersNames;      // Имена игроков по местам.
+	private final long[] mWins;                // Количество побед каждого игрока.
+	private final long[] mDisqualifications;   // Количество дисквалификаций каждого игрока.
+	private final long[] mMovesCounts;         // Количество ходов (попыток хода), сделанных каждым игроком.
+	private final long[] mMovesTimes;          // Суммарное время на ходы каждого игрока (нс).
+	private final long[] mMaxMoveTimes;        // Наибольшее время на один ход каждого игрока (нс).
+	private long mGamesCount;                  // Количество проведенных игр.
+	private long mDraws;                       // Количество ничьих.
+	private long mGamesLengthsSum;             // Суммарная длина игр (в принятых ходах).
+	private int mMinGameLength;                // Наименьшая длина игры.
+	private int mMaxGameLength;                // Наибольшая длина игры.
+	private long mElapsedTime;                 // Время проведения всей серии игр (нс).
+	
+	/**
+	 * Создать пустые результаты.
+	 * @param aPlayersNames - Имена игроков по местам.
+	 */
+	public SimulationResult(String[] aPlayersNames)
+	{
+		int playersCount = aPlayersNames.length;
+		mPlayersNames = aPlayersNames.clone();
+		mWins = new long[playersCount];
+		mDisqualifications = new long[playersCount];
+		mMovesCounts = new long[playersCount];
+		mMovesTimes = new long[playersCount];
+		mMaxMoveTimes = new long[playersCount];
+		mGamesCount = 0;
+		mDraws = 0;
+		mGamesLengthsSum = 0;
+		mMinGameLength = Integer.MAX_VALUE;
+		mMaxGameLength = 0;
+		mElapsedTime = 0;
+	}
+	
+	/**
+	 * Учесть ход игрока.
+	 * @param aSeat - Место игрока.
+	 * @param aMoveTime - Время, затраченное игроком на ход (нс).
+	 */
+	void addMove(int aSeat, long aMoveTime)
+	{
+		mMovesCounts[aSeat]++;
+		mMovesTimes[aSeat] += aMoveTime;
+		mMaxMoveTimes[aSeat] = Math.max(mMaxMoveTimes[aSeat], aMoveTime);
+	}
+	
+	/**
+	 * Учесть дисквалификацию игрока.
+	 * @param aSeat - Место игрока.
+	 */
+	void addDisqualification(int aSeat)
+	{
+		mDisqualifications[aSeat]++;
+	}
+	
+	/**
+	 * Учесть завершившуюся игру.
+	 * @param aWinnerSeat - Место победителя. -1, если игра закончилась ничьей.
+	 * @param aGameLength - Длина игры (количество принятых судьей ходов).
+	 */
+	void addGame(int aWinnerSeat, int aGameLength)
+	{
+		mGamesCount++;
+		if (aWinnerSeat >= 0)
+		{
+			mWins[aWinnerSeat]++;
+		}
+		else
+		{
+			mDraws++;
+		}
+		mGamesLengthsSum += aGameLength;
+		mMinGameLength = Math.min(mMinGameLength, aGameLength);
+		mMaxGameLength = Math.max(mMaxGameLength, aGameLength);
+	}
+	
+	/**
+	 * Учесть время проведения серии игр.
+	 * @param aElapsedTime - Время (нс).
+	 */
+	void addElapsedTime(long aElapsedTime)
+	{
+		mElapsedTime += aElapsedTime;
+	}
+	
+	/**
+	 * Добавить к результатам результаты другой части той же серии игр
+	 * (например, проведенной в другом потоке).
+	 * @param aResult - Добавляемые результаты (с тем же количеством игроков).
+	 * @throws IllegalArgumentException - Если количество игроков не совпадает, то вызывается исключение.
+	 */
+	public void merge(SimulationResult aResult) throws IllegalArgumentException
+	{
+		if (aResult.mPlayersNames.length != mPlayersNames.length)
+		{
+			throw new IllegalArgumentException("Нельзя объединить результаты с разным количеством игроков.");
+		}
+		for (int seat = 0; seat < mPlayersNames.length; seat++)
+		{
+			mWins[seat] += aResult.mWins[seat];
+			mDisqualifications[seat] += aResult.mDisqualifications[seat];
+			mMovesCounts[seat] += aResult.mMovesCounts[seat];
+			mMovesTimes[seat] += aResult.mMovesTimes[seat];
+			mMaxMoveTimes[seat] = Math.max(mMaxMoveTimes[seat], aResult.mMaxMoveTimes[seat]);
+		}
+		mGamesCount += aResult.mGamesCount;
+		mDraws += aResult.mDraws;
+		mGamesLengthsSum += aResult.mGamesLengthsSum;
+		mMinGameLength = Math.min(mMinGameLength, aResult.mMinGameLength);
+		mMaxGameLength = Math.max(mMaxGameLength, aResult.mMaxGameLength);
+		mElapsedTime += aResult.mElapsedTime;
+	}
+	
+	/**
+	 * Получить количество игроков.
+	 * @return - Количество игроков.
+	 */
+	public int getPlayersCount()
+	{
+		return mPlayersNames.length;
+	}
+	
+	/**
+	 * Получить имя игрока.
+	 * @param aSeat - Место игрока.
+	 * @return - Имя игрока.
+	 */
+	public String getPlayerName(int aSeat)
+	{
+		return mPlayersNames[aSeat];
+	}
+	
+	/**
+	 * Получить количество проведенных игр.
+	 * @return - Количество игр.
+	 */
+	public long getGamesCount()
+	{
+		return mGamesCount;
+	}
+	
+	/**
+	 * Получить количество побед игрока.
+	 * @param aSeat - Место игрока.
+	 * @return - Количество побед.
+	 */
+	public long getWins(int aSeat)
+	{
+		return mWins[aSeat];
+	}
+	
+	/**
+	 * Получить количество ничьих.
+	 * @return - Количество ничьих.
+	 */
+	public long getDraws()
+	{
+		return mDraws;
+	}
+	
+	/**
+	 * Получить количество дисквалификаций игрока.
+	 * @param aSeat - Место игрока.
+	 * @return - Количество дисквалификаций.
+	 */
+	public long getDisqualifications(int aSeat)
+	{
+		return mDisqualifications[aSeat];
+	}
+	
+	/**
+	 * Получить наименьшую длину игры.
+	 * @return - Количество принятых ходов в самой короткой игре. 0, если игр не было.
+	 */
+	public int getMinGameLength()
+	{
+		return (mGamesCount > 0) ? mMinGameLength : 0;
+	}
+	
+	/**
+	 * Получить наибольшую длину игры.
+	 * @return - Количество принятых ходов в самой длинной игре.
+	 */
+	public int getMaxGameLength()
+	{
+		return mMaxGameLength;
+	}
+	
+	/**
+	 * Получить среднюю длину игры.
+	 * @return - Среднее количество принятых ходов в игре. 0, если игр не было.
+	 */
+	public double getAverageGameLength()
+	{
+		return (mGamesCount > 0) ? (double)mGamesLengthsSum / mGamesCount : 0d;
+	}
+	
+	/**
+	 * Получить количество ходов игрока (включая отклоненные судьей попытки).
+	 * @param aSeat - Место игрока.
+	 * @return - Количество ходов.
+	 */
+	public long getMovesCount(int aSeat)
+	{
+		return mMovesCounts[aSeat];
+	}
+	
+	/**
+	 * Получить среднее время на ход игрока.
+	 * @param aSeat - Место игрока.
+	 * @return - Среднее время на ход (нс). 0, если игрок не ходил.
+	 */
+	public double getAverageMoveTime(int aSeat)
+	{
+		return (mMovesCounts[aSeat] > 0) ? (double)mMovesTimes[aSeat] / mMovesCounts[aSeat] : 0d;
+	}
+	
+	/**
+	 * Получить наибольшее время на один ход игрока.
+	 * @param aSeat - Место игрока.
+	 * @return - Наибольшее время на ход (нс).
+	 */
+	public long getMaxMoveTime(int aSeat)
+	{
+		return mMaxMoveTimes[aSeat];
+	}
+	
+	/**
+	 * Получить время проведения серии игр.
+	 * @return - Время (нс).
+	 */
+	public long getElapsedTime()
+	{
+		return mElapsedTime;
+	}
+	
+	/**
+	 * Получить строковое представление результатов, пригодное для отображения в консоли.
+	 * @return - Строковое представление результатов.
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder result = new StringBuilder();
+		result.append("Результаты серии игр:\n");
+		result.append(" - Сыграно игр: ").append(mGamesCount);
+		if (mElapsedTime > 0)
+		{
+			result.append(String.format(" за %.1f с (%.1f игр/с)", mElapsedTime / 1e9, mGamesCount * 1e9 / mElapsedTime));
+		}
+		result.append("\n");
+		result.append(" - Ничьих: ").append(mDraws).append("\n");
+		result.append(String.format(" - Длина игры (ходов): мин. %d, сред. %.1f, макс. %d%n", getMinGameLength(), getAverageGameLength(), mMaxGameLength));
+		for (int seat = 0; seat < mPlayersNames.length; seat++)
+		{
+			result.append(String.format(" - %s: побед %d, дисквалификаций %d, ходов %d, время на ход: сред. %.3f мс, макс. %.3f мс%n",
+					mPlayersNames[seat], mWins[seat], mDisqualifications[seat], mMovesCounts[seat],
+					getAverageMoveTime(seat) / 1e6, mMaxMoveTimes[seat] / 1e6));
+		}
+		return result.toString();
+	}
+	
+}
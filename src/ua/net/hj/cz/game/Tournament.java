@@ -0,0 +1,397 @@
+package ua.net.hj.cz.game;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import ua.net.hj.cz.analytics.OpeningBook;
+import ua.net.hj.cz.analytics.Tablebase;
+import ua.net.hj.cz.roles.Rules;
+import ua.net.hj.cz.roles.players.PlayerException;
+import ua.net.hj.cz.roles.players.PlayersFactory;
+
+/**
+ * Описывает турнир между компьютерными игроками, игры которого проводятся параллельно на всех ядрах.
+ * Все игры турнира разбиваются на небольшие независимые задания, которые выполняет пул потоков с перехватом работы.
+ * Каждый поток проводит игры своими экземплярами Simulation (а значит своими досками, судьями, игроками и их оценщиками),
+ * поэтому потоки не разделяют изменяемых данных и не ждут друг друга.
+ * Если задано начальное значение, то результат каждой игры зависит только от него, пары соперников и номера игры,
+ * и итоги турнира не зависят от количества потоков и порядка выполнения заданий
+ * (при условии, что игроки не упираются в ограничения времени на ход).
+ * @author Hobbit Jedi
+ */
+public class Tournament {
+	/**
+	 * Описывает расписания турнира.
+	 */
+	public enum Schedule
+	{
+		ROUND_ROBIN("Круговой турнир"),                 // Каждый участник играет с каждым.
+		GAUNTLET   ("Первый участник против остальных") // Первый участник играет с каждым из остальных.
+		;
+
+		private final String mName; // Представление значения при выводе на экран.
+
+		private Schedule(String aName)
+		{
+			mName = aName;
+		}
+
+		@Override
+		public String toString()
+		{
+			return mName;
+		}
+	}
+
+	private static final int GAMES_PER_TASK = 16; // Количество игр в одном задании пула потоков.
+
+	private final Rules mRules;             // Правила игр турнира (для двух игроков).
+	private final PlayerType[] mEntrants;   // Участники турнира.
+	private final Schedule mSchedule;       // Расписание турнира.
+	private final int mGamesPerPairing;     // Количество игр в каждой паре соперников.
+	private final int[][] mPairings;        // Пары соперников (номера участников).
+	private int mThreadsCount;              // Количество потоков.
+	private boolean mIsSeeded;              // Признак того, что турнир должен быть воспроизводимым.
+	private long mSeed;                     // Начальное значение.
+	private OpeningBook mOpeningBook;       // Дебютная книга участников. null - без книги.
+	private OpeningBook.Selection mBookSelection; // Способ выбора хода из дебютной книги.
+	private int mBookMinGames;              // Минимальное количество игр хода для выбора его из дебютной книги.
+	private Path mTablebaseDirectory;       // Каталог файлов таблиц идеальной игры участников.
+
+	/**
+	 * Создать турнир.
+	 * @param aRules - Правила игр турнира. Количество игроков в правилах должно быть равно 2.
+	 * @param aEntrants - Участники турнира (типы игроков могут повторяться).
+	 * @param aSchedule - Расписание турнира.
+	 * @param aGamesPerPairing - Количество игр в каждой паре соперников (право первого хода чередуется).
+	 * @throws IllegalArgumentException - Если параметры турнира некорректны, то вызывается исключение.
+	 */
+	public Tournament(Rules aRules, PlayerType[] aEntrants, Schedule aSchedule, int aGamesPerPairing) throws IllegalArgumentException
+	{
+		if (aRules.getNumOfPlayers() != 2)
+		{
+			throw new IllegalArgumentException("Турнир проводится только для игр двух игроков.");
+		}
+		if (aEntrants.length < 2)
+		{
+			throw new IllegalArgumentException("В турнире должно быть не меньше двух участников.");
+		}
+		for (PlayerType entrant: aEntrants)
+		{
+			if (!entrant.isComputer())
+			{
+				throw new IllegalArgumentException("В турнире могут участвовать только компьютерные игроки: " + entrant);
+			}
+		}
+		if (aGamesPerPairing < 1)
+		{
+			throw new IllegalArgumentException("Количество игр в паре должно быть положительным: " + aGamesPerPairing);
+		}
+		mRules = aRules;
+		mEntrants = aEntrants.clone();
+		mSchedule = aSchedule;
+		mGamesPerPairing = aGamesPerPairing;
+		ArrayList<int[]> pairings = new ArrayList<>();
+		for (int i = 0; i < mEntrants.length; i++)
+		{
+			for (int j = i + 1; j < mEntrants.length; j++)
+			{
+				if (aSchedule == Schedule.ROUND_ROBIN || i == 0)
+				{
+					pairings.add(new int[] {i, j});
+				}
+			}
+		}
+		mPairings = pairings.toArray(new int[pairings.size()][]);
+		mThreadsCount = Runtime.getRuntime().availableProcessors();
+		mIsSeeded = false;
+		mSeed = 0L;
+		mOpeningBook = null;
+		mBookSelection = OpeningBook.Selection.BEST;
+		mBookMinGames = OpeningBook.DEFAULT_MIN_GAMES;
+		mTablebaseDirectory = Tablebase.getDefaultDirectory();
+	}
+
+	/**
+	 * Установить количество потоков.
+	 * @param aThreadsCount - Количество потоков (по умолчанию - количество доступных процессоров).
+	 */
+	public void setThreadsCount(int aThreadsCount)
+	{
+		if (aThreadsCount < 1)
+		{
+			throw new IllegalArgumentException("Количество потоков должно быть положительным: " + aThreadsCount);
+		}
+		mThreadsCount = aThreadsCount;
+	}
+
+	/**
+	 * Задать начальное значение для воспроизводимого проведения турнира.
+	 * @param aSeed - Начальное значение.
+	 */
+	public void setSeed(long aSeed)
+	{
+		mIsSeeded = true;
+		mSeed = aSeed;
+	}
+
+	/**
+	 * Установить дебютную книгу участников турнира.
+	 * Книгой пользуются участники, которые это умеют (см. PlayersFactory.setOpeningBook()); одна книга общая для всех потоков.
+	 * @param aOpeningBook - Дебютная книга. null - участники играют без книги (по умолчанию).
+	 * @param aSelection - Способ выбора хода из книги.
+	 * @param aMinGames - Минимальное количество игр хода для выбора его из книги (не меньше 1).
+	 */
+	public void setOpeningBook(OpeningBook aOpeningBook, OpeningBook.Selection aSelection, int aMinGames)
+	{
+		if (aMinGames < 1)
+		{
+			throw new IllegalArgumentException("Минимальное количество игр должно быть положительным: " + aMinGames);
+		}
+		mOpeningBook = aOpeningBook;
+		mBookSelection = aSelection;
+		mBookMinGames = aMinGames;
+	}
+
+	/**
+	 * Установить каталог, в котором участники турнира хранят таблицы идеальной игры (см. PlayersFactory.setTablebaseDirectory()).
+	 * @param aDirectory - Каталог файлов таблиц (по умолчанию - Tablebase.getDefaultDirectory()).
+	 */
+	public void setTablebaseDirectory(Path aDirectory)
+	{
+		if (aDirectory == null)
+		{
+			throw new IllegalArgumentException("Не задан каталог таблиц идеальной игры.");
+		}
+		mTablebaseDirectory = aDirectory;
+	}
+
+	/**
+	 * Провести турнир.
+	 * @return - Итоги турнира.
+	 * @throws PlayerException - Если не удалось создать игроков, то вызывает данное исключение.
+	 */
+	public TournamentResult run() throws PlayerException
+	{
+		long start = System.nanoTime();
+		// Симуляции создаются каждым потоком для себя по мере надобности (индекс - номер пары соперников).
+		ConcurrentLinkedQueue<Simulation> simulations = new ConcurrentLinkedQueue<>();
+		ThreadLocal<Simulation[]> threadSimulations = ThreadLocal.withInitial(() -> new Simulation[mPairings.length]);
+		ArrayList<Callable<SimulationResult>> tasks = new ArrayList<>();
+		ArrayList<Integer> tasksPairings = new ArrayList<>();
+		for (int pairing = 0; pairing < mPairings.length; pairing++)
+		{
+			for (int firstGame = 0; firstGame < mGamesPerPairing; firstGame += GAMES_PER_TASK)
+			{
+				int pairingIndex = pairing;
+				int taskFirstGame = firstGame;
+				int taskGamesCount = Math.min(GAMES_PER_TASK, mGamesPerPairing - firstGame);
+				tasks.add(() -> {
+					Simulation[] ownSimulations = threadSimulations.get();
+					Simulation simulation = ownSimulations[pairingIndex];
+					if (simulation == null)
+					{
+						simulation = createSimulation(pairingIndex);
+						ownSimulations[pairingIndex] = simulation;
+						simulations.add(simulation);
+					}
+					SimulationResult result = simulation.createResult();
+					simulation.playGames(taskFirstGame, taskGamesCount, result);
+					return result;
+				});
+				tasksPairings.add(pairing);
+			}
+		}
+
+		SimulationResult[] results = new SimulationResult[mPairings.length];
+		ExecutorService pool = Executors.newWorkStealingPool(mThreadsCount);
+		try
+		{
+			List<Future<SimulationResult>> futures = pool.invokeAll(tasks);
+			for (int i = 0; i < futures.size(); i++)
+			{
+				int pairing = tasksPairings.get(i);
+				SimulationResult taskResult = futures.get(i).get();
+				if (results[pairing] == null)
+				{
+					results[pairing] = taskResult;
+				}
+				else
+				{
+					results[pairing].merge(taskResult);
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Турнир прерван.", e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof PlayerException)
+			{
+				throw (PlayerException)cause;
+			}
+			throw new IllegalStateException("Ошибка при проведении игры турнира.", cause);
+		}
+		finally
+		{
+			pool.shutdown();
+			for (Simulation simulation: simulations)
+			{
+				simulation.close();
+			}
+		}
+
+		String[] names = new String[mEntrants.length];
+		for (int i = 0; i < mEntrants.length; i++)
+		{
+			names[i] = mEntrants[i].name() + "#" + (i + 1);
+		}
+		return new TournamentResult(names, mSchedule, mPairings, results, System.nanoTime() - start);
+	}
+
+	/**
+	 * Создать симуляцию для пары соперников.
+	 * @param aPairing - Номер пары соперников.
+	 * @return - Симуляция.
+	 * @throws PlayerException - Если не удалось создать игроков, то вызывает данное исключение.
+	 */
+	private Simulation createSimulation(int aPairing) throws PlayerException
+	{
+		int[] pairing = mPairings[aPairing];
+		PlayersFactory factory = new PlayersFactory();
+		if (mOpeningBook != null)
+		{
+			factory.setOpeningBook(mOpeningBook, mBookSelection, mBookMinGames);
+		}
+		factory.setTablebaseDirectory(mTablebaseDirectory);
+		Simulation result = new Simulation(mRules, new PlayerType[] {mEntrants[pairing[0]], mEntrants[pairing[1]]}, factory);
+		if (mIsSeeded)
+		{
+			result.setSeed(Simulation.mixSeed(mSeed, aPairing));
+		}
+		return result;
+	}
+
+	/**
+	 * Точка входа для проведения турнира из командной строки.
+	 * Параметры: [-book=файл_книги[,способ_выбора[,мин_игр]]] [-tablebases=каталог] расписание ширина_доски высота_доски длина_линии игр_в_паре потоков начальное_значение тип_1 тип_2 [тип_3 ...]
+	 * Расписания: ROUND_ROBIN, GAUNTLET. Начальное значение "-" - турнир не воспроизводим. Потоков 0 - по количеству процессоров.
+	 * Дебютной книгой пользуются участники CLEVER и MONTE_CARLO. Способы выбора хода: BEST (по умолчанию), WEIGHTED.
+	 * Участники PERFECT хранят таблицы идеальной игры в заданном каталоге (по умолчанию - Tablebase.getDefaultDirectory()).
+	 * Например: ROUND_ROBIN 15 15 5 200 0 42 CLEVER EASY RANDOM
+	 * @param args - Параметры командной строки.
+	 */
+	public static void main(String[] args)
+	{
+		int first = 0; // Первый параметр турнира (перед ним - необязательные параметры участников).
+		String[] bookOption = null;
+		String tablebaseDirectory = null;
+		for (; first < args.length && args[first].startsWith("-"); first++)
+		{
+			if (args[first].startsWith(Simulation.BOOK_OPTION))
+			{
+				bookOption = args[first].substring(Simulation.BOOK_OPTION.length()).split(",");
+			}
+			else if (args[first].startsWith(Simulation.TABLEBASES_OPTION))
+			{
+				tablebaseDirectory = args[first].substring(Simulation.TABLEBASES_OPTION.length());
+			}
+			else
+			{
+				System.out.println("Некорректные параметры: неизвестный параметр " + args[first]);
+				printUsage();
+				return;
+			}
+		}
+		if (args.length - first < 9)
+		{
+			printUsage();
+			return;
+		}
+		Tournament tournament;
+		OpeningBook.Selection bookSelection = OpeningBook.Selection.BEST;
+		int bookMinGames = OpeningBook.DEFAULT_MIN_GAMES;
+		try
+		{
+			Schedule schedule = Schedule.valueOf(args[first].toUpperCase());
+			int boardXSize = Integer.parseInt(args[first + 1]);
+			int boardYSize = Integer.parseInt(args[first + 2]);
+			int winLineLength = Integer.parseInt(args[first + 3]);
+			int gamesPerPairing = Integer.parseInt(args[first + 4]);
+			int threadsCount = Integer.parseInt(args[first + 5]);
+			PlayerType[] entrants = new PlayerType[args.length - first - 7];
+			for (int i = 0; i < entrants.length; i++)
+			{
+				entrants[i] = PlayerType.valueOf(args[first + 7 + i].toUpperCase());
+			}
+			Rules rules = new Rules(boardXSize, boardYSize, winLineLength, new Rules().getNumErrorsAllowed(), 2);
+			tournament = new Tournament(rules, entrants, schedule, gamesPerPairing);
+			if (threadsCount > 0)
+			{
+				tournament.setThreadsCount(threadsCount);
+			}
+			if (!args[first + 6].equals("-"))
+			{
+				tournament.setSeed(Long.parseLong(args[first + 6]));
+			}
+			if (bookOption != null && bookOption.length > 1)
+			{
+				bookSelection = OpeningBook.Selection.valueOf(bookOption[1].toUpperCase());
+			}
+			if (bookOption != null && bookOption.length > 2)
+			{
+				bookMinGames = Integer.parseInt(bookOption[2]);
+			}
+			if (tablebaseDirectory != null)
+			{
+				tournament.setTablebaseDirectory(Paths.get(tablebaseDirectory));
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println("Некорректные параметры: " + e.getLocalizedMessage());
+			printUsage();
+			return;
+		}
+		try
+		{
+			if (bookOption != null)
+			{
+				tournament.setOpeningBook(OpeningBook.open(Paths.get(bookOption[0])), bookSelection, bookMinGames);
+			}
+			System.out.println(tournament.run());
+		}
+		catch (PlayerException | IllegalArgumentException | IOException e)
+		{
+			String eMsg = e.getLocalizedMessage();
+			System.out.println("Турнир не может быть проведен по причине: " + (eMsg != null ? eMsg : "Неизвестно."));
+		}
+	}
+
+	/**
+	 * Вывести в консоль описание параметров командной строки.
+	 */
+	private static void printUsage()
+	{
+		System.out.println("Параметры: [-book=файл_книги[,способ_выбора[,мин_игр]]] [-tablebases=каталог] расписание ширина_доски высота_доски длина_линии игр_в_паре потоков начальное_значение тип_1 тип_2 [тип_3 ...]");
+		System.out.println("Расписания: ROUND_ROBIN, GAUNTLET.");
+		System.out.println("Потоков: 0 - по количеству процессоров. Начальное значение: \"-\" - без воспроизводимости.");
+		System.out.println("Типы игроков: RANDOM, EASY, CLEVER, MONTE_CARLO, PERFECT.");
+		System.out.println("Способы выбора хода из книги: BEST (по умолчанию), WEIGHTED. Минимум игр хода по умолчанию: " + OpeningBook.DEFAULT_MIN_GAMES + ".");
+		System.out.println("Каталог таблиц идеальной игры по умолчанию: " + Tablebase.getDefaultDirectory());
+		System.out.println("Например: ROUND_ROBIN 15 15 5 200 0 42 CLEVER EASY RANDOM");
+	}
+
+}
@@ -0,0 +1,153 @@
+package ua.net.hj.cz.game;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Описывает итоги турнира: результаты каждой пары соперников и турнирную таблицу.
+ * За победу участник получает 1 очко, за ничью - 0,5 очка.
+ * @author Hobbit Jedi
+ */
+public class TournamentResult {
+	private final String[] mEntrantsNames;       // Имена участников.
+	private final Tournament.Schedule mSchedule; // Расписание турнира.
+	private final int[][] mPairings;             // Пары соперников (номера участников).
+	private final SimulationResult[] mResults;   // Результаты пар соперников.
+	private final long mElapsedTime;             // Время проведения турнира (нс).
+
+	/**
+	 * Создать итоги турнира.
+	 * @param aEntrantsNames - Имена участников.
+	 * @param aSchedule - Расписание турнира.
+	 * @param aPairings - Пары соперников (номера участников).
+	 * @param aResults - Результаты пар соперников (места в результатах соответствуют порядку участников в паре).
+	 * @param aElapsedTime - Время проведения турнира (нс).
+	 */
+	TournamentResult(String[] aEntrantsNames, Tournament.Schedule aSchedule, int[][] aPairings, SimulationResult[] aResults, long aElapsedTime)
+	{
+		mEntrantsNames = aEntrantsNames;
+		mSchedule = aSchedule;
+		mPairings = aPairings;
+		mResults = aResults;
+		mElapsedTime = aElapsedTime;
+	}
+
+	/**
+	 * Получить количество пар соперников.
+	 * @return - Количество пар.
+	 */
+	public int getPairingsCount()
+	{
+		return mPairings.length;
+	}
+
+	/**
+	 * Получить номер участника в паре соперников.
+	 * @param aPairing - Номер пары.
+	 * @param aSeat - Место в паре (0 или 1).
+	 * @return - Номер участника.
+	 */
+	public int getPairingEntrant(int aPairing, int aSeat)
+	{
+		return mPairings[aPairing][aSeat];
+	}
+
+	/**
+	 * Получить результаты пары соперников.
+	 * @param aPairing - Номер пары.
+	 * @return - Результаты игр пары.
+	 */
+	public SimulationResult getPairingResult(int aPairing)
+	{
+		return mResults[aPairing];
+	}
+
+	/**
+	 * Получить количество очков участника.
+	 * @param aEntrant - Номер участника.
+	 * @return - Количество очков.
+	 */
+	public double getScore(int aEntrant)
+	{
+		double result = 0d;
+		for (int pairing = 0; pairing < mPairings.length; pairing++)
+		{
+			for (int seat = 0; seat < mPairings[pairing].length; seat++)
+			{
+				if (mPairings[pairing][seat] == aEntrant)
+				{
+					result += mResults[pairing].getWins(seat) + 0.5d * mResults[pairing].getDraws();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Получить количество игр участника.
+	 * @param aEntrant - Номер участника.
+	 * @return - Количество игр.
+	 */
+	public long getGamesCount(int aEntrant)
+	{
+		long result = 0;
+		for (int pairing = 0; pairing < mPairings.length; pairing++)
+		{
+			for (int seat = 0; seat < mPairings[pairing].length; seat++)
+			{
+				if (mPairings[pairing][seat] == aEntrant)
+				{
+					result += mResults[pairing].getGamesCount();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Получить время проведения турнира.
+	 * @return - Время (нс).
+	 */
+	public long getElapsedTime()
+	{
+		return mElapsedTime;
+	}
+
+	/**
+	 * Получить строковое представление итогов, пригодное для отображения в консоли.
+	 * @return - Строковое представление итогов.
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder result = new StringBuilder();
+		long gamesCount = 0;
+		for (SimulationResult pairingResult: mResults)
+		{
+			gamesCount += pairingResult.getGamesCount();
+		}
+		result.append("Итоги турнира (").append(mSchedule).append("):\n");
+		result.append(String.format(" - Сыграно игр: %d за %.1f с (%.1f игр/с)%n", gamesCount, mElapsedTime / 1e9, gamesCount * 1e9 / Math.max(mElapsedTime, 1L)));
+		for (int pairing = 0; pairing < mPairings.length; pairing++)
+		{
+			SimulationResult pairingResult = mResults[pairing];
+			result.append(String.format(" - %s - %s: %d : %d, ничьих %d, средняя длина игры %.1f%n",
+					mEntrantsNames[mPairings[pairing][0]], mEntrantsNames[mPairings[pairing][1]],
+					pairingResult.getWins(0), pairingResult.getWins(1), pairingResult.getDraws(), pairingResult.getAverageGameLength()));
+		}
+		Integer[] standings = new Integer[mEntrantsNames.length];
+		for (int i = 0; i < standings.length; i++)
+		{
+			standings[i] = i;
+		}
+		Arrays.sort(standings, Comparator.comparingDouble((Integer entrant) -> getScore(entrant) / Math.max(getGamesCount(entrant), 1L)).reversed());
+		result.append("Турнирная таблица:\n");
+		for (int place = 0; place < standings.length; place++)
+		{
+			int entrant = standings[place];
+			result.append(String.format(" %d. %s: %.1f из %d%n", place + 1, mEntrantsNames[entrant], getScore(entrant), getGamesCount(entrant)));
+		}
+		return result.toString();
+	}
+
+}
@@ -1,60 +1,303 @@
 package ua.net.hj.cz.roles;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Random;
 import ua.net.hj.cz.core.ActionFigure;
 import ua.net.hj.cz.core.Coordinates;
 import ua.net.hj.cz.core.GraphicSymbolsSet;
+import ua.net.hj.cz.core.MoveList;
+import ua.net.hj.cz.core.PackedMove;
+import ua.net.hj.cz.core.ZobristKeys;
 
 /**
  * Описывает игровое поле.
+ * Для перебора ходов "на месте" поле предоставляет пару makeMove() - unmakeMove():
+ * сделанные так ходы складываются в стек, и отмена хода возвращает поле в точности в прежнее состояние -
+ * вместе с хэшем, списком свободных клеточек (включая порядок клеточек в нем) и состоянием наблюдателей,
+ * поэтому поиску не нужно копировать поле.
+ * Размеры поля и идентификаторы игроков - числа int, а в клеточках поля хранится не идентификатор игрока,
+ * а его номер на поле (один байт): номера раздаются игрокам по порядку в setPlayerFigure().
+ * Поэтому идентификаторы игроков могут быть любыми положительными числами, а поле занимает один байт на клеточку.
+ * Список свободных клеточек - перестановка всех клеточек поля: за свободными клеточками в нем стоят занятые,
+ * поэтому и свободные, и занятые клеточки перебираются без просмотра всего поля.
+ * Наследники, хранящие поле иначе (см. SparseBoard), создаются конструктором без плотного хранилища
+ * и переопределяют методы доступа к клеточкам и стек ходов.
  * @author Hobbit Jedi
  */
 public class Board {
-	private final byte mXSize;                                      // Горизонтальный размер игрового поля.
-	private final byte mYSize;                                      // Вертикальный размер игрового поля.
-	private final byte[] mField;                                    // Игровое поле (храним матрицу в одномерном массиве).
-	private final HashMap<Byte, ActionFigure> mPlayerIDsFiguresMap; // Соответствие идентификаторов игроков и фигур, которыми они играют.
+	private static final int[] DIRECTIONS_DX = {1, 0, 1,  1};       // Смещения по X для четырех направлений линий.
+	private static final int[] DIRECTIONS_DY = {0, 1, 1, -1};       // Смещения по Y для четырех направлений линий.
+	public static final int MAX_PLAYERS = Byte.MAX_VALUE;           // Максимальное количество игроков на одном поле.
+	public static final int SPARSE_MIN_CELLS = 1 << 16;             // Количество клеточек, больше которого create() создает разреженное поле.
+	private final int mXSize;                                       // Горизонтальный размер игрового поля.
+	private final int mYSize;                                       // Вертикальный размер игрового поля.
+	private final int mCellsCount;                                  // Количество клеточек игрового поля.
+	private final byte[] mField;                                    // Игровое поле: номера игроков на поле (храним матрицу в одномерном массиве). null - поле хранит наследник.
+	private int[] mPlayerIDs;                                       // Идентификаторы игроков (индекс - номер игрока на поле, 0 - свободная клеточка).
+	private ActionFigure[] mPlayerFigures;                          // Фигуры, которыми играют игроки (индекс - номер игрока на поле).
+	private long mHash;                                             // Хэш Зобриста текущей позиции на поле.
+	private BoardObserver[] mObservers;                             // Наблюдатели за изменениями поля (не копируются вместе с полем).
+	private final int[] mDirectionSteps;                            // Шаги индекса клеточки для четырех направлений линий.
+	private final int[] mEmptyCells;                                // Список клеточек: первые mEmptyCellsCount свободны, остальные заняты.
+	private final int[] mEmptyCellsPositions;                       // Позиции клеточек в списке клеточек.
+	private int mEmptyCellsCount;                                   // Количество свободных клеточек.
+	private final MoveList mMovesStack;                             // Стек ходов makeMove(): упакованный ход и позиция клеточки в списке свободных.
 	
 	/**
 	 * Создает игровое поле указанных размеров.
 	 * @param aXSize - Горизонтальный размер создаваемого игрового поля.
 	 * @param aYSize - Вертикальный размер создаваемого игрового поля.
+	 * @throws IllegalArgumentException - Если размеры не положительны или клеточек больше, чем можно упаковать в ход (см. PackedMove), то вызывается исключение.
 	 */
-	public Board(byte aXSize, byte aYSize)
+	public Board(int aXSize, int aYSize) throws IllegalArgumentException
 	{
+		this(aXSize, aYSize, true);
+	}
+	
+	/**
+	 * Создает игровое поле указанных размеров.
+	 * @param aXSize - Горизонтальный размер создаваемого игрового поля.
+	 * @param aYSize - Вертикальный размер создаваемого игрового поля.
+	 * @param aIsDense - true - поле хранится в массивах на все клеточки;
+	 *                   false - клеточки и стек ходов хранит наследник.
+	 * @throws IllegalArgumentException - Если размеры не положительны или клеточек больше, чем можно упаковать в ход (см. PackedMove), то вызывается исключение.
+	 */
+	protected Board(int aXSize, int aYSize, boolean aIsDense) throws IllegalArgumentException
+	{
+		if (aXSize <= 0 || aYSize <= 0 || (long)aXSize * aYSize > PackedMove.MAX_CELL_INDEX + 1L)
+		{
+			throw new IllegalArgumentException("Некорректный размер поля: " + aXSize + "x" + aYSize);
+		}
 		mXSize = aXSize;
 		mYSize = aYSize;
-		mField = new byte[mYSize * mXSize];
-		Arrays.fill(mField, (byte)0);
-		mPlayerIDsFiguresMap = new HashMap();
+		mCellsCount = aXSize * aYSize;
+		mPlayerIDs = new int[1];
+		mPlayerFigures = new ActionFigure[1];
+		mHash = 0L;
+		mObservers = new BoardObserver[0];
+		mDirectionSteps = new int[DIRECTIONS_DX.length];
+		for (int i = 0; i < mDirectionSteps.length; i++)
+		{
+			mDirectionSteps[i] = DIRECTIONS_DY[i] * mXSize + DIRECTIONS_DX[i];
+		}
+		if (aIsDense)
+		{
+			mField = new byte[mCellsCount];
+			Arrays.fill(mField, (byte)0);
+			mEmptyCells = new int[mCellsCount];
+			mEmptyCellsPositions = new int[mCellsCount];
+			for (int i = 0; i < mCellsCount; i++)
+			{
+				mEmptyCells[i] = i;
+				mEmptyCellsPositions[i] = i;
+			}
+			mMovesStack = new MoveList(64);
+		}
+		else
+		{
+			mField = null;
+			mEmptyCells = null;
+			mEmptyCellsPositions = null;
+			mMovesStack = null;
+		}
+		mEmptyCellsCount = mCellsCount;
 	}
 	
 	/**
 	 * Создает копию игрового поля.
+	 * Массивы поля копируются целиком, без повторной инициализации.
+	 * Копия поля, хранящегося иначе (см. SparseBoard), заполняется по списку его занятых клеточек.
+	 * Стек ходов makeMove() не копируется: ходы, сделанные до копирования, в копии отменить нельзя.
 	 * @param aBoard - Игровое поле, копия которого создается.
 	 */
 	public Board(Board aBoard)
 	{
-		this(aBoard.mXSize, aBoard.mYSize);
-		System.arraycopy(aBoard.mField, 0, this.mField, 0, mXSize * mYSize);
-		mPlayerIDsFiguresMap.putAll(aBoard.mPlayerIDsFiguresMap);
+		this(aBoard, true);
+	}
+	
+	/**
+	 * Создает копию игрового поля.
+	 * Копируются размеры, игроки и хэш поля, а при aIsDense - и клеточки поля.
+	 * Стек ходов makeMove() не копируется: ходы, сделанные до копирования, в копии отменить нельзя.
+	 * @param aBoard - Игровое поле, копия которого создается.
+	 * @param aIsDense - true - копия хранится в массивах на все клеточки;
+	 *                   false - клеточки и стек ходов копии хранит наследник.
+	 */
+	protected Board(Board aBoard, boolean aIsDense)
+	{
+		mXSize = aBoard.mXSize;
+		mYSize = aBoard.mYSize;
+		mCellsCount = aBoard.mCellsCount;
+		mPlayerIDs = aBoard.mPlayerIDs.clone();
+		mPlayerFigures = aBoard.mPlayerFigures.clone();
+		mHash = aBoard.mHash;
+		mObservers = new BoardObserver[0];
+		mDirectionSteps = aBoard.mDirectionSteps; // Шаги зависят только от размеров поля и не изменяются.
+		if (!aIsDense)
+		{
+			mField = null;
+			mEmptyCells = null;
+			mEmptyCellsPositions = null;
+			mEmptyCellsCount = aBoard.getEmptyCellsCount();
+			mMovesStack = null;
+		}
+		else if (aBoard.mField != null)
+		{
+			mField = aBoard.mField.clone();
+			mEmptyCells = aBoard.mEmptyCells.clone();
+			mEmptyCellsPositions = aBoard.mEmptyCellsPositions.clone();
+			mEmptyCellsCount = aBoard.mEmptyCellsCount;
+			mMovesStack = new MoveList(64);
+		}
+		else
+		{
+			mField = new byte[mCellsCount];
+			mEmptyCells = new int[mCellsCount];
+			mEmptyCellsPositions = new int[mCellsCount];
+			for (int i = 0; i < mCellsCount; i++)
+			{
+				mEmptyCells[i] = i;
+				mEmptyCellsPositions[i] = i;
+			}
+			mEmptyCellsCount = mCellsCount;
+			mMovesStack = new MoveList(64);
+			// Хэш уже скопирован, поэтому клеточки расставляются без пересчета хэша и без оповещений.
+			for (int i = aBoard.getOccupiedCellsCount() - 1; i >= 0; i--)
+			{
+				int cell = aBoard.getOccupiedCell(i);
+				mField[cell] = (byte)aBoard.getCellSlot(cell);
+				occupyEmptyCell(cell);
+			}
+		}
+	}
+	
+	/**
+	 * Создать игровое поле подходящего вида.
+	 * Поля больше SPARSE_MIN_CELLS клеточек создаются разреженными (см. SparseBoard),
+	 * остальные - плотными: на небольших полях массивы на все клеточки быстрее.
+	 * @param aXSize - Горизонтальный размер создаваемого игрового поля.
+	 * @param aYSize - Вертикальный размер создаваемого игрового поля.
+	 * @return - Созданное игровое поле.
+	 * @throws IllegalArgumentException - Если размеры поля некорректны, то вызывается исключение.
+	 */
+	public static Board create(int aXSize, int aYSize) throws IllegalArgumentException
+	{
+		return ((long)aXSize * aYSize > SPARSE_MIN_CELLS) ? new SparseBoard(aXSize, aYSize) : new Board(aXSize, aYSize);
+	}
+	
+	/**
+	 * Создать копию игрового поля того же вида.
+	 * Наследники возвращают копию своего класса.
+	 * Стек ходов makeMove() и наблюдатели не копируются.
+	 * @return - Копия поля.
+	 */
+	public Board copy()
+	{
+		return new Board(this);
 	}
 	
 	/**
 	 * Добавить соответствие игровой фигуры игроку.
+	 * Игрок, которому фигура устанавливается впервые, получает следующий номер на поле.
 	 * @param aPlayerID - Идентификатор игрока, которому в соответствие устанавливается фигура.
 	 * @param aFigure - Игровая фигура, которая устанавливается в соответствие игроку.
+	 * @throws IllegalArgumentException - Если идентификатор игрока не положителен или на поле уже MAX_PLAYERS игроков, то вызывает исключение.
 	 */
-	public void setPlayerFigure(byte aPlayerID, ActionFigure aFigure)
+	public void setPlayerFigure(int aPlayerID, ActionFigure aFigure) throws IllegalArgumentException
 	{
-		if (aPlayerID > 0)
+		if (aPlayerID <= 0)
 		{
-			mPlayerIDsFiguresMap.put(aPlayerID, aFigure);
+			throw new IllegalArgumentException("Передан некорректный идентификатор игрока (" + aPlayerID + ") в метод Board.setPlayerFigure()");
 		}
-		else
+		int slot = getPlayerSlot(aPlayerID);
+		if (slot < 0)
+		{
+			slot = mPlayerIDs.length;
+			if (slot > MAX_PLAYERS)
+			{
+				throw new IllegalArgumentException("На поле не может играть больше " + MAX_PLAYERS + " игроков.");
+			}
+			mPlayerIDs = Arrays.copyOf(mPlayerIDs, slot + 1);
+			mPlayerFigures = Arrays.copyOf(mPlayerFigures, slot + 1);
+			mPlayerIDs[slot] = aPlayerID;
+		}
+		mPlayerFigures[slot] = aFigure;
+	}
+	
+	/**
+	 * Получить фигуру, которой играет игрок.
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @return - Игровая фигура игрока.
+	 *           null, если игроку не установлена фигура.
+	 */
+	public ActionFigure getPlayerFigure(int aPlayerID)
+	{
+		int slot = (aPlayerID > 0) ? getPlayerSlot(aPlayerID) : -1;
+		return (slot > 0) ? mPlayerFigures[slot] : null;
+	}
+	
+	/**
+	 * Получить номер игрока на поле (то, что хранится в клеточках поля и в упакованных ходах стека makeMove()).
+	 * Игроков на поле немного, поэтому номер ищется простым перебором.
+	 * @param aPlayerID - Идентификатор игрока.
+	 * @return - Номер игрока на поле (от 1 до MAX_PLAYERS). 0, если передан идентификатор 0 (свободная клеточка).
+	 *           -1, если игроку не установлена фигура.
+	 */
+	public int getPlayerSlot(int aPlayerID)
+	{
+		for (int slot = mPlayerIDs.length - 1; slot >= 0; slot--)
+		{
+			if (mPlayerIDs[slot] == aPlayerID)
+			{
+				return slot;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Получить идентификатор игрока по его номеру на поле.
+	 * @param aSlot - Номер игрока на поле (см. getPlayerSlot()).
+	 * @return - Идентификатор игрока. 0, если передан номер 0 (свободная клеточка).
+	 * @throws IllegalArgumentException - Если игрока с таким номером на поле нет, то вызывается исключение.
+	 */
+	public int getSlotPlayerID(int aSlot) throws IllegalArgumentException
+	{
+		if (aSlot < 0 || aSlot >= mPlayerIDs.length)
 		{
-			throw new IllegalArgumentException("Передан некорректный идентификатор игрока (" + aPlayerID + ") в метод Board.setAt()");
+			throw new IllegalArgumentException("Некорректно передан номер игрока (" + aSlot + ") в метод Board.getSlotPlayerID()");
+		}
+		return mPlayerIDs[aSlot];
+	}
+	
+	/**
+	 * Добавить наблюдателя за изменениями поля.
+	 * Наблюдатели не переносятся в копии поля.
+	 * @param aObserver - Добавляемый наблюдатель.
+	 */
+	public void addObserver(BoardObserver aObserver)
+	{
+		BoardObserver[] observers = Arrays.copyOf(mObservers, mObservers.length + 1);
+		observers[mObservers.length] = aObserver;
+		mObservers = observers;
+	}
+	
+	/**
+	 * Удалить наблюдателя за изменениями поля.
+	 * @param aObserver - Удаляемый наблюдатель.
+	 */
+	public void removeObserver(BoardObserver aObserver)
+	{
+		for (int i = 0; i < mObservers.length; i++)
+		{
+			if (mObservers[i] == aObserver)
+			{
+				BoardObserver[] observers = new BoardObserver[mObservers.length - 1];
+				System.arraycopy(mObservers, 0, observers, 0, i);
+				System.arraycopy(mObservers, i + 1, observers, i, observers.length - i);
+				mObservers = observers;
+				break;
+			}
 		}
 	}
 	
@@ -62,7 +305,7 @@ public class Board {
 	 * Получить горизонтальный размер игрового поля.
 	 * @return - Горизонтальный размер игрового поля.
 	 */
-	public byte getXSize()
+	public int getXSize()
 	{
 		return mXSize;
 	}
@@ -71,20 +314,52 @@ public class Board {
 	 * Получить вертикальный размер игрового поля.
 	 * @return - Вертикальный размер игрового поля.
 	 */
-	public byte getYSize()
+	public int getYSize()
 	{
 		return mYSize;
 	}
 	
+	/**
+	 * Получить количество клеточек игрового поля.
+	 * @return - Количество клеточек игрового поля.
+	 */
+	public int getCellsCount()
+	{
+		return mCellsCount;
+	}
+	
+	/**
+	 * Получить индекс клеточки по ее координатам.
+	 * Координаты на попадание в поле не проверяются.
+	 * @param aX - X-координата клеточки.
+	 * @param aY - Y-координата клеточки.
+	 * @return - Индекс клеточки (y * ширина_поля + x).
+	 */
+	public int getCellIndex(int aX, int aY)
+	{
+		return aY * mXSize + aX;
+	}
+	
+	/**
+	 * Получить хэш Зобриста текущей позиции на поле.
+	 * Хэш пересчитывается при каждой установке или снятии фигуры,
+	 * поэтому после пары "поставить - снять" он возвращается к исходному значению.
+	 * @return - 64-битный хэш позиции.
+	 */
+	public long getHash()
+	{
+		return mHash;
+	}
+	
 	/**
 	 * Определить попадает ли клеточка в игровое поле.
 	 * @param aX - X-координата проверяемой клеточки поля.
 	 * @param aY - Y-координата проверяемой клеточки поля.
 	 * @return - Признак того, что клеточка с указанными координатами присутствует на игровом поле.
 	 */
-	public boolean isCoordinateAtBoard(byte aX, byte aY)
+	public boolean isCoordinateAtBoard(int aX, int aY)
 	{
-		return (aX >= (byte)0 && aX < mXSize && aY >= (byte)0 && aY < mYSize);
+		return (aX >= 0 && aX < mXSize && aY >= 0 && aY < mYSize);
 	}
 	
 	/**
@@ -105,11 +380,11 @@ public class Board {
 	 *           0, если клеточка свободна.
 	 * @throws IllegalArgumentException - Если координаты не попадают в поле, то вызывается исключение.
 	 */
-	public byte lookAt(byte aX, byte aY) throws IllegalArgumentException
+	public int lookAt(int aX, int aY) throws IllegalArgumentException
 	{
 		if (isCoordinateAtBoard(aX, aY))
 		{
-			return mField[aY * mXSize + aX];
+			return mPlayerIDs[mField[aY * mXSize + aX]];
 		}
 		else
 		{
@@ -117,6 +392,26 @@ public class Board {
 		}
 	}
 	
+	/**
+	 * Посмотреть на игровое поле по индексу клеточки.
+	 * Индекс клеточки вычисляется как (y * ширина_поля + x).
+	 * @param aCellIndex - Индекс клеточки, в которую смотрим.
+	 * @return - Идентификатор игрока, фигура которого находится в указанной клеточке.
+	 *           0, если клеточка свободна.
+	 * @throws IllegalArgumentException - Если индекс не попадает в поле, то вызывается исключение.
+	 */
+	public int lookAtCell(int aCellIndex) throws IllegalArgumentException
+	{
+		if (aCellIndex >= 0 && aCellIndex < mCellsCount)
+		{
+			return mPlayerIDs[mField[aCellIndex]];
+		}
+		else
+		{
+			throw new IllegalArgumentException("Некорректно передан индекс клеточки в метод Board.lookAtCell()");
+		}
+	}
+	
 	/**
 	 * Посмотреть на игровое поле (получить значение клеточки по координатам).
 	 * @param aCoordinates - Координаты клеточки, в которую смотрим.
@@ -124,7 +419,7 @@ public class Board {
 	 *           0, если клеточка свободна.
 	 * @throws IllegalArgumentException - Если координаты не попадают в поле, то вызывается исключение.
 	 */
-	public byte lookAt(Coordinates aCoordinates) throws IllegalArgumentException
+	public int lookAt(Coordinates aCoordinates) throws IllegalArgumentException
 	{
 		return lookAt(aCoordinates.getX(), aCoordinates.getY());
 	}
@@ -140,13 +435,37 @@ public class Board {
 	 *                                    или указан неизвестный доске идентификатор игрока,
 	 *                                    то вызывает исключение.
 	 */
-	public void setAt(byte aX, byte aY, byte aPlayerID) throws IllegalArgumentException
+	public void setAt(int aX, int aY, int aPlayerID) throws IllegalArgumentException
 	{
 		if (isCoordinateAtBoard(aX, aY))
 		{
-			if (aPlayerID == 0 || mPlayerIDsFiguresMap.get(aPlayerID) != null)
+			setAtCell(aY * mXSize + aX, aPlayerID);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Некорректно переданы координаты в метод Board.setAt()");
+		}
+	}
+	
+	/**
+	 * Установить фигуру на игровом поле по индексу клеточки.
+	 * Все изменения поля выполняются через этот метод.
+	 * !!!ВНИМАНИЕ!!! Затирает расположенную в указанной клеточке старую фигуру.
+	 * @param aCellIndex - Индекс клеточки (y * ширина_поля + x), в которой устанавливаем фигуру.
+	 * @param aPlayerID - Идентификатор игрока, фигуру которого устанавливаем в указанной клеточке.
+	 *                    0, если требуется очистить клеточку.
+	 * @throws IllegalArgumentException - Если индекс выходит за пределы поля,
+	 *                                    или указан неизвестный доске идентификатор игрока,
+	 *                                    то вызывает исключение.
+	 */
+	public void setAtCell(int aCellIndex, int aPlayerID) throws IllegalArgumentException
+	{
+		if (aCellIndex >= 0 && aCellIndex < mCellsCount)
+		{
+			int slot = getPlayerSlot(aPlayerID);
+			if (slot >= 0)
 			{
-				mField[aY * mXSize + aX] = aPlayerID;
+				changeCell(aCellIndex, slot, mEmptyCellsCount);
 			}
 			else
 			{
@@ -155,10 +474,168 @@ public class Board {
 		}
 		else
 		{
-			throw new IllegalArgumentException("Некорректно переданы координаты в метод Board.setAt()");
+			throw new IllegalArgumentException("Некорректно передан индекс клеточки в метод Board.setAtCell()");
 		}
 	}
 	
+	/**
+	 * Сделать ход: поставить фигуру игрока в свободную клеточку и запомнить ход в стеке ходов.
+	 * Ход отменяется методом unmakeMove().
+	 * @param aCellIndex - Индекс свободной клеточки (y * ширина_поля + x).
+	 * @param aPlayerID - Идентификатор игрока, фигуру которого ставим.
+	 * @throws IllegalArgumentException - Если индекс выходит за пределы поля, клеточка занята
+	 *                                    или указан неизвестный доске идентификатор игрока, то вызывает исключение.
+	 */
+	public void makeMove(int aCellIndex, int aPlayerID) throws IllegalArgumentException
+	{
+		if (aCellIndex < 0 || aCellIndex >= mCellsCount || mField[aCellIndex] != 0)
+		{
+			throw new IllegalArgumentException("Некорректно передана клеточка (" + aCellIndex + ") в метод Board.makeMove()");
+		}
+		int slot = getPlayerSlot(aPlayerID);
+		if (slot <= 0)
+		{
+			throw new IllegalArgumentException("Передан некорректный идентификатор игрока (" + aPlayerID + ") в метод Board.makeMove()");
+		}
+		mMovesStack.push(mEmptyCellsPositions[aCellIndex]);
+		mMovesStack.push(PackedMove.pack(aCellIndex, slot));
+		changeCell(aCellIndex, slot, 0);
+	}
+	
+	/**
+	 * Отменить последний ход, сделанный методом makeMove().
+	 * Клеточка возвращается на прежнее место в списке свободных клеточек.
+	 * @return - Упакованный отмененный ход (см. PackedMove; в нем хранится номер игрока на поле).
+	 * @throws IllegalStateException - Если в стеке нет ходов, то вызывает исключение.
+	 */
+	public int unmakeMove() throws IllegalStateException
+	{
+		if (mMovesStack.isEmpty())
+		{
+			throw new IllegalStateException("Нет ходов для отмены в методе Board.unmakeMove()");
+		}
+		int result = mMovesStack.pop();
+		changeCell(PackedMove.getCell(result), 0, mMovesStack.pop());
+		return result;
+	}
+	
+	/**
+	 * Получить количество ходов в стеке makeMove().
+	 * @return - Количество ходов, которые можно отменить.
+	 */
+	public int getMovesStackSize()
+	{
+		return mMovesStack.size() >> 1;
+	}
+	
+	/**
+	 * Изменить клеточку поля: обновить список свободных клеточек, пересчитать хэш и оповестить наблюдателей.
+	 * Индекс клеточки и идентификатор игрока уже проверены.
+	 * @param aCellIndex - Индекс клеточки.
+	 * @param aSlot - Номер игрока на поле, фигуру которого устанавливаем. 0, если клеточка очищается.
+	 * @param aEmptyPosition - Позиция, на которую освобождаемая клеточка ставится в списке свободных клеточек
+	 *                         (клеточка, стоявшая на этой позиции, переносится в конец списка).
+	 */
+	private void changeCell(int aCellIndex, int aSlot, int aEmptyPosition)
+	{
+		int oldSlot = mField[aCellIndex];
+		mField[aCellIndex] = (byte)aSlot;
+		// Обновим список свободных клеточек.
+		if (oldSlot == 0 && aSlot != 0)
+		{
+			occupyEmptyCell(aCellIndex);
+		}
+		else if (oldSlot != 0 && aSlot == 0)
+		{
+			// Клеточка освобождена: переносится на границу свободных и занятых клеточек, граница сдвигается,
+			// а затем клеточка становится на указанную позицию, а стоявшая там клеточка - в конец свободных
+			// (обратное действие к занятию клеточки, поэтому отмена хода восстанавливает порядок списка).
+			swapCells(mEmptyCellsPositions[aCellIndex], mEmptyCellsCount++);
+			if (aEmptyPosition < mEmptyCellsCount - 1)
+			{
+				swapCells(aEmptyPosition, mEmptyCellsCount - 1);
+			}
+		}
+		cellChanged(aCellIndex, oldSlot, aSlot);
+	}
+	
+	/**
+	 * Перенести свободную клеточку в занятые: на ее место в списке становится последняя свободная клеточка,
+	 * а сама клеточка - на ее место, первым из занятых.
+	 * @param aCellIndex - Индекс свободной клеточки.
+	 */
+	private void occupyEmptyCell(int aCellIndex)
+	{
+		swapCells(mEmptyCellsPositions[aCellIndex], --mEmptyCellsCount);
+	}
+	
+	/**
+	 * Поменять местами две клеточки в списке клеточек.
+	 * @param aPosition1 - Позиция первой клеточки.
+	 * @param aPosition2 - Позиция второй клеточки.
+	 */
+	private void swapCells(int aPosition1, int aPosition2)
+	{
+		int cell1 = mEmptyCells[aPosition1];
+		int cell2 = mEmptyCells[aPosition2];
+		mEmptyCells[aPosition1] = cell2;
+		mEmptyCellsPositions[cell2] = aPosition1;
+		mEmptyCells[aPosition2] = cell1;
+		mEmptyCellsPositions[cell1] = aPosition2;
+	}
+	
+	/**
+	 * Учесть изменение клеточки поля: пересчитать хэш, вызвать cellChangedHandler() и оповестить наблюдателей.
+	 * Вызывается после того, как клеточка изменена в хранилище поля.
+	 * @param aCellIndex - Индекс изменившейся клеточки.
+	 * @param aOldSlot - Номер игрока на поле, фигура которого стояла в клеточке. 0, если клеточка была свободна.
+	 * @param aNewSlot - Номер игрока на поле, фигура которого теперь стоит в клеточке. 0, если клеточка очищена.
+	 */
+	protected final void cellChanged(int aCellIndex, int aOldSlot, int aNewSlot)
+	{
+		// Пересчитаем хэш позиции: уберем ключ старой фигуры и добавим ключ новой.
+		if (aOldSlot != 0)
+		{
+			mHash ^= ZobristKeys.getKey(aCellIndex, mPlayerFigures[aOldSlot]);
+		}
+		if (aNewSlot != 0)
+		{
+			mHash ^= ZobristKeys.getKey(aCellIndex, mPlayerFigures[aNewSlot]);
+		}
+		int oldPlayerID = mPlayerIDs[aOldSlot];
+		int newPlayerID = mPlayerIDs[aNewSlot];
+		cellChangedHandler(aCellIndex, oldPlayerID, newPlayerID);
+		for (BoardObserver observer: mObservers)
+		{
+			observer.cellChangedNotificationHandler(this, aCellIndex, oldPlayerID, newPlayerID);
+		}
+	}
+	
+	/**
+	 * Получить номер на поле игрока, фигура которого стоит в клеточке.
+	 * Индекс клеточки не проверяется.
+	 * @param aCellIndex - Индекс клеточки.
+	 * @return - Номер игрока на поле (см. getPlayerSlot()). 0, если клеточка свободна.
+	 */
+	protected int getCellSlot(int aCellIndex)
+	{
+		return mField[aCellIndex];
+	}
+	
+	/**
+	 * Обработать изменение клеточки поля.
+	 * Вызывается после изменения клеточки, но до оповещения наблюдателей.
+	 * Наследники, хранящие дополнительные представления поля, обновляют их здесь.
+	 * Реализация по умолчанию ничего не делает.
+	 * @param aCellIndex - Индекс изменившейся клеточки.
+	 * @param aOldPlayerID - Идентификатор игрока, фигура которого стояла в клеточке. 0, если клеточка была свободна.
+	 * @param aNewPlayerID - Идентификатор игрока, фигура которого теперь стоит в клеточке. 0, если клеточка очищена.
+	 */
+	protected void cellChangedHandler(int aCellIndex, int aOldPlayerID, int aNewPlayerID)
+	{
+		// Реализация по умолчанию ничего не делает.
+	}
+	
 	/**
 	 * Установить фигуру на игровом поле.
 	 * !!!ВНИМАНИЕ!!! Затирает расположенную в указанных координатах старую фигуру.
@@ -168,25 +645,104 @@ public class Board {
 	 *                                    или указан неизвестный доске идентификатор игрока,
 	 *                                    то вызывает исключение.
 	 */
-	public void setAt(Coordinates aCoordinates, byte aPlayerID) throws IllegalArgumentException
+	public void setAt(Coordinates aCoordinates, int aPlayerID) throws IllegalArgumentException
 	{
 		setAt(aCoordinates.getX(), aCoordinates.getY(), aPlayerID);
 	}
 	
+	/**
+	 * Проверить проходит ли через указанную клеточку линия из фигур игрока указанной длины.
+	 * Клеточки просматриваются по заранее вычисленным шагам индекса для каждого направления.
+	 * @param aCellIndex - Индекс клеточки (y * ширина_поля + x), через которую должна проходить линия.
+	 * @param aPlayerID - Идентификатор игрока, линии которого ищем.
+	 * @param aLineLength - Длина искомой линии.
+	 * @return - Признак того, что такая линия есть.
+	 * @throws IllegalArgumentException - Если индекс не попадает в поле, то вызывается исключение.
+	 */
+	public boolean hasLineThrough(int aCellIndex, int aPlayerID, int aLineLength) throws IllegalArgumentException
+	{
+		if (aCellIndex < 0 || aCellIndex >= mCellsCount)
+		{
+			throw new IllegalArgumentException("Некорректно передан индекс клеточки в метод Board.hasLineThrough()");
+		}
+		boolean result = false;
+		int slot = (aPlayerID != 0) ? getPlayerSlot(aPlayerID) : -1;
+		if (aLineLength > 0 && slot > 0 && getCellSlot(aCellIndex) == slot)
+		{
+			int x = aCellIndex % mXSize;
+			int y = aCellIndex / mXSize;
+			for (int direction = 0; direction < mDirectionSteps.length && !result; direction++)
+			{
+				int step = mDirectionSteps[direction];
+				int count = 1;
+				// Вперед по направлению.
+				int limit = Math.min(maxSteps(x, DIRECTIONS_DX[direction], mXSize), maxSteps(y, DIRECTIONS_DY[direction], mYSize));
+				limit = Math.min(limit, aLineLength - 1);
+				for (int k = 1, cell = aCellIndex + step; k <= limit && getCellSlot(cell) == slot; k++, cell += step)
+				{
+					count++;
+				}
+				// Назад по направлению.
+				limit = Math.min(maxSteps(x, -DIRECTIONS_DX[direction], mXSize), maxSteps(y, -DIRECTIONS_DY[direction], mYSize));
+				limit = Math.min(limit, aLineLength - count);
+				for (int k = 1, cell = aCellIndex - step; k <= limit && getCellSlot(cell) == slot; k++, cell -= step)
+				{
+					count++;
+				}
+				result = (count >= aLineLength);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Посчитать сколько шагов можно сделать вдоль оси, не выйдя за пределы поля.
+	 * @param aCoordinate - Текущая координата.
+	 * @param aDelta - Смещение за один шаг (-1, 0 или 1).
+	 * @param aSize - Размер поля вдоль оси.
+	 * @return - Допустимое количество шагов.
+	 */
+	private static int maxSteps(int aCoordinate, int aDelta, int aSize)
+	{
+		return (aDelta > 0) ? aSize - aCoordinate - 1 : (aDelta < 0) ? aCoordinate : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Посчитать количество свободных клеточек подряд с начала линии.
+	 * Клеточки просматриваются по одной.
+	 * @param aStartCell - Индекс первой клеточки линии.
+	 * @param aStep - Шаг индекса между соседними клеточками линии (положительный).
+	 * @param aLength - Количество клеточек в линии.
+	 * @return - Количество свободных клеточек от начала линии до первой занятой (aLength, если линия свободна).
+	 * @throws IllegalArgumentException - Если линия выходит за пределы поля, то вызывается исключение.
+	 */
+	public int countEmptyInLine(int aStartCell, int aStep, int aLength) throws IllegalArgumentException
+	{
+		if (aLength > 0 && (aStartCell < 0 || aStep <= 0 || aStartCell + (long)(aLength - 1) * aStep >= mCellsCount))
+		{
+			throw new IllegalArgumentException("Некорректно передана линия в метод Board.countEmptyInLine()");
+		}
+		int result = 0;
+		for (int cell = aStartCell; result < aLength && getCellSlot(cell) == 0; cell += aStep)
+		{
+			result++;
+		}
+		return result;
+	}
+	
 	/**
 	 * Найти первую попавшуюся свободную клеточку на поле.
+	 * Клеточка берется из списка свободных клеточек, поэтому поиск не зависит от размера поля.
 	 * @return - Координаты найденной свободной клеточки.
+	 *           null, если свободных клеточек нет.
 	 */
 	public Coordinates searchFirstEmpty()
 	{
 		Coordinates result = null;
-		for (int i = 0; i < mXSize * mYSize; i++)
+		if (mEmptyCellsCount > 0)
 		{
-			if (mField[i] == 0)
-			{
-				result = new Coordinates((byte)(i % mXSize), (byte)(i / mXSize));
-				break;
-			}
+			int cellIndex = mEmptyCells[0];
+			result = new Coordinates(cellIndex % mXSize, cellIndex / mXSize);
 		}
 		return result;
 	}
@@ -197,8 +753,78 @@ public class Board {
 	 */
 	public boolean hasMoreSpace()
 	{
-		boolean result = (searchFirstEmpty() != null);
-		return result;
+		return (mEmptyCellsCount > 0);
+	}
+	
+	/**
+	 * Получить количество свободных клеточек поля.
+	 * @return - Количество свободных клеточек.
+	 */
+	public int getEmptyCellsCount()
+	{
+		return mEmptyCellsCount;
+	}
+	
+	/**
+	 * Получить количество занятых клеточек поля.
+	 * @return - Количество занятых клеточек.
+	 */
+	public int getOccupiedCellsCount()
+	{
+		return mCellsCount - mEmptyCellsCount;
+	}
+	
+	/**
+	 * Получить занятую клеточку по ее номеру в списке занятых клеточек.
+	 * Позволяет перебрать фигуры на поле без просмотра всего поля: for (i = 0; i < getOccupiedCellsCount(); i++) getOccupiedCell(i).
+	 * !!!ВНИМАНИЕ!!! Порядок клеточек в списке меняется при любом изменении поля,
+	 * поэтому во время перебора поле изменять нельзя.
+	 * @param aIndex - Номер клеточки в списке занятых клеточек (от 0 до getOccupiedCellsCount()-1).
+	 * @return - Индекс занятой клеточки (y * ширина_поля + x).
+	 * @throws IllegalArgumentException - Если номер выходит за пределы списка, то вызывается исключение.
+	 */
+	public int getOccupiedCell(int aIndex) throws IllegalArgumentException
+	{
+		if (aIndex >= 0 && aIndex < mCellsCount - mEmptyCellsCount)
+		{
+			return mEmptyCells[mEmptyCellsCount + aIndex];
+		}
+		else
+		{
+			throw new IllegalArgumentException("Некорректно передан номер занятой клеточки в метод Board.getOccupiedCell()");
+		}
+	}
+	
+	/**
+	 * Получить свободную клеточку по ее номеру в списке свободных клеточек.
+	 * Позволяет перебрать все свободные клеточки: for (i = 0; i < getEmptyCellsCount(); i++) getEmptyCell(i).
+	 * !!!ВНИМАНИЕ!!! Порядок клеточек в списке меняется при любом изменении поля,
+	 * поэтому во время перебора поле изменять нельзя.
+	 * @param aIndex - Номер клеточки в списке свободных клеточек (от 0 до getEmptyCellsCount()-1).
+	 * @return - Индекс свободной клеточки (y * ширина_поля + x).
+	 * @throws IllegalArgumentException - Если номер выходит за пределы списка, то вызывается исключение.
+	 */
+	public int getEmptyCell(int aIndex) throws IllegalArgumentException
+	{
+		if (aIndex >= 0 && aIndex < mEmptyCellsCount)
+		{
+			return mEmptyCells[aIndex];
+		}
+		else
+		{
+			throw new IllegalArgumentException("Некорректно передан номер свободной клеточки в метод Board.getEmptyCell()");
+		}
+	}
+	
+	/**
+	 * Выбрать случайную свободную клеточку (все свободные клеточки равновероятны).
+	 * @param aRandom - Генератор случайных чисел.
+	 * @return - Индекс выбранной клеточки (y * ширина_поля + x).
+	 *           -1, если свободных клеточек нет.
+	 */
+	public int getRandomEmptyCell(Random aRandom)
+	{
+		return (mEmptyCellsCount > 0) ? mEmptyCells[aRandom.nextInt(mEmptyCellsCount)] : -1;
 	}
 	
 	/**
@@ -206,22 +832,22 @@ public class Board {
 	 */
 	public void print()
 	{
-		byte xCoordinateLength = (byte)Coordinates.indexToCoordinate((byte)(mXSize-1)).length();
-		byte yCoordinateLength = (byte)(new StringBuilder().append(mYSize-1).length());
+		int xCoordinateLength = Coordinates.indexToCoordinate(mXSize-1).length();
+		int yCoordinateLength = new StringBuilder().append(mYSize-1).length();
 		// Преобразуем числовые X-индексы в буквенные координаты.
 		String[] xCoordinates = new String[mXSize];
-		for (byte x = 0; x < mXSize; x++)
+		for (int x = 0; x < mXSize; x++)
 		{
 			xCoordinates[x] = Coordinates.indexToCoordinate(x);
 		}
 		StringBuilder divideLine = new StringBuilder();
 		// Сформируем горизонтальную разделительную линию таблицы.
 		divideLine.append(GraphicSymbolsSet.LINE_CROSS_LEFT);
-		for (byte j = 0; j < yCoordinateLength; j++)
+		for (int j = 0; j < yCoordinateLength; j++)
 		{
 			divideLine.append(GraphicSymbolsSet.LINE_HORIZONTAL);
 		}
-		for (byte x = 0; x < mXSize; x++)
+		for (int x = 0; x < mXSize; x++)
 		{
 			divideLine.append(GraphicSymbolsSet.LINE_CROSS).append(GraphicSymbolsSet.LINE_HORIZONTAL);
 		}
@@ -230,27 +856,27 @@ public class Board {
 		System.out.println();
 		// Выведем верхнюю рамку поля.
 		System.out.print(GraphicSymbolsSet.LINE_TOP_LEFT_CORNER);
-		for (byte j = 0; j < yCoordinateLength; j++)
+		for (int j = 0; j < yCoordinateLength; j++)
 		{
 			System.out.print(GraphicSymbolsSet.LINE_HORIZONTAL);
 		}
-		for (byte x = 0; x < mXSize; x++)
+		for (int x = 0; x < mXSize; x++)
 		{
 			System.out.print(GraphicSymbolsSet.LINE_CROSS_TOP);
 			System.out.print(GraphicSymbolsSet.LINE_HORIZONTAL);
 		}
 		System.out.println(GraphicSymbolsSet.LINE_TOP_RIGHT_CORNER);
 		// Выведем X-координаты.
-		for (byte i = 0; i < xCoordinateLength; i++)
+		for (int i = 0; i < xCoordinateLength; i++)
 		{
 			System.out.print(GraphicSymbolsSet.LINE_VERTICAL);
-			for (byte j = 0; j < yCoordinateLength; j++)
+			for (int j = 0; j < yCoordinateLength; j++)
 			{
 				System.out.print(GraphicSymbolsSet.SPACE_FULL_CELL);
 			}
-			for (byte x = 0; x < mXSize; x++)
+			for (int x = 0; x < mXSize; x++)
 			{
-				byte xCoordCurrentLen = (byte)xCoordinates[x].length();
+				int xCoordCurrentLen = xCoordinates[x].length();
 				System.out.print(GraphicSymbolsSet.LINE_VERTICAL);
 				if (i >= xCoordinateLength - xCoordCurrentLen)
 				{
@@ -268,23 +894,23 @@ public class Board {
 		// Выводим разделительную горизонтальную черту.
 		System.out.println(divideLine);
 		// Выводим само поле.
-		for (byte y = 0; y < mYSize; y++)
+		for (int y = 0; y < mYSize; y++)
 		{
 			System.out.print(GraphicSymbolsSet.LINE_VERTICAL);
-			for (byte spaceCounter = 0; spaceCounter < yCoordinateLength; spaceCounter++)
+			for (int spaceCounter = 0; spaceCounter < yCoordinateLength; spaceCounter++)
 			{
 				System.out.print(GraphicSymbolsSet.SPACE_AROUND_LETTER);
 			}
 			System.out.format("%"+yCoordinateLength+"d", y); // Выводим Y-координату
-			for (byte spaceCounter = 0; spaceCounter < yCoordinateLength; spaceCounter++)
+			for (int spaceCounter = 0; spaceCounter < yCoordinateLength; spaceCounter++)
 			{
 				System.out.print(GraphicSymbolsSet.SPACE_AROUND_LETTER);
 			}
-			for (byte x = 0; x < mXSize; x++)
+			for (int x = 0; x < mXSize; x++)
 			{
-				byte currentCellValue = mField[y * mXSize + x];
+				int currentCellValue = getCellSlot(y * mXSize + x);
 				System.out.print(GraphicSymbolsSet.LINE_VERTICAL);
-				System.out.print(currentCellValue != 0 ? mPlayerIDsFiguresMap.get(currentCellValue) : GraphicSymbolsSet.SPACE_FULL_CELL);
+				System.out.print(currentCellValue != 0 ? mPlayerFigures[currentCellValue] : GraphicSymbolsSet.SPACE_FULL_CELL);
 			}
 			System.out.println(GraphicSymbolsSet.LINE_VERTICAL);
 			if (y != mYSize - 1) // После последней строки разделительную линию не выводим.
@@ -294,11 +920,11 @@ public class Board {
 		}
 		// Выведем нижнюю рамку поля.
 		System.out.print(GraphicSymbolsSet.LINE_BOTTOM_LEFT_CORNER);
-		for (byte j = 0; j < yCoordinateLength; j++)
+		for (int j = 0; j < yCoordinateLength; j++)
 		{
 			System.out.print(GraphicSymbolsSet.LINE_HORIZONTAL);
 		}
-		for (byte x = 0; x < mXSize; x++)
+		for (int x = 0; x < mXSize; x++)
 		{
 			System.out.print(GraphicSymbolsSet.LINE_CROSS_BOTTOM);
 			System.out.print(GraphicSymbolsSet.LINE_HORIZONTAL);
@@ -0,0 +1,21 @@
+package ua.net.hj.cz.roles;
+
+/**
+ * Описывает наблюдателя за изменениями игрового поля.
+ * Наблюдатели позволяют поддерживать производные от поля данные (оценки, списки ходов и т.п.)
+ * в актуальном состоянии без повторного просмотра всего поля после каждого изменения.
+ * @author Hobbit Jedi
+ */
+public interface BoardObserver {
+
+	/**
+	 * Обработать сообщение об изменении клеточки поля.
+	 * Вызывается уже после того, как клеточка изменена.
+	 * @param aBoard - Игровое поле, на котором произошло изменение.
+	 * @param aCellIndex - Индекс изменившейся клеточки (y * ширина_поля + x).
+	 * @param aOldPlayerID - Идентификатор игрока, фигура которого стояла в клеточке. 0, если клеточка была свободна.
+	 * @param aNewPlayerID - Идентификатор игрока, фигура которого теперь стоит в клеточке. 0, если клеточка очищена.
+	 */
+	public void cellChangedNotificationHandler(Board aBoard, int aCellIndex, int aOldPlayerID, int aNewPlayerID);
+
+}
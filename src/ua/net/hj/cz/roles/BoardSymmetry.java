@@ -0,0 +1,237 @@
+package ua.net.hj.cz.roles;
+
+import ua.net.hj.cz.core.ZobristKeys;
+
+/**
+ * Описывает симметрии игрового поля и приведение позиции к каноническому виду.
+ * У прямоугольного поля 4 симметрии (тождественная, два отражения и поворот на 180 градусов),
+ * у квадратного - 8 (еще отражения по диагоналям и повороты на 90 градусов).
+ * Для каждой симметрии поддерживается хэш преобразованной ею позиции (по тем же ключам ZobristKeys, что и хэш поля),
+ * поэтому изменение клеточки стоит пересчета 4-8 хэшей, а не просмотра всего поля.
+ * Каноническим считается вариант позиции с наименьшим хэшем: у всех симметричных позиций он одинаков,
+ * поэтому кэши, ключом которых служит канонический хэш, хранят одну запись на все симметричные позиции.
+ * Ходы, сохраняемые в таких кэшах, переводятся в систему координат канонического варианта и обратно.
+ * Клеточки переводятся вычислением координат, а не по таблицам перестановок, поэтому объект не занимает памяти
+ * на каждую клеточку поля, а подключение к полю просматривает только занятые клеточки.
+ * @author Hobbit Jedi
+ */
+public class BoardSymmetry implements BoardObserver {
+	private static final int[] INVERSE_SYMMETRIES = {0, 1, 2, 3, 4, 6, 5, 7}; // Обратные симметрии (повороты на 90 градусов взаимно обратны).
+	private final int mXSize;              // Ширина поля.
+	private final int mYSize;              // Высота поля.
+	private final long[] mHashes;          // Хэши вариантов позиции для каждой симметрии.
+	private Board mBoard;                  // Поле, за которым следят. null - не подключено.
+
+	/**
+	 * Создать симметрии поля.
+	 * @param aXSize - Ширина поля.
+	 * @param aYSize - Высота поля.
+	 */
+	public BoardSymmetry(int aXSize, int aYSize)
+	{
+		mXSize = aXSize;
+		mYSize = aYSize;
+		mHashes = new long[(aXSize == aYSize) ? 8 : 4];
+		mBoard = null;
+	}
+
+	/**
+	 * Получить перестановки клеточек для всех симметрий поля.
+	 * Симметрия 0 - тождественная.
+	 * @param aXSize - Ширина поля.
+	 * @param aYSize - Высота поля.
+	 * @return - Массив перестановок: [симметрия][клеточка] = клеточка, в которую она переходит.
+	 */
+	public static int[][] getPermutations(int aXSize, int aYSize)
+	{
+		int[][] result = new int[(aXSize == aYSize) ? 8 : 4][aXSize * aYSize];
+		for (int s = 0; s < result.length; s++)
+		{
+			for (int cell = 0; cell < result[s].length; cell++)
+			{
+				result[s][cell] = transform(cell, s, aXSize, aYSize);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Перевести клеточку симметрией.
+	 * @param aCellIndex - Индекс клеточки.
+	 * @param aSymmetry - Номер симметрии (4-7 - только для квадратного поля).
+	 * @param aXSize - Ширина поля.
+	 * @param aYSize - Высота поля.
+	 * @return - Индекс клеточки, в которую переходит клеточка.
+	 */
+	private static int transform(int aCellIndex, int aSymmetry, int aXSize, int aYSize)
+	{
+		int y = aCellIndex / aXSize;
+		int x = aCellIndex - y * aXSize;
+		int mx = aXSize - 1 - x;
+		int my = aYSize - 1 - y;
+		int result;
+		switch (aSymmetry)
+		{
+			case 0:
+				result = aCellIndex;
+				break;
+			case 1:
+				result = y * aXSize + mx;
+				break;
+			case 2:
+				result = my * aXSize + x;
+				break;
+			case 3:
+				result = my * aXSize + mx;
+				break;
+			case 4:
+				result = x * aXSize + y;
+				break;
+			case 5:
+				result = x * aXSize + my;
+				break;
+			case 6:
+				result = mx * aXSize + y;
+				break;
+			default:
+				result = mx * aXSize + my;
+		}
+		return result;
+	}
+
+	/**
+	 * Проверить подходят ли симметрии полю.
+	 * @param aBoard - Поле.
+	 * @return - true - размеры поля совпадают с размерами симметрий.
+	 */
+	public boolean isSuitable(Board aBoard)
+	{
+		return aBoard.getXSize() == mXSize && aBoard.getYSize() == mYSize;
+	}
+
+	/**
+	 * Подключиться к полю: вычислить хэши всех вариантов позиции и начать следить за изменениями поля.
+	 * Если симметрии были подключены к другому полю, то они от него отключаются.
+	 * @param aBoard - Поле, за которым нужно следить.
+	 * @throws IllegalArgumentException - Если размеры поля не совпадают с размерами симметрий, то вызывается исключение.
+	 */
+	public void attach(Board aBoard) throws IllegalArgumentException
+	{
+		if (!isSuitable(aBoard))
+		{
+			throw new IllegalArgumentException("Размеры поля " + aBoard.getXSize() + "x" + aBoard.getYSize()
+					+ " не совпадают с размерами симметрий " + mXSize + "x" + mYSize + ".");
+		}
+		detach();
+		for (int s = 0; s < mHashes.length; s++)
+		{
+			long hash = 0L;
+			for (int i = 0; i < aBoard.getOccupiedCellsCount(); i++)
+			{
+				int cell = aBoard.getOccupiedCell(i);
+				hash ^= ZobristKeys.getKey(transform(cell, s, mXSize, mYSize), aBoard.getPlayerFigure(aBoard.lookAtCell(cell)));
+			}
+			mHashes[s] = hash;
+		}
+		mBoard = aBoard;
+		aBoard.addObserver(this);
+	}
+
+	/**
+	 * Отключиться от поля.
+	 */
+	public void detach()
+	{
+		if (mBoard != null)
+		{
+			mBoard.removeObserver(this);
+			mBoard = null;
+		}
+	}
+
+	/**
+	 * Получить количество симметрий поля.
+	 * @return - 8 для квадратного поля, 4 для прямоугольного.
+	 */
+	public int getSymmetriesCount()
+	{
+		return mHashes.length;
+	}
+
+	/**
+	 * Получить хэш варианта позиции, преобразованного симметрией.
+	 * Хэш варианта тождественной симметрии (0) совпадает с Board.getHash().
+	 * @param aSymmetry - Номер симметрии.
+	 * @return - Хэш варианта позиции.
+	 */
+	public long getHash(int aSymmetry)
+	{
+		return mHashes[aSymmetry];
+	}
+
+	/**
+	 * Получить номер симметрии, приводящей позицию к каноническому виду.
+	 * @return - Номер симметрии, дающей наименьший хэш (при равенстве - наименьший номер).
+	 */
+	public int getCanonicalSymmetry()
+	{
+		int result = 0;
+		for (int s = 1; s < mHashes.length; s++)
+		{
+			if (mHashes[s] < mHashes[result])
+			{
+				result = s;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Получить хэш канонического вида позиции.
+	 * @return - Наименьший из хэшей вариантов позиции.
+	 */
+	public long getCanonicalHash()
+	{
+		return mHashes[getCanonicalSymmetry()];
+	}
+
+	/**
+	 * Перевести клеточку поля в систему координат варианта позиции.
+	 * @param aCellIndex - Индекс клеточки на поле.
+	 * @param aSymmetry - Номер симметрии.
+	 * @return - Индекс клеточки в варианте позиции.
+	 */
+	public int toVariant(int aCellIndex, int aSymmetry)
+	{
+		return transform(aCellIndex, aSymmetry, mXSize, mYSize);
+	}
+
+	/**
+	 * Перевести клеточку варианта позиции в систему координат поля.
+	 * @param aCellIndex - Индекс клеточки в варианте позиции.
+	 * @param aSymmetry - Номер симметрии.
+	 * @return - Индекс клеточки на поле.
+	 */
+	public int fromVariant(int aCellIndex, int aSymmetry)
+	{
+		return transform(aCellIndex, INVERSE_SYMMETRIES[aSymmetry], mXSize, mYSize);
+	}
+
+	@Override
+	public void cellChangedNotificationHandler(Board aBoard, int aCellIndex, int aOldPlayerID, int aNewPlayerID)
+	{
+		for (int s = 0; s < mHashes.length; s++)
+		{
+			int cell = transform(aCellIndex, s, mXSize, mYSize);
+			if (aOldPlayerID != 0)
+			{
+				mHashes[s] ^= ZobristKeys.getKey(cell, aBoard.getPlayerFigure(aOldPlayerID));
+			}
+			if (aNewPlayerID != 0)
+			{
+				mHashes[s] ^= ZobristKeys.getKey(cell, aBoard.getPlayerFigure(aNewPlayerID));
+			}
+		}
+	}
+
+}
@@ -16,14 +16,27 @@ public class Referee {
 	 * По каждому игроку считает количество попыток сделать ошибочный ход.
 	 * Если количество ошибок игрока превысит указанный в правилах предел, то игрок будет дисквалифицирован.
 	 */
-	private final HashMap<Byte, Integer> mPlayersErrorsCounters;
+	private final HashMap<Integer, Integer> mPlayersErrorsCounters;
+	private final boolean mIsVerbose; // Признак того, что судья комментирует ходы в консоли.
 	
 	/**
-	 * Создает судью, который будет следить за выполнением правил игры.
+	 * Создает судью, который будет следить за выполнением правил игры
+	 * и комментировать ходы в консоли.
 	 */
 	public Referee()
+	{
+		this(true);
+	}
+	
+	/**
+	 * Создает судью, который будет следить за выполнением правил игры.
+	 * @param aIsVerbose - Признак того, что судья должен комментировать ходы в консоли.
+	 *                     false - судья работает молча (например, при пакетном проведении игр).
+	 */
+	public Referee(boolean aIsVerbose)
 	{
 		mPlayersErrorsCounters = new HashMap<>();
+		mIsVerbose = aIsVerbose;
 	}
 	
 	/**
@@ -49,7 +62,7 @@ public class Referee {
 	public MoveResult commitMove(Player aPlayer, Move aMove, Board aBoard, Rules aRules, ArrayList<Player> aPlayers)
 	{
 		MoveResult result = null;
-		byte currentPlayerID = aPlayer.getID();
+		int currentPlayerID = aPlayer.getID();
 		if (aMove != null)
 		{
 			// Проверим допустимость хода.
@@ -73,16 +86,25 @@ public class Referee {
 					{
 						result = MoveResult.DEADLOCK;
 					}
-					System.out.println("Ход игрока принят: " + aMove);
+					if (mIsVerbose)
+					{
+						System.out.println("Ход игрока принят: " + aMove);
+					}
 				}
 				else
 				{
-					System.out.println("Указанная игроком " + aPlayer + " клеточка (" + cellToMove + ") уже занята.");
+					if (mIsVerbose)
+					{
+						System.out.println("Указанная игроком " + aPlayer + " клеточка (" + cellToMove + ") уже занята.");
+					}
 				}
 			}
 			else
 			{
-				System.out.println("Игрок " + aPlayer + " некорректно указал координаты хода: " + cellToMove);
+				if (mIsVerbose)
+				{
+					System.out.println("Игрок " + aPlayer + " некорректно указал координаты хода: " + cellToMove);
+				}
 			}
 		}
 		else
@@ -93,10 +115,13 @@ public class Referee {
 			}
 			else
 			{
-				System.out.println("Игрок " + aPlayer + " не знает куда ему пойти.");
+				if (mIsVerbose)
+				{
+					System.out.println("Игрок " + aPlayer + " не знает куда ему пойти.");
+				}
 			}
 		}
-		byte numErrorsAllowed = aRules.getNumErrorsAllowed();
+		int numErrorsAllowed = aRules.getNumErrorsAllowed();
 		if (result == null && numErrorsAllowed >= 0)
 		{
 			// Проверим не пора ли игрока дисквалифицировать.
@@ -105,7 +130,10 @@ public class Referee {
 			{
 				errorsQuantity += 1;
 				mPlayersErrorsCounters.put(currentPlayerID, errorsQuantity);
-				System.out.println("Игрок " + aPlayer + " получает предупреждение: " + errorsQuantity + "/" + numErrorsAllowed + ".");
+				if (mIsVerbose)
+				{
+					System.out.println("Игрок " + aPlayer + " получает предупреждение: " + errorsQuantity + "/" + numErrorsAllowed + ".");
+				}
 			}
 			else
 			{
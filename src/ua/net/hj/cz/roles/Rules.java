@@ -1,5 +1,6 @@
 package ua.net.hj.cz.roles;
 
+import ua.net.hj.cz.core.ActionFigure;
 import ua.net.hj.cz.core.Move;
 
 /**
@@ -7,11 +8,13 @@ import ua.net.hj.cz.core.Move;
  * @author Hobbit Jedi
  */
 public class Rules {
-	private final byte mBoardXSize;                      // Ширина доски.
-	private final byte mBoardYSize;                      // Высота доски.
-	private final byte mWinLineLength;                   // Длина линии из одинаковых фигур для победы.
-	private final byte mNumErrorsAllowed;                // Допустимое количество ошибок до дисквалификации.
-	private final byte mNumOfPlayers;                    // Количество играющих игроков.
+	private final int mBoardXSize;                       // Ширина доски.
+	private final int mBoardYSize;                       // Высота доски.
+	private final int mWinLineLength;                    // Длина линии из одинаковых фигур для победы.
+	private final int mNumErrorsAllowed;                 // Допустимое количество ошибок до дисквалификации.
+	private final int mNumOfPlayers;                     // Количество играющих игроков.
+	private final long mMoveTimeLimit;                   // Ограничение времени на ход (мс). 0 - неограничено.
+	private final long mGameTimeLimit;                   // Ограничение времени каждого игрока на всю игру (мс). 0 - неограничено.
 	
 	/**
 	 * Создать правила по умолчанию.
@@ -23,7 +26,7 @@ public class Rules {
 	 */
 	public Rules()
 	{
-		this((byte)3, (byte)3, (byte)3, (byte)10, (byte)2);
+		this(3, 3, 3, 10, 2);
 	}
 	
 	/**
@@ -34,13 +37,36 @@ public class Rules {
 	 * @param aNumErrorsAllowed - Допустимое количество попыток подряд сделать некорректный ход до получения дисквалификации.
 	 * @param aNumOfPlayers - Количество играющих игроков.
 	 */
-	public Rules(byte aBoardXSize, byte aBoardYSize, byte aWinLineLength, byte aNumErrorsAllowed, byte aNumOfPlayers)
+	public Rules(int aBoardXSize, int aBoardYSize, int aWinLineLength, int aNumErrorsAllowed, int aNumOfPlayers)
 	{
+		this(aBoardXSize, aBoardYSize, aWinLineLength, aNumErrorsAllowed, aNumOfPlayers, 0L, 0L);
+	}
+	
+	/**
+	 * Создать правила игры с контролем времени.
+	 * Компьютерные игроки планируют свой поиск так, чтобы уложиться в отведенное время.
+	 * @param aBoardXSize - Ширина игровой доски.
+	 * @param aBoardYSize - Высота игровой доски.
+	 * @param aWinLineLength - Количество фигур в линии, чтобы одержать победу.
+	 * @param aNumErrorsAllowed - Допустимое количество попыток подряд сделать некорректный ход до получения дисквалификации.
+	 * @param aNumOfPlayers - Количество играющих игроков.
+	 * @param aMoveTimeLimit - Ограничение времени на ход в миллисекундах. 0 - неограничено.
+	 * @param aGameTimeLimit - Ограничение времени каждого игрока на всю игру в миллисекундах. 0 - неограничено.
+	 * @throws IllegalArgumentException - Если ограничение времени отрицательно, то вызывает исключение.
+	 */
+	public Rules(int aBoardXSize, int aBoardYSize, int aWinLineLength, int aNumErrorsAllowed, int aNumOfPlayers, long aMoveTimeLimit, long aGameTimeLimit) throws IllegalArgumentException
+	{
+		if (aMoveTimeLimit < 0 || aGameTimeLimit < 0)
+		{
+			throw new IllegalArgumentException("Ограничение времени не может быть отрицательным.");
+		}
 		mBoardXSize          = aBoardXSize;
 		mBoardYSize          = aBoardYSize;
 		mWinLineLength       = aWinLineLength;
 		mNumErrorsAllowed    = aNumErrorsAllowed;
 		mNumOfPlayers        = aNumOfPlayers;
+		mMoveTimeLimit       = aMoveTimeLimit;
+		mGameTimeLimit       = aGameTimeLimit;
 	}
 	
 	/**
@@ -49,14 +75,15 @@ public class Rules {
 	 */
 	public Rules(Rules aRules)
 	{
-		this(aRules.getBoardXSize(), aRules.getBoardYSize(), aRules.getWinLineLength(), aRules.getNumErrorsAllowed(), aRules.getNumOfPlayers());
+		this(aRules.getBoardXSize(), aRules.getBoardYSize(), aRules.getWinLineLength(), aRules.getNumErrorsAllowed(), aRules.getNumOfPlayers(),
+				aRules.getMoveTimeLimit(), aRules.getGameTimeLimit());
 	}
 	
 	/**
 	 * Получить ширину игровой доски.
 	 * @return - Ширина игровой доски.
 	 */
-	public byte getBoardXSize()
+	public int getBoardXSize()
 	{
 		return mBoardXSize;
 	}
@@ -65,7 +92,7 @@ public class Rules {
 	 * Получить высоту игровой доски.
 	 * @return - Высота игровой доски.
 	 */
-	public byte getBoardYSize()
+	public int getBoardYSize()
 	{
 		return mBoardYSize;
 	}
@@ -74,7 +101,7 @@ public class Rules {
 	 * Получить длину линии для победы.
 	 * @return - Длина линии из одинаковых фигур для победы.
 	 */
-	public byte getWinLineLength()
+	public int getWinLineLength()
 	{
 		return mWinLineLength;
 	}
@@ -84,7 +111,7 @@ public class Rules {
 	 * как игрок будет дисквалифицирован.
 	 * @return - Допустимое количество ошибок до дисквалификации.
 	 */
-	public byte getNumErrorsAllowed()
+	public int getNumErrorsAllowed()
 	{
 		return mNumErrorsAllowed;
 	}
@@ -93,11 +120,29 @@ public class Rules {
 	 * Получить количество игроков.
 	 * @return - Количество игроков.
 	 */
-	public byte getNumOfPlayers()
+	public int getNumOfPlayers()
 	{
 		return mNumOfPlayers;
 	}
 	
+	/**
+	 * Получить ограничение времени на ход.
+	 * @return - Ограничение времени на ход в миллисекундах. 0 - неограничено.
+	 */
+	public long getMoveTimeLimit()
+	{
+		return mMoveTimeLimit;
+	}
+	
+	/**
+	 * Получить ограничение времени каждого игрока на всю игру.
+	 * @return - Ограничение времени на игру в миллисекундах. 0 - неограничено.
+	 */
+	public long getGameTimeLimit()
+	{
+		return mGameTimeLimit;
+	}
+	
 	/**
 	 * Проверить совпадают ли данные правила игры с другими правилами игры.
 	 * @param obj - Правила игры, с которыми выполняется сравнение текущих правил игры.
@@ -121,6 +166,8 @@ public class Rules {
 						&& (this.mWinLineLength == other.mWinLineLength)
 						&& (this.mNumErrorsAllowed == other.mNumErrorsAllowed)
 						&& (this.mNumOfPlayers == other.mNumOfPlayers)
+						&& (this.mMoveTimeLimit == other.mMoveTimeLimit)
+						&& (this.mGameTimeLimit == other.mGameTimeLimit)
 						;
 		return result;
 	}
@@ -138,57 +185,84 @@ public class Rules {
 		hash = 53 * hash + mWinLineLength;
 		hash = 53 * hash + mNumErrorsAllowed;
 		hash = 53 * hash + mNumOfPlayers;
+		hash = 53 * hash + Long.hashCode(mMoveTimeLimit);
+		hash = 53 * hash + Long.hashCode(mGameTimeLimit);
 		return hash;
 	}
 	
 	/**
 	 * Проверяет принес ли ход победу тому, кто ходил.
+	 * Ход должен быть уже отмечен на доске: ходившим считается игрок, фигура которого стоит в клеточке хода.
 	 * @param aLastMove - Последний ход на доске.
 	 * @param aBoard - Доска, на которой ведется игра.
 	 * @return - Признак того, что последний ход оказался победным.
 	 */
 	public boolean isWin(Move aLastMove, Board aBoard)
 	{
-		boolean result;
-		byte xSize = aBoard.getXSize();
-		byte ySize = aBoard.getYSize();
-		byte lastMoveX = aLastMove.getX();
-		byte lastMoveY = aLastMove.getY();
-		byte lastMovePlayerID = aLastMove.getPlayer().getID();
-		
-		// Посчитаем сколько соответствующих ходящему игроку фигур в разных направлениях от точки хода.
+		int x = aLastMove.getX();
+		int y = aLastMove.getY();
+		return aBoard.isCoordinateAtBoard(x, y) && isWin(aBoard, aBoard.getCellIndex(x, y));
+	}
+	
+	/**
+	 * Проверяет принес ли ход в указанную клеточку победу тому, кто ходил.
+	 * Не создает объектов, поэтому подходит для вызова из перебора.
+	 * @param aBoard - Доска, на которой ведется игра (ход уже отмечен на ней).
+	 * @param aCellIndex - Индекс клеточки (y * ширина_поля + x), в которую сделан последний ход.
+	 * @return - Признак того, что последний ход оказался победным.
+	 * @throws IllegalArgumentException - Если индекс не попадает в поле, то вызывается исключение.
+	 */
+	public boolean isWin(Board aBoard, int aCellIndex) throws IllegalArgumentException
+	{
+		return aBoard.hasLineThrough(aCellIndex, aBoard.lookAtCell(aCellIndex), mWinLineLength);
+	}
+	
+	/**
+	 * Прежний способ проверки победы (просмотр восьми направлений через Board.lookAt()).
+	 * Оставлен как эталон для test_isWinPerformance().
+	 * @param aBoard - Доска, на которой ведется игра.
+	 * @param aLastMoveX - X-координата последнего хода.
+	 * @param aLastMoveY - Y-координата последнего хода.
+	 * @param aLastMovePlayerID - Идентификатор ходившего игрока.
+	 * @param aWinLineLength - Длина линии для победы.
+	 * @return - Признак того, что последний ход оказался победным.
+	 */
+	private static boolean isWinByLookAt(Board aBoard, int aLastMoveX, int aLastMoveY, int aLastMovePlayerID, int aWinLineLength)
+	{
+		int xSize = aBoard.getXSize();
+		int ySize = aBoard.getYSize();
 		byte directions[][] =	{	{0, 0, 0},
 									{0, 1, 0},
 									{0, 0, 0}
 								};
-		for (byte dx = -1; dx <= 1; dx++) // Направление движения по оси X (-1 - Влево, 0 - Стоим, +1 - Вправо)
+		for (int dx = -1; dx <= 1; dx++)
 		{
-			for (byte dy = -1; dy <= 1; dy++) // Направление движения по оси Y (-1 - Вверх, 0 - Стоим, +1 - Вниз)
+			for (int dy = -1; dy <= 1; dy++)
 			{
-				if (dx != 0 || dy != 0) // Центральную клетку не изменяем.
+				if (dx != 0 || dy != 0)
 				{
-					byte directionLength = mWinLineLength;
+					int directionLength = aWinLineLength;
 					switch (dx)
 					{
 						case -1:
-							directionLength = (byte)Math.min(directionLength, lastMoveX);
+							directionLength = Math.min(directionLength, aLastMoveX);
 							break;
 						case 1:
-							directionLength = (byte)Math.min(directionLength, Math.max(xSize - lastMoveX - 1, 0));
+							directionLength = Math.min(directionLength, Math.max(xSize - aLastMoveX - 1, 0));
 							break;
 					}
 					switch (dy)
 					{
 						case -1:
-							directionLength = (byte)Math.min(directionLength, lastMoveY);
+							directionLength = Math.min(directionLength, aLastMoveY);
 							break;
 						case 1:
-							directionLength = (byte)Math.min(directionLength, Math.max(ySize - lastMoveY - 1, 0));
+							directionLength = Math.min(directionLength, Math.max(ySize - aLastMoveY - 1, 0));
 							break;
 					}
-					for (byte k = 1; k <= directionLength; k++)
+					for (int k = 1; k <= directionLength; k++)
 					{
-						if (aBoard.lookAt((byte)(lastMoveX + dx * k), (byte)(lastMoveY + dy * k)) != lastMovePlayerID)
+						if (aBoard.lookAt(aLastMoveX + dx * k, aLastMoveY + dy * k) != aLastMovePlayerID)
 						{
 							break;
 						}
@@ -197,27 +271,105 @@ public class Rules {
 				}
 			}
 		}
-		
-		// Проверим есть ли выигрышные строки, колонки или диагонали.
-		byte figuresInRow = 0;
-		byte figuresInColumn = 0;
-		byte figuresInDiagonal1 = 0;
-		byte figuresInDiagonal2 = 0;
-		for (byte i = 0; i <= 2; i++)
+		int figuresInRow = 0;
+		int figuresInColumn = 0;
+		int figuresInDiagonal1 = 0;
+		int figuresInDiagonal2 = 0;
+		for (int i = 0; i <= 2; i++)
 		{
 			figuresInRow       += directions[1][i];
 			figuresInColumn    += directions[i][1];
 			figuresInDiagonal1 += directions[i][i];
 			figuresInDiagonal2 += directions[i][2-i];
 		}
-		byte maxLine = (byte)Math.max(figuresInRow, figuresInColumn);
-		maxLine = (byte)Math.max(maxLine, figuresInDiagonal1);
-		maxLine = (byte)Math.max(maxLine, figuresInDiagonal2);
-		result = (maxLine >= mWinLineLength);
-		
-		return result;
+		int maxLine = Math.max(figuresInRow, figuresInColumn);
+		maxLine = Math.max(maxLine, figuresInDiagonal1);
+		maxLine = Math.max(maxLine, figuresInDiagonal2);
+		return (maxLine >= aWinLineLength);
 	}
-
+	
+	/**
+	 * Метод для тестирования и замера скорости проверки победы.
+	 * Сравнивает прежнюю проверку через Board.lookAt() с isWin()
+	 * для полей 3х3, 15х15 и 100х100, заполненных случайными фигурами двух игроков.
+	 * @param aChecksCount - Количество проверок для каждого размера поля.
+	 */
+	public static void test_isWinPerformance(int aChecksCount)
+	{
+		System.out.println("--> Start of Testing of isWin()");
+		byte[][] sizes = {{3, 3}, {15, 5}, {100, 5}}; // Размер поля и длина линии для победы.
+		java.util.Random random = new java.util.Random(20161018L);
+		for (byte[] size: sizes)
+		{
+			int boardSize = size[0];
+			Rules rules = new Rules(boardSize, boardSize, size[1], 10, 2);
+			Board board = new Board(boardSize, boardSize);
+			board.setPlayerFigure(1, ActionFigure.values()[0]);
+			board.setPlayerFigure(2, ActionFigure.values()[1]);
+			for (int cell = 0; cell < board.getCellsCount(); cell++)
+			{
+				int value = random.nextInt(5); // Примерно пятая часть клеточек остается свободной.
+				board.setAtCell(cell, value < 2 ? 1 : value < 4 ? 2 : 0);
+			}
+			int[] cells = new int[Math.min(aChecksCount, 4096)]; // Небольшой набор, чтобы замер не упирался в кэш.
+			int roundsCount = Math.max(aChecksCount / cells.length, 1);
+			for (int i = 0; i < cells.length; i++)
+			{
+				cells[i] = random.nextInt(board.getCellsCount());
+			}
+			// Проверка совпадения результатов.
+			int errorsCount = 0;
+			for (int cell: cells)
+			{
+				int playerID = board.lookAtCell(cell);
+				boolean expected = (playerID != 0) && isWinByLookAt(board, cell % boardSize, cell / boardSize, playerID, rules.getWinLineLength());
+				if (expected != rules.isWin(board, cell))
+				{
+					errorsCount++;
+				}
+			}
+			// Замеры (первый проход каждого способа - прогрев).
+			long checksCount = (long)roundsCount * cells.length;
+			long lookAtTime = 0L;
+			long boardTime = 0L;
+			int winsCount = 0;
+			for (int pass = 0; pass < 2; pass++)
+			{
+				long start = System.nanoTime();
+				for (int round = 0; round < roundsCount; round++)
+				{
+					for (int cell: cells)
+					{
+						int playerID = board.lookAtCell(cell);
+						if (playerID != 0 && isWinByLookAt(board, cell % boardSize, cell / boardSize, playerID, rules.getWinLineLength()))
+						{
+							winsCount++;
+						}
+					}
+				}
+				lookAtTime = System.nanoTime() - start;
+				start = System.nanoTime();
+				for (int round = 0; round < roundsCount; round++)
+				{
+					for (int cell: cells)
+					{
+						if (rules.isWin(board, cell))
+						{
+							winsCount++;
+						}
+					}
+				}
+				boardTime = System.nanoTime() - start;
+			}
+			System.out.println((errorsCount > 0 ? "!!! ОШИБКА !!! " : "")
+					+ boardSize + "x" + boardSize + " (линия " + size[1] + "): "
+					+ "lookAt " + (lookAtTime / checksCount) + " нс, "
+					+ "isWin " + (boardTime / checksCount) + " нс на проверку"
+					+ " (побед " + (winsCount / 4 / roundsCount) + " из " + cells.length + ", расхождений " + errorsCount + ")");
+		}
+		System.out.println("<-- End of Testing of isWin()");
+	}
+	
 	/**
 	 * Получить строковое представление правил, пригодное для отображения в консоли.
 	 * @return - Строковое представление хода.
@@ -230,6 +382,14 @@ public class Rules {
 		result.append(" - Количество фигур в линию для победы: ").append(mWinLineLength).append("\n");
 		result.append(" - Количество игроков: ").append(mNumOfPlayers).append("\n");
 		result.append(" - Допустимое количество ошибок: ").append(mNumErrorsAllowed).append("\n");
+		if (mMoveTimeLimit > 0)
+		{
+			result.append(" - Время на ход: ").append(mMoveTimeLimit).append(" мс\n");
+		}
+		if (mGameTimeLimit > 0)
+		{
+			result.append(" - Время на игру: ").append(mGameTimeLimit).append(" мс\n");
+		}
 		return result.toString();
 	}
 	
@@ -0,0 +1,502 @@
+package ua.net.hj.cz.roles;
+
+import java.util.Arrays;
+import java.util.Random;
+import ua.net.hj.cz.core.Coordinates;
+import ua.net.hj.cz.core.MoveList;
+import ua.net.hj.cz.core.PackedMove;
+
+/**
+ * Описывает разреженное игровое поле для очень больших досок, на которых фигуры занимают малую часть клеточек.
+ * Клеточки хранятся плитками 16x16 (по байту на клеточку), а плитки - в хэш-таблице с открытой адресацией,
+ * ключом которой служит номер плитки (строка плиток * количество_плиток_в_строке + колонка плитки).
+ * Плитка создается при первой установке фигуры в одну из ее клеточек, поэтому память поля пропорциональна
+ * количеству областей с фигурами, а соседние клеточки (линии, квадраты вокруг фигур) лежат в одной плитке.
+ * Последняя найденная плитка запоминается, и подряд идущие обращения к соседним клеточкам не ищут ее заново.
+ * Занятые клеточки хранятся отдельным списком: перебор фигур, копирование поля и отмена хода не зависят от размера поля.
+ * Свободные клеточки не хранятся, поэтому их перебор по номеру (getEmptyCell()) стоит O(количества фигур),
+ * а случайная свободная клеточка выбирается повторными попытками.
+ * Размеры поля ограничены так же, как у плотного поля (см. PackedMove).
+ * @author Hobbit Jedi
+ */
+public class SparseBoard extends Board {
+	private static final int TILE_BITS = 4;                      // log2 стороны плитки.
+	private static final int TILE_MASK = (1 << TILE_BITS) - 1;   // Маска координаты клеточки внутри плитки.
+	private static final int TILE_CELLS = 1 << (2 * TILE_BITS);  // Количество клеточек плитки.
+	private static final int MIN_TABLE_CAPACITY = 16;            // Начальная емкость хэш-таблицы плиток.
+	private final int mTilesPerRow;                              // Количество плиток в строке плиток.
+	private int[] mTableKeys;                                    // Хэш-таблица плиток: номер плитки + 1 (0 - ячейка таблицы свободна).
+	private byte[][] mTableTiles;                                // Хэш-таблица плиток: клеточки плитки (номера игроков на поле).
+	private int mTilesCount;                                     // Количество плиток в таблице.
+	private int mLastTileKey;                                    // Номер последней найденной плитки. -1 - не запомнена.
+	private byte[] mLastTile;                                    // Последняя найденная плитка. null - плитки нет в таблице.
+	private final MoveList mOccupiedCells;                       // Занятые клеточки.
+	private int[] mSortedCells;                                  // Занятые клеточки по возрастанию индекса (для getEmptyCell()).
+	private boolean mIsSortedValid;                              // Признак того, что mSortedCells соответствует полю.
+	private final MoveList mMovesStack;                          // Стек ходов makeMove() (упакованные ходы).
+
+	/**
+	 * Создает пустое разреженное игровое поле указанных размеров.
+	 * @param aXSize - Горизонтальный размер создаваемого игрового поля.
+	 * @param aYSize - Вертикальный размер создаваемого игрового поля.
+	 * @throws IllegalArgumentException - Если размеры не положительны или клеточек больше, чем можно упаковать в ход (см. PackedMove), то вызывается исключение.
+	 */
+	public SparseBoard(int aXSize, int aYSize) throws IllegalArgumentException
+	{
+		super(aXSize, aYSize, false);
+		mTilesPerRow = ((aXSize - 1) >> TILE_BITS) + 1;
+		mTableKeys = new int[MIN_TABLE_CAPACITY];
+		mTableTiles = new byte[MIN_TABLE_CAPACITY][];
+		mTilesCount = 0;
+		mLastTileKey = -1;
+		mLastTile = null;
+		mOccupiedCells = new MoveList(64);
+		mSortedCells = new int[0];
+		mIsSortedValid = false;
+		mMovesStack = new MoveList(64);
+	}
+
+	/**
+	 * Создает разреженную копию любого игрового поля.
+	 * Копируются только занятые клеточки.
+	 * Стек ходов makeMove() не копируется: ходы, сделанные до копирования, в копии отменить нельзя.
+	 * @param aBoard - Игровое поле, копия которого создается.
+	 */
+	public SparseBoard(Board aBoard)
+	{
+		super(aBoard, false);
+		mTilesPerRow = ((getXSize() - 1) >> TILE_BITS) + 1;
+		int occupiedCount = aBoard.getOccupiedCellsCount();
+		int capacity = MIN_TABLE_CAPACITY;
+		while (capacity < 2 * occupiedCount)
+		{
+			capacity <<= 1;
+		}
+		mTableKeys = new int[capacity];
+		mTableTiles = new byte[capacity][];
+		mTilesCount = 0;
+		mLastTileKey = -1;
+		mLastTile = null;
+		mOccupiedCells = new MoveList(Math.max(occupiedCount, 64));
+		mSortedCells = new int[0];
+		mIsSortedValid = false;
+		mMovesStack = new MoveList(64);
+		// Хэш уже скопирован, поэтому клеточки расставляются без пересчета хэша и без оповещений.
+		for (int i = occupiedCount - 1; i >= 0; i--)
+		{
+			int cell = aBoard.getOccupiedCell(i);
+			int y = cell / getXSize();
+			int x = cell - y * getXSize();
+			getTile(x, y, true)[getTileCell(x, y)] = (byte)aBoard.getCellSlot(cell);
+			mOccupiedCells.push(cell);
+		}
+	}
+
+	/**
+	 * Создать копию поля: разреженное поле копируется в разреженное.
+	 * Стек ходов makeMove() и наблюдатели не копируются.
+	 * @return - Копия поля.
+	 */
+	@Override
+	public Board copy()
+	{
+		return new SparseBoard(this);
+	}
+
+	/**
+	 * Посмотреть на игровое поле (получить значение клеточки по координатам).
+	 * @param aX - X-координата клеточки, в которую смотрим.
+	 * @param aY - Y-координата клеточки, в которую смотрим.
+	 * @return - Идентификатор игрока, фигура которого находится на поле по указанным координатам.
+	 *           0, если клеточка свободна.
+	 * @throws IllegalArgumentException - Если координаты не попадают в поле, то вызывается исключение.
+	 */
+	@Override
+	public int lookAt(int aX, int aY) throws IllegalArgumentException
+	{
+		if (isCoordinateAtBoard(aX, aY))
+		{
+			return getSlotPlayerID(getCellSlot(aY * getXSize() + aX));
+		}
+		else
+		{
+			throw new IllegalArgumentException("Некорректно переданы координаты в метод SparseBoard.lookAt()");
+		}
+	}
+
+	/**
+	 * Посмотреть на игровое поле по индексу клеточки.
+	 * @param aCellIndex - Индекс клеточки, в которую смотрим.
+	 * @return - Идентификатор игрока, фигура которого находится в указанной клеточке.
+	 *           0, если клеточка свободна.
+	 * @throws IllegalArgumentException - Если индекс не попадает в поле, то вызывается исключение.
+	 */
+	@Override
+	public int lookAtCell(int aCellIndex) throws IllegalArgumentException
+	{
+		if (aCellIndex >= 0 && aCellIndex < getCellsCount())
+		{
+			return getSlotPlayerID(getCellSlot(aCellIndex));
+		}
+		else
+		{
+			throw new IllegalArgumentException("Некорректно передан индекс клеточки в метод SparseBoard.lookAtCell()");
+		}
+	}
+
+	/**
+	 * Установить фигуру на игровом поле по индексу клеточки.
+	 * !!!ВНИМАНИЕ!!! Затирает расположенную в указанной клеточке старую фигуру.
+	 * @param aCellIndex - Индекс клеточки (y * ширина_поля + x), в которой устанавливаем фигуру.
+	 * @param aPlayerID - Идентификатор игрока, фигуру которого устанавливаем в указанной клеточке.
+	 *                    0, если требуется очистить клеточку.
+	 * @throws IllegalArgumentException - Если индекс выходит за пределы поля,
+	 *                                    или указан неизвестный доске идентификатор игрока,
+	 *                                    то вызывает исключение.
+	 */
+	@Override
+	public void setAtCell(int aCellIndex, int aPlayerID) throws IllegalArgumentException
+	{
+		if (aCellIndex >= 0 && aCellIndex < getCellsCount())
+		{
+			int slot = getPlayerSlot(aPlayerID);
+			if (slot >= 0)
+			{
+				changeCell(aCellIndex, slot);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Передан некорректный идентификатор игрока (" + aPlayerID + ") в метод SparseBoard.setAt()");
+			}
+		}
+		else
+		{
+			throw new IllegalArgumentException("Некорректно передан индекс клеточки в метод SparseBoard.setAtCell()");
+		}
+	}
+
+	/**
+	 * Сделать ход: поставить фигуру игрока в свободную клеточку и запомнить ход в стеке ходов.
+	 * Ход отменяется методом unmakeMove().
+	 * @param aCellIndex - Индекс свободной клеточки (y * ширина_поля + x).
+	 * @param aPlayerID - Идентификатор игрока, фигуру которого ставим.
+	 * @throws IllegalArgumentException - Если индекс выходит за пределы поля, клеточка занята
+	 *                                    или указан неизвестный доске идентификатор игрока, то вызывает исключение.
+	 */
+	@Override
+	public void makeMove(int aCellIndex, int aPlayerID) throws IllegalArgumentException
+	{
+		if (aCellIndex < 0 || aCellIndex >= getCellsCount() || getCellSlot(aCellIndex) != 0)
+		{
+			throw new IllegalArgumentException("Некорректно передана клеточка (" + aCellIndex + ") в метод SparseBoard.makeMove()");
+		}
+		int slot = getPlayerSlot(aPlayerID);
+		if (slot <= 0)
+		{
+			throw new IllegalArgumentException("Передан некорректный идентификатор игрока (" + aPlayerID + ") в метод SparseBoard.makeMove()");
+		}
+		mMovesStack.push(PackedMove.pack(aCellIndex, slot));
+		changeCell(aCellIndex, slot);
+	}
+
+	/**
+	 * Отменить последний ход, сделанный методом makeMove().
+	 * Клеточка хода - последняя в списке занятых клеточек, поэтому список возвращается в прежнее состояние.
+	 * @return - Упакованный отмененный ход (см. PackedMove; в нем хранится номер игрока на поле).
+	 * @throws IllegalStateException - Если в стеке нет ходов, то вызывает исключение.
+	 */
+	@Override
+	public int unmakeMove() throws IllegalStateException
+	{
+		if (mMovesStack.isEmpty())
+		{
+			throw new IllegalStateException("Нет ходов для отмены в методе SparseBoard.unmakeMove()");
+		}
+		int result = mMovesStack.pop();
+		changeCell(PackedMove.getCell(result), 0);
+		return result;
+	}
+
+	/**
+	 * Получить количество ходов в стеке makeMove().
+	 * @return - Количество ходов, которые можно отменить.
+	 */
+	@Override
+	public int getMovesStackSize()
+	{
+		return mMovesStack.size();
+	}
+
+	/**
+	 * Найти первую свободную клеточку на поле (с наименьшим индексом).
+	 * @return - Координаты найденной свободной клеточки.
+	 *           null, если свободных клеточек нет.
+	 */
+	@Override
+	public Coordinates searchFirstEmpty()
+	{
+		Coordinates result = null;
+		if (getEmptyCellsCount() > 0)
+		{
+			int cellIndex = getEmptyCell(0);
+			result = new Coordinates(cellIndex % getXSize(), cellIndex / getXSize());
+		}
+		return result;
+	}
+
+	/**
+	 * Проверить есть ли еще свободные клеточки?
+	 * @return - Признак того, что свободные клеточки на поле еще есть.
+	 */
+	@Override
+	public boolean hasMoreSpace()
+	{
+		return getEmptyCellsCount() > 0;
+	}
+
+	/**
+	 * Получить количество свободных клеточек поля.
+	 * @return - Количество свободных клеточек.
+	 */
+	@Override
+	public int getEmptyCellsCount()
+	{
+		return getCellsCount() - mOccupiedCells.size();
+	}
+
+	/**
+	 * Получить количество занятых клеточек поля.
+	 * @return - Количество занятых клеточек.
+	 */
+	@Override
+	public int getOccupiedCellsCount()
+	{
+		return mOccupiedCells.size();
+	}
+
+	/**
+	 * Получить занятую клеточку по ее номеру в списке занятых клеточек.
+	 * @param aIndex - Номер клеточки в списке занятых клеточек (от 0 до getOccupiedCellsCount()-1).
+	 * @return - Индекс занятой клеточки (y * ширина_поля + x).
+	 * @throws IllegalArgumentException - Если номер выходит за пределы списка, то вызывается исключение.
+	 */
+	@Override
+	public int getOccupiedCell(int aIndex) throws IllegalArgumentException
+	{
+		if (aIndex >= 0 && aIndex < mOccupiedCells.size())
+		{
+			return mOccupiedCells.get(aIndex);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Некорректно передан номер занятой клеточки в метод SparseBoard.getOccupiedCell()");
+		}
+	}
+
+	/**
+	 * Получить свободную клеточку по ее номеру среди свободных клеточек.
+	 * Свободные клеточки нумеруются по возрастанию индекса, а номер вычисляется по упорядоченному списку
+	 * занятых клеточек, поэтому вызов стоит O(количества фигур) (после изменения поля список упорядочивается заново).
+	 * @param aIndex - Номер клеточки среди свободных клеточек (от 0 до getEmptyCellsCount()-1).
+	 * @return - Индекс свободной клеточки (y * ширина_поля + x).
+	 * @throws IllegalArgumentException - Если номер выходит за пределы списка, то вызывается исключение.
+	 */
+	@Override
+	public int getEmptyCell(int aIndex) throws IllegalArgumentException
+	{
+		if (aIndex < 0 || aIndex >= getEmptyCellsCount())
+		{
+			throw new IllegalArgumentException("Некорректно передан номер свободной клеточки в метод SparseBoard.getEmptyCell()");
+		}
+		int occupiedCount = mOccupiedCells.size();
+		if (!mIsSortedValid)
+		{
+			if (mSortedCells.length < occupiedCount)
+			{
+				mSortedCells = new int[Math.max(occupiedCount, 2 * mSortedCells.length)];
+			}
+			for (int i = 0; i < occupiedCount; i++)
+			{
+				mSortedCells[i] = mOccupiedCells.get(i);
+			}
+			Arrays.sort(mSortedCells, 0, occupiedCount);
+			mIsSortedValid = true;
+		}
+		// Каждая занятая клеточка не дальше искомой сдвигает ее на одну клеточку вперед.
+		int result = aIndex;
+		for (int i = 0; i < occupiedCount && mSortedCells[i] <= result; i++)
+		{
+			result++;
+		}
+		return result;
+	}
+
+	/**
+	 * Выбрать случайную свободную клеточку (все свободные клеточки равновероятны).
+	 * Пока фигуры занимают меньше половины поля, клеточка выбирается повторными попытками среди всех клеточек,
+	 * иначе - по номеру среди свободных клеточек.
+	 * @param aRandom - Генератор случайных чисел.
+	 * @return - Индекс выбранной клеточки (y * ширина_поля + x).
+	 *           -1, если свободных клеточек нет.
+	 */
+	@Override
+	public int getRandomEmptyCell(Random aRandom)
+	{
+		int result = -1;
+		int emptyCount = getEmptyCellsCount();
+		if (2 * mOccupiedCells.size() < getCellsCount())
+		{
+			do
+			{
+				result = aRandom.nextInt(getCellsCount());
+			}
+			while (getCellSlot(result) != 0);
+		}
+		else if (emptyCount > 0)
+		{
+			result = getEmptyCell(aRandom.nextInt(emptyCount));
+		}
+		return result;
+	}
+
+	/**
+	 * Получить номер на поле игрока, фигура которого стоит в клеточке.
+	 * Индекс клеточки не проверяется.
+	 * @param aCellIndex - Индекс клеточки.
+	 * @return - Номер игрока на поле. 0, если клеточка свободна.
+	 */
+	@Override
+	protected int getCellSlot(int aCellIndex)
+	{
+		int y = aCellIndex / getXSize();
+		int x = aCellIndex - y * getXSize();
+		byte[] tile = getTile(x, y, false);
+		return (tile != null) ? tile[getTileCell(x, y)] : 0;
+	}
+
+	/**
+	 * Изменить клеточку поля: обновить плитку и список занятых клеточек, затем пересчитать хэш и оповестить наблюдателей.
+	 * Индекс клеточки и номер игрока уже проверены.
+	 * @param aCellIndex - Индекс клеточки.
+	 * @param aSlot - Номер игрока на поле, фигуру которого устанавливаем. 0, если клеточка очищается.
+	 */
+	private void changeCell(int aCellIndex, int aSlot)
+	{
+		int y = aCellIndex / getXSize();
+		int x = aCellIndex - y * getXSize();
+		byte[] tile = getTile(x, y, aSlot != 0);
+		int oldSlot = 0;
+		if (tile != null)
+		{
+			int tileCell = getTileCell(x, y);
+			oldSlot = tile[tileCell];
+			tile[tileCell] = (byte)aSlot;
+		}
+		if (oldSlot == 0 && aSlot != 0)
+		{
+			mOccupiedCells.push(aCellIndex);
+			mIsSortedValid = false;
+		}
+		else if (oldSlot != 0 && aSlot == 0)
+		{
+			// Освобождается обычно последняя занятая клеточка (отмена хода), поэтому ищем с конца списка.
+			int position = mOccupiedCells.size() - 1;
+			while (mOccupiedCells.get(position) != aCellIndex)
+			{
+				position--;
+			}
+			int lastCell = mOccupiedCells.pop();
+			if (position < mOccupiedCells.size())
+			{
+				mOccupiedCells.set(position, lastCell);
+			}
+			mIsSortedValid = false;
+		}
+		cellChanged(aCellIndex, oldSlot, aSlot);
+	}
+
+	/**
+	 * Получить номер клеточки внутри ее плитки.
+	 * @param aX - X-координата клеточки.
+	 * @param aY - Y-координата клеточки.
+	 * @return - Номер клеточки в плитке.
+	 */
+	private static int getTileCell(int aX, int aY)
+	{
+		return ((aY & TILE_MASK) << TILE_BITS) | (aX & TILE_MASK);
+	}
+
+	/**
+	 * Найти плитку, в которой лежит клеточка.
+	 * @param aX - X-координата клеточки.
+	 * @param aY - Y-координата клеточки.
+	 * @param aIsCreate - true - создать плитку, если ее еще нет.
+	 * @return - Клеточки плитки. null, если плитки нет, и ее не требовалось создавать.
+	 */
+	private byte[] getTile(int aX, int aY, boolean aIsCreate)
+	{
+		int key = (aY >> TILE_BITS) * mTilesPerRow + (aX >> TILE_BITS);
+		if (key == mLastTileKey && (mLastTile != null || !aIsCreate))
+		{
+			return mLastTile;
+		}
+		int mask = mTableKeys.length - 1;
+		int index = hashTileKey(key) & mask;
+		while (mTableKeys[index] != 0 && mTableKeys[index] != key + 1)
+		{
+			index = (index + 1) & mask;
+		}
+		byte[] result = mTableTiles[index];
+		if (result == null && aIsCreate)
+		{
+			result = new byte[TILE_CELLS];
+			mTableKeys[index] = key + 1;
+			mTableTiles[index] = result;
+			mTilesCount++;
+			if (2 * mTilesCount > mTableKeys.length)
+			{
+				growTable();
+			}
+		}
+		mLastTileKey = key;
+		mLastTile = result;
+		return result;
+	}
+
+	/**
+	 * Увеличить хэш-таблицу плиток вдвое.
+	 */
+	private void growTable()
+	{
+		int[] keys = mTableKeys;
+		byte[][] tiles = mTableTiles;
+		mTableKeys = new int[keys.length << 1];
+		mTableTiles = new byte[keys.length << 1][];
+		int mask = mTableKeys.length - 1;
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (keys[i] != 0)
+			{
+				int index = hashTileKey(keys[i] - 1) & mask;
+				while (mTableKeys[index] != 0)
+				{
+					index = (index + 1) & mask;
+				}
+				mTableKeys[index] = keys[i];
+				mTableTiles[index] = tiles[i];
+			}
+		}
+	}
+
+	/**
+	 * Перемешать номер плитки для хэш-таблицы (соседние плитки попадают в далекие ячейки таблицы).
+	 * @param aKey - Номер плитки.
+	 * @return - Хэш номера плитки.
+	 */
+	private static int hashTileKey(int aKey)
+	{
+		int result = aKey * 0x9E3779B9;
+		return result ^ (result >>> 16);
+	}
+
+}
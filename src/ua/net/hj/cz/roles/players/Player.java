@@ -1,5 +1,6 @@
 package ua.net.hj.cz.roles.players;
 
+import java.util.Random;
 import ua.net.hj.cz.core.ActionFigure;
 import ua.net.hj.cz.core.Move;
 import ua.net.hj.cz.game.ScanExitException;
@@ -13,24 +14,40 @@ import ua.net.hj.cz.roles.Rules;
  * @author Hobbit Jedi
  */
 public abstract class Player implements PlayerReadOnly {
-	protected final byte mPlayerID; // Уникальный идентификатор игрока.
+	protected final int mPlayerID;  // Уникальный идентификатор игрока.
 	protected final String mName;   // Имя игрока.
 	boolean mIsDead;                // Признак того, что игрок больше не может использоваться и должен быть уничтожен.
+	protected final Random mRandom; // Генератор случайных чисел для случайных решений игрока.
 	
 	/**
 	 * Создает игрока.
 	 * @param aName - Имя игрока.
 	 * @param aPlayerID - Уникальный идентифиатор игрока.
 	 */
-	protected Player(String aName, byte aPlayerID)
+	protected Player(String aName, int aPlayerID)
 	{
 		mName     = aName;
 		mPlayerID = aPlayerID;
 		mIsDead   = false;
+		mRandom   = new Random();
+	}
+	
+	/**
+	 * Задать начальное значение генератора случайных чисел игрока.
+	 * Позволяет воспроизвести игру: при одинаковых начальных значениях игрок принимает одинаковые решения.
+	 * @param aSeed - Начальное значение генератора случайных чисел.
+	 */
+	public void setRandomSeed(long aSeed)
+	{
+		if (mIsDead)
+		{
+			throw new IllegalStateException("Dead player usage.");
+		}
+		mRandom.setSeed(aSeed);
 	}
 	
 	@Override
-	public byte getID()
+	public int getID()
 	{
 		if (mIsDead)
 		{
@@ -114,7 +131,7 @@ public abstract class Player implements PlayerReadOnly {
 	 * @param aPlayersSequence - Порядок, в котором ходят участвующие в игре игроки.
 	 *                           Массив содержит уникальные идентификаторы игроков.
 	 */
-	public void checkOutRules(Rules aRules, byte[] aPlayersSequence)
+	public void checkOutRules(Rules aRules, int[] aPlayersSequence)
 	{
 		if (mIsDead)
 		{
@@ -127,7 +144,7 @@ public abstract class Player implements PlayerReadOnly {
 	 * Обработать сообщение о победе одного из игроков.
 	 * @param aPlayerID - Идентификатор победившего игрока.
 	 */
-	public void winNotificationHandler(byte aPlayerID)
+	public void winNotificationHandler(int aPlayerID)
 	{
 		if (mIsDead)
 		{
@@ -154,7 +171,7 @@ public abstract class Player implements PlayerReadOnly {
 	 * @param aPlayersSequence - Порядок, в котором ходят оставшиеся в игре игроки.
 	 *                           Массив содержит уникальные идентификаторы игроков.
 	 */
-	public void disqualificationNotificationHandler(byte aPlayerID, byte[] aPlayersSequence)
+	public void disqualificationNotificationHandler(int aPlayerID, int[] aPlayersSequence)
 	{
 		if (mIsDead)
 		{
@@ -169,7 +186,7 @@ public abstract class Player implements PlayerReadOnly {
 	 * @param aMove - Сделанный ход.
 	 * @param aBoard - Новое состояние доски после выполнения хода.
 	 */
-	public void moveNotificationHandler(byte aPlayerID, Move aMove, Board aBoard)
+	public void moveNotificationHandler(int aPlayerID, Move aMove, Board aBoard)
 	{
 		if (mIsDead)
 		{
@@ -178,6 +195,15 @@ public abstract class Player implements PlayerReadOnly {
 		// Реализация по умолчанию ничего не делает.
 	}
 	
+	/**
+	 * Освободить ресурсы игрока (потоки поиска и т.п.).
+	 * Вызывается фабрикой игроков при освобождении игрока, после чего игрок больше не используется.
+	 */
+	protected void release()
+	{
+		// Реализация по умолчанию ничего не делает.
+	}
+	
 	/**
 	 * Выполнить ход.
 	 * @param aBoard - Слепок текущей ситуации на игровом поле.
@@ -190,5 +216,5 @@ public abstract class Player implements PlayerReadOnly {
 	 * @throws ua.net.hj.cz.game.ScanExitException - Управляемые человеком игроки могут вызвать это исключение,
 	 *                                               чтобы мгновенно прекратить игру.
 	 */
-	abstract public Move makeMove(Board aBoard, byte[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException;
+	abstract public Move makeMove(Board aBoard, int[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException;
 }
@@ -1,29 +1,97 @@
 package ua.net.hj.cz.roles.players;
 
-import java.util.ArrayList;
-import ua.net.hj.cz.analytics.GameTreeNode;
+import ua.net.hj.cz.analytics.AlphaBetaSearch;
+import ua.net.hj.cz.analytics.OpeningBook;
+import ua.net.hj.cz.analytics.ThreatSpaceSearch;
+import ua.net.hj.cz.analytics.TimeControl;
+import ua.net.hj.cz.analytics.TranspositionTable;
 import ua.net.hj.cz.core.ActionFigure;
-import ua.net.hj.cz.core.Coordinates;
 import ua.net.hj.cz.core.Move;
+import ua.net.hj.cz.core.PackedMove;
 import ua.net.hj.cz.game.ScanExitException;
 import ua.net.hj.cz.roles.Board;
 import ua.net.hj.cz.roles.Rules;
 
 /**
  * Описывает игрока, который анализирует дерево ближайших N ходов игры
- * для выбора оптимального хода.
+ * для выбора оптимального хода (см. AlphaBetaSearch).
+ * Время на ход ограничено (см. TimeControl): поиск углубляется итеративно,
+ * и по истечении времени игрок ходит по результатам последней завершенной итерации.
+ * В игре двух игроков перед перебором игрок ищет форсированный выигрыш по угрозам
+ * и защиту от форсированного выигрыша соперника (см. ThreatSpaceSearch),
+ * а если их нет и задана дебютная книга (см. OpeningBook) - берет ход из книги.
  * @author Hobbit Jedi
  */
 public class PlayerClever extends Player {
+	public static final int DEFAULT_TABLE_SIZE = 16; // Объем памяти под таблицу транспозиций по умолчанию (МБ).
+	private int mSearchDepth;        // Глубина, на которую игрок просматривает игру вперед (в полуходах).
+	private int mTableSize;          // Объем памяти под таблицу транспозиций (МБ).
+	private long mMoveTimeLimit;     // Ограничение времени на ход (мс). 0 - неограничено.
+	private long mGameTimeLimit;     // Ограничение времени на игру (мс). 0 - неограничено.
+	private AlphaBetaSearch.Strategy mStrategy; // Стратегия поиска в игре трех и более игроков.
+	private AlphaBetaSearch mSearch; // Поиск лучшего хода (создается при первом ознакомлении с правилами).
+	private TranspositionTable mTable; // Таблица транспозиций поиска. null - еще не создана (или изменен ее размер).
+	private ThreatSpaceSearch mThreatSearch; // Поиск форсированного выигрыша (создается при ознакомлении с правилами).
+	private TimeControl mTimeControl; // Контроль времени игры (создается при ознакомлении с правилами).
+	private OpeningBook mOpeningBook; // Дебютная книга. null - книга не используется.
+	private OpeningBook.Selection mBookSelection; // Способ выбора хода из дебютной книги.
+	private int mBookMinGames;        // Минимальное количество игр хода для выбора его из дебютной книги.
 	
 	/**
 	 * Создает игрока.
 	 * @param aName - Имя игрока.
 	 * @param aPlayerID - Уникальный идентифиатор игрока.
 	 */
-	PlayerClever(String aName, byte aPlayerID)
+	PlayerClever(String aName, int aPlayerID)
 	{
 		super(aName, aPlayerID);
+		mSearchDepth = AlphaBetaSearch.DEFAULT_DEPTH;
+		mTableSize = DEFAULT_TABLE_SIZE;
+		mMoveTimeLimit = AlphaBetaSearch.DEFAULT_MOVE_TIME;
+		mGameTimeLimit = 0L;
+		mStrategy = AlphaBetaSearch.Strategy.MAX_N;
+		mSearch = null;
+		mTable = null;
+		mThreatSearch = null;
+		mTimeControl = null;
+		mOpeningBook = null;
+		mBookSelection = OpeningBook.Selection.BEST;
+		mBookMinGames = OpeningBook.DEFAULT_MIN_GAMES;
+	}
+	
+	/**
+	 * Ознакомиться с правилами.
+	 * Настраивает поиск лучшего хода под правила игры.
+	 * Поиск и таблица транспозиций создаются один раз: в следующих играх поиск получает новые правила, а таблица очищается.
+	 * @param aRules - Правила, по которым будет вестись игра.
+	 * @param aPlayersSequence - Порядок, в котором ходят участвующие в игре игроки.
+	 *                           Массив содержит уникальные идентификаторы игроков.
+	 */
+	@Override
+	public void checkOutRules(Rules aRules, int[] aPlayersSequence)
+	{
+		super.checkOutRules(aRules, aPlayersSequence);
+		if (mSearch == null)
+		{
+			mSearch = new AlphaBetaSearch(new Rules(aRules));
+			mSearch.setDepth(mSearchDepth);
+			mSearch.setStrategy(mStrategy);
+		}
+		else
+		{
+			mSearch.setRules(new Rules(aRules));
+		}
+		if (mTable == null)
+		{
+			mTable = new TranspositionTable(mTableSize);
+		}
+		else
+		{
+			mTable.clear(); // Таблица живет всю игру, но оценки прошлой игры в новой не нужны.
+		}
+		mSearch.setTranspositionTable(mTable);
+		mThreatSearch = new ThreatSpaceSearch(aRules);
+		mTimeControl = new TimeControl(aRules, mMoveTimeLimit, mGameTimeLimit);
 	}
 	
 	/**
@@ -39,43 +107,133 @@ public class PlayerClever extends Player {
 	 *                                               чтобы мгновенно прекратить игру.
 	 */
 	@Override
-	public Move makeMove(Board aBoard, byte[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException
+	public Move makeMove(Board aBoard, int[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException
 	{
-		//TODO: Сделать нормальный анализатор в виде дерева.
 		Move result = null;
-		byte boardXSize = aBoard.getXSize();
-		byte boardYSize = aBoard.getYSize();
-		double maxWeight = Double.NEGATIVE_INFINITY;
-		ArrayList<Coordinates> nextMoves = new ArrayList<>();
-		for (byte y = 0; y < boardYSize; y++)
+		if (mSearch == null)
+		{
+			checkOutRules(aRules, aActivePlayersSequence);
+		}
+		long deadline = mTimeControl.startMove(aBoard, aActivePlayersSequence.length);
+		int cell = -1;
+		if (aActivePlayersSequence.length == 2)
 		{
-			for (byte x = 0; x < boardXSize; x++)
+			int opponentID = (aActivePlayersSequence[0] == mPlayerID) ? aActivePlayersSequence[1] : aActivePlayersSequence[0];
+			cell = mThreatSearch.findWinningMove(aBoard, mPlayerID, opponentID, deadline);
+			if (cell < 0)
 			{
-				if (aBoard.lookAt(x, y) == 0)
-				{
-					aBoard.setAt(x, y, mPlayerID);
-					GameTreeNode nextGameState = new GameTreeNode(mPlayerID, aBoard, aRules);
-					aBoard.setAt(x, y, (byte)0); // Вернем доску в исходное состояние.
-					double currentWeight = nextGameState.getBoardWeigtht();
-					if (maxWeight < currentWeight)
-					{
-						maxWeight = currentWeight;
-						nextMoves.clear();
-						nextMoves.add(new Coordinates(x, y));
-					}
-					else if (maxWeight == currentWeight)
-					{
-						nextMoves.add(new Coordinates(x, y));
-					}
-				}
+				cell = mThreatSearch.findDefence(aBoard, mPlayerID, opponentID, deadline);
 			}
 		}
-		if (nextMoves.size() > 0)
+		if (cell < 0 && mOpeningBook != null && mOpeningBook.isMatching(aRules))
+		{
+			cell = mOpeningBook.selectMove(aBoard, aFigure, mBookSelection, mBookMinGames, mRandom);
+		}
+		if (cell < 0)
+		{
+			cell = mSearch.searchBestMove(aBoard, aActivePlayersSequence, mPlayerID, deadline);
+		}
+		if (cell >= 0)
 		{
-			int choose = (int)(Math.random() * nextMoves.size());
-			result = new Move(nextMoves.get(choose), this, aFigure);
+			result = PackedMove.toMove(cell, aBoard.getXSize(), this, aFigure);
 		}
+		mTimeControl.finishMove();
 		return result;
 	}
 	
+	/**
+	 * Установить глубину, на которую игрок просматривает игру вперед.
+	 * @param aSearchDepth - Глубина просмотра в полуходах (не меньше 1).
+	 */
+	public void setSearchDepth(int aSearchDepth)
+	{
+		if (aSearchDepth < 1)
+		{
+			throw new IllegalArgumentException("Глубина поиска должна быть положительной: " + aSearchDepth);
+		}
+		mSearchDepth = aSearchDepth;
+		if (mSearch != null)
+		{
+			mSearch.setDepth(aSearchDepth);
+		}
+	}
+	
+	/**
+	 * Установить стратегию поиска в игре трех и более игроков.
+	 * @param aStrategy - Стратегия поиска (по умолчанию - max-n).
+	 */
+	public void setStrategy(AlphaBetaSearch.Strategy aStrategy)
+	{
+		mStrategy = aStrategy;
+		if (mSearch != null)
+		{
+			mSearch.setStrategy(aStrategy);
+		}
+	}
+	
+	/**
+	 * Установить ограничение времени на ход.
+	 * Если ограничение задано и в правилах игры, то действует более жесткое.
+	 * Вступает в силу при следующем ознакомлении с правилами (в начале игры).
+	 * @param aMoveTimeLimit - Ограничение времени на ход в миллисекундах. 0 - неограничено.
+	 */
+	public void setMoveTimeLimit(long aMoveTimeLimit)
+	{
+		mMoveTimeLimit = Math.max(aMoveTimeLimit, 0L);
+	}
+	
+	/**
+	 * Установить ограничение времени на всю игру.
+	 * Если ограничение задано и в правилах игры, то действует более жесткое.
+	 * Вступает в силу при следующем ознакомлении с правилами (в начале игры).
+	 * @param aGameTimeLimit - Ограничение времени на игру в миллисекундах. 0 - неограничено.
+	 */
+	public void setGameTimeLimit(long aGameTimeLimit)
+	{
+		mGameTimeLimit = Math.max(aGameTimeLimit, 0L);
+	}
+	
+	/**
+	 * Установить объем памяти под таблицу транспозиций.
+	 * Вступает в силу при следующем ознакомлении с правилами (в начале игры).
+	 * @param aMegabytes - Объем памяти в мегабайтах (не меньше 1).
+	 */
+	public void setTranspositionTableSize(int aMegabytes)
+	{
+		if (aMegabytes < 1)
+		{
+			throw new IllegalArgumentException("Размер таблицы транспозиций должен быть положительным: " + aMegabytes);
+		}
+		if (aMegabytes != mTableSize)
+		{
+			mTableSize = aMegabytes;
+			mTable = null;
+		}
+	}
+	
+	/**
+	 * Установить дебютную книгу, из которой игрок берет ходы до начала поиска.
+	 * Книга используется, только если она собрана по правилам игры; одну книгу могут использовать несколько игроков.
+	 * @param aOpeningBook - Дебютная книга. null - книга не используется.
+	 */
+	public void setOpeningBook(OpeningBook aOpeningBook)
+	{
+		mOpeningBook = aOpeningBook;
+	}
+	
+	/**
+	 * Установить способ выбора хода из дебютной книги.
+	 * @param aSelection - Способ выбора хода.
+	 * @param aMinGames - Минимальное количество игр хода для выбора его из книги (не меньше 1).
+	 */
+	public void setOpeningBookSelection(OpeningBook.Selection aSelection, int aMinGames)
+	{
+		if (aMinGames < 1)
+		{
+			throw new IllegalArgumentException("Минимальное количество игр должно быть положительным: " + aMinGames);
+		}
+		mBookSelection = aSelection;
+		mBookMinGames = aMinGames;
+	}
+	
 }
@@ -1,10 +1,11 @@
 package ua.net.hj.cz.roles.players;
 
-import java.util.ArrayList;
-import ua.net.hj.cz.analytics.GameTreeNode;
+import ua.net.hj.cz.analytics.CandidateMoves;
+import ua.net.hj.cz.analytics.IncrementalEvaluator;
 import ua.net.hj.cz.core.ActionFigure;
-import ua.net.hj.cz.core.Coordinates;
 import ua.net.hj.cz.core.Move;
+import ua.net.hj.cz.core.MoveList;
+import ua.net.hj.cz.core.PackedMove;
 import ua.net.hj.cz.game.ScanExitException;
 import ua.net.hj.cz.roles.Board;
 import ua.net.hj.cz.roles.Rules;
@@ -13,18 +14,27 @@ import ua.net.hj.cz.roles.Rules;
  * Описывает игрока, с которым играть легко.
  * Он оценивает состояние доски после своего хода, и таким образом выбирает наиболее подходящий ход.
  * При этом не видит того, что на следующем ходу противник может выиграть.
+ * Рассматривает только клеточки рядом с уже стоящими фигурами (см. CandidateMoves).
  * @author Hobbit Jedi
  */
 public class PlayerEasy extends Player {
+	private IncrementalEvaluator mEvaluator; // Оценщик досок (переиспользуется для всех ходов игры).
+	private final CandidateMoves mCandidates; // Генератор ходов-кандидатов.
+	private int[] mCandidatesBuffer;        // Буфер кандидатов.
+	private final MoveList mBestCells;      // Клеточки ходов с наибольшим весом доски.
 	
 	/**
 	 * Создает игрока.
 	 * @param aName - Имя игрока.
 	 * @param aPlayerID - Уникальный идентифиатор игрока.
 	 */
-	PlayerEasy(String aName, byte aPlayerID)
+	PlayerEasy(String aName, int aPlayerID)
 	{
 		super(aName, aPlayerID);
+		mEvaluator = null;
+		mCandidates = new CandidateMoves(CandidateMoves.DEFAULT_DISTANCE);
+		mCandidatesBuffer = new int[0];
+		mBestCells = new MoveList(16);
 	}
 	
 	/**
@@ -40,40 +50,47 @@ public class PlayerEasy extends Player {
 	 *                                               чтобы мгновенно прекратить игру.
 	 */
 	@Override
-	public Move makeMove(Board aBoard, byte[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException
+	public Move makeMove(Board aBoard, int[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException
 	{
 		Move result = null;
-		byte boardXSize = aBoard.getXSize();
-		byte boardYSize = aBoard.getYSize();
+		int boardXSize = aBoard.getXSize();
+		int winLineLength = aRules.getWinLineLength();
 		double maxWeight = Double.NEGATIVE_INFINITY;
-		ArrayList<Coordinates> nextMoves = new ArrayList<>();
-		for (byte y = 0; y < boardYSize; y++)
+		mBestCells.clear();
+		if (mEvaluator == null || mEvaluator.getWinLineLength() != winLineLength)
 		{
-			for (byte x = 0; x < boardXSize; x++)
+			mEvaluator = new IncrementalEvaluator(mPlayerID, winLineLength);
+		}
+		mCandidates.attach(aBoard);
+		if (mCandidatesBuffer.length < mCandidates.getMaxCount(0))
+		{
+			mCandidatesBuffer = new int[mCandidates.getMaxCount(0)];
+		}
+		int candidatesCount = mCandidates.collectOrdered(mCandidatesBuffer);
+		mCandidates.detach();
+		mEvaluator.attach(aBoard); // Далее каждый пробный ход пересчитывает только проходящие через клеточку линии.
+		for (int i = 0; i < candidatesCount; i++)
+		{
+			int cell = mCandidatesBuffer[i];
+			aBoard.makeMove(cell, mPlayerID);
+			double currentWeight = mEvaluator.getBoardWeight();
+			aBoard.unmakeMove(); // Вернем доску в исходное состояние.
+			if (maxWeight < currentWeight)
+			{
+				maxWeight = currentWeight;
+				mBestCells.clear();
+				mBestCells.push(cell);
+			}
+			else if (maxWeight == currentWeight)
 			{
-				if (aBoard.lookAt(x, y) == 0)
-				{
-					aBoard.setAt(x, y, mPlayerID);
-					GameTreeNode nextGameState = new GameTreeNode(mPlayerID, aBoard, aRules);
-					aBoard.setAt(x, y, (byte)0); // Вернем доску в исходное состояние.
-					double currentWeight = nextGameState.getBoardWeigtht();
-					if (maxWeight < currentWeight)
-					{
-						maxWeight = currentWeight;
-						nextMoves.clear();
-						nextMoves.add(new Coordinates(x, y));
-					}
-					else if (maxWeight == currentWeight)
-					{
-						nextMoves.add(new Coordinates(x, y));
-					}
-				}
+				mBestCells.push(cell);
 			}
 		}
-		if (nextMoves.size() > 0)
+		mEvaluator.detach();
+		if (!mBestCells.isEmpty())
 		{
-			int choose = (int)(Math.random() * nextMoves.size());
-			result = new Move(nextMoves.get(choose), this, aFigure);
+			int cell = mBestCells.get(mRandom.nextInt(mBestCells.size()));
+			result = PackedMove.toMove(cell, boardXSize, this, aFigure);
 		}
 		return result;
 	}
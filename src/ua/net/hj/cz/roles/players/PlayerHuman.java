@@ -20,7 +20,7 @@ public class PlayerHuman extends Player {
 	 * @param aName - Имя игрока.
 	 * @param aPlayerID - Уникальный идентифиатор игрока.
 	 */
-	public PlayerHuman(String aName, byte aPlayerID)
+	public PlayerHuman(String aName, int aPlayerID)
 	{
 		super(aName, aPlayerID);
 		SCANNER = new Scanner(System.in);
@@ -40,7 +40,7 @@ public class PlayerHuman extends Player {
 	 *                                               чтобы мгновенно прекратить игру.
 	 */
 	@Override
-	public Move makeMove(Board aBoard, byte[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException
+	public Move makeMove(Board aBoard, int[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException
 	{
 		System.out.println();
 		System.out.println("Ходит игрок " + mName);
@@ -141,13 +141,13 @@ public class PlayerHuman extends Player {
 					SCANNER.next();
 				}
 			}
-			byte x = Coordinates.coordinateToIndex(inputX);
+			int x = Coordinates.coordinateToIndex(inputX);
 			if (x >= 0)
 			{
-				byte y;
+				int y;
 				try
 				{
-					y = new Byte(inputY);
+					y = Integer.parseInt(inputY);
 				}
 				catch (NumberFormatException e)
 				{
@@ -0,0 +1,213 @@
+package ua.net.hj.cz.roles.players;
+
+import ua.net.hj.cz.analytics.MonteCarloSearch;
+import ua.net.hj.cz.analytics.OpeningBook;
+import ua.net.hj.cz.analytics.TimeControl;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.core.Move;
+import ua.net.hj.cz.core.PackedMove;
+import ua.net.hj.cz.game.ScanExitException;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает игрока, который выбирает ход поиском Монте-Карло по дереву игры (см. MonteCarloSearch).
+ * Вместо перебора всех ходов на заданную глубину он многократно доигрывает партию случайными ходами
+ * и ходит туда, где доигрывания чаще всего заканчиваются в его пользу.
+ * Если задана дебютная книга (см. OpeningBook) и позиция есть в ней, то ход берется из книги без поиска.
+ * @author Hobbit Jedi
+ */
+public class PlayerMonteCarlo extends Player {
+	private long mIterationsLimit;     // Количество итераций на ход (на каждый поток).
+	private long mMoveTimeLimit;       // Ограничение времени на ход (мс). 0 - неограничено.
+	private long mGameTimeLimit;       // Ограничение времени на игру (мс). 0 - неограничено.
+	private int mThreadsCount;         // Количество потоков поиска.
+	private MonteCarloSearch mSearch;  // Поиск лучшего хода (создается при первом ознакомлении с правилами).
+	private TimeControl mTimeControl;  // Контроль времени игры (создается при ознакомлении с правилами).
+	private OpeningBook mOpeningBook;  // Дебютная книга. null - книга не используется.
+	private OpeningBook.Selection mBookSelection; // Способ выбора хода из дебютной книги.
+	private int mBookMinGames;         // Минимальное количество игр хода для выбора его из дебютной книги.
+	
+	/**
+	 * Создает игрока.
+	 * @param aName - Имя игрока.
+	 * @param aPlayerID - Уникальный идентифиатор игрока.
+	 */
+	PlayerMonteCarlo(String aName, int aPlayerID)
+	{
+		super(aName, aPlayerID);
+		mIterationsLimit = MonteCarloSearch.DEFAULT_ITERATIONS;
+		mMoveTimeLimit = MonteCarloSearch.DEFAULT_MOVE_TIME;
+		mGameTimeLimit = 0L;
+		mThreadsCount = 1;
+		mSearch = null;
+		mTimeControl = null;
+		mOpeningBook = null;
+		mBookSelection = OpeningBook.Selection.BEST;
+		mBookMinGames = OpeningBook.DEFAULT_MIN_GAMES;
+	}
+	
+	/**
+	 * Ознакомиться с правилами.
+	 * Настраивает поиск лучшего хода под правила игры.
+	 * Поиск создается один раз: в следующих играх он получает новые правила, но сохраняет выделенные пулы узлов.
+	 * @param aRules - Правила, по которым будет вестись игра.
+	 * @param aPlayersSequence - Порядок, в котором ходят участвующие в игре игроки.
+	 *                           Массив содержит уникальные идентификаторы игроков.
+	 */
+	@Override
+	public void checkOutRules(Rules aRules, int[] aPlayersSequence)
+	{
+		super.checkOutRules(aRules, aPlayersSequence);
+		if (mSearch == null)
+		{
+			mSearch = new MonteCarloSearch(new Rules(aRules));
+			mSearch.setIterationsLimit(mIterationsLimit);
+			mSearch.setThreadsCount(mThreadsCount);
+		}
+		else
+		{
+			mSearch.setRules(new Rules(aRules));
+		}
+		mTimeControl = new TimeControl(aRules, mMoveTimeLimit, mGameTimeLimit);
+	}
+	
+	/**
+	 * Выполнить ход.
+	 * @param aBoard - Слепок текущей ситуации на игровом поле.
+	 * @param aActivePlayersSequence - Порядок, в котором ходят еще активные участвующие в игре игроки.
+	 *                                 Массив содержит уникальные идентификаторы игроков.
+	 * @param aRules - Правила, по которым ведется игра.
+	 * @param aFigure - Фигура, которой игрок должен сделать ход.
+	 * @return - Ход, который собирается делать игрок.
+	 *           null, если игрок не знает куда пойти.
+	 * @throws ua.net.hj.cz.game.ScanExitException - Управляемые человеком игроки могут вызвать это исключение,
+	 *                                               чтобы мгновенно прекратить игру.
+	 */
+	@Override
+	public Move makeMove(Board aBoard, int[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException
+	{
+		Move result = null;
+		if (mSearch == null)
+		{
+			checkOutRules(aRules, aActivePlayersSequence);
+		}
+		mSearch.setRandomSeed(mRandom.nextLong()); // Решения игрока воспроизводимы вместе с его генератором.
+		long deadline = mTimeControl.startMove(aBoard, aActivePlayersSequence.length);
+		int cell = -1;
+		if (mOpeningBook != null && mOpeningBook.isMatching(aRules))
+		{
+			cell = mOpeningBook.selectMove(aBoard, aFigure, mBookSelection, mBookMinGames, mRandom);
+		}
+		if (cell < 0)
+		{
+			cell = mSearch.searchBestMove(aBoard, aActivePlayersSequence, mPlayerID, deadline);
+		}
+		if (cell >= 0)
+		{
+			result = PackedMove.toMove(cell, aBoard.getXSize(), this, aFigure);
+		}
+		mTimeControl.finishMove();
+		return result;
+	}
+	
+	/**
+	 * Освободить ресурсы игрока: остановить потоки параллельного поиска.
+	 */
+	@Override
+	protected void release()
+	{
+		if (mSearch != null)
+		{
+			mSearch.close();
+			mSearch = null;
+		}
+	}
+	
+	/**
+	 * Установить количество итераций на ход.
+	 * @param aIterationsLimit - Количество итераций для каждого потока. 0 - неограничено (только по времени).
+	 */
+	public void setIterationsLimit(long aIterationsLimit)
+	{
+		mIterationsLimit = Math.max(aIterationsLimit, 0L);
+		if (mSearch != null)
+		{
+			mSearch.setIterationsLimit(mIterationsLimit);
+		}
+	}
+	
+	/**
+	 * Установить ограничение времени на ход.
+	 * Если ограничение задано и в правилах игры, то действует более жесткое.
+	 * Вступает в силу при следующем ознакомлении с правилами (в начале игры).
+	 * @param aMoveTimeLimit - Ограничение времени на ход в миллисекундах. 0 - неограничено (только по итерациям).
+	 */
+	public void setMoveTimeLimit(long aMoveTimeLimit)
+	{
+		mMoveTimeLimit = Math.max(aMoveTimeLimit, 0L);
+	}
+	
+	/**
+	 * Установить ограничение времени на всю игру.
+	 * Если ограничение задано и в правилах игры, то действует более жесткое.
+	 * Вступает в силу при следующем ознакомлении с правилами (в начале игры).
+	 * @param aGameTimeLimit - Ограничение времени на игру в миллисекундах. 0 - неограничено.
+	 */
+	public void setGameTimeLimit(long aGameTimeLimit)
+	{
+		mGameTimeLimit = Math.max(aGameTimeLimit, 0L);
+	}
+	
+	/**
+	 * Установить количество потоков поиска (параллелизм по корню дерева).
+	 * @param aThreadsCount - Количество потоков (не меньше 1).
+	 */
+	public void setThreadsCount(int aThreadsCount)
+	{
+		if (aThreadsCount < 1)
+		{
+			throw new IllegalArgumentException("Количество потоков должно быть положительным: " + aThreadsCount);
+		}
+		mThreadsCount = aThreadsCount;
+		if (mSearch != null)
+		{
+			mSearch.setThreadsCount(aThreadsCount);
+		}
+	}
+	
+	/**
+	 * Получить скорость последнего поиска (для подбора оборудования и бюджета времени).
+	 * @return - Количество доигрываний в секунду во всех потоках. 0, если игрок еще не ходил.
+	 */
+	public double getPlayoutsPerSecond()
+	{
+		return (mSearch != null) ? mSearch.getPlayoutsPerSecond() : 0d;
+	}
+	
+	/**
+	 * Установить дебютную книгу, из которой игрок берет ходы до начала поиска.
+	 * Книга используется, только если она собрана по правилам игры; одну книгу могут использовать несколько игроков.
+	 * @param aOpeningBook - Дебютная книга. null - книга не используется.
+	 */
+	public void setOpeningBook(OpeningBook aOpeningBook)
+	{
+		mOpeningBook = aOpeningBook;
+	}
+	
+	/**
+	 * Установить способ выбора хода из дебютной книги.
+	 * @param aSelection - Способ выбора хода.
+	 * @param aMinGames - Минимальное количество игр хода для выбора его из книги (не меньше 1).
+	 */
+	public void setOpeningBookSelection(OpeningBook.Selection aSelection, int aMinGames)
+	{
+		if (aMinGames < 1)
+		{
+			throw new IllegalArgumentException("Минимальное количество игр должно быть положительным: " + aMinGames);
+		}
+		mBookSelection = aSelection;
+		mBookMinGames = aMinGames;
+	}
+	
+}
@@ -0,0 +1,137 @@
+package ua.net.hj.cz.roles.players;
+
+import java.nio.file.Path;
+import ua.net.hj.cz.analytics.ProofNumberSearch;
+import ua.net.hj.cz.analytics.Tablebase;
+import ua.net.hj.cz.core.ActionFigure;
+import ua.net.hj.cz.core.Move;
+import ua.net.hj.cz.core.PackedMove;
+import ua.net.hj.cz.game.ScanExitException;
+import ua.net.hj.cz.roles.Board;
+import ua.net.hj.cz.roles.Rules;
+
+/**
+ * Описывает игрока, который играет идеально.
+ * В игре двух игроков на маленькой доске ход берется из таблицы идеальной игры (см. Tablebase) одним поиском в ней.
+ * Если таблица для правил не строится или позиции в ней нет (например, после пропуска хода из-за ошибки соперника),
+ * то позиция решается поиском по числам доказательства (см. ProofNumberSearch) с ограничением количества узлов,
+ * а если и он не успел найти ход - игрок ходит в случайную свободную клеточку.
+ * Таблица строится при первом ознакомлении с правилами и сохраняется в файл, поэтому в следующих играх только читается.
+ * Файлы таблиц пишутся в каталог, заданный setTablebaseDirectory() (по умолчанию - Tablebase.getDefaultDirectory()).
+ * @author Hobbit Jedi
+ */
+public class PlayerPerfect extends Player {
+	public static final long DEFAULT_NODES_LIMIT = 1000000L; // Ограничение количества узлов решения позиции вне таблицы по умолчанию.
+	private static final int SOLVER_TABLE_SIZE = 16;         // Объем памяти под таблицу решателя (МБ).
+	private Path mTablebaseDirectory;    // Каталог файлов таблиц идеальной игры.
+	private long mNodesLimit;            // Ограничение количества узлов решения позиции вне таблицы.
+	private Tablebase mTablebase;        // Таблица идеальной игры. null - для правил игры таблица не строится.
+	private ProofNumberSearch mSolver;   // Решатель позиций вне таблицы (создается при первой необходимости).
+	private boolean mIsRulesChecked;     // Признак того, что игрок ознакомился с правилами.
+
+	/**
+	 * Создает игрока.
+	 * @param aName - Имя игрока.
+	 * @param aPlayerID - Уникальный идентифиатор игрока.
+	 */
+	PlayerPerfect(String aName, int aPlayerID)
+	{
+		super(aName, aPlayerID);
+		mTablebaseDirectory = Tablebase.getDefaultDirectory();
+		mNodesLimit = DEFAULT_NODES_LIMIT;
+		mTablebase = null;
+		mSolver = null;
+		mIsRulesChecked = false;
+	}
+
+	/**
+	 * Ознакомиться с правилами.
+	 * Открывает (при необходимости - строит) таблицу идеальной игры для правил.
+	 * @param aRules - Правила, по которым будет вестись игра.
+	 * @param aPlayersSequence - Порядок, в котором ходят участвующие в игре игроки.
+	 *                           Массив содержит уникальные идентификаторы игроков.
+	 */
+	@Override
+	public void checkOutRules(Rules aRules, int[] aPlayersSequence)
+	{
+		super.checkOutRules(aRules, aPlayersSequence);
+		mTablebase = Tablebase.obtain(aRules, mTablebaseDirectory);
+		mSolver = null;
+		mIsRulesChecked = true;
+	}
+
+	/**
+	 * Выполнить ход.
+	 * @param aBoard - Слепок текущей ситуации на игровом поле.
+	 * @param aActivePlayersSequence - Порядок, в котором ходят еще активные участвующие в игре игроки.
+	 *                                 Массив содержит уникальные идентификаторы игроков.
+	 * @param aRules - Правила, по которым ведется игра.
+	 * @param aFigure - Фигура, которой игрок должен сделать ход.
+	 * @return - Ход, который собирается делать игрок.
+	 *           null, если игрок не знает куда пойти.
+	 * @throws ua.net.hj.cz.game.ScanExitException - Управляемые человеком игроки могут вызвать это исключение,
+	 *                                               чтобы мгновенно прекратить игру.
+	 */
+	@Override
+	public Move makeMove(Board aBoard, int[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException
+	{
+		Move result = null;
+		if (!mIsRulesChecked)
+		{
+			checkOutRules(aRules, aActivePlayersSequence);
+		}
+		int cell = -1;
+		if (mTablebase != null && aActivePlayersSequence.length == 2)
+		{
+			int opponentID = (aActivePlayersSequence[0] == mPlayerID) ? aActivePlayersSequence[1] : aActivePlayersSequence[0];
+			cell = mTablebase.getBestMove(aBoard, mPlayerID, opponentID);
+		}
+		if (cell < 0 && aBoard.getEmptyCellsCount() > 0)
+		{
+			if (mSolver == null)
+			{
+				mSolver = new ProofNumberSearch(new Rules(aRules), SOLVER_TABLE_SIZE);
+			}
+			mSolver.setNodesLimit(mNodesLimit);
+			mSolver.solve(aBoard, aActivePlayersSequence, mPlayerID, mPlayerID);
+			cell = mSolver.getBestMove();
+			if (cell < 0)
+			{
+				cell = aBoard.getRandomEmptyCell(mRandom);
+			}
+		}
+		if (cell >= 0)
+		{
+			result = PackedMove.toMove(cell, aBoard.getXSize(), this, aFigure);
+		}
+		return result;
+	}
+
+	/**
+	 * Установить каталог файлов таблиц идеальной игры.
+	 * Вступает в силу при следующем ознакомлении с правилами (в начале игры).
+	 * @param aDirectory - Каталог файлов таблиц (создается при построении первой таблицы).
+	 */
+	public void setTablebaseDirectory(Path aDirectory)
+	{
+		if (aDirectory == null)
+		{
+			throw new IllegalArgumentException("Не задан каталог таблиц идеальной игры.");
+		}
+		mTablebaseDirectory = aDirectory;
+	}
+
+	/**
+	 * Установить ограничение количества узлов решения позиции, которой нет в таблице.
+	 * @param aNodesLimit - Максимальное количество узлов (не меньше 1).
+	 */
+	public void setNodesLimit(long aNodesLimit)
+	{
+		if (aNodesLimit < 1)
+		{
+			throw new IllegalArgumentException("Ограничение количества узлов должно быть положительным: " + aNodesLimit);
+		}
+		mNodesLimit = aNodesLimit;
+	}
+
+}
@@ -1,30 +1,26 @@
 package ua.net.hj.cz.roles.players;
 
-import java.util.Random;
 import ua.net.hj.cz.core.ActionFigure;
-import ua.net.hj.cz.core.Coordinates;
 import ua.net.hj.cz.core.Move;
+import ua.net.hj.cz.core.PackedMove;
 import ua.net.hj.cz.game.ScanExitException;
 import ua.net.hj.cz.roles.Board;
 import ua.net.hj.cz.roles.Rules;
 
 /**
- * Описывает Игрока, который ходит, в основном, случайным образом.
+ * Описывает Игрока, который ходит случайным образом.
+ * Клеточка выбирается равновероятно среди свободных клеточек поля.
  * @author Hobbit Jedi
  */
 public class PlayerRandom extends Player {
-	private final Random mRandom;                      // Генератор случайных чисел.
-	private static final int NUM_OF_RANDOM_TRIES = 10; // Количество попыток походить случайно, после которого ходим в первую свободную ячейку.
-	
 	/**
 	 * Создает игрока.
 	 * @param aName - Имя игрока.
 	 * @param aPlayerID - Уникальный идентифиатор игрока.
 	 */
-	PlayerRandom(String aName, byte aPlayerID)
+	PlayerRandom(String aName, int aPlayerID)
 	{
 		super(aName, aPlayerID);
-		mRandom = new Random();
 	}
 
 	/**
@@ -40,33 +36,13 @@ public class PlayerRandom extends Player {
 	 *                                               чтобы мгновенно прекратить игру.
 	 */
 	@Override
-	public Move makeMove(Board aBoard, byte[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException
+	public Move makeMove(Board aBoard, int[] aActivePlayersSequence, Rules aRules, ActionFigure aFigure) throws ScanExitException
 	{
-		final byte boardXSize = aBoard.getXSize();
-		final byte boardYSize = aBoard.getYSize();
 		Move result = null;
-		Coordinates emptyCell = aBoard.searchFirstEmpty();
-		if (emptyCell != null)
+		int cellIndex = aBoard.getRandomEmptyCell(mRandom);
+		if (cellIndex >= 0)
 		{
-			byte x;
-			byte y;
-			boolean found = false;
-			int randomTriesCounter = NUM_OF_RANDOM_TRIES;
-			do {				
-				x = (byte)mRandom.nextInt(boardXSize);
-				y = (byte)mRandom.nextInt(boardYSize);
-				found = (aBoard.lookAt(x, y) == 0);
-			} while (!found && --randomTriesCounter >= 0);
-			if (found)
-			{
-				result = new Move(x, y, this, aFigure);
-			}
-			else
-			{
-				// Если испробовали все попытки попасть в пустую клетку случайно,
-				// то ходим в первую свободную.
-				result = new Move(emptyCell, this, aFigure);
-			}
+			result = PackedMove.toMove(cellIndex, aBoard.getXSize(), this, aFigure);
 		}
 		return result;
 	}
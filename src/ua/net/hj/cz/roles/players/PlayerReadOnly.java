@@ -11,7 +11,7 @@ public interface PlayerReadOnly {
 	 * Получить идентификатор игрока.
 	 * @return - Идентификатор игрока.
 	 */
-	public byte getID();
+	public int getID();
 
 	/**
 	 * Получить имя игрока.
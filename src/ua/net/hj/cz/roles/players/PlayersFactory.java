@@ -1,24 +1,69 @@
 package ua.net.hj.cz.roles.players;
 
+import java.nio.file.Path;
+import java.util.BitSet;
+import ua.net.hj.cz.analytics.OpeningBook;
+import ua.net.hj.cz.analytics.Tablebase;
+
 /**
  * Описывает фабрику, создающую и утилизирующую игроков.
  * @author Hobbit Jedi
  */
 public class PlayersFactory {
 	/*
-	Массив использования уникальных идентификаторов игроков.
-	Если mPlayerIDsUsage[i] == true,
+	Множество использования уникальных идентификаторов игроков.
+	Если mPlayerIDsUsage.get(i) == true,
 	значит mPlayerID == i+1 уже используется каким-либо объектом игрока.
 	Иначе соответствующий идентификатор игрока свободен для использования.
+	Множество растет по мере создания игроков, поэтому количество игроков ограничено только диапазоном int.
 	*/
-	private final boolean[] mPlayerIDsUsage;
+	private final BitSet mPlayerIDsUsage;
+	private OpeningBook mOpeningBook;             // Дебютная книга создаваемых компьютерных игроков. null - без книги.
+	private OpeningBook.Selection mBookSelection; // Способ выбора хода из дебютной книги.
+	private int mBookMinGames;                    // Минимальное количество игр хода для выбора его из дебютной книги.
+	private Path mTablebaseDirectory;             // Каталог файлов таблиц идеальной игры для создаваемых игроков.
 	
 	/**
 	 * Создать фабрику игроков.
 	 */
 	public PlayersFactory()
 	{
-		mPlayerIDsUsage = new boolean[Byte.MAX_VALUE];
+		mPlayerIDsUsage = new BitSet();
+		mOpeningBook = null;
+		mBookSelection = OpeningBook.Selection.BEST;
+		mBookMinGames = OpeningBook.DEFAULT_MIN_GAMES;
+		mTablebaseDirectory = Tablebase.getDefaultDirectory();
+	}
+	
+	/**
+	 * Установить дебютную книгу для создаваемых после этого игроков, которые умеют ею пользоваться
+	 * ("Компьютер: Умный" и "Компьютер: Монте-Карло").
+	 * @param aOpeningBook - Дебютная книга. null - игроки создаются без книги (по умолчанию).
+	 * @param aSelection - Способ выбора хода из книги.
+	 * @param aMinGames - Минимальное количество игр хода для выбора его из книги (не меньше 1).
+	 */
+	public void setOpeningBook(OpeningBook aOpeningBook, OpeningBook.Selection aSelection, int aMinGames)
+	{
+		if (aMinGames < 1)
+		{
+			throw new IllegalArgumentException("Минимальное количество игр должно быть положительным: " + aMinGames);
+		}
+		mOpeningBook = aOpeningBook;
+		mBookSelection = aSelection;
+		mBookMinGames = aMinGames;
+	}
+	
+	/**
+	 * Установить каталог, в котором создаваемые после этого игроки "Компьютер: Идеальный" хранят таблицы идеальной игры.
+	 * @param aDirectory - Каталог файлов таблиц (по умолчанию - Tablebase.getDefaultDirectory()).
+	 */
+	public void setTablebaseDirectory(Path aDirectory)
+	{
+		if (aDirectory == null)
+		{
+			throw new IllegalArgumentException("Не задан каталог таблиц идеальной игры.");
+		}
+		mTablebaseDirectory = aDirectory;
 	}
 	
 	/**
@@ -31,7 +76,7 @@ public class PlayersFactory {
 	 */
 	public Player createRandomPlayer(String aName) throws PlayerException
 	{
-		byte newPlayerID = getFreePlayerID();
+		int newPlayerID = getFreePlayerID();
 		if (newPlayerID != 0)
 		{
 			return new PlayerRandom(aName, newPlayerID);
@@ -52,7 +97,7 @@ public class PlayersFactory {
 	 */
 	public Player createHumanPlayer(String aName) throws PlayerException
 	{
-		byte newPlayerID = getFreePlayerID();
+		int newPlayerID = getFreePlayerID();
 		if (newPlayerID != 0)
 		{
 			return new PlayerHuman(aName, newPlayerID);
@@ -73,7 +118,7 @@ public class PlayersFactory {
 	 */
 	public Player createEasyPlayer(String aName) throws PlayerException
 	{
-		byte newPlayerID = getFreePlayerID();
+		int newPlayerID = getFreePlayerID();
 		if (newPlayerID != 0)
 		{
 			return new PlayerEasy(aName, newPlayerID);
@@ -94,10 +139,66 @@ public class PlayersFactory {
 	 */
 	public Player createCleverPlayer(String aName) throws PlayerException
 	{
-		byte newPlayerID = getFreePlayerID();
+		int newPlayerID = getFreePlayerID();
 		if (newPlayerID != 0)
 		{
-			return new PlayerClever(aName, newPlayerID);
+			PlayerClever player = new PlayerClever(aName, newPlayerID);
+			if (mOpeningBook != null)
+			{
+				player.setOpeningBook(mOpeningBook);
+				player.setOpeningBookSelection(mBookSelection, mBookMinGames);
+			}
+			return player;
+		}
+		else
+		{
+			throw new PlayerException("Players quantity overflow!");
+		}
+	}
+	
+	/**
+	 * Создать нового игрока "Компьютер: Монте-Карло".
+	 * @param aName - Имя создаваемого игрока.
+	 * @return - Созданный игрок.
+	 * @throws PlayerException - Если во время создания игрока возникла ошибка,
+	 *                           например, заполнен пул уникальных идентификаторов игроков,
+	 *                           то вызывает данное исключение.
+	 */
+	public Player createMonteCarloPlayer(String aName) throws PlayerException
+	{
+		int newPlayerID = getFreePlayerID();
+		if (newPlayerID != 0)
+		{
+			PlayerMonteCarlo player = new PlayerMonteCarlo(aName, newPlayerID);
+			if (mOpeningBook != null)
+			{
+				player.setOpeningBook(mOpeningBook);
+				player.setOpeningBookSelection(mBookSelection, mBookMinGames);
+			}
+			return player;
+		}
+		else
+		{
+			throw new PlayerException("Players quantity overflow!");
+		}
+	}
+	
+	/**
+	 * Создать нового игрока "Компьютер: Идеальный".
+	 * @param aName - Имя создаваемого игрока.
+	 * @return - Созданный игрок.
+	 * @throws PlayerException - Если во время создания игрока возникла ошибка,
+	 *                           например, заполнен пул уникальных идентификаторов игроков,
+	 *                           то вызывает данное исключение.
+	 */
+	public Player createPerfectPlayer(String aName) throws PlayerException
+	{
+		int newPlayerID = getFreePlayerID();
+		if (newPlayerID != 0)
+		{
+			PlayerPerfect player = new PlayerPerfect(aName, newPlayerID);
+			player.setTablebaseDirectory(mTablebaseDirectory);
+			return player;
 		}
 		else
 		{
@@ -115,12 +216,13 @@ public class PlayersFactory {
 	 */
 	public void releasePlayer(Player aPlayer) throws PlayerException
 	{
-		byte playerID = aPlayer.getID();
+		int playerID = aPlayer.getID();
 		if (playerID > 0)
 		{
-			if (mPlayerIDsUsage[playerID-1] == true)
+			if (mPlayerIDsUsage.get(playerID-1))
 			{
-				mPlayerIDsUsage[playerID-1] = false;
+				mPlayerIDsUsage.clear(playerID-1);
+				aPlayer.release();
 				aPlayer.mIsDead = true;
 			}
 			else
@@ -139,17 +241,14 @@ public class PlayersFactory {
 	 * @return - Уникальный идентификатор игрока.
 	 *           0, если свободных идентификаторов игроков нет.
 	*/
-	private byte getFreePlayerID()
+	private int getFreePlayerID()
 	{
-		byte result = 0;
-		for (byte i = 0; i < mPlayerIDsUsage.length; i++)
+		int result = 0;
+		int index = mPlayerIDsUsage.nextClearBit(0);
+		if (index < Integer.MAX_VALUE)
 		{
-			if (!mPlayerIDsUsage[i])
-			{
-				mPlayerIDsUsage[i] = true;
-				result = (byte)(i + 1);
-				break;
-			}
+			mPlayerIDsUsage.set(index);
+			result = index + 1;
 		}
 		return result;
 	}